@@ -0,0 +1,198 @@
+package okaghana.refinedredstone.engine;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A change to the {@link CircuitState}. Commands are created on the server thread and applied by the
+ * {@link CircuitSimulator}, in the exact order they were submitted. That order is what keeps the simulation
+ * deterministic, no matter which thread it runs on.
+ */
+public abstract class CircuitCommand {
+
+    abstract void apply(CircuitState state);
+
+
+    /** Add (or replace) a network with the given inputs. The map is copied */
+    public static CircuitCommand compile(int id, Map<Long, Integer> inputs, int knownPower) {
+        return new Compile(id, new HashMap<>(inputs), knownPower);
+    }
+
+    /** Remove a network */
+    public static CircuitCommand drop(int id) {
+        return new Drop(id);
+    }
+
+    /** Change the level of one input face */
+    public static CircuitCommand input(int id, long member, int face, int level) {
+        return new Input(id, member, face, level);
+    }
+
+    /** Set all six input faces of a member, e.g. after it has been added to the network */
+    public static CircuitCommand member(int id, long member, int packedFaces) {
+        return new Member(id, member, packedFaces);
+    }
+
+    /** Remove a member and its inputs */
+    public static CircuitCommand removeMember(int id, long member) {
+        return new RemoveMember(id, member);
+    }
+
+    /** Move some members with their inputs into a new network. The collection is copied */
+    public static CircuitCommand split(int id, int newId, Collection<Long> members) {
+        return new Split(id, newId, members.stream().mapToLong(Long::longValue).toArray());
+    }
+
+
+    // ---------------------------------------- //
+    //                 Commands                 //
+    // ---------------------------------------- //
+
+    private static class Compile extends CircuitCommand {
+        private final int id;
+        private final Map<Long, Integer> inputs;
+        private final int knownPower;
+
+        Compile(int id, Map<Long, Integer> inputs, int knownPower) {
+            this.id = id;
+            this.inputs = inputs;
+            this.knownPower = knownPower;
+        }
+
+        @Override
+        void apply(CircuitState state) {
+            state.compile(id, inputs, knownPower);
+        }
+    }
+
+
+    private static class Drop extends CircuitCommand {
+        private final int id;
+
+        Drop(int id) {
+            this.id = id;
+        }
+
+        @Override
+        void apply(CircuitState state) {
+            state.drop(id);
+        }
+    }
+
+
+    private static class Input extends CircuitCommand {
+        private final int id;
+        private final long member;
+        private final int face;
+        private final int level;
+
+        Input(int id, long member, int face, int level) {
+            this.id = id;
+            this.member = member;
+            this.face = face;
+            this.level = level;
+        }
+
+        @Override
+        void apply(CircuitState state) {
+            state.setInput(id, member, face, level);
+        }
+    }
+
+
+    private static class Member extends CircuitCommand {
+        private final int id;
+        private final long member;
+        private final int packedFaces;
+
+        Member(int id, long member, int packedFaces) {
+            this.id = id;
+            this.member = member;
+            this.packedFaces = packedFaces;
+        }
+
+        @Override
+        void apply(CircuitState state) {
+            CompiledNetwork network = state.get(id);
+            if (network != null) {
+                int before = network.getPower();
+                network.setInputs(member, packedFaces);
+                if (network.getPower() != before) {
+                    state.markChanged(network);
+                }
+            }
+        }
+    }
+
+
+    private static class RemoveMember extends CircuitCommand {
+        private final int id;
+        private final long member;
+
+        RemoveMember(int id, long member) {
+            this.id = id;
+            this.member = member;
+        }
+
+        @Override
+        void apply(CircuitState state) {
+            state.removeMember(id, member);
+        }
+    }
+
+
+    private static class Split extends CircuitCommand {
+        private final int id;
+        private final int newId;
+        private final long[] members;
+
+        Split(int id, int newId, long[] members) {
+            this.id = id;
+            this.newId = newId;
+            this.members = members;
+        }
+
+        @Override
+        void apply(CircuitState state) {
+            state.split(id, newId, members);
+        }
+    }
+
+
+    /** Copies the whole state, so another thread can read it */
+    static class Snapshot extends CircuitCommand {
+        final CompletableFuture<Map<Integer, CompiledNetwork>> result = new CompletableFuture<>();
+        final int id;
+
+        /** @param id The network to copy, or 0 for all of them */
+        Snapshot(int id) {
+            this.id = id;
+        }
+
+        @Override
+        void apply(CircuitState state) {
+            if (id == 0) {
+                result.complete(state.snapshot());
+            } else {
+                CompiledNetwork network = state.snapshot(id);
+                result.complete(network != null ? Collections.singletonMap(id, network) : Collections.emptyMap());
+            }
+        }
+    }
+
+
+    /** Marks the end of a server tick. Everything before it belongs to that tick */
+    static class TickBoundary extends CircuitCommand {
+        final long tick;
+
+        TickBoundary(long tick) {
+            this.tick = tick;
+        }
+
+        @Override
+        void apply(CircuitState state) { }
+    }
+}
@@ -0,0 +1,234 @@
+package okaghana.refinedredstone.engine;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs the {@link CircuitState} of one world, either directly on the calling thread or on a thread of its own. <br><br>
+ *
+ * <b>Synchronous:</b> Every submitted command is applied right away and {@link CircuitSimulator#takeChanges()} returns
+ * the resulting power changes immediately. <br><br>
+ *
+ * <b>Threaded:</b> The simulation thread owns the state. Commands are passed through a lock-free queue and applied in
+ * submission order. At the end of every server tick {@link CircuitSimulator#endTick(long)} puts a boundary into the
+ * queue. When the simulation thread reaches it, it writes all power changes of that tick into the back buffer and swaps
+ * it with the front buffer. At a fixed point of the next tick the server thread takes the front buffer with
+ * {@link CircuitSimulator#takeChanges()}, applies it and hands it back with {@link CircuitSimulator#releaseChanges()}.
+ * The server never waits for the simulation: if the tick isn't published yet, it takes nothing and tries again in the
+ * next tick. No new boundary is posted before the previous buffer has been released, so the commands of the ticks in
+ * between are simply published together with the next boundary. <br><br>
+ *
+ * A power change is therefore written to the world one tick after the input change that caused it, or later while the
+ * simulation thread is busy. The written power can change the inputs of other networks, but those are read by the
+ * server thread while it applies the change, so they reach the simulation another tick later: a cascade through n
+ * networks takes n ticks, where the synchronous mode settles all of it in the tick of the first change. Circuits that
+ * depend on the timing between several networks can behave differently in threaded mode.
+ */
+public class CircuitSimulator {
+
+    private static final long TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(2);
+    private static final PowerChanges NO_CHANGES = new PowerChanges();
+
+    private final CircuitState state = new CircuitState();
+    private final boolean threaded;
+
+    // Synchronous mode
+    private final PowerChanges immediate = new PowerChanges();
+
+    // Threaded mode
+    private final ConcurrentLinkedQueue<CircuitCommand> queue = new ConcurrentLinkedQueue<>();
+    private final Thread thread;
+    private PowerChanges front = new PowerChanges();
+    private PowerChanges back = new PowerChanges();
+    private volatile long publishedTick = -1;
+    private volatile long consumedTick = -1;
+    private volatile boolean running;
+    private volatile Throwable failure;
+    private long postedTick = -1;
+    private long postedNanos;
+    private long takenTick = -1;
+
+
+    /**
+     * @param name The name of the simulation thread
+     * @param threaded Whether to run on a thread of its own
+     */
+    public CircuitSimulator(String name, boolean threaded) {
+        this.threaded = threaded;
+
+        if (threaded) {
+            running = true;
+            thread = new Thread(this::run, name);
+            thread.setDaemon(true);
+            thread.start();
+        } else {
+            thread = null;
+        }
+    }
+
+
+    public boolean isThreaded() {
+        return threaded;
+    }
+
+
+    /** Apply a command, either now or on the simulation thread */
+    public void submit(CircuitCommand command) {
+        if (threaded) {
+            queue.add(command);
+            LockSupport.unpark(thread);
+        } else {
+            command.apply(state);
+        }
+    }
+
+
+    /**
+     * Mark the end of a server tick. Does nothing in synchronous mode
+     *
+     * @param tick The game time of the tick that ended
+     */
+    public void endTick(long tick) {
+        if (threaded && consumedTick >= postedTick) {
+            postedTick = tick;
+            postedNanos = System.nanoTime();
+            submit(new CircuitCommand.TickBoundary(tick));
+        }
+    }
+
+
+    /**
+     * Get the power changes that have to be written to the world. In threaded mode these are the changes of the last
+     * published tick, or none if the simulation thread hasn't finished it yet. The buffer must be handed back with
+     * {@link CircuitSimulator#releaseChanges()} after it has been applied.
+     *
+     * @return The power changes in the order they happened
+     * @throws IllegalStateException If the simulation thread died or hasn't finished a tick for too long
+     */
+    public PowerChanges takeChanges() {
+        if (!threaded) {
+            immediate.clear();
+            state.publish(immediate);
+            return immediate;
+        }
+
+        if (postedTick <= consumedTick) {
+            return NO_CHANGES;
+        }
+
+        if (failure != null || !thread.isAlive()) {
+            throw new IllegalStateException("The circuit simulation thread died", failure);
+        }
+        if (publishedTick < postedTick) {
+            // Still busy. Don't hold up the server, the changes are applied in a later tick
+            if (System.nanoTime() - postedNanos > TIMEOUT_NANOS) {
+                throw new IllegalStateException("The circuit simulation thread didn't finish tick " + postedTick + " in time");
+            }
+            return NO_CHANGES;
+        }
+
+        takenTick = publishedTick;
+        return front;
+    }
+
+
+    /** Hand the buffer from {@link CircuitSimulator#takeChanges()} back to the simulation */
+    public void releaseChanges() {
+        // Only the tick that has actually been taken, another one may have been published in the meantime
+        if (threaded && takenTick > consumedTick) {
+            consumedTick = takenTick;
+            LockSupport.unpark(thread);
+        }
+    }
+
+
+    /**
+     * Copy the state of all networks, after every command submitted so far has been applied. In threaded mode this
+     * waits for the simulation thread.
+     *
+     * @return Copies of all networks, keyed by their id
+     * @throws IllegalStateException If the simulation thread died or doesn't answer in time
+     */
+    public Map<Integer, CompiledNetwork> snapshot() {
+        if (!threaded) {
+            return state.snapshot();
+        }
+        return awaitSnapshot(new CircuitCommand.Snapshot(0));
+    }
+
+
+    /**
+     * Copy the state of a single network, like {@link CircuitSimulator#snapshot()}
+     *
+     * @return A copy of the network, or null if the simulation doesn't know it
+     * @throws IllegalStateException If the simulation thread died or doesn't answer in time
+     */
+    public CompiledNetwork snapshot(int id) {
+        if (!threaded) {
+            return state.snapshot(id);
+        }
+        return awaitSnapshot(new CircuitCommand.Snapshot(id)).get(id);
+    }
+
+
+    private Map<Integer, CompiledNetwork> awaitSnapshot(CircuitCommand.Snapshot command) {
+        submit(command);
+        try {
+            return command.result.get(TIMEOUT_NANOS, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException | ExecutionException | TimeoutException exception) {
+            throw new IllegalStateException("The circuit simulation thread didn't answer in time", exception);
+        }
+    }
+
+
+    /** Stop the simulation thread. Pending commands are discarded */
+    public void shutdown() {
+        if (threaded) {
+            running = false;
+            LockSupport.unpark(thread);
+        }
+    }
+
+
+    // ---------------------------------------- //
+    //             Simulation Thread            //
+    // ---------------------------------------- //
+
+    private void run() {
+        try {
+            while (running) {
+                CircuitCommand command = queue.poll();
+                if (command == null) {
+                    LockSupport.park(this);
+                } else if (command instanceof CircuitCommand.TickBoundary) {
+                    publish(((CircuitCommand.TickBoundary) command).tick);
+                } else {
+                    command.apply(state);
+                }
+            }
+        } catch (Throwable throwable) {
+            failure = throwable;
+            running = false;
+        }
+    }
+
+
+    private void publish(long tick) {
+        // The server releases the front buffer before it posts the next boundary, so this normally doesn't wait at all
+        while (consumedTick < publishedTick && running) {
+            LockSupport.parkNanos(this, 50_000);
+        }
+
+        back.clear();
+        state.publish(back);
+
+        PowerChanges published = back;
+        back = front;
+        front = published;
+        publishedTick = tick;
+    }
+}
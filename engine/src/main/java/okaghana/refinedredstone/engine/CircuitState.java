@@ -0,0 +1,165 @@
+package okaghana.refinedredstone.engine;
+
+import java.util.*;
+
+/**
+ * All compiled networks of a world. This is the state that the {@link CircuitSimulator} owns: it is only ever touched
+ * from one thread at a time, everything else talks to it through {@link CircuitCommand}s. <br><br>
+ *
+ * Every network whose power changes is remembered until the next {@link CircuitState#publish(PowerChanges)}, in the
+ * order the changes happened. A network that changes several times in between is published once, with its final power.
+ */
+public class CircuitState {
+
+    private final Map<Integer, CompiledNetwork> networks = new HashMap<>();
+    private final Map<Integer, Integer> publishedPower = new HashMap<>();
+    private final Set<Integer> dirty = new LinkedHashSet<>();
+
+
+    /** Get the network with the given id, or null */
+    public CompiledNetwork get(int id) {
+        return networks.get(id);
+    }
+
+    public Collection<CompiledNetwork> getNetworks() {
+        return Collections.unmodifiableCollection(networks.values());
+    }
+
+
+    /**
+     * Add a network, replacing an existing one with the same id
+     *
+     * @param id The id of the network
+     * @param inputs The packed faces of every member with a powered input
+     * @param knownPower The power the network currently has in the world
+     */
+    public CompiledNetwork compile(int id, Map<Long, Integer> inputs, int knownPower) {
+        CompiledNetwork network = new CompiledNetwork(id);
+        for (Map.Entry<Long, Integer> entry : inputs.entrySet()) {
+            network.setInputs(entry.getKey(), entry.getValue());
+        }
+
+        networks.put(id, network);
+        publishedPower.put(id, knownPower);
+        markChanged(network);
+        return network;
+    }
+
+
+    /** Forget a network */
+    public CompiledNetwork drop(int id) {
+        dirty.remove(id);
+        publishedPower.remove(id);
+        return networks.remove(id);
+    }
+
+
+    /**
+     * Change the level of one input
+     *
+     * @return Whether the power of the network changed
+     */
+    public boolean setInput(int id, long member, int face, int level) {
+        CompiledNetwork network = networks.get(id);
+        if (network == null) {
+            return false;
+        }
+
+        int before = network.getPower();
+        network.setInput(member, face, level);
+        if (network.getPower() != before) {
+            markChanged(network);
+            return true;
+        }
+        return false;
+    }
+
+
+    /** Remove a wire and its inputs from a network */
+    public void removeMember(int id, long member) {
+        CompiledNetwork network = networks.get(id);
+        if (network == null) {
+            return;
+        }
+
+        int before = network.getPower();
+        network.removeMember(member);
+        if (network.getPower() != before) {
+            markChanged(network);
+        }
+    }
+
+
+    /**
+     * Move some wires with their inputs from one network into a new one. Both networks are evaluated again, but only the
+     * moved inputs are touched
+     *
+     * @param id The network the wires are in now
+     * @param newId The id of the new network
+     * @param members The wires to move
+     */
+    public void split(int id, int newId, long[] members) {
+        CompiledNetwork network = networks.get(id);
+        if (network == null) {
+            return;
+        }
+
+        CompiledNetwork fragment = new CompiledNetwork(newId);
+        for (long member : members) {
+            int faces = network.removeMember(member);
+            if (faces != 0) {
+                fragment.setInputs(member, faces);
+            }
+        }
+
+        networks.put(newId, fragment);
+        publishedPower.put(newId, publishedPower.getOrDefault(id, 0));
+        markChanged(network);
+        markChanged(fragment);
+    }
+
+
+    /** Remember that the network has to be published (if its power differs from the last published one) */
+    public void markChanged(CompiledNetwork network) {
+        dirty.add(network.getId());
+    }
+
+
+    /** Copies of all networks, keyed by their id */
+    public Map<Integer, CompiledNetwork> snapshot() {
+        Map<Integer, CompiledNetwork> copies = new HashMap<>(networks.size() * 2);
+        for (CompiledNetwork network : networks.values()) {
+            copies.put(network.getId(), network.copy());
+        }
+        return copies;
+    }
+
+
+    /** A copy of a single network, or null if there is no network with that id */
+    public CompiledNetwork snapshot(int id) {
+        CompiledNetwork network = networks.get(id);
+        return network != null ? network.copy() : null;
+    }
+
+
+    /**
+     * Write every network whose power changed since the last call into the buffer
+     *
+     * @param target The buffer to fill. It is not cleared beforehand
+     */
+    public void publish(PowerChanges target) {
+        for (int id : dirty) {
+            CompiledNetwork network = networks.get(id);
+            if (network == null) {
+                continue;
+            }
+
+            int power = network.getPower();
+            Integer previous = publishedPower.put(id, power);
+            if (previous == null || previous != power) {
+                target.add(id, power);
+            }
+        }
+        dirty.clear();
+    }
+}
@@ -0,0 +1,104 @@
+package okaghana.refinedredstone.engine;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The evaluation state of one network: the level of every input face and the {@link InputHistogram} built from them.
+ * <br><br>
+ *
+ * Only members with at least one powered face are stored. The six faces of a member are packed into one int, 4 bits per
+ * face in {@link PackedPos} face order.
+ */
+public class CompiledNetwork {
+
+    private final int id;
+    private final Map<Long, Integer> inputs = new HashMap<>();
+    private final InputHistogram histogram = new InputHistogram();
+
+
+    public CompiledNetwork(int id) {
+        this.id = id;
+    }
+
+
+    public int getId() {
+        return id;
+    }
+
+    /** The power of the network: the strongest input */
+    public int getPower() {
+        return histogram.max();
+    }
+
+    public InputHistogram getHistogram() {
+        return histogram;
+    }
+
+    /** The packed faces of every member with a powered input */
+    public Map<Long, Integer> getInputs() {
+        return inputs;
+    }
+
+
+    /**
+     * Set the level of one input face
+     *
+     * @param member The packed position of the wire
+     * @param face The face of the wire the input is on
+     * @param level The new level of the input
+     * @return The previous level of the input
+     */
+    public int setInput(long member, int face, int level) {
+        int faces = inputs.getOrDefault(member, 0);
+        int shift = face << 2;
+        int previous = (faces >>> shift) & 0xF;
+        if (previous == level) {
+            return previous;
+        }
+
+        histogram.move(previous, level);
+        faces = (faces & ~(0xF << shift)) | (level << shift);
+        if (faces == 0) {
+            inputs.remove(member);
+        } else {
+            inputs.put(member, faces);
+        }
+        return previous;
+    }
+
+    /** The level of one input face */
+    public int getInput(long member, int face) {
+        return (inputs.getOrDefault(member, 0) >>> (face << 2)) & 0xF;
+    }
+
+    /** Set all six faces of a member at once */
+    public void setInputs(long member, int packedFaces) {
+        for (int face = 0; face < PackedPos.FACES; face++) {
+            setInput(member, face, (packedFaces >>> (face << 2)) & 0xF);
+        }
+    }
+
+    /** An independent copy of this network, e.g. to hand it to another thread */
+    public CompiledNetwork copy() {
+        CompiledNetwork copy = new CompiledNetwork(id);
+        for (Map.Entry<Long, Integer> entry : inputs.entrySet()) {
+            copy.setInputs(entry.getKey(), entry.getValue());
+        }
+        return copy;
+    }
+
+
+    /** Remove a member and all of its inputs */
+    public int removeMember(long member) {
+        Integer faces = inputs.remove(member);
+        if (faces == null) {
+            return 0;
+        }
+
+        for (int face = 0; face < PackedPos.FACES; face++) {
+            histogram.remove((faces >>> (face << 2)) & 0xF);
+        }
+        return faces;
+    }
+}
@@ -0,0 +1,134 @@
+package okaghana.refinedredstone.engine;
+
+import java.util.*;
+import java.util.function.LongFunction;
+
+/**
+ * Computes the power of every member of a network in decay mode, where the signal loses one level per wire like vanilla
+ * redstone dust. <br><br>
+ *
+ * The power of a member is the strongest input anywhere in the network minus its distance to that input. Instead of a
+ * search from every input, all inputs are sources of one breadth-first search with a bucket queue (Dial's algorithm):
+ * there is one bucket per level, and the buckets are processed from 15 down to 1. When a bucket is processed, every
+ * stronger member is already final, so a member is final the first time it is reached from a bucket. A member is queued
+ * at most twice (once as an input, once when a stronger signal reaches it), which makes the search linear in the number
+ * of members.
+ */
+public final class DecayField {
+
+    private DecayField() { }
+
+
+    /**
+     * @param members The packed positions of all members of the network
+     * @param inputs The packed input faces of every member with a powered input, like in {@link CompiledNetwork}
+     * @return The power of every member with a power above 0
+     */
+    public static Map<Long, Integer> compute(Set<Long> members, Map<Long, Integer> inputs) {
+        Map<Long, Integer> sources = new HashMap<>(inputs.size() * 2);
+        for (Map.Entry<Long, Integer> input : inputs.entrySet()) {
+            if (members.contains(input.getKey())) {
+                sources.put(input.getKey(), strongestFace(input.getValue()));
+            }
+        }
+
+        return propagate(sources, member -> {
+            long[] neighbors = new long[PackedPos.FACES];
+            int count = 0;
+            for (int face = 0; face < PackedPos.FACES; face++) {
+                long neighbor = PackedPos.offset(member, face);
+                if (members.contains(neighbor)) {
+                    neighbors[count++] = neighbor;
+                }
+            }
+            return count == neighbors.length ? neighbors : Arrays.copyOf(neighbors, count);
+        });
+    }
+
+
+    /**
+     * The same search for positions that aren't simply connected by their faces, e.g. vanilla redstone dust that steps up
+     * and down blocks. The links may be one-way
+     *
+     * @param sources The level every position gets from outside, positions with level 0 may be left out
+     * @param links The positions a position passes its signal on to (one level weaker)
+     * @return The level of every position with a level above 0
+     */
+    public static Map<Long, Integer> propagate(Map<Long, Integer> sources, LongFunction<long[]> links) {
+        Map<Long, Integer> levels = new HashMap<>(sources.size() * 4);
+        LongQueue[] buckets = new LongQueue[16];
+        for (int level = 1; level < 16; level++) {
+            buckets[level] = new LongQueue();
+        }
+
+        for (Map.Entry<Long, Integer> source : sources.entrySet()) {
+            int level = Math.min(15, source.getValue());
+            if (level > 0) {
+                levels.put(source.getKey(), level);
+                buckets[level].add(source.getKey());
+            }
+        }
+
+        for (int level = 15; level > 1; level--) {
+            LongQueue bucket = buckets[level];
+            while (!bucket.isEmpty()) {
+                long position = bucket.remove();
+                if (levels.get(position) != level) {
+                    // Reached by a stronger signal after it was queued as a source
+                    continue;
+                }
+
+                for (long neighbor : links.apply(position)) {
+                    if (levels.getOrDefault(neighbor, 0) < level - 1) {
+                        levels.put(neighbor, level - 1);
+                        buckets[level - 1].add(neighbor);
+                    }
+                }
+            }
+        }
+        return levels;
+    }
+
+
+    /** The strongest of the six faces packed into an int */
+    private static int strongestFace(int faces) {
+        int max = 0;
+        for (int face = 0; face < PackedPos.FACES; face++) {
+            max = Math.max(max, (faces >>> (face << 2)) & 0xF);
+        }
+        return max;
+    }
+
+
+    /**
+     * A growable FIFO of primitive longs, so queueing a position doesn't box it. The levels are still kept in a boxing
+     * map, the engine has no primitive collections
+     */
+    private static class LongQueue {
+        private long[] elements = new long[16];
+        private int head = 0;
+        private int tail = 0;
+
+        void add(long value) {
+            if (tail == elements.length) {
+                if (head > 0) {
+                    System.arraycopy(elements, head, elements, 0, tail - head);
+                    tail -= head;
+                    head = 0;
+                }
+                if (tail == elements.length) {
+                    elements = Arrays.copyOf(elements, elements.length * 2);
+                }
+            }
+            elements[tail++] = value;
+        }
+
+        long remove() {
+            return elements[head++];
+        }
+
+        boolean isEmpty() {
+            return head == tail;
+        }
+    }
+}
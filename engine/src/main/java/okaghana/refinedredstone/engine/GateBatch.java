@@ -0,0 +1,83 @@
+package okaghana.refinedredstone.engine;
+
+import java.util.Arrays;
+
+/**
+ * Collects the inputs of many gates of the same {@link GateOperation} and evaluates them together. <br><br>
+ *
+ * The inputs are stored as packed lanes, 16 gates per long. {@link GateBatch#evaluate()} then runs over the whole
+ * arrays in one tight, branch-free loop, which lets the JIT unroll it and keep everything in registers. Java 8 has no
+ * vector API, so the arrays of longs are our "wide" registers. <br><br>
+ *
+ * A gate is identified by the slot returned from {@link GateBatch#add(int, int)}. Slots are only valid until the next
+ * call to {@link GateBatch#clear()}.
+ */
+public class GateBatch {
+
+    private final GateOperation operation;
+    private long[] inputsA = new long[4];
+    private long[] inputsB = new long[4];
+    private long[] outputs = new long[4];
+    private int size = 0;
+
+    public GateBatch(GateOperation operation) {
+        this.operation = operation;
+    }
+
+    public GateOperation getOperation() {
+        return operation;
+    }
+
+    /** The number of gates in this batch */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Add a gate to the batch
+     *
+     * @param a The first input (0-15)
+     * @param b The second input (0-15)
+     * @return The slot of the gate, used to read the result after {@link GateBatch#evaluate()}
+     */
+    public int add(int a, int b) {
+        int word = size >>> 4;
+        int lane = size & 15;
+
+        if (word == inputsA.length) {
+            int length = inputsA.length * 2;
+            inputsA = Arrays.copyOf(inputsA, length);
+            inputsB = Arrays.copyOf(inputsB, length);
+            outputs = Arrays.copyOf(outputs, length);
+        }
+
+        inputsA[word] = NibbleLanes.set(inputsA[word], lane, a);
+        inputsB[word] = NibbleLanes.set(inputsB[word], lane, b);
+        return size++;
+    }
+
+    /** Evaluate every gate in the batch. The results can be read with {@link GateBatch#getResult(int)} */
+    public void evaluate() {
+        int words = (size + 15) >>> 4;
+        for (int i = 0; i < words; i++) {
+            outputs[i] = operation.apply(inputsA[i], inputsB[i]);
+        }
+    }
+
+    /** The output of the gate in the given slot. Only valid after {@link GateBatch#evaluate()} */
+    public int getResult(int slot) {
+        return NibbleLanes.get(outputs[slot >>> 4], slot & 15);
+    }
+
+    /** Remove all gates, but keep the arrays around for the next tick */
+    public void clear() {
+        int words = (size + 15) >>> 4;
+        Arrays.fill(inputsA, 0, words, 0L);
+        Arrays.fill(inputsB, 0, words, 0L);
+        size = 0;
+    }
+}
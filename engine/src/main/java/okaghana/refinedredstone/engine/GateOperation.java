@@ -0,0 +1,71 @@
+package okaghana.refinedredstone.engine;
+
+/**
+ * The operations a logic or arithmetic block can perform on its two inputs. <br><br>
+ *
+ * Every operation works on 16 packed signals at once (see {@link NibbleLanes}), so a whole batch of gates of the same
+ * type is evaluated with one call per 16 gates.
+ */
+public enum GateOperation {
+    /** Bitwise AND of both signal levels */
+    AND {
+        @Override
+        public long apply(long a, long b) {
+            return a & b;
+        }
+    },
+
+    /** Bitwise OR of both signal levels */
+    OR {
+        @Override
+        public long apply(long a, long b) {
+            return a | b;
+        }
+    },
+
+    /** Bitwise XOR of both signal levels */
+    XOR {
+        @Override
+        public long apply(long a, long b) {
+            return a ^ b;
+        }
+    },
+
+    /** a + b, capped at 15 */
+    ADD {
+        @Override
+        public long apply(long a, long b) {
+            return NibbleLanes.addSaturating(a, b);
+        }
+    },
+
+    /** a - b, capped at 0 */
+    SUBTRACT {
+        @Override
+        public long apply(long a, long b) {
+            return NibbleLanes.subSaturating(a, b);
+        }
+    },
+
+    /** Like the comparator in compare mode: a if a >= b, otherwise 0 */
+    COMPARE {
+        @Override
+        public long apply(long a, long b) {
+            return a & NibbleLanes.greaterOrEqual(a, b);
+        }
+    };
+
+    /**
+     * Evaluate 16 gates at once
+     *
+     * @param a The first input of every gate, packed into lanes
+     * @param b The second input of every gate, packed into lanes
+     * @return The output of every gate, packed into lanes
+     */
+    public abstract long apply(long a, long b);
+
+    /** Evaluate a single gate */
+    public int apply(int a, int b) {
+        return (int) apply(NibbleLanes.broadcast(a), NibbleLanes.broadcast(b)) & 0xF;
+    }
+}
@@ -0,0 +1,148 @@
+package okaghana.refinedredstone.engine;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Debounce and hysteresis for the inputs at the boundary of the networks. <br><br>
+ *
+ * A vanilla clock or a noisy comparator next to a large network would otherwise recompute the whole network on every
+ * single transition. With a conditioner in between
+ * <ul>
+ *     <li>a change is only passed on if it differs from the last passed level by at least the hysteresis (a change to 0
+ *     or 15 always passes, so a signal can't get stuck just above off),</li>
+ *     <li>after a change has been passed, the input is quiet for the debounce window. The first change within the
+ *     window marks the input as pending, and when the window is over the caller reads the input again and offers
+ *     whatever level it has by then. So a burst of transitions costs at most two recomputations, one at its start and
+ *     one at the end of the window.</li>
+ * </ul>
+ * The conditioner doesn't store the pending levels itself: the world is the source of truth, and reading it again when the
+ * window is over also coalesces everything that flapped in between.
+ */
+public final class InputConditioner {
+
+    private final int window;
+    private final int hysteresis;
+    private final Map<Long, FaceState[]> states = new HashMap<>();
+    private final PriorityQueue<Due> due = new PriorityQueue<>();
+
+
+    /**
+     * @param window The debounce window in ticks
+     * @param hysteresis The minimum difference to the last passed level for a change to pass (0 and 1 pass every change)
+     */
+    public InputConditioner(int window, int hysteresis) {
+        this.window = window;
+        this.hysteresis = hysteresis;
+    }
+
+
+    /** Whether a change from the last passed level to the new one is large enough */
+    public static boolean passesHysteresis(int passed, int level, int hysteresis) {
+        if (level == passed) {
+            return false;
+        }
+        return level == 0 || level == 15 || Math.abs(level - passed) >= hysteresis;
+    }
+
+
+    /**
+     * Offer a new input level
+     *
+     * @param member The wire the input belongs to
+     * @param face The face of the wire (see {@link PackedPos})
+     * @param level The current level of the input
+     * @param tick The current game time
+     * @return Whether the level should be passed on to the network now
+     */
+    public boolean offer(long member, int face, int level, long tick) {
+        FaceState[] faces = states.computeIfAbsent(member, key -> new FaceState[PackedPos.FACES]);
+        FaceState state = faces[face];
+        if (state == null) {
+            faces[face] = new FaceState(level, tick);
+            return true;
+        }
+
+        if (state.pending || !passesHysteresis(state.passed, level, hysteresis)) {
+            return false;
+        }
+
+        if (tick - state.passedAt < window) {
+            state.pending = true;
+            due.add(new Due(member, face, state.passedAt + window));
+            return false;
+        }
+
+        state.passed = level;
+        state.passedAt = tick;
+        return true;
+    }
+
+
+    /**
+     * Hand out the inputs whose window is over. The caller should read them again and {@link InputConditioner#offer} the
+     * current level
+     */
+    public void poll(long tick, DueConsumer consumer) {
+        while (!due.isEmpty() && due.peek().tick <= tick) {
+            Due entry = due.poll();
+            FaceState[] faces = states.get(entry.member);
+            if (faces != null && faces[entry.face] != null) {
+                faces[entry.face].pending = false;
+                consumer.accept(entry.member, entry.face);
+            }
+        }
+    }
+
+
+    /** Forget everything about a wire, e.g. because it has been removed */
+    public void forget(long member) {
+        states.remove(member);
+    }
+
+
+    public int getWindow() {
+        return window;
+    }
+
+    public int getHysteresis() {
+        return hysteresis;
+    }
+
+
+    @FunctionalInterface
+    public interface DueConsumer {
+        void accept(long member, int face);
+    }
+
+
+    private static class FaceState {
+        private int passed;
+        private long passedAt;
+        private boolean pending = false;
+
+        private FaceState(int passed, long passedAt) {
+            this.passed = passed;
+            this.passedAt = passedAt;
+        }
+    }
+
+
+    private static class Due implements Comparable<Due> {
+        private final long member;
+        private final int face;
+        private final long tick;
+
+        private Due(long member, int face, long tick) {
+            this.member = member;
+            this.face = face;
+            this.tick = tick;
+        }
+
+        @Override
+        public int compareTo(Due other) {
+            return Long.compare(tick, other.tick);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package okaghana.refinedredstone.engine;
+
+import java.util.Arrays;
+
+/**
+ * Counts how many inputs of a network currently have each power level. <br><br>
+ *
+ * Since the power of a network is the strongest of its inputs, the power can be read in O(1) from the highest
+ * non-empty bucket, and an input that changes only moves one count from one bucket to another. No other input has to
+ * be looked at again. Level 0 is not counted, an input without power doesn't contribute anything.
+ */
+public class InputHistogram {
+
+    private final int[] counts = new int[16];
+    // Bit i is set when counts[i] > 0
+    private int occupied = 0;
+
+
+    /** Count an input with the given level */
+    public void add(int level) {
+        if (level > 0 && counts[level]++ == 0) {
+            occupied |= 1 << level;
+        }
+    }
+
+    /** Stop counting an input with the given level */
+    public void remove(int level) {
+        if (level > 0 && counts[level] > 0 && --counts[level] == 0) {
+            occupied &= ~(1 << level);
+        }
+    }
+
+    /** Move an input from one level to another */
+    public void move(int from, int to) {
+        if (from != to) {
+            remove(from);
+            add(to);
+        }
+    }
+
+    /** The strongest input, or 0 if there is none */
+    public int max() {
+        return 31 - Integer.numberOfLeadingZeros(occupied | 1);
+    }
+
+    /** The number of inputs with the given level */
+    public int getCount(int level) {
+        return counts[level];
+    }
+
+    /** The number of inputs with any power */
+    public int getTotal() {
+        int total = 0;
+        for (int level = 1; level < 16; level++) {
+            total += counts[level];
+        }
+        return total;
+    }
+
+    public void clear() {
+        Arrays.fill(counts, 0);
+        occupied = 0;
+    }
+}
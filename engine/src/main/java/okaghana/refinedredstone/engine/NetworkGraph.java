@@ -0,0 +1,198 @@
+package okaghana.refinedredstone.engine;
+
+import java.util.*;
+
+/**
+ * The index of all known networks in a world: which network a wire belongs to, and which wires a network has. <br><br>
+ *
+ * A wire that isn't in the index simply hasn't been discovered yet (or its network has been invalidated), the network
+ * is rebuilt from the world the next time it is needed. Ids are never reused while the graph exists.
+ */
+public class NetworkGraph {
+
+    private final Map<Long, Integer> networkByMember = new HashMap<>();
+    private final Map<Integer, WireNetwork> networks = new HashMap<>();
+    private final Map<Long, Set<Integer>> networksByChunk = new HashMap<>();
+    private final Map<Long, Set<Integer>> networksWaitingForChunk = new HashMap<>();
+    private int nextId = 1;
+
+
+    /**
+     * Register a new network
+     *
+     * @param members The packed positions of all wires in the network
+     * @return The new network
+     */
+    public WireNetwork create(Collection<Long> members) {
+        return create(nextId++, members);
+    }
+
+    /** Register a network with a known id (e.g. when loaded from disk) */
+    public WireNetwork create(int id, Collection<Long> members) {
+        nextId = Math.max(nextId, id + 1);
+
+        WireNetwork network = new WireNetwork(id, members);
+        networks.put(id, network);
+        for (long member : network.getMembers()) {
+            Integer previous = networkByMember.put(member, id);
+            if (previous != null && previous != id) {
+                // A wire can only be in one network. The old one is outdated
+                remove(previous);
+                networkByMember.put(member, id);
+            }
+        }
+        for (long chunk : network.getChunks()) {
+            networksByChunk.computeIfAbsent(chunk, key -> new HashSet<>()).add(id);
+        }
+        return network;
+    }
+
+
+    /** Add a single wire to an existing network */
+    public void addMember(int id, long pos) {
+        WireNetwork network = networks.get(id);
+        if (network == null) {
+            return;
+        }
+
+        network.addMember(pos);
+        networkByMember.put(pos, id);
+        networksByChunk.computeIfAbsent(PackedPos.chunkKey(pos), key -> new HashSet<>()).add(id);
+    }
+
+
+    /** Remove a single wire from a network. The rest stays in the network, even if it isn't connected anymore */
+    public void removeMember(int id, long pos) {
+        WireNetwork network = networks.get(id);
+        if (network == null || !network.contains(pos)) {
+            return;
+        }
+
+        network.removeMember(pos);
+        networkByMember.remove(pos, id);
+        if (!network.getChunks().contains(PackedPos.chunkKey(pos))) {
+            removeFromChunk(networksByChunk, PackedPos.chunkKey(pos), id);
+        }
+    }
+
+
+    /**
+     * Move some wires of a network into a new network of their own, e.g. because they aren't connected to the rest
+     * anymore. The new network starts with the power and the mode of the old one
+     *
+     * @param id The network the wires are in now
+     * @param members The wires to move
+     * @return The new network
+     */
+    public WireNetwork split(int id, Collection<Long> members) {
+        WireNetwork network = networks.get(id);
+        for (long member : members) {
+            removeMember(id, member);
+        }
+
+        WireNetwork fragment = create(members);
+        if (network != null) {
+            fragment.setPower(network.getPower());
+            fragment.setDecaying(network.isDecaying());
+        }
+        return fragment;
+    }
+
+
+    /**
+     * Remember that a network might continue into a chunk that isn't loaded. Once the chunk is loaded, the network has to
+     * be traversed again.
+     */
+    public void markIncomplete(int id, long chunk) {
+        WireNetwork network = networks.get(id);
+        if (network != null) {
+            network.addMissingChunk(chunk);
+            networksWaitingForChunk.computeIfAbsent(chunk, key -> new HashSet<>()).add(id);
+        }
+    }
+
+
+    /** Forget a network. Its members are no longer in the index */
+    public WireNetwork remove(int id) {
+        WireNetwork network = networks.remove(id);
+        if (network == null) {
+            return null;
+        }
+
+        for (long member : network.getMembers()) {
+            networkByMember.remove(member, id);
+        }
+        for (long chunk : network.getChunks()) {
+            removeFromChunk(networksByChunk, chunk, id);
+        }
+        for (long chunk : network.getMissingChunks()) {
+            removeFromChunk(networksWaitingForChunk, chunk, id);
+        }
+        return network;
+    }
+
+
+    /** The id of the network the wire at pos belongs to, or 0 if it isn't indexed */
+    public int getNetworkId(long pos) {
+        Integer id = networkByMember.get(pos);
+        return id == null ? 0 : id;
+    }
+
+    /** The network with the given id, or null */
+    public WireNetwork get(int id) {
+        return networks.get(id);
+    }
+
+    /** The network the wire at pos belongs to, or null */
+    public WireNetwork getByMember(long pos) {
+        return networks.get(getNetworkId(pos));
+    }
+
+    /** The ids of all networks with at least one member in the given chunk */
+    public Set<Integer> getNetworksInChunk(long chunk) {
+        Set<Integer> ids = networksByChunk.get(chunk);
+        return ids == null ? Collections.emptySet() : new HashSet<>(ids);
+    }
+
+    /** The ids of all incomplete networks that might continue into the given chunk */
+    public Set<Integer> getNetworksWaitingForChunk(long chunk) {
+        Set<Integer> ids = networksWaitingForChunk.get(chunk);
+        return ids == null ? Collections.emptySet() : new HashSet<>(ids);
+    }
+
+    public Collection<WireNetwork> getNetworks() {
+        return Collections.unmodifiableCollection(networks.values());
+    }
+
+    public int size() {
+        return networks.size();
+    }
+
+    /** The id the next new network will get */
+    public int getNextId() {
+        return nextId;
+    }
+
+    /** Make sure no new network gets an id below the given one, e.g. because those are still stored on disk */
+    public void reserveIds(int nextFreeId) {
+        nextId = Math.max(nextId, nextFreeId);
+    }
+
+    public void clear() {
+        networkByMember.clear();
+        networks.clear();
+        networksByChunk.clear();
+        networksWaitingForChunk.clear();
+    }
+
+
+    private static void removeFromChunk(Map<Long, Set<Integer>> index, long chunk, int id) {
+        Set<Integer> ids = index.get(chunk);
+        if (ids != null) {
+            ids.remove(id);
+            if (ids.isEmpty()) {
+                index.remove(chunk);
+            }
+        }
+    }
+}
@@ -0,0 +1,397 @@
+package okaghana.refinedredstone.engine;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.zip.CRC32;
+
+/**
+ * A compact binary file with all networks of a dimension, so they don't have to be traversed again after a restart.
+ * <br><br>
+ *
+ * The file is memory-mapped and read in place: nothing is parsed up front, a network is only read when one of its
+ * members is looked up, which is a binary search over a sorted table. Loading therefore costs page faults instead of
+ * a full parse. Every network can be taken out of the file once, afterwards the live index is the authority. <br><br>
+ *
+ * Since the file stays mapped while it is used, it is never written over. Every save writes a new generation of the
+ * index next to it (see {@link NetworkIndexFile#getGenerationPath(Path, String, long)}), and the old generations are
+ * deleted once they aren't needed anymore. Closing the file doesn't release the mapping on Java 8, that only happens
+ * when the buffer is garbage collected, and a mapped file can't be replaced or deleted on Windows. <br><br>
+ *
+ * <b>Layout</b> (big endian):
+ * <pre>
+ *   Header      magic, version, network count, member count, input count, next id, CRC32 of the rest, reserved  (8 ints)
+ *   Networks    id, power, first member, member count, first input, input count, histogram[16], flags          (23 ints each)
+ *   Members     packed position                                                                              (1 long each, grouped by network)
+ *   Lookup      packed position, network record                                                              (long + int each, sorted by position)
+ *   Inputs      packed position, packed faces                                                                (long + int each, grouped by network)
+ * </pre>
+ */
+public class NetworkIndexFile implements Closeable {
+
+    public static final int MAGIC = 0x52524E49; // "RRNI"
+    public static final int VERSION = 2;
+
+    // Network flags
+    private static final int FLAG_DECAYING = 1;
+
+    private static final int HEADER_SIZE = 8 * 4;
+    private static final int NETWORK_SIZE = 23 * 4;
+    private static final int MEMBER_SIZE = 8;
+    private static final int LOOKUP_SIZE = 8 + 4;
+    private static final int INPUT_SIZE = 8 + 4;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final int networkCount;
+    private final int memberCount;
+    private final int nextId;
+    private final int membersStart;
+    private final int lookupStart;
+    private final int inputsStart;
+    private final BitSet consumed;
+
+
+    private NetworkIndexFile(FileChannel channel, ByteBuffer buffer) {
+        this.channel = channel;
+        this.buffer = buffer;
+        this.networkCount = buffer.getInt(8);
+        this.memberCount = buffer.getInt(12);
+        this.nextId = buffer.getInt(20);
+        this.membersStart = HEADER_SIZE + networkCount * NETWORK_SIZE;
+        this.lookupStart = membersStart + memberCount * MEMBER_SIZE;
+        this.inputsStart = lookupStart + memberCount * LOOKUP_SIZE;
+        this.consumed = new BitSet(networkCount);
+    }
+
+
+    /**
+     * Map an index file
+     *
+     * @param path The file to open
+     * @return The opened file, or null if there is no file
+     * @throws IOException If the file can't be read, has the wrong version or is corrupted
+     */
+    public static NetworkIndexFile open(Path path) throws IOException {
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                throw new IOException("Invalid size " + size);
+            }
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt(0) != MAGIC) {
+                throw new IOException("Not a network index");
+            }
+            if (buffer.getInt(4) != VERSION) {
+                throw new IOException("Unsupported version " + buffer.getInt(4));
+            }
+
+            int networks = buffer.getInt(8);
+            int members = buffer.getInt(12);
+            int inputs = buffer.getInt(16);
+            long expectedSize = HEADER_SIZE + (long) networks * NETWORK_SIZE + (long) members * (MEMBER_SIZE + LOOKUP_SIZE) + (long) inputs * INPUT_SIZE;
+            if (networks < 0 || members < 0 || inputs < 0 || expectedSize != size) {
+                throw new IOException("Truncated file");
+            }
+            if (checksum(buffer) != buffer.getInt(24)) {
+                throw new IOException("Checksum mismatch");
+            }
+
+            return new NetworkIndexFile(channel, buffer);
+        } catch (IOException | RuntimeException exception) {
+            channel.close();
+            throw exception;
+        }
+    }
+
+
+    /**
+     * Write all networks to a new index file. The file is written next to the target and then moved to it, so a crash
+     * never leaves a half-written index behind. The target must not exist yet, use a new generation for every save.
+     *
+     * @param path The file to write
+     * @param nextId The next free network id
+     * @param networks The networks to store
+     */
+    public static void write(Path path, int nextId, Collection<StoredNetwork> networks) throws IOException {
+        int memberCount = 0;
+        int inputCount = 0;
+        for (StoredNetwork network : networks) {
+            memberCount += network.members.length;
+            inputCount += network.inputs.size();
+        }
+
+        long size = HEADER_SIZE + (long) networks.size() * NETWORK_SIZE + (long) memberCount * (MEMBER_SIZE + LOOKUP_SIZE) + (long) inputCount * INPUT_SIZE;
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Too many networks to store: " + size + " bytes");
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) size);
+        long[] lookupPositions = new long[memberCount];
+        int[] lookupRecords = new int[memberCount];
+
+        // Networks and their members
+        int membersStart = HEADER_SIZE + networks.size() * NETWORK_SIZE;
+        int lookupStart = membersStart + memberCount * MEMBER_SIZE;
+        int inputsStart = lookupStart + memberCount * LOOKUP_SIZE;
+        int record = 0;
+        int member = 0;
+        int input = 0;
+
+        for (StoredNetwork network : networks) {
+            buffer.position(HEADER_SIZE + record * NETWORK_SIZE);
+            buffer.putInt(network.id).putInt(network.power);
+            buffer.putInt(member).putInt(network.members.length);
+            buffer.putInt(input).putInt(network.inputs.size());
+            for (int level = 0; level < 16; level++) {
+                buffer.putInt(network.histogram[level]);
+            }
+            buffer.putInt(network.decaying ? FLAG_DECAYING : 0);
+
+            buffer.position(membersStart + member * MEMBER_SIZE);
+            for (long pos : network.members) {
+                buffer.putLong(pos);
+                lookupPositions[member] = pos;
+                lookupRecords[member] = record;
+                member++;
+            }
+
+            buffer.position(inputsStart + input * INPUT_SIZE);
+            for (Map.Entry<Long, Integer> entry : network.inputs.entrySet()) {
+                buffer.putLong(entry.getKey()).putInt(entry.getValue());
+                input++;
+            }
+            record++;
+        }
+
+        // The lookup table, sorted by position
+        Integer[] order = new Integer[memberCount];
+        for (int i = 0; i < memberCount; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingLong(i -> lookupPositions[i]));
+        buffer.position(lookupStart);
+        for (int i : order) {
+            buffer.putLong(lookupPositions[i]).putInt(lookupRecords[i]);
+        }
+
+        buffer.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, networks.size()).putInt(12, memberCount);
+        buffer.putInt(16, inputCount).putInt(20, nextId).putInt(24, checksum(buffer)).putInt(28, 0);
+
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            buffer.rewind();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+
+    // ---------------------------------------- //
+    //               Generations                //
+    // ---------------------------------------- //
+
+    /** The file of one generation of an index: {@code <name>.<generation>.bin} in the given folder */
+    public static Path getGenerationPath(Path folder, String name, long generation) {
+        return folder.resolve(name + "." + generation + ".bin");
+    }
+
+
+    /**
+     * Find the newest generation of an index
+     *
+     * @return The highest generation in the folder, or -1 if there is none
+     */
+    public static long findLatestGeneration(Path folder, String name) throws IOException {
+        long latest = -1;
+        for (long generation : listGenerations(folder, name).keySet()) {
+            latest = Math.max(latest, generation);
+        }
+        return latest;
+    }
+
+
+    /**
+     * Delete all generations of an index except the given ones. Files that can't be deleted, e.g. because they are
+     * still mapped, are left alone, the next call tries again.
+     *
+     * @param keep The generations to keep
+     */
+    public static void deleteGenerations(Path folder, String name, long... keep) throws IOException {
+        Map<Long, Path> generations = listGenerations(folder, name);
+        for (long generation : keep) {
+            generations.remove(generation);
+        }
+
+        for (Path file : generations.values()) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException ignored) {
+                // Still mapped somewhere
+            }
+        }
+    }
+
+
+    // ---------------------------------------- //
+    //                  Access                  //
+    // ---------------------------------------- //
+
+    /** The next free network id at the time the file was written */
+    public int getNextId() {
+        return nextId;
+    }
+
+    public int getNetworkCount() {
+        return networkCount;
+    }
+
+
+    /**
+     * Find the network a position belongs to
+     *
+     * @param pos The packed position of a wire
+     * @return The record of the network, or -1 if the position isn't in the file or its network has already been taken
+     */
+    public int find(long pos) {
+        int low = 0;
+        int high = memberCount - 1;
+
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            long value = buffer.getLong(lookupStart + middle * LOOKUP_SIZE);
+            if (value < pos) {
+                low = middle + 1;
+            } else if (value > pos) {
+                high = middle - 1;
+            } else {
+                int record = buffer.getInt(lookupStart + middle * LOOKUP_SIZE + 8);
+                return consumed.get(record) ? -1 : record;
+            }
+        }
+        return -1;
+    }
+
+
+    /**
+     * Take a network out of the file. It won't be returned by {@link NetworkIndexFile#find(long)} again.
+     *
+     * @param record The record from {@link NetworkIndexFile#find(long)}
+     * @return The network
+     */
+    public StoredNetwork take(int record) {
+        consumed.set(record);
+        return read(record);
+    }
+
+
+    /** Mark the network at pos as outdated, e.g. because the wire there has been removed */
+    public void invalidate(long pos) {
+        int record = find(pos);
+        if (record >= 0) {
+            consumed.set(record);
+        }
+    }
+
+
+    /** All networks that haven't been taken out yet */
+    public List<StoredNetwork> getRemaining() {
+        List<StoredNetwork> remaining = new ArrayList<>();
+        for (int record = consumed.nextClearBit(0); record < networkCount; record = consumed.nextClearBit(record + 1)) {
+            remaining.add(read(record));
+        }
+        return remaining;
+    }
+
+
+    /** Whether every network has been taken out, so the file isn't needed anymore */
+    public boolean isExhausted() {
+        return consumed.nextClearBit(0) >= networkCount;
+    }
+
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+
+    // ---------------------------------------- //
+    //                 Helpers                  //
+    // ---------------------------------------- //
+
+    private StoredNetwork read(int record) {
+        int offset = HEADER_SIZE + record * NETWORK_SIZE;
+        int id = buffer.getInt(offset);
+        int power = buffer.getInt(offset + 4);
+        int firstMember = buffer.getInt(offset + 8);
+        int members = buffer.getInt(offset + 12);
+        int firstInput = buffer.getInt(offset + 16);
+        int inputs = buffer.getInt(offset + 20);
+
+        int[] histogram = new int[16];
+        for (int level = 0; level < 16; level++) {
+            histogram[level] = buffer.getInt(offset + 24 + level * 4);
+        }
+        int flags = buffer.getInt(offset + 88);
+
+        long[] positions = new long[members];
+        for (int i = 0; i < members; i++) {
+            positions[i] = buffer.getLong(membersStart + (firstMember + i) * MEMBER_SIZE);
+        }
+
+        Map<Long, Integer> faces = new HashMap<>(inputs * 2);
+        for (int i = 0; i < inputs; i++) {
+            int inputOffset = inputsStart + (firstInput + i) * INPUT_SIZE;
+            faces.put(buffer.getLong(inputOffset), buffer.getInt(inputOffset + 8));
+        }
+
+        return new StoredNetwork(id, power, positions, faces, histogram, (flags & FLAG_DECAYING) != 0);
+    }
+
+
+    private static Map<Long, Path> listGenerations(Path folder, String name) throws IOException {
+        Map<Long, Path> generations = new HashMap<>();
+        if (!Files.isDirectory(folder)) {
+            return generations;
+        }
+
+        String prefix = name + ".";
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(folder, prefix + "*.bin")) {
+            for (Path file : files) {
+                String fileName = file.getFileName().toString();
+                String generation = fileName.substring(prefix.length(), fileName.length() - ".bin".length());
+                try {
+                    generations.put(Long.parseLong(generation), file);
+                } catch (NumberFormatException ignored) {
+                    // Some other file with a similar name
+                }
+            }
+        }
+        return generations;
+    }
+
+
+    private static int checksum(ByteBuffer buffer) {
+        ByteBuffer payload = buffer.duplicate();
+        payload.position(HEADER_SIZE);
+        payload.limit(buffer.capacity());
+
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,78 @@
+package okaghana.refinedredstone.engine;
+
+import java.util.*;
+
+/**
+ * Finds a whole network from one of its wires: a breadth-first search over the six neighbors of every wire. <br><br>
+ *
+ * Neighbors that aren't loaded end the search at that point, their chunks are reported so the network can be marked as
+ * incomplete. The inputs of all members are read afterwards, so the result can be compiled right away.
+ */
+public final class NetworkTraversal {
+
+    private NetworkTraversal() { }
+
+
+    /**
+     * @param world Where the wires are
+     * @param start The packed position of one wire of the network
+     * @return Everything found
+     */
+    public static Result traverse(WorldAccess world, long start) {
+        Set<Long> members = new LinkedHashSet<>();
+        Set<Long> missingChunks = new HashSet<>();
+        Deque<Long> positionsToVisit = new ArrayDeque<>();
+        members.add(start);
+        positionsToVisit.add(start);
+
+        int visited = 1;
+        while (!positionsToVisit.isEmpty()) {
+            long current = positionsToVisit.remove();
+
+            // Loop over every neighbor and add them to both collections if they aren't/weren't already in there.
+            for (int face = 0; face < PackedPos.FACES; face++) {
+                long neighbor = PackedPos.offset(current, face);
+                if (members.contains(neighbor)) {
+                    continue;
+                }
+                visited++;
+
+                if (!world.isLoaded(neighbor)) {
+                    missingChunks.add(PackedPos.chunkKey(neighbor));
+                } else if (world.isWire(neighbor)) {
+                    members.add(neighbor);
+                    positionsToVisit.add(neighbor);
+                }
+            }
+        }
+
+        Map<Long, Integer> inputs = new HashMap<>();
+        for (long member : members) {
+            int faces = world.readInputs(member);
+            if (faces != 0) {
+                inputs.put(member, faces);
+            }
+        }
+        return new Result(members, missingChunks, inputs, visited);
+    }
+
+
+    /** The members, inputs and borders of a traversed network */
+    public static class Result {
+        /** The packed positions of all members, in the order they were found */
+        public final Set<Long> members;
+        /** The chunks the network might continue into, but which weren't loaded */
+        public final Set<Long> missingChunks;
+        /** The packed input faces of every member with a powered input */
+        public final Map<Long, Integer> inputs;
+        /** How many positions were looked at */
+        public final int visited;
+
+        private Result(Set<Long> members, Set<Long> missingChunks, Map<Long, Integer> inputs, int visited) {
+            this.members = members;
+            this.missingChunks = missingChunks;
+            this.inputs = inputs;
+            this.visited = visited;
+        }
+    }
+}
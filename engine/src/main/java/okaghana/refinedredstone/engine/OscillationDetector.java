@@ -0,0 +1,237 @@
+package okaghana.refinedredstone.engine;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Watches the input changes of one network and recognizes when they repeat with a fixed period, like they do when the
+ * network is driven by a clock. <br><br>
+ *
+ * Every input change is recorded together with the power the network had after it. When the last {@code cycles}
+ * repetitions of a group of up to {@link OscillationDetector#MAX_EVENTS_PER_CYCLE} changes are identical (same wire,
+ * face, level and resulting power, same distance in ticks), the detector locks onto that cycle. While locked, every
+ * further change is still evaluated normally and then checked against the cycle: it has to be exactly the change that
+ * was due at exactly that tick, with the same resulting power. Anything else (a different change, or a due one that
+ * doesn't come) means the cycle is broken, and the caller has to {@link OscillationDetector#unlock()} it. The detector
+ * only observes, it never replaces an evaluation.
+ */
+public final class OscillationDetector {
+
+    public static final int MAX_EVENTS_PER_CYCLE = 8;
+
+    private final int cycles;
+    private final int capacity;
+
+    // The recorded history, as a ring buffer
+    private final long[] ticks;
+    private final long[] members;
+    private final int[] faces;
+    private final int[] levels;
+    private final int[] powers;
+    private int head = 0;
+    private int count = 0;
+
+    // The last known level of every face that changed, to filter out updates that didn't change anything
+    private final Map<Long, int[]> lastLevels = new HashMap<>();
+
+    // The cycle while locked. The offsets are relative to the tick of the first event of the cycle
+    private boolean locked = false;
+    private int cycleLength = 0;
+    private long period = 0;
+    private long cycleStart = 0;
+    private int next = 0;
+    private final long[] cycleOffsets = new long[MAX_EVENTS_PER_CYCLE];
+    private final long[] cycleMembers = new long[MAX_EVENTS_PER_CYCLE];
+    private final int[] cycleFaces = new int[MAX_EVENTS_PER_CYCLE];
+    private final int[] cycleLevels = new int[MAX_EVENTS_PER_CYCLE];
+    private final int[] cyclePowers = new int[MAX_EVENTS_PER_CYCLE];
+
+    // Statistics
+    private int detections = 0;
+    private int breaks = 0;
+    private long matchedEvents = 0;
+
+
+    /**
+     * @param cycles How many identical cycles in a row are needed before the detector locks
+     */
+    public OscillationDetector(int cycles) {
+        this.cycles = Math.max(2, cycles);
+        this.capacity = MAX_EVENTS_PER_CYCLE * this.cycles;
+        this.ticks = new long[capacity];
+        this.members = new long[capacity];
+        this.faces = new int[capacity];
+        this.levels = new int[capacity];
+        this.powers = new int[capacity];
+    }
+
+
+    /**
+     * Remember the new level of an input face
+     *
+     * @return Whether the level differs from the last one seen (an unknown face always counts as changed)
+     */
+    public boolean updateLevel(long member, int face, int level) {
+        int[] known = lastLevels.computeIfAbsent(member, key -> new int[] {-1, -1, -1, -1, -1, -1});
+        if (known[face] == level) {
+            return false;
+        }
+        known[face] = level;
+        return true;
+    }
+
+
+    /**
+     * Record an input change that has been evaluated normally, and lock onto a cycle if the history has become periodic
+     *
+     * @param power The power of the network after the change
+     */
+    public void record(long tick, long member, int face, int level, int power) {
+        ticks[head] = tick;
+        members[head] = member;
+        faces[head] = face;
+        levels[head] = level;
+        powers[head] = power;
+        head = (head + 1) % capacity;
+        count = Math.min(count + 1, capacity);
+
+        if (!locked) {
+            tryLock();
+        }
+    }
+
+
+    /**
+     * Check an evaluated input change against the cycle, and move on to the next change of the cycle if it matches. The
+     * detector has to be locked
+     *
+     * @param power The power of the network after the change
+     * @return Whether the change and the power are the ones the cycle has at this tick. If not, the caller has to
+     * {@link OscillationDetector#unlock()}
+     */
+    public boolean matches(long tick, long member, int face, int level, int power) {
+        if (tick != cycleStart + cycleOffsets[next] || member != cycleMembers[next] || face != cycleFaces[next]
+                || level != cycleLevels[next] || power != cyclePowers[next]) {
+            return false;
+        }
+
+        next++;
+        if (next == cycleLength) {
+            next = 0;
+            cycleStart += period;
+        }
+        matchedEvents++;
+        return true;
+    }
+
+
+    /** Whether a change of the cycle didn't happen when it was due (the clock stopped or changed) */
+    public boolean isOverdue(long tick) {
+        return locked && tick > cycleStart + cycleOffsets[next];
+    }
+
+
+    /** Leave the cycle and start over with an empty history */
+    public void unlock() {
+        if (locked) {
+            breaks++;
+        }
+        locked = false;
+        count = 0;
+        head = 0;
+    }
+
+
+    /** Forget the history without counting it as a broken cycle, e.g. because the change wasn't recorded */
+    public void reset() {
+        locked = false;
+        count = 0;
+        head = 0;
+    }
+
+
+    public boolean isLocked() {
+        return locked;
+    }
+
+    /** The period of the cycle in ticks, 0 if not locked */
+    public long getPeriod() {
+        return locked ? period : 0;
+    }
+
+    /** How many input changes make up one cycle, 0 if not locked */
+    public int getCycleLength() {
+        return locked ? cycleLength : 0;
+    }
+
+    /** How often a cycle has been detected */
+    public int getDetections() {
+        return detections;
+    }
+
+    /** How often a cycle has been broken */
+    public int getBreaks() {
+        return breaks;
+    }
+
+    /** How many input changes matched the cycle they were checked against */
+    public long getMatchedEvents() {
+        return matchedEvents;
+    }
+
+
+    // ---------------------------------------- //
+    //                 Helpers                  //
+    // ---------------------------------------- //
+
+    /** Look for the shortest cycle that repeated the required number of times at the end of the history */
+    private void tryLock() {
+        for (int length = 1; length <= MAX_EVENTS_PER_CYCLE && length * cycles <= count; length++) {
+            long candidate = tickAt(0) - tickAt(length);
+            if (candidate > 0 && repeats(length, candidate)) {
+                lock(length, candidate);
+                return;
+            }
+        }
+    }
+
+    private boolean repeats(int length, long candidate) {
+        for (int age = 0; age < length * (cycles - 1); age++) {
+            int a = index(age);
+            int b = index(age + length);
+            if (ticks[a] - ticks[b] != candidate || members[a] != members[b] || faces[a] != faces[b]
+                    || levels[a] != levels[b] || powers[a] != powers[b]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void lock(int length, long candidate) {
+        long first = tickAt(length - 1);
+        for (int i = 0; i < length; i++) {
+            int event = index(length - 1 - i);
+            cycleOffsets[i] = ticks[event] - first;
+            cycleMembers[i] = members[event];
+            cycleFaces[i] = faces[event];
+            cycleLevels[i] = levels[event];
+            cyclePowers[i] = powers[event];
+        }
+
+        locked = true;
+        cycleLength = length;
+        period = candidate;
+        cycleStart = first + candidate;
+        next = 0;
+        detections++;
+    }
+
+    /** The index in the ring buffer of the event with the given age (0 is the newest) */
+    private int index(int age) {
+        return (head - 1 - age + capacity * 2) % capacity;
+    }
+
+    private long tickAt(int age) {
+        return ticks[index(age)];
+    }
+}
@@ -0,0 +1,105 @@
+package okaghana.refinedredstone.engine;
+
+/**
+ * Block positions packed into a single long, using the same layout as Minecraft's {@code BlockPos.toLong()}: 26 bits X,
+ * 26 bits Z and 12 bits Y. The engine works on these instead of position objects, so sets and maps of positions stay
+ * cheap and the values can be handed to {@code BlockPos.fromLong()} directly. <br><br>
+ *
+ * Faces are numbered like Minecraft's {@code Direction.getIndex()}: DOWN, UP, NORTH, SOUTH, WEST, EAST.
+ */
+public final class PackedPos {
+
+    public static final int FACES = 6;
+    public static final int DOWN = 0, UP = 1, NORTH = 2, SOUTH = 3, WEST = 4, EAST = 5;
+
+    private static final int X_BITS = 26;
+    private static final int Z_BITS = 26;
+    private static final int Y_BITS = 12;
+    private static final int Z_SHIFT = Y_BITS;
+    private static final int X_SHIFT = Y_BITS + Z_BITS;
+    private static final long X_MASK = (1L << X_BITS) - 1;
+    private static final long Y_MASK = (1L << Y_BITS) - 1;
+    private static final long Z_MASK = (1L << Z_BITS) - 1;
+
+    private static final int[] OFFSET_X = {0, 0, 0, 0, -1, 1};
+    private static final int[] OFFSET_Y = {-1, 1, 0, 0, 0, 0};
+    private static final int[] OFFSET_Z = {0, 0, -1, 1, 0, 0};
+
+    private PackedPos() { }
+
+
+    public static long pack(int x, int y, int z) {
+        return ((x & X_MASK) << X_SHIFT) | ((z & Z_MASK) << Z_SHIFT) | (y & Y_MASK);
+    }
+
+    public static int getX(long pos) {
+        return (int) (pos << (64 - X_SHIFT - X_BITS) >> (64 - X_BITS));
+    }
+
+    public static int getY(long pos) {
+        return (int) (pos << (64 - Y_BITS) >> (64 - Y_BITS));
+    }
+
+    public static int getZ(long pos) {
+        return (int) (pos << (64 - Z_SHIFT - Z_BITS) >> (64 - Z_BITS));
+    }
+
+
+    /** The position next to pos on the given face */
+    public static long offset(long pos, int face) {
+        return pack(getX(pos) + OFFSET_X[face], getY(pos) + OFFSET_Y[face], getZ(pos) + OFFSET_Z[face]);
+    }
+
+    /** Move pos by the given amount on every axis */
+    public static long add(long pos, int dx, int dy, int dz) {
+        return pack(getX(pos) + dx, getY(pos) + dy, getZ(pos) + dz);
+    }
+
+    /** The face on the other side (UP <-> DOWN, ...) */
+    public static int opposite(int face) {
+        return face ^ 1;
+    }
+
+    /**
+     * The face of from that points towards to, or -1 if the positions aren't next to each other
+     */
+    public static int faceTowards(long from, long to) {
+        int dx = getX(to) - getX(from);
+        int dy = getY(to) - getY(from);
+        int dz = getZ(to) - getZ(from);
+
+        for (int face = 0; face < FACES; face++) {
+            if (OFFSET_X[face] == dx && OFFSET_Y[face] == dy && OFFSET_Z[face] == dz) {
+                return face;
+            }
+        }
+        return -1;
+    }
+
+
+    /** The chunk the position is in, packed like {@code ChunkPos.asLong()} */
+    public static long chunkKey(long pos) {
+        return chunkKey(getX(pos) >> 4, getZ(pos) >> 4);
+    }
+
+    /** Pack chunk coordinates like {@code ChunkPos.asLong()} */
+    public static long chunkKey(int chunkX, int chunkZ) {
+        return ((long) chunkX & 0xFFFFFFFFL) | (((long) chunkZ & 0xFFFFFFFFL) << 32);
+    }
+
+    /** The position relative to its chunk: x and z in the lowest 4 bits each, y above them. Small enough for a short varint */
+    public static int toChunkLocal(long pos) {
+        return (getY(pos) << 8) | ((getZ(pos) & 15) << 4) | (getX(pos) & 15);
+    }
+
+    /** The counterpart to {@link PackedPos#toChunkLocal(long)} */
+    public static long fromChunkLocal(long chunkKey, int local) {
+        int chunkX = (int) chunkKey;
+        int chunkZ = (int) (chunkKey >>> 32);
+        return pack((chunkX << 4) | (local & 15), local >> 8, (chunkZ << 4) | ((local >> 4) & 15));
+    }
+
+    public static String toString(long pos) {
+        return "[" + getX(pos) + ", " + getY(pos) + ", " + getZ(pos) + "]";
+    }
+}
@@ -0,0 +1,45 @@
+package okaghana.refinedredstone.engine;
+
+import java.util.Arrays;
+
+/**
+ * A buffer of (network id, new power) pairs. The simulation fills one of these per tick and hands it over to the
+ * thread that writes the power into the world.
+ */
+public class PowerChanges {
+
+    private int[] ids = new int[16];
+    private int[] powers = new int[16];
+    private int size = 0;
+
+
+    public void add(int id, int power) {
+        if (size == ids.length) {
+            ids = Arrays.copyOf(ids, size * 2);
+            powers = Arrays.copyOf(powers, size * 2);
+        }
+        ids[size] = id;
+        powers[size] = power;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int getId(int index) {
+        return ids[index];
+    }
+
+    public int getPower(int index) {
+        return powers[index];
+    }
+
+    public void clear() {
+        size = 0;
+    }
+}
@@ -0,0 +1,66 @@
+package okaghana.refinedredstone.engine;
+
+import java.util.Arrays;
+
+/**
+ * Counts events over the last n ticks. <br><br>
+ *
+ * Every tick of the window has a bucket in a ring, and the total of all buckets is kept up to date, so adding an event
+ * and reading the total are O(1). Buckets that fall out of the window are cleared lazily the next time the window is
+ * used, which costs at most one pass over the ring.
+ */
+public class SlidingWindow {
+
+    private final int[] buckets;
+    private long lastTick = Long.MIN_VALUE;
+    private int total = 0;
+
+
+    /** @param ticks The length of the window */
+    public SlidingWindow(int ticks) {
+        this.buckets = new int[Math.max(1, ticks)];
+    }
+
+
+    /**
+     * Count events in the given tick
+     *
+     * @return The number of events in the window ending with that tick
+     */
+    public int add(long tick, int amount) {
+        advance(tick);
+        buckets[(int) Math.floorMod(tick, (long) buckets.length)] += amount;
+        total += amount;
+        return total;
+    }
+
+    /** The number of events in the window ending with the given tick */
+    public int getTotal(long tick) {
+        advance(tick);
+        return total;
+    }
+
+    public int getTicks() {
+        return buckets.length;
+    }
+
+
+    // Clear the buckets of the ticks that are out of the window now
+    private void advance(long tick) {
+        if (tick <= lastTick) {
+            return;
+        }
+
+        if (lastTick == Long.MIN_VALUE || tick - lastTick >= buckets.length) {
+            Arrays.fill(buckets, 0);
+            total = 0;
+        } else {
+            for (long expired = lastTick + 1; expired <= tick; expired++) {
+                int index = (int) Math.floorMod(expired, (long) buckets.length);
+                total -= buckets[index];
+                buckets[index] = 0;
+            }
+        }
+        lastTick = tick;
+    }
+}
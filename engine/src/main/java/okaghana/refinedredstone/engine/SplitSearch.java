@@ -0,0 +1,122 @@
+package okaghana.refinedredstone.engine;
+
+import java.util.*;
+import java.util.function.LongPredicate;
+
+/**
+ * Finds out whether a network fell apart after one of its wires has been removed, without traversing all of it. <br><br>
+ *
+ * One breadth-first search is started from every neighbor of the removed wire, and they take turns, one wire each.
+ * When a search reaches a wire another one has already visited, both are connected and continue as one group. A group
+ * whose searches run out of wires has been cut off from the rest. The search stops as soon as only one group is left:
+ * either everything met (the network is still in one piece), or the other groups have all been exhausted, which only
+ * takes as many steps as the smaller fragments have wires. The remaining group is never traversed completely.
+ */
+public final class SplitSearch {
+
+    private SplitSearch() { }
+
+
+    /**
+     * @param starts The wire neighbors of the removed wire. All of them have to be members of the network
+     * @param isMember Whether a position still belongs to the network
+     * @return The members of every fragment that isn't connected to the rest anymore. Empty if the network is still in
+     * one piece. The largest part (the one that wasn't exhausted) is not included
+     */
+    public static List<List<Long>> findDetachedFragments(long[] starts, LongPredicate isMember) {
+        int count = starts.length;
+        int[] parent = new int[count];
+        boolean[] finished = new boolean[count];
+        List<Deque<Long>> queues = new ArrayList<>(count);
+        List<List<Long>> visited = new ArrayList<>(count);
+        Map<Long, Integer> owner = new HashMap<>();
+
+        for (int i = 0; i < count; i++) {
+            parent[i] = i;
+            queues.add(new ArrayDeque<>());
+            visited.add(new ArrayList<>());
+            if (owner.putIfAbsent(starts[i], i) == null) {
+                queues.get(i).add(starts[i]);
+                visited.get(i).add(starts[i]);
+            }
+        }
+
+        List<List<Long>> detached = new ArrayList<>();
+        int groups = countGroups(parent, finished);
+        while (groups > 1) {
+            // Every search takes one step
+            for (int i = 0; i < count; i++) {
+                Deque<Long> queue = queues.get(i);
+                if (finished[i] || queue.isEmpty()) {
+                    continue;
+                }
+
+                long current = queue.remove();
+                for (int face = 0; face < PackedPos.FACES; face++) {
+                    long neighbor = PackedPos.offset(current, face);
+                    if (!isMember.test(neighbor)) {
+                        continue;
+                    }
+
+                    Integer other = owner.putIfAbsent(neighbor, i);
+                    if (other == null) {
+                        queue.add(neighbor);
+                        visited.get(i).add(neighbor);
+                    } else {
+                        parent[find(parent, other)] = find(parent, i);
+                    }
+                }
+            }
+
+            // Groups without anything left to visit are cut off, unless they are the last one
+            for (int root = 0; root < count && countGroups(parent, finished) > 1; root++) {
+                if (finished[root] || find(parent, root) != root || !isExhausted(root, parent, finished, queues)) {
+                    continue;
+                }
+
+                List<Long> fragment = new ArrayList<>();
+                for (int i = 0; i < count; i++) {
+                    if (!finished[i] && find(parent, i) == root) {
+                        fragment.addAll(visited.get(i));
+                        finished[i] = true;
+                    }
+                }
+                detached.add(fragment);
+            }
+            groups = countGroups(parent, finished);
+        }
+        return detached;
+    }
+
+
+    // ---------------------------------------- //
+    //                 Helpers                  //
+    // ---------------------------------------- //
+
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    private static int countGroups(int[] parent, boolean[] finished) {
+        int groups = 0;
+        for (int i = 0; i < parent.length; i++) {
+            if (!finished[i] && find(parent, i) == i) {
+                groups++;
+            }
+        }
+        return groups;
+    }
+
+    private static boolean isExhausted(int root, int[] parent, boolean[] finished, List<Deque<Long>> queues) {
+        for (int i = 0; i < parent.length; i++) {
+            if (!finished[i] && find(parent, i) == root && !queues.get(i).isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
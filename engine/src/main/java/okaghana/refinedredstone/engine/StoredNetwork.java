@@ -0,0 +1,51 @@
+package okaghana.refinedredstone.engine;
+
+import java.util.Map;
+
+/**
+ * Everything needed to bring a network back without traversing it again: its id, its members, its power, its inputs
+ * and its mode. Used to save networks to a {@link NetworkIndexFile} and to read them back.
+ */
+public class StoredNetwork {
+
+    public final int id;
+    public final int power;
+    public final long[] members;
+    public final Map<Long, Integer> inputs;
+    public final int[] histogram;
+    public final boolean decaying;
+
+
+    /**
+     * @param id The id of the network
+     * @param power The power of the network
+     * @param members The packed positions of all members
+     * @param inputs The packed faces of every member with a powered input
+     * @param histogram The number of inputs for each level (16 entries)
+     * @param decaying Whether the network is in decay mode
+     */
+    public StoredNetwork(int id, int power, long[] members, Map<Long, Integer> inputs, int[] histogram, boolean decaying) {
+        this.id = id;
+        this.power = power;
+        this.members = members;
+        this.inputs = inputs;
+        this.histogram = histogram;
+        this.decaying = decaying;
+    }
+
+
+    /** Build the stored form of a network from its topology and its compiled state */
+    public static StoredNetwork of(WireNetwork network, CompiledNetwork compiled) {
+        long[] members = new long[network.size()];
+        int i = 0;
+        for (long member : network.getMembers()) {
+            members[i++] = member;
+        }
+
+        int[] histogram = new int[16];
+        for (int level = 1; level < 16; level++) {
+            histogram[level] = compiled.getHistogram().getCount(level);
+        }
+        return new StoredNetwork(network.getId(), compiled.getPower(), members, compiled.getInputs(), histogram, network.isDecaying());
+    }
+}
@@ -0,0 +1,178 @@
+package okaghana.refinedredstone.engine;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A binary log of everything that happened to the networks of a region, so an update storm can be reproduced away from
+ * the server with {@link TraceReplay}. <br><br>
+ *
+ * The file is a memory-mapped ring buffer of fixed-size records. Writing a record is a handful of puts into the mapping
+ * and never blocks on the disk, the operating system writes the pages back on its own. Once the buffer is full the oldest
+ * records are overwritten, so the log always holds the last {@code capacity} events. <br><br>
+ *
+ * <b>Layout</b> (big endian):
+ * <pre>
+ *   Header      magic, version, record size, capacity, records written (long), reserved                  (8 ints)
+ *   Records     tick (long), type, face, value, reserved (bytes), size (int), packed position (long)   (24 bytes each)
+ * </pre>
+ * Record {@code i} (counting every record ever written) is stored in slot {@code i % capacity}.
+ */
+public class TraceLog implements Closeable {
+
+    public static final int MAGIC = 0x52525452; // "RRTR"
+    public static final int VERSION = 1;
+
+    /** A wire was placed, or became known to the log. The position is the wire */
+    public static final int PLACE = 1;
+    /** A wire was removed */
+    public static final int REMOVE = 2;
+    /** An input of a wire changed. Face and value are the face and the new level */
+    public static final int INPUT = 3;
+    /** A network got a new power. The position is one of its members, the value the power and size its member count */
+    public static final int POWER = 4;
+
+    private static final int HEADER_SIZE = 8 * 4;
+    private static final int RECORD_SIZE = 24;
+    private static final int WRITTEN_OFFSET = 16;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private long written;
+
+
+    private TraceLog(FileChannel channel, MappedByteBuffer buffer, int capacity, long written) {
+        this.channel = channel;
+        this.buffer = buffer;
+        this.capacity = capacity;
+        this.written = written;
+    }
+
+
+    /**
+     * Create a new, empty log. An existing file is replaced
+     *
+     * @param capacity How many records the ring buffer holds
+     */
+    public static TraceLog create(Path path, int capacity) throws IOException {
+        long size = HEADER_SIZE + (long) capacity * RECORD_SIZE;
+        if (capacity <= 0 || size > Integer.MAX_VALUE) {
+            throw new IOException("Invalid capacity " + capacity);
+        }
+
+        Files.deleteIfExists(path);
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putInt(8, RECORD_SIZE);
+            buffer.putInt(12, capacity);
+            buffer.putLong(WRITTEN_OFFSET, 0);
+            return new TraceLog(channel, buffer, capacity, 0);
+        } catch (IOException | RuntimeException exception) {
+            channel.close();
+            throw exception;
+        }
+    }
+
+
+    /**
+     * Map an existing log for reading
+     *
+     * @throws IOException If the file can't be read, isn't a trace or has the wrong version
+     */
+    public static TraceLog open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+                throw new IOException("Invalid size " + size);
+            }
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt(0) != MAGIC) {
+                throw new IOException("Not a trace log");
+            }
+            if (buffer.getInt(4) != VERSION || buffer.getInt(8) != RECORD_SIZE) {
+                throw new IOException("Unsupported version " + buffer.getInt(4));
+            }
+
+            int capacity = buffer.getInt(12);
+            long written = buffer.getLong(WRITTEN_OFFSET);
+            if (capacity <= 0 || HEADER_SIZE + (long) capacity * RECORD_SIZE != size || written < 0) {
+                throw new IOException("Truncated file");
+            }
+            return new TraceLog(channel, buffer, capacity, written);
+        } catch (IOException | RuntimeException exception) {
+            channel.close();
+            throw exception;
+        }
+    }
+
+
+    /**
+     * Append a record, overwriting the oldest one if the log is full
+     *
+     * @param type One of the record types, e.g. {@link TraceLog#INPUT}
+     */
+    public void write(long tick, int type, long pos, int face, int value, int size) {
+        int offset = HEADER_SIZE + (int) (written % capacity) * RECORD_SIZE;
+        buffer.putLong(offset, tick);
+        buffer.put(offset + 8, (byte) type);
+        buffer.put(offset + 9, (byte) face);
+        buffer.put(offset + 10, (byte) value);
+        buffer.put(offset + 11, (byte) 0);
+        buffer.putInt(offset + 12, size);
+        buffer.putLong(offset + 16, pos);
+
+        written++;
+        buffer.putLong(WRITTEN_OFFSET, written);
+    }
+
+
+    /** Go through all records that are still in the log, oldest first */
+    public void forEach(RecordConsumer consumer) {
+        for (long record = getFirst(); record < written; record++) {
+            int offset = HEADER_SIZE + (int) (record % capacity) * RECORD_SIZE;
+            consumer.accept(buffer.getLong(offset), buffer.get(offset + 8), buffer.get(offset + 9), buffer.get(offset + 10),
+                    buffer.getInt(offset + 12), buffer.getLong(offset + 16));
+        }
+    }
+
+
+    /** How many records have been written in total */
+    public long getWritten() {
+        return written;
+    }
+
+    /** The number of the oldest record that hasn't been overwritten yet */
+    public long getFirst() {
+        return Math.max(0, written - capacity);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+
+    @Override
+    public void close() throws IOException {
+        if (channel.isOpen()) {
+            buffer.force();
+        }
+        channel.close();
+    }
+
+
+    @FunctionalInterface
+    public interface RecordConsumer {
+        void accept(long tick, int type, int face, int value, int size, long pos);
+    }
+}
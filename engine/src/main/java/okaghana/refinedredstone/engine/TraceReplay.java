@@ -0,0 +1,257 @@
+package okaghana.refinedredstone.engine;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * Runs a {@link TraceLog} against the engine without a world, to reproduce the workload of a server offline and measure
+ * what it costs. <br><br>
+ *
+ * The replay keeps its own {@link NetworkGraph} and a synchronous {@link CircuitSimulator} and handles placements and
+ * removals the way the network manager does (extending, joining and splitting networks), with every wire connecting to
+ * all six neighbors. The power results in the log are compared to the ones of the replay, so a mismatch shows that the
+ * engine behaves differently than it did on the server. <br><br>
+ *
+ * Usage: {@code java -cp <engine or mod jar> okaghana.refinedredstone.engine.TraceReplay <trace file> [repetitions]}
+ */
+public class TraceReplay {
+
+    private final NetworkGraph graph = new NetworkGraph();
+    private final CircuitSimulator simulator = new CircuitSimulator("Refined Redstone Replay", false);
+    private final Map<Long, Integer> inputs = new HashMap<>();
+    private final Map<Integer, Integer> powers = new HashMap<>();
+
+    private long events = 0;
+    private long skipped = 0;
+    private long checked = 0;
+    private long mismatches = 0;
+
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: TraceReplay <trace file> [repetitions]");
+            System.exit(1);
+        }
+
+        Path path = Paths.get(args[0]);
+        int repetitions = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+
+        try (TraceLog log = TraceLog.open(path)) {
+            System.out.printf("%s: %d records (%d written, capacity %d)%n", path, log.getWritten() - log.getFirst(), log.getWritten(), log.getCapacity());
+            if (log.getFirst() > 0) {
+                System.out.println("The ring buffer wrapped around, wires placed before the oldest record are unknown to the replay");
+            }
+
+            for (int run = 1; run <= repetitions; run++) {
+                TraceReplay replay = new TraceReplay();
+                Timings timings = new Timings();
+                log.forEach((tick, type, face, value, size, pos) -> timings.measure(tick, () -> replay.apply(type, pos, face, value)));
+                timings.finish();
+
+                System.out.printf("Run %d: %d events in %d ticks, %.3f ms total, %.4f ms/tick mean, %.4f ms max, %d skipped, %d/%d power mismatches%n",
+                        run, replay.events, timings.ticks, timings.total / 1e6, timings.ticks == 0 ? 0 : timings.total / 1e6 / timings.ticks,
+                        timings.max / 1e6, replay.skipped, replay.mismatches, replay.checked);
+                replay.shutdown();
+            }
+        }
+    }
+
+
+    // ---------------------------------------- //
+    //                  Events                  //
+    // ---------------------------------------- //
+
+    /** Handle one record of the log, and take the power changes it caused from the simulator */
+    void apply(int type, long pos, int face, int value) {
+        events++;
+        switch (type) {
+            case TraceLog.PLACE: place(pos); break;
+            case TraceLog.REMOVE: remove(pos); break;
+            case TraceLog.INPUT: input(pos, face, value); break;
+            case TraceLog.POWER: check(pos, value); break;
+            default: skipped++;
+        }
+        collectChanges();
+    }
+
+
+    private void place(long pos) {
+        if (graph.getNetworkId(pos) != 0) {
+            skipped++;
+            return;
+        }
+
+        Set<Integer> neighbors = new HashSet<>();
+        for (int face = 0; face < PackedPos.FACES; face++) {
+            int id = graph.getNetworkId(PackedPos.offset(pos, face));
+            if (id != 0) {
+                neighbors.add(id);
+            }
+        }
+
+        if (neighbors.size() == 1) {
+            int id = neighbors.iterator().next();
+            graph.addMember(id, pos);
+            simulator.submit(CircuitCommand.member(id, pos, inputs.getOrDefault(pos, 0)));
+            return;
+        }
+
+        // A new network, or several networks that are joined together
+        List<Long> members = new ArrayList<>();
+        members.add(pos);
+        for (int id : neighbors) {
+            members.addAll(graph.remove(id).getMembers());
+            powers.remove(id);
+            simulator.submit(CircuitCommand.drop(id));
+        }
+
+        Map<Long, Integer> networkInputs = new HashMap<>();
+        for (long member : members) {
+            Integer faces = inputs.get(member);
+            if (faces != null && faces != 0) {
+                networkInputs.put(member, faces);
+            }
+        }
+
+        WireNetwork network = graph.create(members);
+        simulator.submit(CircuitCommand.compile(network.getId(), networkInputs, 0));
+    }
+
+
+    private void remove(long pos) {
+        inputs.remove(pos);
+        WireNetwork network = graph.getByMember(pos);
+        if (network == null) {
+            skipped++;
+            return;
+        }
+
+        int id = network.getId();
+        if (network.size() == 1) {
+            graph.remove(id);
+            powers.remove(id);
+            simulator.submit(CircuitCommand.drop(id));
+            return;
+        }
+
+        graph.removeMember(id, pos);
+        simulator.submit(CircuitCommand.removeMember(id, pos));
+
+        List<Long> starts = new ArrayList<>(PackedPos.FACES);
+        for (int face = 0; face < PackedPos.FACES; face++) {
+            long neighbor = PackedPos.offset(pos, face);
+            if (graph.getNetworkId(neighbor) == id) {
+                starts.add(neighbor);
+            }
+        }
+        if (starts.size() < 2) {
+            return;
+        }
+
+        long[] startPositions = starts.stream().mapToLong(Long::longValue).toArray();
+        for (List<Long> fragment : SplitSearch.findDetachedFragments(startPositions, member -> graph.getNetworkId(member) == id)) {
+            WireNetwork split = graph.split(id, fragment);
+            powers.put(split.getId(), powers.getOrDefault(id, 0));
+            simulator.submit(CircuitCommand.split(id, split.getId(), fragment));
+        }
+    }
+
+
+    private void input(long pos, int face, int level) {
+        int shift = face << 2;
+        inputs.merge(pos, level << shift, (faces, ignored) -> (faces & ~(0xF << shift)) | (level << shift));
+
+        int id = graph.getNetworkId(pos);
+        if (id == 0) {
+            // Not a wire yet, the input is used once it is placed
+            return;
+        }
+        simulator.submit(CircuitCommand.input(id, pos, face, level));
+    }
+
+
+    private void check(long pos, int power) {
+        int id = graph.getNetworkId(pos);
+        if (id == 0) {
+            skipped++;
+            return;
+        }
+
+        checked++;
+        if (powers.getOrDefault(id, 0) != power) {
+            mismatches++;
+        }
+    }
+
+
+    private void collectChanges() {
+        PowerChanges changes = simulator.takeChanges();
+        for (int i = 0; i < changes.size(); i++) {
+            powers.put(changes.getId(i), changes.getPower(i));
+        }
+        simulator.releaseChanges();
+    }
+
+
+    /** The id of the replayed network a wire belongs to, 0 if it isn't one */
+    int getNetworkId(long pos) {
+        return graph.getNetworkId(pos);
+    }
+
+    /** The power of the replayed network a wire belongs to */
+    int getPower(long pos) {
+        return powers.getOrDefault(graph.getNetworkId(pos), 0);
+    }
+
+    long getChecked() {
+        return checked;
+    }
+
+    long getMismatches() {
+        return mismatches;
+    }
+
+    long getSkipped() {
+        return skipped;
+    }
+
+    void shutdown() {
+        simulator.shutdown();
+    }
+
+
+    // ---------------------------------------- //
+    //                 Timings                  //
+    // ---------------------------------------- //
+
+    /** Adds up the time spent per tick of the log */
+    private static class Timings {
+        private long tick = Long.MIN_VALUE;
+        private long current = 0;
+        private long total = 0;
+        private long max = 0;
+        private int ticks = 0;
+
+        void measure(long recordTick, Runnable event) {
+            if (recordTick != tick) {
+                finish();
+                tick = recordTick;
+            }
+
+            long start = System.nanoTime();
+            event.run();
+            current += System.nanoTime() - start;
+        }
+
+        void finish() {
+            if (tick != Long.MIN_VALUE) {
+                total += current;
+                max = Math.max(max, current);
+                ticks++;
+            }
+            current = 0;
+        }
+    }
+}
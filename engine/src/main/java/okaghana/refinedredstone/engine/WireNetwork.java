@@ -0,0 +1,110 @@
+package okaghana.refinedredstone.engine;
+
+import java.util.*;
+
+/**
+ * The topology of one network: every wire that belongs to it and the chunks they are in. <br><br>
+ *
+ * The members are kept in the order they were discovered in, so iterating over them (e.g. to write the new power) is
+ * deterministic.
+ */
+public class WireNetwork {
+
+    private final int id;
+    private final Set<Long> members;
+    private final Map<Long, Integer> membersPerChunk = new HashMap<>();
+    private final Set<Long> missingChunks = new HashSet<>();
+    private int power = 0;
+    private int revision = 0;
+    private boolean decaying = false;
+
+
+    public WireNetwork(int id, Collection<Long> members) {
+        this.id = id;
+        this.members = new LinkedHashSet<>(members.size() * 2);
+        for (long member : members) {
+            addMember(member);
+        }
+        this.revision = 0;
+    }
+
+
+    public int getId() {
+        return id;
+    }
+
+    /** The positions of all members, packed with {@link PackedPos} */
+    public Set<Long> getMembers() {
+        return Collections.unmodifiableSet(members);
+    }
+
+    public int size() {
+        return members.size();
+    }
+
+    public boolean contains(long pos) {
+        return members.contains(pos);
+    }
+
+    /** Counts up whenever a member is added or removed, so copies of the member list elsewhere can tell they are outdated */
+    public int getRevision() {
+        return revision;
+    }
+
+    /** The chunks (packed like {@code ChunkPos.asLong()}) this network has members in */
+    public Set<Long> getChunks() {
+        return Collections.unmodifiableSet(membersPerChunk.keySet());
+    }
+
+    /** Whether the whole network is known. False if it might continue into a chunk that wasn't loaded when it was traversed */
+    public boolean isComplete() {
+        return missingChunks.isEmpty();
+    }
+
+    /** The chunks the network might continue into, but which weren't loaded when it was traversed */
+    public Set<Long> getMissingChunks() {
+        return Collections.unmodifiableSet(missingChunks);
+    }
+
+
+    /** The power that has last been written to the members */
+    public int getPower() {
+        return power;
+    }
+
+    public void setPower(int power) {
+        this.power = power;
+    }
+
+
+    /** Whether the signal loses one level per wire (see {@link DecayField}) instead of reaching every member unchanged */
+    public boolean isDecaying() {
+        return decaying;
+    }
+
+    public void setDecaying(boolean decaying) {
+        this.decaying = decaying;
+    }
+
+
+    void addMember(long pos) {
+        if (members.add(pos)) {
+            membersPerChunk.merge(PackedPos.chunkKey(pos), 1, Integer::sum);
+            revision++;
+        }
+    }
+
+    void addMissingChunk(long chunk) {
+        missingChunks.add(chunk);
+    }
+
+    void removeMember(long pos) {
+        if (members.remove(pos)) {
+            revision++;
+            long chunk = PackedPos.chunkKey(pos);
+            if (membersPerChunk.merge(chunk, -1, Integer::sum) <= 0) {
+                membersPerChunk.remove(chunk);
+            }
+        }
+    }
+}
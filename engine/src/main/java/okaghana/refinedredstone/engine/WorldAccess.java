@@ -0,0 +1,28 @@
+package okaghana.refinedredstone.engine;
+
+/**
+ * What the engine needs to know about the world, addressed by {@link PackedPos} positions. <br><br>
+ *
+ * The mod implements it on top of a Minecraft world. Anything else (tests, benchmarks, tools) can implement it on top of
+ * a map of positions.
+ */
+public interface WorldAccess {
+
+    /** Whether the block at pos is loaded. Nothing is known about blocks that aren't */
+    boolean isLoaded(long pos);
+
+    /** Whether there is a (loaded) wire at pos */
+    boolean isWire(long pos);
+
+    /** The level of the input on one face of the wire at pos. Faces towards other wires never have an input */
+    int readInput(long pos, int face);
+
+    /** All six input faces of the wire at pos, packed 4 bits per face like in {@link CompiledNetwork} */
+    default int readInputs(long pos) {
+        int faces = 0;
+        for (int face = 0; face < PackedPos.FACES; face++) {
+            faces |= readInput(pos, face) << (face << 2);
+        }
+        return faces;
+    }
+}
@@ -0,0 +1,74 @@
+package okaghana.refinedredstone.engine;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class CircuitSimulatorTest {
+
+    private static final long MEMBER = PackedPos.pack(0, 64, 0);
+    private static final Map<Long, Integer> POWERED = Collections.singletonMap(MEMBER, 15 << (PackedPos.WEST << 2));
+
+    private long tick = 0;
+
+
+    @Test
+    public void synchronousChangesRightAway() {
+        CircuitSimulator simulator = new CircuitSimulator("Test", false);
+        simulator.submit(CircuitCommand.compile(1, POWERED, 0));
+
+        PowerChanges changes = simulator.takeChanges();
+        assertEquals(1, changes.size());
+        assertEquals(1, changes.getId(0));
+        assertEquals(15, changes.getPower(0));
+        simulator.releaseChanges();
+
+        simulator.submit(CircuitCommand.input(1, MEMBER, PackedPos.WEST, 0));
+        changes = simulator.takeChanges();
+        assertEquals(1, changes.size());
+        assertEquals(0, changes.getPower(0));
+    }
+
+    @Test
+    public void threadedChangesArriveInALaterTick() throws InterruptedException {
+        CircuitSimulator simulator = new CircuitSimulator("Test", true);
+        try {
+            simulator.submit(CircuitCommand.compile(1, POWERED, 0));
+            // Nothing is published before the end of the tick
+            assertTrue(simulator.takeChanges().isEmpty());
+
+            PowerChanges changes = runUntilChanged(simulator);
+            assertEquals(1, changes.getId(0));
+            assertEquals(15, changes.getPower(0));
+            simulator.releaseChanges();
+
+            simulator.submit(CircuitCommand.input(1, MEMBER, PackedPos.WEST, 0));
+            changes = runUntilChanged(simulator);
+            assertEquals(1, changes.size());
+            assertEquals(0, changes.getPower(0));
+            simulator.releaseChanges();
+        } finally {
+            simulator.shutdown();
+        }
+    }
+
+
+    /** Tick like the server does until the simulation reports a change. takeChanges itself never waits for the thread */
+    private PowerChanges runUntilChanged(CircuitSimulator simulator) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 1000;
+        while (true) {
+            simulator.endTick(tick++);
+            Thread.sleep(1);
+
+            PowerChanges changes = simulator.takeChanges();
+            if (!changes.isEmpty()) {
+                return changes;
+            }
+            simulator.releaseChanges();
+            assertTrue("No changes within a second", System.currentTimeMillis() < deadline);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package okaghana.refinedredstone.engine;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class DecayFieldTest {
+
+    @Test
+    public void decaysAlongLine() {
+        Set<Long> members = line(20);
+        Map<Long, Integer> inputs = new HashMap<>();
+        inputs.put(PackedPos.pack(0, 0, 0), 15 << (PackedPos.WEST << 2));
+
+        Map<Long, Integer> power = DecayField.compute(members, inputs);
+        for (int x = 0; x < 15; x++) {
+            assertEquals(Integer.valueOf(15 - x), power.get(PackedPos.pack(x, 0, 0)));
+        }
+        for (int x = 15; x < 20; x++) {
+            assertFalse(power.containsKey(PackedPos.pack(x, 0, 0)));
+        }
+    }
+
+    @Test
+    public void strongestInputWins() {
+        Set<Long> members = line(20);
+        Map<Long, Integer> inputs = new HashMap<>();
+        // Two faces on one member, only the stronger one counts
+        inputs.put(PackedPos.pack(0, 0, 0), 4 << (PackedPos.WEST << 2) | 10 << (PackedPos.UP << 2));
+        inputs.put(PackedPos.pack(19, 0, 0), 15 << (PackedPos.EAST << 2));
+        // Not a member, ignored
+        inputs.put(PackedPos.pack(5, 1, 0), 15);
+
+        Map<Long, Integer> power = DecayField.compute(members, inputs);
+        for (int x = 0; x < 20; x++) {
+            int expected = Math.max(Math.max(10 - x, 15 - (19 - x)), 0);
+            assertEquals("x = " + x, expected, (int) power.getOrDefault(PackedPos.pack(x, 0, 0), 0));
+        }
+    }
+
+    @Test
+    public void propagateFollowsOneWayLinks() {
+        // 0 -> 1 -> 2, and 2 -> 3 only the other way around
+        long[][] links = { { 1 }, { 2 }, { }, { 2 } };
+        Map<Long, Integer> sources = new HashMap<>();
+        sources.put(0L, 15);
+        sources.put(3L, 3);
+        // A weaker source that is overridden by the signal from 0
+        sources.put(2L, 5);
+
+        Map<Long, Integer> levels = DecayField.propagate(sources, position -> links[(int) position]);
+        assertEquals(Integer.valueOf(15), levels.get(0L));
+        assertEquals(Integer.valueOf(14), levels.get(1L));
+        assertEquals(Integer.valueOf(13), levels.get(2L));
+        assertEquals(Integer.valueOf(3), levels.get(3L));
+    }
+
+
+    private static Set<Long> line(int length) {
+        Set<Long> members = new HashSet<>();
+        for (int x = 0; x < length; x++) {
+            members.add(PackedPos.pack(x, 0, 0));
+        }
+        return members;
+    }
+}
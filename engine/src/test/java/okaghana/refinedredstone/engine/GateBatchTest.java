@@ -0,0 +1,59 @@
+package okaghana.refinedredstone.engine;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class GateBatchTest {
+
+    @Test
+    public void batchMatchesSingleGates() {
+        for (GateOperation operation : GateOperation.values()) {
+            GateBatch batch = new GateBatch(operation);
+
+            // More than the initial capacity, so the arrays have to grow
+            int[] slots = new int[256];
+            for (int a = 0; a < 16; a++) {
+                for (int b = 0; b < 16; b++) {
+                    slots[a * 16 + b] = batch.add(a, b);
+                }
+            }
+            assertEquals(256, batch.size());
+            batch.evaluate();
+
+            for (int a = 0; a < 16; a++) {
+                for (int b = 0; b < 16; b++) {
+                    assertEquals(operation + " " + a + ", " + b, operation.apply(a, b), batch.getResult(slots[a * 16 + b]));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void singleGates() {
+        assertEquals(0b0100, GateOperation.AND.apply(0b0110, 0b1100));
+        assertEquals(0b1110, GateOperation.OR.apply(0b0110, 0b1100));
+        assertEquals(0b1010, GateOperation.XOR.apply(0b0110, 0b1100));
+        assertEquals(15, GateOperation.ADD.apply(9, 9));
+        assertEquals(0, GateOperation.SUBTRACT.apply(3, 9));
+        assertEquals(9, GateOperation.COMPARE.apply(9, 9));
+        assertEquals(0, GateOperation.COMPARE.apply(8, 9));
+    }
+
+    @Test
+    public void clearResetsInputs() {
+        GateBatch batch = new GateBatch(GateOperation.OR);
+        for (int i = 0; i < 20; i++) {
+            batch.add(15, 15);
+        }
+        batch.clear();
+        assertTrue(batch.isEmpty());
+
+        // Leftover inputs in the cleared lanes would show up here
+        int slot = batch.add(1, 2);
+        batch.evaluate();
+        assertEquals(3, batch.getResult(slot));
+        assertEquals(0, slot);
+    }
+}
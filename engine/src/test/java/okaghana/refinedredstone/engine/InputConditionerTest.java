@@ -0,0 +1,95 @@
+package okaghana.refinedredstone.engine;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class InputConditionerTest {
+
+    private static final long MEMBER = PackedPos.pack(1, 2, 3);
+
+
+    @Test
+    public void firstLevelAlwaysPasses() {
+        InputConditioner conditioner = new InputConditioner(10, 8);
+        assertTrue(conditioner.offer(MEMBER, PackedPos.WEST, 3, 0));
+        assertTrue(conditioner.offer(MEMBER, PackedPos.EAST, 3, 0));
+    }
+
+    @Test
+    public void debounceHoldsBackChangesWithinWindow() {
+        InputConditioner conditioner = new InputConditioner(4, 0);
+        assertTrue(conditioner.offer(MEMBER, PackedPos.WEST, 15, 0));
+
+        // Within the window: the first change marks the input as pending, further ones are dropped
+        assertFalse(conditioner.offer(MEMBER, PackedPos.WEST, 0, 1));
+        assertFalse(conditioner.offer(MEMBER, PackedPos.WEST, 15, 2));
+        assertFalse(conditioner.offer(MEMBER, PackedPos.WEST, 0, 3));
+
+        // After the window a change passes right away again
+        InputConditioner quiet = new InputConditioner(4, 0);
+        quiet.offer(MEMBER, PackedPos.WEST, 15, 0);
+        assertTrue(quiet.offer(MEMBER, PackedPos.WEST, 0, 4));
+    }
+
+    @Test
+    public void pendingInputIsDueAtEndOfWindow() {
+        InputConditioner conditioner = new InputConditioner(4, 0);
+        conditioner.offer(MEMBER, PackedPos.WEST, 15, 10);
+        conditioner.offer(MEMBER, PackedPos.WEST, 0, 11);
+
+        List<Integer> due = new ArrayList<>();
+        conditioner.poll(13, (member, face) -> due.add(face));
+        assertTrue(due.isEmpty());
+
+        conditioner.poll(14, (member, face) -> {
+            assertEquals(MEMBER, member);
+            due.add(face);
+        });
+        assertEquals(1, due.size());
+        assertEquals(PackedPos.WEST, (int) due.get(0));
+
+        // No longer pending: the level read again passes, and the input isn't due twice
+        assertTrue(conditioner.offer(MEMBER, PackedPos.WEST, 0, 14));
+        conditioner.poll(100, (member, face) -> fail());
+    }
+
+    @Test
+    public void forgottenInputIsNotDue() {
+        InputConditioner conditioner = new InputConditioner(4, 0);
+        conditioner.offer(MEMBER, PackedPos.WEST, 15, 0);
+        conditioner.offer(MEMBER, PackedPos.WEST, 0, 1);
+        conditioner.forget(MEMBER);
+
+        conditioner.poll(10, (member, face) -> fail());
+        assertTrue(conditioner.offer(MEMBER, PackedPos.WEST, 0, 10));
+    }
+
+    @Test
+    public void hysteresis() {
+        assertFalse(InputConditioner.passesHysteresis(7, 7, 0));
+        assertTrue(InputConditioner.passesHysteresis(7, 8, 1));
+        assertFalse(InputConditioner.passesHysteresis(7, 9, 3));
+        assertTrue(InputConditioner.passesHysteresis(7, 10, 3));
+        assertTrue(InputConditioner.passesHysteresis(7, 4, 3));
+
+        // 0 and 15 always pass, so a signal can't get stuck just above off
+        assertTrue(InputConditioner.passesHysteresis(1, 0, 15));
+        assertTrue(InputConditioner.passesHysteresis(14, 15, 15));
+    }
+
+    @Test
+    public void smallChangesAreDropped() {
+        InputConditioner conditioner = new InputConditioner(0, 4);
+        conditioner.offer(MEMBER, PackedPos.WEST, 8, 0);
+        assertFalse(conditioner.offer(MEMBER, PackedPos.WEST, 10, 1));
+        assertTrue(conditioner.offer(MEMBER, PackedPos.WEST, 12, 2));
+
+        // Measured from the last level that passed, not the last one offered
+        assertFalse(conditioner.offer(MEMBER, PackedPos.WEST, 9, 3));
+        assertTrue(conditioner.offer(MEMBER, PackedPos.WEST, 8, 4));
+    }
+}
@@ -0,0 +1,67 @@
+package okaghana.refinedredstone.engine;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class InputHistogramTest {
+
+    @Test
+    public void maxFollowsStrongestInput() {
+        InputHistogram histogram = new InputHistogram();
+        assertEquals(0, histogram.max());
+
+        histogram.add(5);
+        histogram.add(12);
+        histogram.add(12);
+        assertEquals(12, histogram.max());
+        assertEquals(3, histogram.getTotal());
+        assertEquals(2, histogram.getCount(12));
+
+        histogram.remove(12);
+        assertEquals(12, histogram.max());
+        histogram.remove(12);
+        assertEquals(5, histogram.max());
+        histogram.remove(5);
+        assertEquals(0, histogram.max());
+    }
+
+    @Test
+    public void levelZeroIsNotCounted() {
+        InputHistogram histogram = new InputHistogram();
+        histogram.add(0);
+        assertEquals(0, histogram.getTotal());
+
+        histogram.move(0, 15);
+        assertEquals(15, histogram.max());
+        histogram.move(15, 0);
+        assertEquals(0, histogram.max());
+        assertEquals(0, histogram.getTotal());
+    }
+
+    @Test
+    public void removingUncountedLevelIsIgnored() {
+        InputHistogram histogram = new InputHistogram();
+        histogram.add(3);
+        histogram.remove(9);
+        assertEquals(0, histogram.getCount(9));
+        assertEquals(3, histogram.max());
+        assertEquals(1, histogram.getTotal());
+    }
+
+    @Test
+    public void moveAndClear() {
+        InputHistogram histogram = new InputHistogram();
+        histogram.add(4);
+        histogram.add(4);
+        histogram.move(4, 9);
+        histogram.move(9, 9);
+        assertEquals(1, histogram.getCount(4));
+        assertEquals(1, histogram.getCount(9));
+        assertEquals(9, histogram.max());
+
+        histogram.clear();
+        assertEquals(0, histogram.max());
+        assertEquals(0, histogram.getTotal());
+    }
+}
@@ -0,0 +1,146 @@
+package okaghana.refinedredstone.engine;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class NetworkIndexFileTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+
+    @Test
+    public void roundTrip() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("networks.rrni");
+        StoredNetwork first = network(3, 7, 0, 1, 2);
+        StoredNetwork second = network(5, 0, 10, 11);
+        StoredNetwork decaying = new StoredNetwork(8, 0, new long[] { PackedPos.pack(20, 0, 0) }, Collections.emptyMap(), new int[16], true);
+        NetworkIndexFile.write(path, 9, Arrays.asList(first, second, decaying));
+
+        try (NetworkIndexFile file = NetworkIndexFile.open(path)) {
+            assertNotNull(file);
+            assertEquals(9, file.getNextId());
+            assertEquals(3, file.getNetworkCount());
+            assertEquals(-1, file.find(PackedPos.pack(99, 0, 0)));
+
+            int record = file.find(PackedPos.pack(11, 0, 0));
+            assertTrue(record >= 0);
+            assertEquals(record, file.find(PackedPos.pack(10, 0, 0)));
+            assertStored(second, file.take(record));
+            assertStored(decaying, file.take(file.find(PackedPos.pack(20, 0, 0))));
+
+            // Taken networks can't be found anymore, the other one is still there
+            assertEquals(-1, file.find(PackedPos.pack(10, 0, 0)));
+            assertFalse(file.isExhausted());
+            List<StoredNetwork> remaining = file.getRemaining();
+            assertEquals(1, remaining.size());
+            assertStored(first, remaining.get(0));
+
+            file.invalidate(PackedPos.pack(1, 0, 0));
+            assertTrue(file.isExhausted());
+        }
+    }
+
+    @Test
+    public void missingFile() throws IOException {
+        assertNull(NetworkIndexFile.open(folder.getRoot().toPath().resolve("missing.rrni")));
+    }
+
+    @Test(expected = IOException.class)
+    public void corruptedFile() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("networks.rrni");
+        NetworkIndexFile.write(path, 2, Collections.singletonList(network(1, 15, 0, 1, 2)));
+
+        byte[] bytes = Files.readAllBytes(path);
+        bytes[bytes.length - 1] ^= 1;
+        Files.write(path, bytes);
+        NetworkIndexFile.open(path);
+    }
+
+    @Test(expected = IOException.class)
+    public void truncatedFile() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("networks.rrni");
+        NetworkIndexFile.write(path, 2, Collections.singletonList(network(1, 15, 0, 1, 2)));
+
+        byte[] bytes = Files.readAllBytes(path);
+        Files.write(path, Arrays.copyOf(bytes, bytes.length - 4));
+        NetworkIndexFile.open(path);
+    }
+
+    @Test(expected = IOException.class)
+    public void wrongVersion() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("networks.rrni");
+        NetworkIndexFile.write(path, 2, Collections.singletonList(network(1, 15, 0, 1, 2)));
+
+        byte[] bytes = Files.readAllBytes(path);
+        ByteBuffer.wrap(bytes).putInt(4, NetworkIndexFile.VERSION + 1);
+        Files.write(path, bytes);
+        NetworkIndexFile.open(path);
+    }
+
+    @Test
+    public void generations() throws IOException {
+        Path root = folder.getRoot().toPath();
+        assertEquals(-1, NetworkIndexFile.findLatestGeneration(root, "networks"));
+
+        StoredNetwork first = network(1, 15, 0, 1, 2);
+        NetworkIndexFile.write(NetworkIndexFile.getGenerationPath(root, "networks", 0), 2, Collections.singletonList(first));
+        Files.createFile(root.resolve("networks.old.bin"));
+
+        // The next generation can be written while the previous one is still open
+        try (NetworkIndexFile file = NetworkIndexFile.open(NetworkIndexFile.getGenerationPath(root, "networks", 0))) {
+            assertNotNull(file);
+            StoredNetwork second = network(2, 3, 5, 6);
+            NetworkIndexFile.write(NetworkIndexFile.getGenerationPath(root, "networks", 1), 3, Arrays.asList(first, second));
+            assertEquals(1, NetworkIndexFile.findLatestGeneration(root, "networks"));
+            assertStored(first, file.take(file.find(PackedPos.pack(0, 0, 0))));
+        }
+
+        NetworkIndexFile.deleteGenerations(root, "networks", 1);
+        assertFalse(Files.exists(NetworkIndexFile.getGenerationPath(root, "networks", 0)));
+        assertTrue(Files.exists(root.resolve("networks.old.bin")));
+        try (NetworkIndexFile file = NetworkIndexFile.open(NetworkIndexFile.getGenerationPath(root, "networks", 1))) {
+            assertNotNull(file);
+            assertEquals(2, file.getNetworkCount());
+        }
+    }
+
+
+    // ---------------------------------------- //
+    //                 Helpers                  //
+    // ---------------------------------------- //
+
+    /** A network along the x axis, with an input on the first member */
+    private static StoredNetwork network(int id, int power, int... xs) {
+        long[] members = new long[xs.length];
+        for (int i = 0; i < xs.length; i++) {
+            members[i] = PackedPos.pack(xs[i], 0, 0);
+        }
+
+        Map<Long, Integer> inputs = new HashMap<>();
+        int[] histogram = new int[16];
+        if (power > 0) {
+            inputs.put(members[0], power << (PackedPos.WEST << 2));
+            histogram[power] = 1;
+        }
+        return new StoredNetwork(id, power, members, inputs, histogram, false);
+    }
+
+    private static void assertStored(StoredNetwork expected, StoredNetwork actual) {
+        assertEquals(expected.id, actual.id);
+        assertEquals(expected.power, actual.power);
+        assertArrayEquals(expected.members, actual.members);
+        assertEquals(expected.inputs, actual.inputs);
+        assertArrayEquals(expected.histogram, actual.histogram);
+        assertEquals(expected.decaying, actual.decaying);
+    }
+}
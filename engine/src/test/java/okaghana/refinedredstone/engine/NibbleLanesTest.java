@@ -0,0 +1,78 @@
+package okaghana.refinedredstone.engine;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks every lane-wise operation against the plain per-value computation, for all 256 pairs of signals
+ */
+public class NibbleLanesTest {
+
+    @Test
+    public void packAndUnpack() {
+        int[] values = { 0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15 };
+        long lanes = NibbleLanes.pack(values, 0, NibbleLanes.LANES);
+        assertEquals(0xFEDC_BA98_7654_3210L, lanes);
+
+        int[] unpacked = new int[NibbleLanes.LANES];
+        NibbleLanes.unpack(lanes, unpacked, 0, NibbleLanes.LANES);
+        for (int lane = 0; lane < NibbleLanes.LANES; lane++) {
+            assertEquals(values[lane], unpacked[lane]);
+            assertEquals(values[lane], NibbleLanes.get(lanes, lane));
+        }
+    }
+
+    @Test
+    public void setClampsAndKeepsOtherLanes() {
+        long lanes = NibbleLanes.broadcast(7);
+        lanes = NibbleLanes.set(lanes, 3, 20);
+        lanes = NibbleLanes.set(lanes, 4, -1);
+
+        assertEquals(15, NibbleLanes.get(lanes, 3));
+        assertEquals(0, NibbleLanes.get(lanes, 4));
+        assertEquals(7, NibbleLanes.get(lanes, 2));
+        assertEquals(7, NibbleLanes.get(lanes, 5));
+    }
+
+    @Test
+    public void operationsMatchScalar() {
+        for (int a = 0; a < 16; a++) {
+            // Put every b into its own lane, with a in all lanes, so carries between lanes would show up
+            long left = NibbleLanes.broadcast(a);
+            long right = 0xFEDC_BA98_7654_3210L;
+
+            for (int b = 0; b < 16; b++) {
+                String pair = a + ", " + b;
+                assertEquals(pair, (a + b) & 0xF, NibbleLanes.get(NibbleLanes.add(left, right), b));
+                assertEquals(pair, (a - b) & 0xF, NibbleLanes.get(NibbleLanes.sub(left, right), b));
+                assertEquals(pair, Math.min(a + b, 15), NibbleLanes.get(NibbleLanes.addSaturating(left, right), b));
+                assertEquals(pair, Math.max(a - b, 0), NibbleLanes.get(NibbleLanes.subSaturating(left, right), b));
+                assertEquals(pair, a > b ? 15 : 0, NibbleLanes.get(NibbleLanes.greaterThan(left, right), b));
+                assertEquals(pair, a >= b ? 15 : 0, NibbleLanes.get(NibbleLanes.greaterOrEqual(left, right), b));
+                assertEquals(pair, a == b ? 15 : 0, NibbleLanes.get(NibbleLanes.equal(left, right), b));
+                assertEquals(pair, Math.max(a, b), NibbleLanes.get(NibbleLanes.max(left, right), b));
+                assertEquals(pair, Math.min(a, b), NibbleLanes.get(NibbleLanes.min(left, right), b));
+            }
+        }
+    }
+
+    @Test
+    public void nonZero() {
+        long lanes = 0xF0E0_D0C0_B0A0_9080L;
+        long mask = NibbleLanes.nonZero(lanes);
+        for (int lane = 0; lane < NibbleLanes.LANES; lane++) {
+            assertEquals(lane % 2 == 0 ? 0 : 15, NibbleLanes.get(mask, lane));
+        }
+    }
+
+    @Test
+    public void horizontalMax() {
+        assertEquals(0, NibbleLanes.horizontalMax(0));
+        assertEquals(15, NibbleLanes.horizontalMax(NibbleLanes.FULL));
+        for (int lane = 0; lane < NibbleLanes.LANES; lane++) {
+            long lanes = NibbleLanes.set(NibbleLanes.broadcast(3), lane, 9);
+            assertEquals(9, NibbleLanes.horizontalMax(lanes));
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package okaghana.refinedredstone.engine;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class OscillationDetectorTest {
+
+    private static final long MEMBER = PackedPos.pack(0, 64, 0);
+
+    /** A clock that toggles the west input every 2 ticks */
+    private static int level(long tick) {
+        return (tick / 2) % 2 == 0 ? 15 : 0;
+    }
+
+
+    @Test
+    public void locksOntoClock() {
+        OscillationDetector detector = new OscillationDetector(3);
+        // Two events per cycle, three cycles
+        for (long tick = 0; tick < 10; tick += 2) {
+            detector.record(tick, MEMBER, PackedPos.WEST, level(tick), level(tick));
+            assertFalse(detector.isLocked());
+        }
+        detector.record(10, MEMBER, PackedPos.WEST, level(10), level(10));
+
+        assertTrue(detector.isLocked());
+        assertEquals(4, detector.getPeriod());
+        assertEquals(2, detector.getCycleLength());
+        assertEquals(1, detector.getDetections());
+
+        for (long tick = 12; tick < 40; tick += 2) {
+            assertFalse(detector.isOverdue(tick));
+            assertTrue(detector.matches(tick, MEMBER, PackedPos.WEST, level(tick), level(tick)));
+        }
+        assertEquals(14, detector.getMatchedEvents());
+    }
+
+    @Test
+    public void unexpectedChangeDoesNotMatch() {
+        OscillationDetector detector = locked();
+
+        // The right change one tick late, and a different level at the right tick
+        assertFalse(detector.matches(13, MEMBER, PackedPos.WEST, level(12), level(12)));
+        assertFalse(detector.matches(12, MEMBER, PackedPos.WEST, 7, 7));
+        assertFalse(detector.matches(12, MEMBER, PackedPos.EAST, level(12), level(12)));
+        assertFalse(detector.matches(12, MEMBER, PackedPos.WEST, level(12), 3));
+
+        detector.unlock();
+        assertFalse(detector.isLocked());
+        assertEquals(1, detector.getBreaks());
+        assertEquals(0, detector.getPeriod());
+    }
+
+    @Test
+    public void missingChangeIsOverdue() {
+        OscillationDetector detector = locked();
+        assertFalse(detector.isOverdue(12));
+        assertTrue(detector.isOverdue(13));
+    }
+
+    @Test
+    public void irregularInputsDontLock() {
+        OscillationDetector detector = new OscillationDetector(3);
+        long tick = 0;
+        for (int i = 0; i < 40; i++) {
+            tick += 1 + i;
+            detector.record(tick, MEMBER, PackedPos.WEST, i % 2 * 15, i % 2 * 15);
+        }
+        assertFalse(detector.isLocked());
+    }
+
+    @Test
+    public void resetDoesntCountAsBreak() {
+        OscillationDetector detector = locked();
+        detector.reset();
+        assertFalse(detector.isLocked());
+        assertEquals(0, detector.getBreaks());
+    }
+
+    @Test
+    public void updateLevelFiltersRepeats() {
+        OscillationDetector detector = new OscillationDetector(2);
+        assertTrue(detector.updateLevel(MEMBER, PackedPos.WEST, 0));
+        assertFalse(detector.updateLevel(MEMBER, PackedPos.WEST, 0));
+        assertTrue(detector.updateLevel(MEMBER, PackedPos.WEST, 15));
+        assertTrue(detector.updateLevel(MEMBER, PackedPos.EAST, 15));
+    }
+
+
+    /** A detector that locked onto the clock and expects the next change at tick 12 */
+    private static OscillationDetector locked() {
+        OscillationDetector detector = new OscillationDetector(3);
+        for (long tick = 0; tick <= 10; tick += 2) {
+            detector.record(tick, MEMBER, PackedPos.WEST, level(tick), level(tick));
+        }
+        assertTrue(detector.isLocked());
+        return detector;
+    }
+}
@@ -0,0 +1,46 @@
+package okaghana.refinedredstone.engine;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class SlidingWindowTest {
+
+    @Test
+    public void countsWithinWindow() {
+        SlidingWindow window = new SlidingWindow(4);
+        assertEquals(1, window.add(10, 1));
+        assertEquals(3, window.add(11, 2));
+        assertEquals(6, window.add(13, 3));
+
+        // Tick 10 falls out of the window, the rest stays
+        assertEquals(5, window.getTotal(14));
+        assertEquals(3, window.getTotal(15));
+        assertEquals(0, window.getTotal(17));
+    }
+
+    @Test
+    public void sameTickAccumulates() {
+        SlidingWindow window = new SlidingWindow(2);
+        window.add(5, 1);
+        window.add(5, 1);
+        assertEquals(3, window.add(5, 1));
+    }
+
+    @Test
+    public void jumpClearsEverything() {
+        SlidingWindow window = new SlidingWindow(3);
+        window.add(1, 5);
+        window.add(2, 5);
+        assertEquals(1, window.add(100, 1));
+    }
+
+    @Test
+    public void negativeTicks() {
+        SlidingWindow window = new SlidingWindow(3);
+        window.add(-2, 1);
+        window.add(-1, 1);
+        assertEquals(3, window.add(0, 1));
+        assertEquals(2, window.getTotal(1));
+    }
+}
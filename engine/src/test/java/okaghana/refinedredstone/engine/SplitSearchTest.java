@@ -0,0 +1,80 @@
+package okaghana.refinedredstone.engine;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class SplitSearchTest {
+
+    @Test
+    public void lineFallsApart() {
+        Set<Long> wires = line(0, 10);
+        long removed = PackedPos.pack(3, 0, 0);
+        wires.remove(removed);
+
+        List<List<Long>> detached = SplitSearch.findDetachedFragments(neighbors(removed, wires), wires::contains);
+        assertEquals(1, detached.size());
+        assertEquals(line(0, 2), new HashSet<>(detached.get(0)));
+    }
+
+    @Test
+    public void ringStaysConnected() {
+        Set<Long> wires = new HashSet<>();
+        for (int i = 0; i < 5; i++) {
+            wires.add(PackedPos.pack(i, 0, 0));
+            wires.add(PackedPos.pack(i, 0, 4));
+            wires.add(PackedPos.pack(0, 0, i));
+            wires.add(PackedPos.pack(4, 0, i));
+        }
+        long removed = PackedPos.pack(2, 0, 0);
+        wires.remove(removed);
+
+        assertTrue(SplitSearch.findDetachedFragments(neighbors(removed, wires), wires::contains).isEmpty());
+    }
+
+    @Test
+    public void crossingFallsIntoFour() {
+        Set<Long> wires = new HashSet<>();
+        for (int i = -5; i <= 5; i++) {
+            wires.add(PackedPos.pack(i, 0, 0));
+            wires.add(PackedPos.pack(0, 0, i));
+        }
+        // One arm is longer, that is the one that must not be traversed
+        for (int i = 6; i < 100; i++) {
+            wires.add(PackedPos.pack(i, 0, 0));
+        }
+        long removed = PackedPos.pack(0, 0, 0);
+        wires.remove(removed);
+
+        List<List<Long>> detached = SplitSearch.findDetachedFragments(neighbors(removed, wires), wires::contains);
+        assertEquals(3, detached.size());
+        for (List<Long> fragment : detached) {
+            assertEquals(5, fragment.size());
+            assertFalse(fragment.contains(PackedPos.pack(1, 0, 0)));
+        }
+    }
+
+
+    /** Wires from x = from to x = to (inclusive) */
+    private static Set<Long> line(int from, int to) {
+        Set<Long> wires = new HashSet<>();
+        for (int x = from; x <= to; x++) {
+            wires.add(PackedPos.pack(x, 0, 0));
+        }
+        return wires;
+    }
+
+    private static long[] neighbors(long pos, Set<Long> wires) {
+        long[] neighbors = new long[PackedPos.FACES];
+        int count = 0;
+        for (int face = 0; face < PackedPos.FACES; face++) {
+            long neighbor = PackedPos.offset(pos, face);
+            if (wires.contains(neighbor)) {
+                neighbors[count++] = neighbor;
+            }
+        }
+        return Arrays.copyOf(neighbors, count);
+    }
+}
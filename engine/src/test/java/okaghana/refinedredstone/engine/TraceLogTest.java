@@ -0,0 +1,132 @@
+package okaghana.refinedredstone.engine;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TraceLogTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+
+    @Test
+    public void roundTrip() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("trace.rrtr");
+        long pos = PackedPos.pack(-5, 64, 300);
+        try (TraceLog log = TraceLog.create(path, 8)) {
+            log.write(1, TraceLog.PLACE, pos, 0, 0, 0);
+            log.write(2, TraceLog.INPUT, pos, PackedPos.WEST, 15, 0);
+            log.write(2, TraceLog.POWER, pos, 0, 15, 1);
+        }
+
+        try (TraceLog log = TraceLog.open(path)) {
+            assertEquals(3, log.getWritten());
+            assertEquals(0, log.getFirst());
+            assertEquals(8, log.getCapacity());
+
+            List<long[]> records = read(log);
+            assertEquals(3, records.size());
+            assertArrayEquals(new long[] {1, TraceLog.PLACE, 0, 0, 0, pos}, records.get(0));
+            assertArrayEquals(new long[] {2, TraceLog.INPUT, PackedPos.WEST, 15, 0, pos}, records.get(1));
+            assertArrayEquals(new long[] {2, TraceLog.POWER, 0, 15, 1, pos}, records.get(2));
+        }
+    }
+
+    @Test
+    public void ringWrapsAround() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("trace.rrtr");
+        try (TraceLog log = TraceLog.create(path, 4)) {
+            for (int tick = 0; tick < 10; tick++) {
+                log.write(tick, TraceLog.INPUT, PackedPos.pack(tick, 0, 0), PackedPos.UP, tick, 0);
+            }
+
+            // Only the last four records are left, oldest first
+            assertEquals(10, log.getWritten());
+            assertEquals(6, log.getFirst());
+            List<long[]> records = read(log);
+            assertEquals(4, records.size());
+            for (int i = 0; i < 4; i++) {
+                assertEquals(6 + i, records.get(i)[0]);
+                assertEquals(PackedPos.pack(6 + i, 0, 0), records.get(i)[5]);
+            }
+        }
+
+        // The count survives reopening
+        try (TraceLog log = TraceLog.open(path)) {
+            assertEquals(10, log.getWritten());
+            assertEquals(6, log.getFirst());
+            assertEquals(6, read(log).get(0)[0]);
+        }
+    }
+
+    @Test
+    public void createReplacesExistingFile() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("trace.rrtr");
+        try (TraceLog log = TraceLog.create(path, 4)) {
+            log.write(1, TraceLog.PLACE, 0, 0, 0, 0);
+        }
+        try (TraceLog log = TraceLog.create(path, 2)) {
+            assertEquals(0, log.getWritten());
+            assertEquals(2, log.getCapacity());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void invalidCapacity() throws IOException {
+        TraceLog.create(folder.getRoot().toPath().resolve("trace.rrtr"), 0);
+    }
+
+    @Test
+    public void openValidatesFile() throws IOException {
+        Path path = folder.getRoot().toPath().resolve("trace.rrtr");
+
+        Files.write(path, new byte[8]);
+        assertOpenFails(path, "too short");
+
+        try (TraceLog log = TraceLog.create(path, 4)) {
+            log.write(1, TraceLog.PLACE, 0, 0, 0, 0);
+        }
+        byte[] valid = Files.readAllBytes(path);
+
+        Files.write(path, patch(valid, 0, 0x12345678));
+        assertOpenFails(path, "wrong magic");
+        Files.write(path, patch(valid, 4, TraceLog.VERSION + 1));
+        assertOpenFails(path, "wrong version");
+        Files.write(path, patch(valid, 12, 5));
+        assertOpenFails(path, "capacity doesn't match the size");
+        Files.write(path, Arrays.copyOf(valid, valid.length - 1));
+        assertOpenFails(path, "truncated");
+    }
+
+
+    private static List<long[]> read(TraceLog log) {
+        List<long[]> records = new ArrayList<>();
+        log.forEach((tick, type, face, value, size, pos) -> records.add(new long[] {tick, type, face, value, size, pos}));
+        return records;
+    }
+
+    private static byte[] patch(byte[] bytes, int offset, int value) {
+        byte[] copy = bytes.clone();
+        ByteBuffer.wrap(copy).putInt(offset, value);
+        return copy;
+    }
+
+    private static void assertOpenFails(Path path, String reason) {
+        try (TraceLog ignored = TraceLog.open(path)) {
+            fail("Opened a file that is " + reason);
+        } catch (IOException expected) {
+            // The file was rejected
+        }
+    }
+}
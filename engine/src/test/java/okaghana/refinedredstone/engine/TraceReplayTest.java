@@ -0,0 +1,81 @@
+package okaghana.refinedredstone.engine;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TraceReplayTest {
+
+    private static final long A = PackedPos.pack(0, 0, 0);
+    private static final long B = PackedPos.pack(1, 0, 0);
+    private static final long C = PackedPos.pack(2, 0, 0);
+
+    private final TraceReplay replay = new TraceReplay();
+
+
+    @After
+    public void shutdown() {
+        replay.shutdown();
+    }
+
+
+    @Test
+    public void placementJoinsNetworks() {
+        replay.apply(TraceLog.PLACE, A, 0, 0);
+        replay.apply(TraceLog.PLACE, C, 0, 0);
+        assertNotEquals(replay.getNetworkId(A), replay.getNetworkId(C));
+
+        replay.apply(TraceLog.INPUT, A, PackedPos.WEST, 9);
+        assertEquals(9, replay.getPower(A));
+        assertEquals(0, replay.getPower(C));
+
+        // The wire in between joins both, and the joined network takes the input of A
+        replay.apply(TraceLog.PLACE, B, 0, 0);
+        assertNotEquals(0, replay.getNetworkId(B));
+        assertEquals(replay.getNetworkId(A), replay.getNetworkId(B));
+        assertEquals(replay.getNetworkId(A), replay.getNetworkId(C));
+        assertEquals(9, replay.getPower(C));
+    }
+
+    @Test
+    public void removalSplitsNetwork() {
+        replay.apply(TraceLog.PLACE, A, 0, 0);
+        replay.apply(TraceLog.PLACE, B, 0, 0);
+        replay.apply(TraceLog.PLACE, C, 0, 0);
+        replay.apply(TraceLog.INPUT, A, PackedPos.WEST, 12);
+        assertEquals(12, replay.getPower(C));
+
+        replay.apply(TraceLog.REMOVE, B, 0, 0);
+        assertEquals(0, replay.getNetworkId(B));
+        assertNotEquals(0, replay.getNetworkId(C));
+        assertNotEquals(replay.getNetworkId(A), replay.getNetworkId(C));
+
+        // The fragment without the input loses its power, the other one keeps it
+        assertEquals(12, replay.getPower(A));
+        assertEquals(0, replay.getPower(C));
+    }
+
+    @Test
+    public void powerRecordsAreChecked() {
+        replay.apply(TraceLog.PLACE, A, 0, 0);
+        replay.apply(TraceLog.INPUT, A, PackedPos.UP, 7);
+        replay.apply(TraceLog.POWER, A, 0, 7);
+        replay.apply(TraceLog.POWER, A, 0, 3);
+        assertEquals(2, replay.getChecked());
+        assertEquals(1, replay.getMismatches());
+
+        // Records for unknown wires or of unknown types are skipped
+        replay.apply(TraceLog.POWER, C, 0, 7);
+        replay.apply(99, A, 0, 0);
+        assertEquals(2, replay.getChecked());
+        assertEquals(2, replay.getSkipped());
+    }
+
+    @Test
+    public void inputBeforePlacementIsUsed() {
+        replay.apply(TraceLog.INPUT, A, PackedPos.DOWN, 11);
+        replay.apply(TraceLog.PLACE, A, 0, 0);
+        assertEquals(11, replay.getPower(A));
+    }
+}
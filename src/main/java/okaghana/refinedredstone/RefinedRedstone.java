@@ -10,6 +10,7 @@ import net.minecraftforge.fml.ModLoadingContext;
 import net.minecraftforge.fml.common.Mod;
 import net.minecraftforge.fml.config.ModConfig;
 import net.minecraftforge.fml.javafmlmod.FMLJavaModLoadingContext;
+import okaghana.refinedredstone.network.PacketHandler;
 import okaghana.refinedredstone.setup.*;
 
 import javax.annotation.Nonnull;
@@ -43,6 +44,7 @@ public class RefinedRedstone {
 
         // Register Blocks and Items to the
         BlockRegister.REGISTER.register(MOD_EVENT_BUS);
+        BlockRegister.VANILLA_REGISTER.register(MOD_EVENT_BUS);
         ItemRegister.REGISTER.register(MOD_EVENT_BUS);
 
         // Create the ItemGroup for the items
@@ -60,6 +62,9 @@ public class RefinedRedstone {
             MOD_ITEM_GROUP = ItemGroup.REDSTONE;
         }
 
+        // Register the Packets
+        PacketHandler.register();
+
         // Register to the Events
         MOD_EVENT_BUS.register(RegistryEvents.class);
         MOD_EVENT_BUS.register(EntityRegister.class);
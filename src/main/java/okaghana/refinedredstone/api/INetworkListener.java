@@ -0,0 +1,21 @@
+package okaghana.refinedredstone.api;
+
+import net.minecraft.world.World;
+
+import java.util.Map;
+
+/** Gets the power changes of the networks of a world, see {@link IRefinedRedstoneNetworks#addListener(INetworkListener)} */
+@FunctionalInterface
+public interface INetworkListener {
+
+    /**
+     * Called once at the end of every tick in which at least one network changed its power
+     *
+     * @param world The world the networks are in
+     * @param changes The new power of every network that changed, keyed by the network id. A network that changed
+     *                several times during the tick is only listed with its last power. A network in decay mode only
+     *                reports the level of its strongest input, not the levels of its single wires, which can be read
+     *                with {@link IRefinedRedstoneNetworks#getPower(net.minecraft.util.math.BlockPos)}
+     */
+    void onPowerChanged(World world, Map<Integer, Integer> changes);
+}
@@ -0,0 +1,59 @@
+package okaghana.refinedredstone.api;
+
+import net.minecraft.util.Direction;
+import net.minecraft.util.math.BlockPos;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Access to the Refined Redstone networks of a server world, for other mods and scripts. Get it from the world with
+ * {@code world.getCapability(RefinedRedstoneCapabilities.NETWORKS)}. <br><br>
+ *
+ * All values come from the network index instead of the blocks, so they are consistent within a tick: a query never
+ * sees a network halfway through an update, and it doesn't depend on the block states being written at all (which they
+ * aren't with the chunk power storage). Networks are found lazily, so the first query for a wire may have to traverse its
+ * network. All methods have to be called on the server thread.
+ */
+public interface IRefinedRedstoneNetworks {
+
+    /**
+     * The id of the network a wire belongs to. Ids are never reused, but a network gets a new id whenever wires are
+     * removed from it or it is joined with another one
+     *
+     * @return The id, or 0 if there is no Refined Redstone wire at pos
+     */
+    int getNetworkId(BlockPos pos);
+
+    /**
+     * The power of the network with the given id, or 0 if it doesn't exist. For a network in decay mode, where the signal
+     * loses one level per wire, this is the level of its strongest input. Use
+     * {@link IRefinedRedstoneNetworks#getPower(BlockPos)} for the power of its single wires
+     */
+    int getPower(int networkId);
+
+    /** The power of the wire at pos (its own level in decay mode), or 0 if there is no Refined Redstone wire */
+    int getPower(BlockPos pos);
+
+    /** All wires of a network, or an empty collection if it doesn't exist */
+    Collection<BlockPos> getMembers(int networkId);
+
+    /**
+     * The powered inputs of a network. The value packs the level of all six faces in 4 bits each, in the order of
+     * {@link Direction#getIndex()}. Use {@link IRefinedRedstoneNetworks#getInput(int, Direction)} to unpack it
+     *
+     * @return The inputs of every wire with at least one powered face
+     */
+    Map<BlockPos, Integer> getInputs(int networkId);
+
+    /** Get notified at the end of every tick about the networks whose power changed during it */
+    void addListener(INetworkListener listener);
+
+    void removeListener(INetworkListener listener);
+
+
+    /** The level of one face of the packed inputs returned by {@link IRefinedRedstoneNetworks#getInputs(int)} */
+    static int getInput(int packedFaces, Direction face) {
+        return (packedFaces >>> (face.getIndex() << 2)) & 0xF;
+    }
+}
@@ -0,0 +1,32 @@
+package okaghana.refinedredstone.api;
+
+import net.minecraft.nbt.INBT;
+import net.minecraft.util.Direction;
+import net.minecraftforge.common.capabilities.Capability;
+import net.minecraftforge.common.capabilities.CapabilityInject;
+import net.minecraftforge.common.capabilities.CapabilityManager;
+
+// The capabilities other mods can use to talk to Refined Redstone
+public class RefinedRedstoneCapabilities {
+
+    /** Attached to every server world, see {@link IRefinedRedstoneNetworks} */
+    @CapabilityInject(IRefinedRedstoneNetworks.class)
+    public static Capability<IRefinedRedstoneNetworks> NETWORKS = null;
+
+
+    /** Register the capabilities. Called during the common setup */
+    public static void register() {
+        CapabilityManager.INSTANCE.register(IRefinedRedstoneNetworks.class, new Capability.IStorage<IRefinedRedstoneNetworks>() {
+            // Nothing to save, the networks are saved by the NetworkManager
+            @Override
+            public INBT writeNBT(Capability<IRefinedRedstoneNetworks> capability, IRefinedRedstoneNetworks instance, Direction side) {
+                return null;
+            }
+
+            @Override
+            public void readNBT(Capability<IRefinedRedstoneNetworks> capability, IRefinedRedstoneNetworks instance, Direction side, INBT nbt) { }
+        }, () -> {
+            throw new UnsupportedOperationException("The networks only exist for a world");
+        });
+    }
+}
@@ -0,0 +1,74 @@
+package okaghana.refinedredstone.block;
+
+import net.minecraft.block.AbstractBlock;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.block.RedstoneWireBlock;
+import net.minecraft.util.Direction;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.IBlockReader;
+import net.minecraft.world.World;
+import okaghana.refinedredstone.circuit.DustEngine;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Replaces vanilla redstone dust (it is registered as {@code minecraft:redstone_wire}), so its power can be computed by
+ * the {@link DustEngine} instead of the recursive vanilla updates. <br><br>
+ *
+ * It is still a {@link RedstoneWireBlock} with the same states, model and drops. As long as
+ * {@link okaghana.refinedredstone.setup.ConfigHandler#DUST_MODE} is VANILLA it behaves exactly like vanilla dust, and
+ * the mode can be switched while the game is running to compare both. Only the updates from neighbors go to the engine,
+ * placing and removing dust is done by vanilla. <br><br>
+ *
+ * Nothing else has to be redirected for dust placed by players to be this block. Forge hands out the block of a
+ * {@link net.minecraft.item.BlockItem} through its registry delegate ({@code getBlockRaw().delegate.get()}), and the
+ * delegate of {@code minecraft:redstone_wire} points to whatever is registered under that name last, which is this
+ * block. The vanilla fields like {@link Blocks#REDSTONE_WIRE} are {@code @ObjectHolder}s that Forge fills with the
+ * registered block as well, so the redstone item, world generation and every {@code isIn(Blocks.REDSTONE_WIRE)} check
+ * all end up here.
+ */
+public class AcceleratedRedstoneWire extends RedstoneWireBlock {
+
+    public AcceleratedRedstoneWire() {
+        super(AbstractBlock.Properties.from(Blocks.REDSTONE_WIRE));
+    }
+
+
+    // ---------------------------------------- //
+    //                  Updates                 //
+    // ---------------------------------------- //
+
+    @SuppressWarnings("deprecation")
+    @Override
+    public void neighborChanged(@NotNull BlockState state, World world, @NotNull BlockPos pos, @NotNull Block block, @NotNull BlockPos fromPos, boolean isMoving) {
+        if (world.isRemote || !DustEngine.isActive()) {
+            super.neighborChanged(state, world, pos, block, fromPos, isMoving);
+            return;
+        }
+
+        if (!state.isValidPosition(world, pos)) {
+            spawnDrops(state, world, pos);
+            world.removeBlock(pos, false);
+            return;
+        }
+        DustEngine.update(world, pos);
+    }
+
+
+    // ---------------------------------------- //
+    //                   Power                  //
+    // ---------------------------------------- //
+
+    @SuppressWarnings("deprecation")
+    @Override
+    public int getWeakPower(@NotNull BlockState state, @NotNull IBlockReader world, @NotNull BlockPos pos, @NotNull Direction side) {
+        return DustEngine.isReadingInputs() ? 0 : super.getWeakPower(state, world, pos, side);
+    }
+
+    @SuppressWarnings("deprecation")
+    @Override
+    public int getStrongPower(@NotNull BlockState state, @NotNull IBlockReader world, @NotNull BlockPos pos, @NotNull Direction side) {
+        return DustEngine.isReadingInputs() ? 0 : super.getStrongPower(state, world, pos, side);
+    }
+}
@@ -0,0 +1,143 @@
+package okaghana.refinedredstone.block;
+
+import net.minecraft.block.AbstractBlock;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.material.Material;
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.item.BlockItemUseContext;
+import net.minecraft.item.DyeColor;
+import net.minecraft.state.BooleanProperty;
+import net.minecraft.state.DirectionProperty;
+import net.minecraft.state.EnumProperty;
+import net.minecraft.state.IntegerProperty;
+import net.minecraft.state.StateContainer;
+import net.minecraft.state.properties.BlockStateProperties;
+import net.minecraft.util.ActionResultType;
+import net.minecraft.util.Direction;
+import net.minecraft.util.Hand;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.BlockRayTraceResult;
+import net.minecraft.util.text.StringTextComponent;
+import net.minecraft.world.IBlockReader;
+import net.minecraft.world.World;
+import okaghana.refinedredstone.circuit.BundledNetworks;
+import org.jetbrains.annotations.NotNull;
+
+import javax.annotation.Nullable;
+
+/**
+ * Connects one channel of a {@link BundledRefinedRedstoneBlock} to normal redstone. <br><br>
+ *
+ * The back of the adapter faces the cable, the front (FACING) the outside. An inserting adapter feeds the signal in front
+ * of it into the channel of its {@link DyeColor}, an extracting one outputs the power of that channel to the front,
+ * like a repeater. Right-clicking cycles through the colors, sneaking while doing so switches between inserting and
+ * extracting.
+ */
+public class BundleAdapter extends Block {
+
+    public static final AbstractBlock.Properties PROPERTIES = Block.Properties.create(Material.ROCK).hardnessAndResistance(0.5f).harvestLevel(0);
+
+    public static final DirectionProperty FACING = BlockStateProperties.FACING;
+    public static final EnumProperty<DyeColor> COLOR = EnumProperty.create("color", DyeColor.class);
+    public static final BooleanProperty EXTRACT = BooleanProperty.create("extract");
+    public static final IntegerProperty POWER = BlockStateProperties.POWER_0_15;
+
+    public BundleAdapter() {
+        this(PROPERTIES);
+    }
+
+    public BundleAdapter(Properties properties) {
+        super(properties);
+        setDefaultState(getDefaultState().with(FACING, Direction.NORTH).with(COLOR, DyeColor.WHITE).with(EXTRACT, false).with(POWER, 0));
+    }
+
+    @Override
+    protected void fillStateContainer(StateContainer.Builder<Block, BlockState> builder) {
+        builder.add(FACING, COLOR, EXTRACT, POWER);
+    }
+
+    // The front faces away from the block the adapter was placed against
+    @Nullable
+    @Override
+    public BlockState getStateForPlacement(BlockItemUseContext context) {
+        return getDefaultState().with(FACING, context.getFace());
+    }
+
+
+    // ---------------------------------------- //
+    //                Interaction               //
+    // ---------------------------------------- //
+
+    @SuppressWarnings("deprecation")
+    @NotNull
+    @Override
+    public ActionResultType onBlockActivated(@NotNull BlockState state, @NotNull World world, @NotNull BlockPos pos, PlayerEntity player, @NotNull Hand hand, @NotNull BlockRayTraceResult hit) {
+        if (!player.abilities.allowEdit) {
+            return ActionResultType.PASS;
+        }
+
+        if (!world.isRemote) {
+            BlockState changed = player.isSneaking() ? state.func_235896_a_(EXTRACT).with(POWER, 0) : state.func_235896_a_(COLOR);
+            world.setBlockState(pos, changed, 3);
+            BundledNetworks.get(world).onAdapterChanged(pos);
+            player.sendStatusMessage(new StringTextComponent((changed.get(EXTRACT) ? "Extract " : "Insert ") + changed.get(COLOR).getTranslationKey()), true);
+        }
+        return world.isRemote ? ActionResultType.SUCCESS : ActionResultType.CONSUME;
+    }
+
+
+    // ---------------------------------------- //
+    //               Power Logic                //
+    // ---------------------------------------- //
+
+    @SuppressWarnings("deprecation")
+    @Override
+    public void onBlockAdded(@NotNull BlockState state, @NotNull World world, @NotNull BlockPos pos, @NotNull BlockState oldState, boolean isMoving) {
+        if (!world.isRemote && !oldState.isIn(this)) {
+            BundledNetworks.get(world).onAdapterChanged(pos);
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    @Override
+    public void onReplaced(@NotNull BlockState state, @NotNull World world, @NotNull BlockPos pos, @NotNull BlockState newState, boolean isMoving) {
+        super.onReplaced(state, world, pos, newState, isMoving);
+        if (!world.isRemote && !newState.isIn(this)) {
+            BundledNetworks.get(world).onAdapterChanged(pos);
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    @Override
+    public void neighborChanged(@NotNull BlockState state, @NotNull World world, @NotNull BlockPos pos, @NotNull Block block, @NotNull BlockPos fromPos, boolean isMoving) {
+        if (!world.isRemote && !state.get(EXTRACT) && fromPos.equals(pos.offset(state.get(FACING)))) {
+            BundledNetworks.get(world).onAdapterChanged(pos);
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    @Override
+    public boolean canProvidePower(@NotNull BlockState state) {
+        return true;
+    }
+
+    @SuppressWarnings("deprecation")
+    @Override
+    public int getWeakPower(@NotNull BlockState blockState, @NotNull IBlockReader blockAccess, @NotNull BlockPos pos, @NotNull Direction side) {
+        return blockState.get(EXTRACT) && blockState.get(FACING).getOpposite() == side ? blockState.get(POWER) : 0;
+    }
+
+    @SuppressWarnings("deprecation")
+    @Override
+    public int getStrongPower(@NotNull BlockState blockState, @NotNull IBlockReader blockAccess, @NotNull BlockPos pos, @NotNull Direction side) {
+        return getWeakPower(blockState, blockAccess, pos, side);
+    }
+
+
+    /** The signal in front of an inserting adapter */
+    public static int getOutsidePower(BlockState state, World world, BlockPos pos) {
+        Direction facing = state.get(FACING);
+        return world.getRedstonePower(pos.offset(facing), facing);
+    }
+}
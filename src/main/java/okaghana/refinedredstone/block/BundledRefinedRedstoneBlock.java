@@ -0,0 +1,57 @@
+package okaghana.refinedredstone.block;
+
+import net.minecraft.block.AbstractBlock;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.material.Material;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.shapes.ISelectionContext;
+import net.minecraft.util.math.shapes.VoxelShape;
+import net.minecraft.world.IBlockReader;
+import net.minecraft.world.World;
+import okaghana.refinedredstone.circuit.BundledNetworks;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A bundle of 16 Refined Redstone wires in one block, one per dye color. <br><br>
+ *
+ * The cable neither reads nor emits redstone itself: signals enter and leave it through {@link BundleAdapter}s, and all
+ * cables that touch each other form one network carrying all 16 channels (see {@link BundledNetworks}).
+ */
+public class BundledRefinedRedstoneBlock extends Block {
+
+    public static final AbstractBlock.Properties PROPERTIES = Block.Properties.create(Material.WOOL).hardnessAndResistance(0.2f).harvestLevel(0);
+    private static final VoxelShape SHAPE = Block.makeCuboidShape(4, 4, 4, 12, 12, 12);
+
+    public BundledRefinedRedstoneBlock() {
+        this(PROPERTIES);
+    }
+
+    public BundledRefinedRedstoneBlock(Properties properties) {
+        super(properties);
+    }
+
+    @SuppressWarnings("deprecation")
+    @NotNull
+    @Override
+    public VoxelShape getShape(@NotNull BlockState state, @NotNull IBlockReader worldIn, @NotNull BlockPos pos, @NotNull ISelectionContext context) {
+        return SHAPE;
+    }
+
+    @SuppressWarnings("deprecation")
+    @Override
+    public void onBlockAdded(@NotNull BlockState state, @NotNull World world, @NotNull BlockPos pos, @NotNull BlockState oldState, boolean isMoving) {
+        if (!world.isRemote && !oldState.isIn(this)) {
+            BundledNetworks.get(world).onCableAdded(pos);
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    @Override
+    public void onReplaced(@NotNull BlockState state, @NotNull World world, @NotNull BlockPos pos, @NotNull BlockState newState, boolean isMoving) {
+        super.onReplaced(state, world, pos, newState, isMoving);
+        if (!world.isRemote && !newState.isIn(this)) {
+            BundledNetworks.get(world).onCableRemoved(pos);
+        }
+    }
+}
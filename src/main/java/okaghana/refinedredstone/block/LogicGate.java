@@ -0,0 +1,160 @@
+package okaghana.refinedredstone.block;
+
+import net.minecraft.block.AbstractBlock;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.material.Material;
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.item.BlockItemUseContext;
+import net.minecraft.state.DirectionProperty;
+import net.minecraft.state.IntegerProperty;
+import net.minecraft.state.StateContainer;
+import net.minecraft.state.properties.BlockStateProperties;
+import net.minecraft.util.ActionResultType;
+import net.minecraft.util.Direction;
+import net.minecraft.util.Hand;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.BlockRayTraceResult;
+import net.minecraft.util.math.shapes.ISelectionContext;
+import net.minecraft.util.math.shapes.VoxelShape;
+import net.minecraft.world.IBlockReader;
+import net.minecraft.world.World;
+import okaghana.refinedredstone.circuit.GateScheduler;
+import okaghana.refinedredstone.engine.GateOperation;
+import org.jetbrains.annotations.NotNull;
+
+import javax.annotation.Nullable;
+
+/**
+ * A gate with two inputs: the signal behind it, and the stronger of the two signals on its sides (like the side input of
+ * a comparator). The output in front is the {@link GateOperation} of both. Right-clicking cycles through the operations.
+ * <br><br>
+ *
+ * The gate doesn't evaluate itself when an input changes. It hands its inputs to the {@link GateScheduler}, which
+ * evaluates all gates of the same operation together at the end of the tick, so large ALUs of identical gates cost one
+ * evaluation per 16 gates.
+ */
+public class LogicGate extends Block {
+
+    public static final AbstractBlock.Properties PROPERTIES = Block.Properties.create(Material.ROCK).hardnessAndResistance(0.05f).doesNotBlockMovement().harvestLevel(0);
+
+    public static final DirectionProperty FACING = BlockStateProperties.HORIZONTAL_FACING;
+    public static final IntegerProperty OPERATION = IntegerProperty.create("operation", 0, GateOperation.values().length - 1);
+    public static final IntegerProperty POWER = BlockStateProperties.POWER_0_15;
+
+    public LogicGate() {
+        this(PROPERTIES);
+    }
+
+    public LogicGate(Properties properties) {
+        super(properties);
+        setDefaultState(getDefaultState().with(FACING, Direction.NORTH).with(OPERATION, 0).with(POWER, 0));
+    }
+
+    @SuppressWarnings("deprecation")
+    @NotNull
+    @Override
+    public VoxelShape getShape(@NotNull BlockState state, @NotNull IBlockReader worldIn, @NotNull BlockPos pos, @NotNull ISelectionContext context) {
+        return Block.makeCuboidShape(0, 0, 0, 16, 2, 16);
+    }
+
+    @Override
+    protected void fillStateContainer(StateContainer.Builder<Block, BlockState> builder) {
+        builder.add(FACING, OPERATION, POWER);
+    }
+
+    @Nullable
+    @Override
+    public BlockState getStateForPlacement(BlockItemUseContext context) {
+        return getDefaultState().with(FACING, context.getPlacementHorizontalFacing().getOpposite());
+    }
+
+    public static GateOperation getOperation(BlockState state) {
+        return GateOperation.values()[state.get(OPERATION)];
+    }
+
+
+    // ---------------------------------------- //
+    //                Interaction               //
+    // ---------------------------------------- //
+
+    @SuppressWarnings("deprecation")
+    @NotNull
+    @Override
+    public ActionResultType onBlockActivated(@NotNull BlockState state, @NotNull World world, @NotNull BlockPos pos, PlayerEntity player, @NotNull Hand hand, @NotNull BlockRayTraceResult hit) {
+        if (!player.abilities.allowEdit) {
+            return ActionResultType.PASS;
+        }
+
+        BlockState cycled = state.func_235896_a_(OPERATION);
+        world.setBlockState(pos, cycled, 3);
+        scheduleEvaluation(cycled, world, pos);
+        return world.isRemote ? ActionResultType.SUCCESS : ActionResultType.CONSUME;
+    }
+
+
+    // ---------------------------------------- //
+    //               Power Logic                //
+    // ---------------------------------------- //
+
+    @SuppressWarnings("deprecation")
+    @Override
+    public void onBlockAdded(@NotNull BlockState state, @NotNull World world, @NotNull BlockPos pos, @NotNull BlockState oldState, boolean isMoving) {
+        scheduleEvaluation(state, world, pos);
+    }
+
+    @SuppressWarnings("deprecation")
+    @Override
+    public void neighborChanged(@NotNull BlockState state, @NotNull World world, @NotNull BlockPos pos, @NotNull Block block, @NotNull BlockPos fromPos, boolean isMoving) {
+        scheduleEvaluation(state, world, pos);
+    }
+
+    @SuppressWarnings("deprecation")
+    @Override
+    public boolean canProvidePower(@NotNull BlockState state) {
+        return true;
+    }
+
+    @SuppressWarnings("deprecation")
+    @Override
+    public int getWeakPower(@NotNull BlockState blockState, @NotNull IBlockReader blockAccess, @NotNull BlockPos pos, @NotNull Direction side) {
+        return blockState.get(FACING) == side ? blockState.get(POWER) : 0;
+    }
+
+    @SuppressWarnings("deprecation")
+    @Override
+    public int getStrongPower(@NotNull BlockState blockState, @NotNull IBlockReader blockAccess, @NotNull BlockPos pos, @NotNull Direction side) {
+        return getWeakPower(blockState, blockAccess, pos, side);
+    }
+
+    // Read both inputs now and let the scheduler evaluate the gate together with all others at the end of the tick
+    private void scheduleEvaluation(BlockState state, World world, BlockPos pos) {
+        if (world.isRemote) {
+            return;
+        }
+
+        Direction facing = state.get(FACING);
+        int back = world.getRedstonePower(pos.offset(facing), facing);
+        Direction left = facing.rotateY();
+        Direction right = facing.rotateYCCW();
+        int side = Math.max(world.getRedstonePower(pos.offset(left), left), world.getRedstonePower(pos.offset(right), right));
+        GateScheduler.get(world).schedule(pos, getOperation(state), back, side, this::setOutput);
+    }
+
+    // The result of the evaluation. The gate might have been removed or changed since it was scheduled
+    private void setOutput(World world, BlockPos pos, int power) {
+        BlockState state = world.getBlockState(pos);
+        if (state.isIn(this) && state.get(POWER) != power) {
+            world.setBlockState(pos, state.with(POWER, power), 2);
+            notifyOutput(state, world, pos);
+        }
+    }
+
+    // Update the block in front and its neighbors, the same way a repeater does
+    private void notifyOutput(BlockState state, World world, BlockPos pos) {
+        Direction output = state.get(FACING).getOpposite();
+        BlockPos front = pos.offset(output);
+        world.neighborChanged(front, this, pos);
+        world.notifyNeighborsOfStateExcept(front, this, output.getOpposite());
+    }
+}
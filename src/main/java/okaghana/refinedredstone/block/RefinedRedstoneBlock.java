@@ -3,6 +3,7 @@ package okaghana.refinedredstone.block;
 import com.google.common.collect.ImmutableMap;
 import net.minecraft.block.Block;
 import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
 import net.minecraft.block.material.Material;
 import net.minecraft.client.renderer.color.IBlockColor;
 import net.minecraft.item.BlockItemUseContext;
@@ -22,7 +23,12 @@ import net.minecraft.util.math.vector.Vector3f;
 import net.minecraft.world.*;
 import net.minecraftforge.api.distmarker.Dist;
 import net.minecraftforge.api.distmarker.OnlyIn;
-import okaghana.refinedredstone.setup.BlockRegister;
+import okaghana.refinedredstone.capability.ChunkPowerStorage;
+import okaghana.refinedredstone.circuit.BlockStateCache;
+import okaghana.refinedredstone.circuit.NetworkManager;
+import okaghana.refinedredstone.client.ClientPowerMap;
+import okaghana.refinedredstone.client.ParticleBudget;
+import okaghana.refinedredstone.setup.ConfigHandler;
 import org.jetbrains.annotations.NotNull;
 
 import javax.annotation.Nullable;
@@ -51,6 +57,7 @@ public class RefinedRedstoneBlock extends Block implements IBlockColor{
             .put(Direction.EAST, CONNECTED_EAST).put(Direction.SOUTH, CONNECTED_SOUTH).put(Direction.WEST, CONNECTED_WEST).build();
 
     private static final Vector3f[] powerColors = new Vector3f[16];
+    private static final RedstoneParticleData[] powerParticles = new RedstoneParticleData[16];
     private boolean canProvidePower = true;
 
 
@@ -80,6 +87,7 @@ public class RefinedRedstoneBlock extends Block implements IBlockColor{
             float f2 = MathHelper.clamp(f * f * 0.7F - 0.5F, 0.0F, 1.0F);
             float f3 = MathHelper.clamp(f * f * 0.6F - 0.7F, 0.0F, 1.0F);
             powerColors[i] = new Vector3f(f1, f2, f3);
+            powerParticles[i] = new RedstoneParticleData(f1, f2, f3, 1.0F);
         }
     }
 
@@ -196,22 +204,55 @@ public class RefinedRedstoneBlock extends Block implements IBlockColor{
 
 
     /**
-     * After we place the Block we calculate the Power for this block
+     * Called when the Block is placed in the world. The network around it needs to know about the new member. A Block that
+     * has been moved by a piston is placed over the moving piston, and is handled together with all other moved Blocks.
      *
      * @param state The state of the Block
-     * @param facing ?
-     * @param facingState ?
      * @param world The World the Block is in
-     * @param currentPos The Position of the Block
-     * @param facingPos ?
-     * @return The new BlockState with the updated Power
+     * @param pos The Position of the Block
+     * @param oldState The state of the Block that was there before
+     * @param isMoving If the Block is moved by a piston
      */
     @SuppressWarnings("deprecation")
     @Override
-    @NotNull
-    public BlockState updatePostPlacement(@NotNull BlockState state, @NotNull Direction facing, @NotNull BlockState facingState, @NotNull IWorld world, @NotNull BlockPos currentPos, @NotNull BlockPos facingPos) {
-        updateNetworkPower((World) world, currentPos);
-        return world.getBlockState(currentPos);
+    public void onBlockAdded(@NotNull BlockState state, @NotNull World world, @NotNull BlockPos pos, BlockState oldState, boolean isMoving) {
+        if (!world.isRemote && !oldState.isIn(this)) {
+            if (isMoving || oldState.isIn(Blocks.MOVING_PISTON)) {
+                NetworkManager.get(world).onWireArrived(pos);
+            } else {
+                NetworkManager.get(world).onWireAdded(pos);
+            }
+        }
+    }
+
+
+    /**
+     * Called when the Block is replaced by another one (e.g. when it's broken or pushed away by a piston). Just changing the
+     * power or the connections of the Block also ends up here, which is ignored.
+     *
+     * @param state The state of the Block
+     * @param world The World the Block is in
+     * @param pos The Position of the Block
+     * @param newState The state of the Block that replaces this one
+     * @param isMoving If the Block is moved by a piston
+     */
+    @SuppressWarnings("deprecation")
+    @Override
+    public void onReplaced(@NotNull BlockState state, @NotNull World world, @NotNull BlockPos pos, BlockState newState, boolean isMoving) {
+        super.onReplaced(state, world, pos, newState, isMoving);
+        if (!world.isRemote && !newState.isIn(this)) {
+            if (ConfigHandler.CHUNK_POWER_STORAGE.get()) {
+                ChunkPowerStorage storage = ChunkPowerStorage.get(world.getChunkAt(pos));
+                if (storage != null) {
+                    storage.set(pos, 0);
+                }
+            }
+            if (isMoving) {
+                NetworkManager.get(world).onWireDeparted(pos);
+            } else {
+                NetworkManager.get(world).onWireRemoved(pos);
+            }
+        }
     }
 
 
@@ -222,8 +263,9 @@ public class RefinedRedstoneBlock extends Block implements IBlockColor{
 
     /** Will be called on an BlockUpdate (e.g. new Block placed next to it)
      *
-     * This method will try to recalculate the Power of the whole Network. If we place a new power source which is already
-     * stronger than the current level, we can just update the power of the whole network and spare some computing time.
+     * Since we have the same power on all connected RefinedRedstoneBlocks, we always update our power according to all connected
+     * Blocks, which we labeled as a "Network". The {@link NetworkManager} keeps track of the inputs of each Network, so we only
+     * have to tell it which input might have changed.
      *
      * @param state Out BlockState
      * @param world The world the Block is in
@@ -237,12 +279,7 @@ public class RefinedRedstoneBlock extends Block implements IBlockColor{
     public void neighborChanged(@NotNull BlockState state, World world, @NotNull BlockPos pos, @NotNull Block block, @NotNull BlockPos fromPos, boolean isMoving) {
         if (!world.isRemote && !(world.getBlockState(fromPos).getBlock() instanceof RefinedRedstoneBlock)) {
             if (state.isValidPosition(world, pos)) {
-                Direction directionToSource = Direction.getFacingFromVector(pos.subtract(fromPos).getX(), pos.subtract(fromPos).getY(), pos.subtract(fromPos).getZ());
-                if (world.getRedstonePower(fromPos, directionToSource) > state.get(POWER)) {
-                    setNetworkPower(world, pos, world.getRedstonePower(fromPos, directionToSource));
-                } else {
-                    updateNetworkPower(world, pos);
-                }
+                NetworkManager.get(world).onInputChanged(pos, fromPos);
             } else {
                 spawnDrops(state, world, pos);
                 world.removeBlock(pos, false);
@@ -251,79 +288,59 @@ public class RefinedRedstoneBlock extends Block implements IBlockColor{
     }
 
 
-    /** Since we have the same power on all connected RefinedRedstoneBlocks, we always update our power according to all connected
-     * Blocks, which we labeled as a "Network"
+    /** Read the power a Block provides to us on one side, ignoring the power of all RefinedRedstoneBlocks.
      *
-     * 1 - First we basically set the power of the to 0 by setting {@link RefinedRedstoneBlock#canProvidePower} to false
-     * 2 - We then find the maximum power of all Blocks in the Network
-     * 3 - After that, set the power accordingly and turn {@link RefinedRedstoneBlock#canProvidePower} back on.
+     * While reading, {@link RefinedRedstoneBlock#canProvidePower} is set to false. Otherwise a solid Block that is powered by
+     * the Network itself would count as an input and the Network could never turn off again.
      *
      * @param world The world the Block is in
-     * @param pos The Position of the Block (Used as an origin for the network)
+     * @param pos The Position of this Block
+     * @param direction The side we want to read
+     * @return The power of the input on that side
      */
-    private void updateNetworkPower(World world, BlockPos pos) {
+    public int getInputPower(World world, BlockPos pos, Direction direction) {
         canProvidePower = false;
-
-        int highestPower = getAllBlocksInNetwork(world, pos).stream()
-                .map(blockPos -> getStrongestSignal(world, blockPos)).max(Integer::compareTo).orElse(0);
-
-        setNetworkPower(world, pos, highestPower);
-        canProvidePower = true;
+        try {
+            return world.getRedstonePower(pos.offset(direction), direction.getOpposite());
+        } finally {
+            canProvidePower = true;
+        }
     }
 
 
-    /** Set the Power of every Block in the Network
-     * @param world The World the Block is in
-     * @param pos The Position of one of the Blocks
-     * @param power The Power to set those Blocks to
-     */
-    private void setNetworkPower(World world, BlockPos pos, int power) {
-        for (BlockPos position : getAllBlocksInNetwork(world, pos)) {
-            world.setBlockState(position, world.getBlockState(pos).with(POWER, power));
+    /** The same as {@link RefinedRedstoneBlock#getInputPower(World, BlockPos, Direction)}, reading through a {@link BlockStateCache} */
+    public int getInputPower(BlockStateCache cache, BlockPos pos, Direction direction) {
+        canProvidePower = false;
+        try {
+            return cache.getRedstonePower(pos.offset(direction), direction.getOpposite());
+        } finally {
+            canProvidePower = true;
         }
     }
 
 
-    /** Return the Position of all Connected RefinedRedstoneBlocks
-     * @param world The World the Block is in
-     * @param pos The Position of one of the Blocks in the Network
-     * @return An ArrayList with all BlockPositions
+    /**
+     * The current power of a wire. With {@link ConfigHandler#CHUNK_POWER_STORAGE} it is kept in the {@link ChunkPowerStorage}
+     * of the chunk on the server instead of the block state
+     *
+     * @param reader Where the wire is. Readers other than a server world (e.g. during world generation) fall back to the block state
+     * @param pos The Position of the wire
+     * @param state The State of the wire
+     * @return The power of the wire
      */
-    private List<BlockPos> getAllBlocksInNetwork(World world, BlockPos pos) {
-        List<BlockPos> positions = new ArrayList<>();
-        Queue<BlockPos> positionsToVisit = new ArrayDeque<>();
-        positions.add(pos);
-        positionsToVisit.add(pos);
-
-        while (positionsToVisit.size() > 0) {
-            BlockPos current = positionsToVisit.remove();
-
-            // Loop over every neighbor and add them to both lists if they aren't/weren't already in there.
-            for (Direction direction : Direction.values()) {
-                BlockPos neighborPos = current.offset(direction);
-                if (world.getBlockState(neighborPos).isIn(BlockRegister.REFINED_REDSTONE.get()) && !positions.contains(neighborPos)){
-                    positionsToVisit.add(neighborPos);
-                    positions.add(neighborPos);
-                }
-            }
+    public static int getPower(IBlockReader reader, BlockPos pos, BlockState state) {
+        if (ConfigHandler.CHUNK_POWER_STORAGE.get() && reader instanceof World && !((World) reader).isRemote) {
+            return ChunkPowerStorage.getPower((World) reader, pos);
         }
-
-        return positions;
+        return state.get(POWER);
     }
 
 
-    private int getStrongestSignal(World world, BlockPos pos) {
-         return Arrays.stream(Direction.values())
-                 .map(direction -> world.getRedstonePower(pos.offset(direction), direction.getOpposite()))
-                 .max(Integer::compareTo).orElse(0);
-    }
-    
-
     /** Get the Strong Power of the Block */
     @SuppressWarnings("deprecation")
     @Override
     public int getStrongPower(@NotNull BlockState blockState, @NotNull IBlockReader blockAccess, @NotNull BlockPos pos, @NotNull Direction side) {
-        return canProvidePower ? blockState.get(POWER) : 0;
+        return canProvidePower ? getPower(blockAccess, pos, blockState) : 0;
     }
 
 
@@ -332,7 +349,7 @@ public class RefinedRedstoneBlock extends Block implements IBlockColor{
     @Override
     public int getWeakPower(@NotNull BlockState blockState, @NotNull IBlockReader blockAccess, @NotNull BlockPos pos, @NotNull Direction side) {
         if (canProvidePower && blockState.get(DIRECTION_TO_PROPERTY.get(side))) {
-            return blockState.get(POWER);
+            return getPower(blockAccess, pos, blockState);
         }
 
         return 0;
@@ -365,36 +382,48 @@ public class RefinedRedstoneBlock extends Block implements IBlockColor{
      */
     @Override
     public int getColor(BlockState state, @Nullable IBlockDisplayReader blockDisplayReader, @Nullable BlockPos blockPos, int tintIndex) {
-        Vector3f vector3f = powerColors[state.get(POWER)];
+        Vector3f vector3f = powerColors[blockPos != null && blockDisplayReader != null ? ClientPowerMap.getTintPower(blockDisplayReader, blockPos, state) : state.get(POWER)];
         return MathHelper.rgb(vector3f.getX(), vector3f.getY(), vector3f.getZ());
     }
 
 
+    /** The color of a wire with the given power, as RGB between 0 and 1 */
+    public static Vector3f getPowerColor(int power) {
+        return powerColors[power];
+    }
+
+
     @OnlyIn(Dist.CLIENT)
-    private void spawnPoweredParticle(World world, Random rand, BlockPos pos, Vector3f rgbVector, Direction directionFrom, Direction directionTo, float minChance, float maxChance) {
+    private void spawnPoweredParticle(World world, Random rand, BlockPos pos, RedstoneParticleData particle, Direction directionFrom, Direction directionTo, float minChance, float maxChance) {
         float f = maxChance - minChance;
-        if (!(rand.nextFloat() >= 0.2F * f)) {
+        if (!(rand.nextFloat() >= 0.2F * f) && ParticleBudget.tryAcquire(pos, rand)) {
             float f2 = minChance + f * rand.nextFloat();
             double d0 = 0.5D + (double)(0.4375F * (float)directionFrom.getXOffset()) + (double)(f2 * (float)directionTo.getXOffset());
             double d1 = 0.5D + (double)(0.4375F * (float)directionFrom.getYOffset()) + (double)(f2 * (float)directionTo.getYOffset());
             double d2 = 0.5D + (double)(0.4375F * (float)directionFrom.getZOffset()) + (double)(f2 * (float)directionTo.getZOffset());
-            world.addParticle(new RedstoneParticleData(rgbVector.getX(), rgbVector.getY(), rgbVector.getZ(), 1.0F), (double)pos.getX() + d0, (double)pos.getY() + d1, (double)pos.getZ() + d2, 0.0D, 0.0D, 0.0D);
+            world.addParticle(particle, (double)pos.getX() + d0, (double)pos.getY() + d1, (double)pos.getZ() + d2, 0.0D, 0.0D, 0.0D);
         }
     }
 
     /**
      * Called periodically clientside on blocks near the player to show effects (like furnace fire particles). Note that
-     * this method  will always be called regardless of whether the block can receive random update ticks
+     * this method  will always be called regardless of whether the block can receive random update ticks <br><br>
+     *
+     * The particles are limited by the {@link ParticleBudget}, so large powered builds don't flood the client with them.
      */
 
     @OnlyIn(Dist.CLIENT)
     @Override
     public void animateTick(BlockState state, @NotNull World world, @NotNull BlockPos pos, @NotNull Random rand) {
-        int i = state.get(POWER);
+        if (ParticleBudget.isExhausted()) {
+            return;
+        }
+
+        int i = ClientPowerMap.getPower(pos, state);
         if (i != 0) {
             for(Direction direction : Direction.values()) {
                 if (state.get(DIRECTION_TO_PROPERTY.get(direction))) {
-                    spawnPoweredParticle(world, rand, pos, powerColors[i], direction, Direction.UP, 0.0f, 0.5f);
+                    spawnPoweredParticle(world, rand, pos, powerParticles[i], direction, Direction.UP, 0.0f, 0.5f);
                 }
             }
 
@@ -0,0 +1,158 @@
+package okaghana.refinedredstone.block;
+
+import net.minecraft.block.AbstractBlock;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.material.Material;
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.item.BlockItemUseContext;
+import net.minecraft.state.DirectionProperty;
+import net.minecraft.state.IntegerProperty;
+import net.minecraft.state.StateContainer;
+import net.minecraft.state.properties.BlockStateProperties;
+import net.minecraft.util.ActionResultType;
+import net.minecraft.util.Direction;
+import net.minecraft.util.Hand;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.BlockRayTraceResult;
+import net.minecraft.util.math.shapes.ISelectionContext;
+import net.minecraft.util.math.shapes.VoxelShape;
+import net.minecraft.world.IBlockReader;
+import net.minecraft.world.World;
+import net.minecraft.world.server.ServerWorld;
+import okaghana.refinedredstone.engine.InputConditioner;
+import okaghana.refinedredstone.setup.ConfigHandler;
+import org.jetbrains.annotations.NotNull;
+
+import javax.annotation.Nullable;
+import java.util.Random;
+
+/**
+ * An adapter between a noisy signal (e.g. a vanilla clock) and a Refined Redstone network. <br><br>
+ *
+ * Like a repeater it reads the signal behind it and outputs it in front, but it only takes a new value once per window:
+ * the first change schedules a tick {@link SignalConditioner#WINDOW} redstone ticks later, and whatever the input is by
+ * then becomes the output. Everything that flapped in between is coalesced into that one change, so the network behind
+ * it recomputes at most once per window. Changes smaller than {@link ConfigHandler#INPUT_HYSTERESIS} are ignored.
+ * Right-clicking cycles through the window sizes.
+ */
+public class SignalConditioner extends Block {
+
+    public static final AbstractBlock.Properties PROPERTIES = Block.Properties.create(Material.ROCK).hardnessAndResistance(0.05f).doesNotBlockMovement().harvestLevel(0);
+
+    public static final DirectionProperty FACING = BlockStateProperties.HORIZONTAL_FACING;
+    public static final IntegerProperty WINDOW = IntegerProperty.create("window", 1, 8);
+    public static final IntegerProperty POWER = BlockStateProperties.POWER_0_15;
+
+    public SignalConditioner() {
+        this(PROPERTIES);
+    }
+
+    public SignalConditioner(Properties properties) {
+        super(properties);
+        setDefaultState(getDefaultState().with(FACING, Direction.NORTH).with(WINDOW, 1).with(POWER, 0));
+    }
+
+    @SuppressWarnings("deprecation")
+    @NotNull
+    @Override
+    public VoxelShape getShape(@NotNull BlockState state, @NotNull IBlockReader worldIn, @NotNull BlockPos pos, @NotNull ISelectionContext context) {
+        return Block.makeCuboidShape(0, 0, 0, 16, 2, 16);
+    }
+
+    @Override
+    protected void fillStateContainer(StateContainer.Builder<Block, BlockState> builder) {
+        builder.add(FACING, WINDOW, POWER);
+    }
+
+    @Nullable
+    @Override
+    public BlockState getStateForPlacement(BlockItemUseContext context) {
+        return getDefaultState().with(FACING, context.getPlacementHorizontalFacing().getOpposite());
+    }
+
+
+    // ---------------------------------------- //
+    //                Interaction               //
+    // ---------------------------------------- //
+
+    @SuppressWarnings("deprecation")
+    @NotNull
+    @Override
+    public ActionResultType onBlockActivated(@NotNull BlockState state, @NotNull World world, @NotNull BlockPos pos, PlayerEntity player, @NotNull Hand hand, @NotNull BlockRayTraceResult hit) {
+        if (!player.abilities.allowEdit) {
+            return ActionResultType.PASS;
+        }
+
+        world.setBlockState(pos, state.func_235896_a_(WINDOW), 3);
+        return world.isRemote ? ActionResultType.SUCCESS : ActionResultType.CONSUME;
+    }
+
+
+    // ---------------------------------------- //
+    //               Power Logic                //
+    // ---------------------------------------- //
+
+    @SuppressWarnings("deprecation")
+    @Override
+    public void onBlockAdded(@NotNull BlockState state, @NotNull World world, @NotNull BlockPos pos, @NotNull BlockState oldState, boolean isMoving) {
+        scheduleUpdate(state, world, pos);
+    }
+
+    @SuppressWarnings("deprecation")
+    @Override
+    public void neighborChanged(@NotNull BlockState state, @NotNull World world, @NotNull BlockPos pos, @NotNull Block block, @NotNull BlockPos fromPos, boolean isMoving) {
+        if (getInputPower(state, world, pos) != state.get(POWER)) {
+            scheduleUpdate(state, world, pos);
+        }
+    }
+
+    /** The window is over: take whatever the input is now */
+    @SuppressWarnings("deprecation")
+    @Override
+    public void tick(@NotNull BlockState state, @NotNull ServerWorld world, @NotNull BlockPos pos, @NotNull Random rand) {
+        int input = getInputPower(state, world, pos);
+        if (InputConditioner.passesHysteresis(state.get(POWER), input, ConfigHandler.INPUT_HYSTERESIS.get())) {
+            world.setBlockState(pos, state.with(POWER, input), 2);
+            notifyOutput(state, world, pos);
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    @Override
+    public boolean canProvidePower(@NotNull BlockState state) {
+        return true;
+    }
+
+    @SuppressWarnings("deprecation")
+    @Override
+    public int getWeakPower(@NotNull BlockState blockState, @NotNull IBlockReader blockAccess, @NotNull BlockPos pos, @NotNull Direction side) {
+        return blockState.get(FACING) == side ? blockState.get(POWER) : 0;
+    }
+
+    @SuppressWarnings("deprecation")
+    @Override
+    public int getStrongPower(@NotNull BlockState blockState, @NotNull IBlockReader blockAccess, @NotNull BlockPos pos, @NotNull Direction side) {
+        return getWeakPower(blockState, blockAccess, pos, side);
+    }
+
+    // The signal arrives from the back of the block, i.e. the side FACING points to
+    private int getInputPower(BlockState state, World world, BlockPos pos) {
+        Direction facing = state.get(FACING);
+        return world.getRedstonePower(pos.offset(facing), facing);
+    }
+
+    private void scheduleUpdate(BlockState state, World world, BlockPos pos) {
+        if (!world.isRemote && !world.getPendingBlockTicks().isTickPending(pos, this)) {
+            world.getPendingBlockTicks().scheduleTick(pos, this, state.get(WINDOW) * 2);
+        }
+    }
+
+    // Update the block in front and its neighbors, the same way a repeater does
+    private void notifyOutput(BlockState state, World world, BlockPos pos) {
+        Direction output = state.get(FACING).getOpposite();
+        BlockPos front = pos.offset(output);
+        world.neighborChanged(front, this, pos);
+        world.notifyNeighborsOfStateExcept(front, this, output.getOpposite());
+    }
+}
@@ -0,0 +1,110 @@
+package okaghana.refinedredstone.block;
+
+import net.minecraft.block.AbstractBlock;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.material.Material;
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.state.IntegerProperty;
+import net.minecraft.state.StateContainer;
+import net.minecraft.state.properties.BlockStateProperties;
+import net.minecraft.util.ActionResultType;
+import net.minecraft.util.Direction;
+import net.minecraft.util.Hand;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.BlockRayTraceResult;
+import net.minecraft.util.text.StringTextComponent;
+import net.minecraft.world.IBlockReader;
+import net.minecraft.world.World;
+import net.minecraft.world.server.ServerWorld;
+import okaghana.refinedredstone.circuit.ChannelRegistry;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Outputs the power of its channel (the strongest {@link WirelessTransmitter} on it) to all sides, like a redstone
+ * block. <br><br>
+ *
+ * The receiver doesn't look at the transmitters itself: the {@link ChannelRegistry} sets the power of all receivers of a
+ * channel at the end of the tick in which the channel changed. Right-clicking switches to the next channel, sneaking
+ * while doing so to the previous one.
+ */
+public class WirelessReceiver extends Block {
+
+    public static final AbstractBlock.Properties PROPERTIES = Block.Properties.create(Material.ROCK).hardnessAndResistance(1.5f).harvestLevel(0);
+
+    public static final IntegerProperty CHANNEL = WirelessTransmitter.CHANNEL;
+    public static final IntegerProperty POWER = BlockStateProperties.POWER_0_15;
+
+    public WirelessReceiver() {
+        this(PROPERTIES);
+    }
+
+    public WirelessReceiver(Properties properties) {
+        super(properties);
+        setDefaultState(getDefaultState().with(CHANNEL, 0).with(POWER, 0));
+    }
+
+    @Override
+    protected void fillStateContainer(StateContainer.Builder<Block, BlockState> builder) {
+        builder.add(CHANNEL, POWER);
+    }
+
+
+    // ---------------------------------------- //
+    //                Interaction               //
+    // ---------------------------------------- //
+
+    @SuppressWarnings("deprecation")
+    @NotNull
+    @Override
+    public ActionResultType onBlockActivated(@NotNull BlockState state, @NotNull World world, @NotNull BlockPos pos, PlayerEntity player, @NotNull Hand hand, @NotNull BlockRayTraceResult hit) {
+        if (!player.abilities.allowEdit) {
+            return ActionResultType.PASS;
+        }
+
+        int channel = WirelessTransmitter.nextChannel(state.get(CHANNEL), player.isSneaking());
+        if (!world.isRemote) {
+            int power = ChannelRegistry.get((ServerWorld) world).addReceiver(pos, channel);
+            world.setBlockState(pos, state.with(CHANNEL, channel).with(POWER, power), 3);
+            player.sendStatusMessage(new StringTextComponent("Channel " + channel), true);
+        }
+        return world.isRemote ? ActionResultType.SUCCESS : ActionResultType.CONSUME;
+    }
+
+
+    // ---------------------------------------- //
+    //               Power Logic                //
+    // ---------------------------------------- //
+
+    @SuppressWarnings("deprecation")
+    @Override
+    public void onBlockAdded(@NotNull BlockState state, @NotNull World world, @NotNull BlockPos pos, @NotNull BlockState oldState, boolean isMoving) {
+        if (!world.isRemote && !oldState.isIn(this)) {
+            int power = ChannelRegistry.get((ServerWorld) world).addReceiver(pos, state.get(CHANNEL));
+            if (state.get(POWER) != power) {
+                world.setBlockState(pos, state.with(POWER, power), 3);
+            }
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    @Override
+    public void onReplaced(@NotNull BlockState state, @NotNull World world, @NotNull BlockPos pos, @NotNull BlockState newState, boolean isMoving) {
+        if (!world.isRemote && !newState.isIn(this)) {
+            ChannelRegistry.get((ServerWorld) world).removeReceiver(pos);
+        }
+        super.onReplaced(state, world, pos, newState, isMoving);
+    }
+
+    @SuppressWarnings("deprecation")
+    @Override
+    public boolean canProvidePower(@NotNull BlockState state) {
+        return true;
+    }
+
+    @SuppressWarnings("deprecation")
+    @Override
+    public int getWeakPower(@NotNull BlockState blockState, @NotNull IBlockReader blockAccess, @NotNull BlockPos pos, @NotNull Direction side) {
+        return blockState.get(POWER);
+    }
+}
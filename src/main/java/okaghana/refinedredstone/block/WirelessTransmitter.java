@@ -0,0 +1,117 @@
+package okaghana.refinedredstone.block;
+
+import net.minecraft.block.AbstractBlock;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.material.Material;
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.state.IntegerProperty;
+import net.minecraft.state.StateContainer;
+import net.minecraft.state.properties.BlockStateProperties;
+import net.minecraft.util.ActionResultType;
+import net.minecraft.util.Hand;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.BlockRayTraceResult;
+import net.minecraft.util.text.StringTextComponent;
+import net.minecraft.world.World;
+import net.minecraft.world.server.ServerWorld;
+import okaghana.refinedredstone.circuit.ChannelRegistry;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Sends the redstone signal it receives to every {@link WirelessReceiver} on the same channel of the dimension, without
+ * a wire in between. <br><br>
+ *
+ * The level of the transmitter is kept in the {@link ChannelRegistry}, which also knows it while the chunk is unloaded.
+ * Right-clicking switches to the next channel, sneaking while doing so to the previous one.
+ */
+public class WirelessTransmitter extends Block {
+
+    public static final AbstractBlock.Properties PROPERTIES = Block.Properties.create(Material.ROCK).hardnessAndResistance(1.5f).harvestLevel(0);
+
+    public static final int CHANNELS = 64;
+    public static final IntegerProperty CHANNEL = IntegerProperty.create("channel", 0, CHANNELS - 1);
+    public static final IntegerProperty POWER = BlockStateProperties.POWER_0_15;
+
+    public WirelessTransmitter() {
+        this(PROPERTIES);
+    }
+
+    public WirelessTransmitter(Properties properties) {
+        super(properties);
+        setDefaultState(getDefaultState().with(CHANNEL, 0).with(POWER, 0));
+    }
+
+    @Override
+    protected void fillStateContainer(StateContainer.Builder<Block, BlockState> builder) {
+        builder.add(CHANNEL, POWER);
+    }
+
+
+    // ---------------------------------------- //
+    //                Interaction               //
+    // ---------------------------------------- //
+
+    @SuppressWarnings("deprecation")
+    @NotNull
+    @Override
+    public ActionResultType onBlockActivated(@NotNull BlockState state, @NotNull World world, @NotNull BlockPos pos, PlayerEntity player, @NotNull Hand hand, @NotNull BlockRayTraceResult hit) {
+        if (!player.abilities.allowEdit) {
+            return ActionResultType.PASS;
+        }
+
+        int channel = nextChannel(state.get(CHANNEL), player.isSneaking());
+        if (!world.isRemote) {
+            ChannelRegistry registry = ChannelRegistry.get((ServerWorld) world);
+            registry.removeTransmitter(pos, state.get(CHANNEL));
+            registry.setTransmitter(pos, channel, state.get(POWER));
+            world.setBlockState(pos, state.with(CHANNEL, channel), 2);
+            player.sendStatusMessage(new StringTextComponent("Channel " + channel), true);
+        }
+        return world.isRemote ? ActionResultType.SUCCESS : ActionResultType.CONSUME;
+    }
+
+    /** The channel after cycling forwards or backwards */
+    static int nextChannel(int channel, boolean backwards) {
+        return (channel + (backwards ? CHANNELS - 1 : 1)) % CHANNELS;
+    }
+
+
+    // ---------------------------------------- //
+    //               Power Logic                //
+    // ---------------------------------------- //
+
+    @SuppressWarnings("deprecation")
+    @Override
+    public void onBlockAdded(@NotNull BlockState state, @NotNull World world, @NotNull BlockPos pos, @NotNull BlockState oldState, boolean isMoving) {
+        if (!world.isRemote && !oldState.isIn(this)) {
+            update(state, world, pos);
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    @Override
+    public void neighborChanged(@NotNull BlockState state, @NotNull World world, @NotNull BlockPos pos, @NotNull Block block, @NotNull BlockPos fromPos, boolean isMoving) {
+        if (!world.isRemote) {
+            update(state, world, pos);
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    @Override
+    public void onReplaced(@NotNull BlockState state, @NotNull World world, @NotNull BlockPos pos, @NotNull BlockState newState, boolean isMoving) {
+        if (!world.isRemote && !newState.isIn(this)) {
+            ChannelRegistry.get((ServerWorld) world).removeTransmitter(pos, state.get(CHANNEL));
+        }
+        super.onReplaced(state, world, pos, newState, isMoving);
+    }
+
+    // Hand the level of the input to the registry, which only does something when the channel power changes
+    private void update(BlockState state, World world, BlockPos pos) {
+        int level = world.getRedstonePowerFromNeighbors(pos);
+        ChannelRegistry.get((ServerWorld) world).setTransmitter(pos, state.get(CHANNEL), level);
+        if (state.get(POWER) != level) {
+            world.setBlockState(pos, state.with(POWER, level), 2);
+        }
+    }
+}
@@ -19,6 +19,7 @@ import net.minecraftforge.client.model.data.IModelData;
 import net.minecraftforge.client.model.data.ModelDataMap;
 import net.minecraftforge.client.model.data.ModelProperty;
 import okaghana.refinedredstone.block.RefinedRedstoneBlock;
+import okaghana.refinedredstone.profiling.Profiling;
 import okaghana.refinedredstone.setup.BlockRegister;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
@@ -29,6 +30,8 @@ public class RefinedRedstoneBakedModel implements IDynamicBakedModel {
     // Holds the identifiers for the ModelData which stores which parts of the model need to be rendered
     // The first key is the side of the Block, the second which part (the core or a "arm")
     public final Table<Direction, ConnectionPart, ModelProperty<Boolean>> modelProperties;
+    // The packed position of the Block, only used for profiling getQuads
+    public final ModelProperty<Long> positionProperty = new ModelProperty<>();
 
     public enum ConnectionPart {
         CENTER, UP, DOWN, LEFT, RIGHT;
@@ -111,15 +114,20 @@ public class RefinedRedstoneBakedModel implements IDynamicBakedModel {
     @Override
     @NotNull
     public IModelData getModelData(@NotNull IBlockDisplayReader world, @NotNull BlockPos pos, @NotNull BlockState state, @NotNull IModelData tileData) {
+        long profilingStart = Profiling.begin();
         ModelDataMap.Builder builder = new ModelDataMap.Builder();
+        int visited = 0;
 
         for (Direction direction : Direction.values()) {
             Map<ConnectionPart, Boolean> connections = getConnectionsForDirection(state, pos, world, direction);
             for (Map.Entry<ConnectionPart, Boolean> part : connections.entrySet()) {
                 builder.withInitial(modelProperties.get(direction, part.getKey()), part.getValue());
             }
+            visited += connections.size();
         }
+        builder.withInitial(positionProperty, pos.toLong());
 
+        Profiling.modelData(profilingStart, pos.toLong(), visited);
         return builder.build();
     }
 
@@ -187,6 +195,7 @@ public class RefinedRedstoneBakedModel implements IDynamicBakedModel {
     @Override
     @NotNull
     public List<BakedQuad> getQuads(@Nullable BlockState state, @Nullable Direction side, @NotNull Random rand, @NotNull IModelData extraData) {
+        long profilingStart = Profiling.begin();
         List<BakedQuad> quads = new ArrayList<>();
 
         for (Direction direction : Direction.values()){
@@ -202,6 +211,8 @@ public class RefinedRedstoneBakedModel implements IDynamicBakedModel {
             }
         }
 
+        Long pos = extraData.getData(positionProperty);
+        Profiling.modelQuads(profilingStart, pos == null ? 0 : pos, quads.size());
         return quads;
     }
 
@@ -0,0 +1,36 @@
+package okaghana.refinedredstone.capability;
+
+import net.minecraft.nbt.CompoundNBT;
+import net.minecraft.util.Direction;
+import net.minecraftforge.common.capabilities.Capability;
+import net.minecraftforge.common.capabilities.ICapabilitySerializable;
+import net.minecraftforge.common.util.LazyOptional;
+import org.jetbrains.annotations.NotNull;
+
+import javax.annotation.Nullable;
+
+// Attaches a ChunkPowerStorage to a chunk and saves it with the chunk
+public class ChunkPowerProvider implements ICapabilitySerializable<CompoundNBT> {
+
+    private final ChunkPowerStorage storage = new ChunkPowerStorage();
+    private final LazyOptional<ChunkPowerStorage> optional = LazyOptional.of(() -> storage);
+
+
+    @NotNull
+    @Override
+    public <T> LazyOptional<T> getCapability(@NotNull Capability<T> cap, @Nullable Direction side) {
+        return cap == ChunkPowerStorage.CAPABILITY ? optional.cast() : LazyOptional.empty();
+    }
+
+
+    @Override
+    public CompoundNBT serializeNBT() {
+        return storage.serializeNBT();
+    }
+
+
+    @Override
+    public void deserializeNBT(CompoundNBT nbt) {
+        storage.deserializeNBT(nbt);
+    }
+}
@@ -0,0 +1,176 @@
+package okaghana.refinedredstone.capability;
+
+import net.minecraft.nbt.CompoundNBT;
+import net.minecraft.nbt.INBT;
+import net.minecraft.nbt.ListNBT;
+import net.minecraft.util.Direction;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.NibbleArray;
+import net.minecraftforge.common.capabilities.Capability;
+import net.minecraftforge.common.capabilities.CapabilityInject;
+import net.minecraftforge.common.capabilities.CapabilityManager;
+import net.minecraftforge.common.util.Constants;
+import okaghana.refinedredstone.setup.ConfigHandler;
+
+import javax.annotation.Nullable;
+import java.util.function.BiConsumer;
+
+/**
+ * The power of all Refined Redstone wires in a chunk, used instead of the POWER of the block state when
+ * {@link ConfigHandler#CHUNK_POWER_STORAGE} is enabled. <br><br>
+ *
+ * Every 16x16x16 section gets a {@link NibbleArray} (the same layout as the light data of the chunk) once a wire in it
+ * is powered, so a power change is a write into an array instead of a {@code setBlockState} with all of its block
+ * updates, packets and re-meshing. The storage is attached to every chunk of a server world and saved together with it.
+ */
+public class ChunkPowerStorage {
+
+    @CapabilityInject(ChunkPowerStorage.class)
+    public static Capability<ChunkPowerStorage> CAPABILITY = null;
+
+    private static final int SECTIONS = 16;
+
+    private final NibbleArray[] sections = new NibbleArray[SECTIONS];
+
+
+    /** Register the capability. Called during the common setup */
+    public static void register() {
+        CapabilityManager.INSTANCE.register(ChunkPowerStorage.class, new Capability.IStorage<ChunkPowerStorage>() {
+            @Override
+            public INBT writeNBT(Capability<ChunkPowerStorage> capability, ChunkPowerStorage instance, Direction side) {
+                return instance.serializeNBT();
+            }
+
+            @Override
+            public void readNBT(Capability<ChunkPowerStorage> capability, ChunkPowerStorage instance, Direction side, INBT nbt) {
+                instance.deserializeNBT((CompoundNBT) nbt);
+            }
+        }, ChunkPowerStorage::new);
+    }
+
+
+    /** The storage of a chunk, or null if the chunk doesn't have one (e.g. because it is a client chunk) */
+    @Nullable
+    public static ChunkPowerStorage get(Chunk chunk) {
+        return chunk.getCapability(CAPABILITY).orElse(null);
+    }
+
+
+    /** The power of the wire at the given position of a server world, 0 if there is no storage */
+    public static int getPower(World world, BlockPos pos) {
+        ChunkPowerStorage storage = get(world.getChunkAt(pos));
+        return storage != null ? storage.get(pos) : 0;
+    }
+
+
+    // ---------------------------------------- //
+    //                 Access                   //
+    // ---------------------------------------- //
+
+    public int get(BlockPos pos) {
+        NibbleArray section = getSection(pos.getY());
+        return section != null ? section.get(pos.getX() & 15, pos.getY() & 15, pos.getZ() & 15) : 0;
+    }
+
+
+    /**
+     * Set the power of a wire
+     *
+     * @return Whether the power changed
+     */
+    public boolean set(BlockPos pos, int power) {
+        int y = pos.getY();
+        if (y < 0 || y >= SECTIONS * 16) {
+            return false;
+        }
+
+        NibbleArray section = sections[y >> 4];
+        if (section == null) {
+            if (power == 0) {
+                return false;
+            }
+            section = new NibbleArray();
+            sections[y >> 4] = section;
+        }
+
+        int x = pos.getX() & 15;
+        int z = pos.getZ() & 15;
+        if (section.get(x, y & 15, z) == power) {
+            return false;
+        }
+        section.set(x, y & 15, z, power);
+        return true;
+    }
+
+
+    /**
+     * Visit every position with a power above 0
+     *
+     * @param chunkX The x coordinate of the chunk the storage belongs to
+     * @param chunkZ The z coordinate of the chunk the storage belongs to
+     * @param consumer Gets the position and its power
+     */
+    public void forEachPowered(int chunkX, int chunkZ, BiConsumer<BlockPos, Integer> consumer) {
+        for (int sectionY = 0; sectionY < SECTIONS; sectionY++) {
+            NibbleArray section = sections[sectionY];
+            if (section == null) {
+                continue;
+            }
+
+            byte[] data = section.getData();
+            for (int index = 0; index < 4096; index++) {
+                int power = (data[index >> 1] >> ((index & 1) << 2)) & 15;
+                if (power != 0) {
+                    consumer.accept(new BlockPos((chunkX << 4) | (index & 15), (sectionY << 4) | (index >> 8), (chunkZ << 4) | ((index >> 4) & 15)), power);
+                }
+            }
+        }
+    }
+
+
+    // ---------------------------------------- //
+    //              Serialization               //
+    // ---------------------------------------- //
+
+    public CompoundNBT serializeNBT() {
+        ListNBT list = new ListNBT();
+        for (int sectionY = 0; sectionY < SECTIONS; sectionY++) {
+            NibbleArray section = sections[sectionY];
+            if (section != null && !section.isEmpty()) {
+                CompoundNBT sectionNBT = new CompoundNBT();
+                sectionNBT.putByte("Y", (byte) sectionY);
+                sectionNBT.putByteArray("Power", section.getData().clone());
+                list.add(sectionNBT);
+            }
+        }
+
+        CompoundNBT nbt = new CompoundNBT();
+        nbt.put("Sections", list);
+        return nbt;
+    }
+
+
+    public void deserializeNBT(CompoundNBT nbt) {
+        ListNBT list = nbt.getList("Sections", Constants.NBT.TAG_COMPOUND);
+        for (int i = 0; i < list.size(); i++) {
+            CompoundNBT sectionNBT = list.getCompound(i);
+            int sectionY = sectionNBT.getByte("Y");
+            byte[] data = sectionNBT.getByteArray("Power");
+            if (sectionY >= 0 && sectionY < SECTIONS && data.length == 2048) {
+                sections[sectionY] = new NibbleArray(data);
+            }
+        }
+    }
+
+
+    // ---------------------------------------- //
+    //                 Helpers                  //
+    // ---------------------------------------- //
+
+    @Nullable
+    private NibbleArray getSection(int y) {
+        return y >= 0 && y < SECTIONS * 16 ? sections[y >> 4] : null;
+    }
+}
@@ -0,0 +1,128 @@
+package okaghana.refinedredstone.circuit;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.util.Direction;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.ChunkSection;
+import okaghana.refinedredstone.engine.PackedPos;
+
+/**
+ * A read cache for the block states of a world that lives for a single network operation (e.g. one traversal). <br><br>
+ *
+ * Traversing a network and reading its inputs looks at the same positions again and again: every wire is checked by
+ * each of its neighbors, and resolving the strong power of a block next to a wire looks at all of its neighbors. Each of
+ * those reads would go through the chunk map of the world and the section of the chunk. The cache keeps the last few
+ * chunks and a map of the states read so far. <br><br>
+ *
+ * The states are not updated when the world changes, so a cache must be dropped before anything is written to the
+ * world. Only the lookups done here are cached: blocks asked for their power still read the world themselves.
+ */
+public class BlockStateCache {
+
+    private static final int CHUNKS = 4;
+    private static final int MAX_STATES = 4096;
+    private static final BlockState VOID_AIR = Blocks.VOID_AIR.getDefaultState();
+    private static final BlockState AIR = Blocks.AIR.getDefaultState();
+
+    private final World world;
+    private final long[] chunkKeys = new long[CHUNKS];
+    private final Chunk[] chunks = new Chunk[CHUNKS];
+    private int nextChunk = 0;
+    private final Long2ObjectOpenHashMap<BlockState> states = new Long2ObjectOpenHashMap<>();
+
+
+    public BlockStateCache(World world) {
+        this.world = world;
+    }
+
+
+    public World getWorld() {
+        return world;
+    }
+
+
+    /** Whether the chunk of the position is loaded */
+    public boolean isLoaded(long pos) {
+        return getChunk(pos) != null;
+    }
+
+
+    /** The state at the packed position. Unloaded positions are void air, like in the world */
+    public BlockState getBlockState(long pos) {
+        BlockState state = states.get(pos);
+        if (state != null) {
+            return state;
+        }
+
+        state = readBlockState(pos);
+        if (states.size() >= MAX_STATES) {
+            states.clear();
+        }
+        states.put(pos, state);
+        return state;
+    }
+
+
+    /**
+     * The same as {@link World#getRedstonePower(BlockPos, Direction)}, but the states of the block and (for strong power)
+     * its neighbors come from the cache
+     */
+    public int getRedstonePower(BlockPos pos, Direction facing) {
+        BlockState state = getBlockState(pos.toLong());
+        int power = state.getWeakPower(world, pos, facing);
+        return state.shouldCheckWeakPower(world, pos, facing) ? Math.max(power, getStrongPowerAround(pos)) : power;
+    }
+
+
+    // ---------------------------------------- //
+    //                 Helpers                  //
+    // ---------------------------------------- //
+
+    // The same as World.getStrongPower(BlockPos): the strongest strong power any neighbor provides to the block
+    private int getStrongPowerAround(BlockPos pos) {
+        int power = 0;
+        for (Direction direction : Direction.values()) {
+            BlockPos neighbor = pos.offset(direction);
+            power = Math.max(power, getBlockState(neighbor.toLong()).getStrongPower(world, neighbor, direction));
+            if (power >= 15) {
+                return power;
+            }
+        }
+        return power;
+    }
+
+    private BlockState readBlockState(long pos) {
+        int y = PackedPos.getY(pos);
+        Chunk chunk = getChunk(pos);
+        if (chunk == null || y < 0 || y >= 256) {
+            return VOID_AIR;
+        }
+
+        ChunkSection section = chunk.getSections()[y >> 4];
+        if (ChunkSection.isEmpty(section)) {
+            return AIR;
+        }
+        return section.getBlockState(PackedPos.getX(pos) & 15, y & 15, PackedPos.getZ(pos) & 15);
+    }
+
+    private Chunk getChunk(long pos) {
+        long key = PackedPos.chunkKey(pos);
+        for (int i = 0; i < CHUNKS; i++) {
+            if (chunks[i] != null && chunkKeys[i] == key) {
+                return chunks[i];
+            }
+        }
+
+        Chunk chunk = world.getChunkProvider().getChunkNow(PackedPos.getX(pos) >> 4, PackedPos.getZ(pos) >> 4);
+        if (chunk != null) {
+            chunkKeys[nextChunk] = key;
+            chunks[nextChunk] = chunk;
+            nextChunk = (nextChunk + 1) % CHUNKS;
+        }
+        return chunk;
+    }
+}
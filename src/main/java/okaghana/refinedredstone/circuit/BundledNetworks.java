@@ -0,0 +1,248 @@
+package okaghana.refinedredstone.circuit;
+
+import net.minecraft.block.BlockState;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import okaghana.refinedredstone.block.BundleAdapter;
+import okaghana.refinedredstone.engine.NetworkGraph;
+import okaghana.refinedredstone.engine.NibbleLanes;
+import okaghana.refinedredstone.engine.PackedPos;
+import okaghana.refinedredstone.engine.WireNetwork;
+import okaghana.refinedredstone.setup.BlockRegister;
+
+import java.util.*;
+
+/**
+ * Keeps track of the networks of bundled Refined Redstone in a server world. <br><br>
+ *
+ * A bundled network carries 16 independent channels, one per dye color. Its power is a single {@code long} with one
+ * {@link NibbleLanes} lane per channel, and so is the input of every {@link BundleAdapter} that feeds a channel into it.
+ * The power of all 16 channels is the lane-wise maximum of all inputs, which costs the same as the power of a single
+ * channel. A network is traversed once for all of its channels, and the adapters next to its members are collected
+ * during that traversal. <br><br>
+ *
+ * Placing or removing a cable drops the networks around it and traverses them again. Everything else (networks after a
+ * restart, networks in freshly loaded chunks) is discovered lazily when an adapter asks for it.
+ */
+public class BundledNetworks {
+
+    private static final Map<World, BundledNetworks> MANAGERS = new WeakHashMap<>();
+
+    private final World world;
+    private final NetworkGraph graph = new NetworkGraph();
+    private final Map<Integer, Bundle> bundles = new HashMap<>();
+    private final Map<Long, Integer> adapterNetworks = new HashMap<>();
+
+
+    private BundledNetworks(World world) {
+        this.world = world;
+    }
+
+
+    /** Get the manager of the given (server) world, creating it if necessary */
+    public static BundledNetworks get(World world) {
+        return MANAGERS.computeIfAbsent(world, BundledNetworks::new);
+    }
+
+    /** Drop the manager of a world that is being unloaded */
+    public static void remove(World world) {
+        MANAGERS.remove(world);
+    }
+
+
+    // ---------------------------------------- //
+    //                  Events                  //
+    // ---------------------------------------- //
+
+    /** A cable has been placed. The networks around it are joined the next time they are needed */
+    public void onCableAdded(BlockPos pos) {
+        long member = pos.toLong();
+        for (int face = 0; face < PackedPos.FACES; face++) {
+            dropNetwork(graph.getNetworkId(PackedPos.offset(member, face)));
+        }
+        refreshAround(member);
+    }
+
+    /** A cable has been removed. Its network might have been split */
+    public void onCableRemoved(BlockPos pos) {
+        long member = pos.toLong();
+        dropNetwork(graph.getNetworkId(member));
+        refreshAround(member);
+    }
+
+    /**
+     * An adapter has been placed, removed, reconfigured, or its outside input changed. Its input is passed on to the
+     * network it is attached to, and the network updates its extracting adapters if a channel changed
+     */
+    public void onAdapterChanged(BlockPos pos) {
+        long adapter = pos.toLong();
+        Integer previous = adapterNetworks.remove(adapter);
+        if (previous != null) {
+            Bundle bundle = bundles.get(previous);
+            if (bundle != null) {
+                bundle.inputs.remove(adapter);
+                bundle.extractors.remove(adapter);
+                recompute(bundle);
+            }
+        }
+
+        BlockState state = world.getBlockState(pos);
+        if (!state.isIn(BlockRegister.BUNDLE_ADAPTER.get())) {
+            return;
+        }
+
+        long cable = PackedPos.offset(adapter, state.get(BundleAdapter.FACING).getOpposite().getIndex());
+        int id = getOrDiscover(cable);
+        if (id != 0) {
+            Bundle bundle = bundles.get(id);
+            attach(bundle, id, adapter, state);
+            recompute(bundle);
+            updateExtractor(adapter, bundle.lanes);
+        } else {
+            // Not attached to a cable (anymore)
+            updateExtractor(adapter, 0);
+        }
+    }
+
+
+    /** The power of all 16 channels of the network of a cable, packed like {@link NibbleLanes}. 0 if it isn't a cable */
+    public long getLanes(BlockPos pos) {
+        int id = getOrDiscover(pos.toLong());
+        return id == 0 ? 0 : bundles.get(id).lanes;
+    }
+
+
+    // ---------------------------------------- //
+    //                Traversal                 //
+    // ---------------------------------------- //
+
+    private int getOrDiscover(long pos) {
+        int id = graph.getNetworkId(pos);
+        if (id != 0) {
+            return id;
+        }
+        if (!isCable(pos)) {
+            return 0;
+        }
+        return discover(pos);
+    }
+
+    /** Find all cables connected to start, and every adapter attached to them */
+    private int discover(long start) {
+        Set<Long> members = new LinkedHashSet<>();
+        Deque<Long> positionsToVisit = new ArrayDeque<>();
+        List<Long> adapters = new ArrayList<>();
+        members.add(start);
+        positionsToVisit.add(start);
+
+        while (!positionsToVisit.isEmpty()) {
+            long current = positionsToVisit.remove();
+            for (int face = 0; face < PackedPos.FACES; face++) {
+                long neighbor = PackedPos.offset(current, face);
+                if (members.contains(neighbor) || !world.isBlockLoaded(BlockPos.fromLong(neighbor))) {
+                    continue;
+                }
+
+                BlockState state = world.getBlockState(BlockPos.fromLong(neighbor));
+                if (state.isIn(BlockRegister.BUNDLED_REFINED_REDSTONE.get())) {
+                    members.add(neighbor);
+                    positionsToVisit.add(neighbor);
+                } else if (state.isIn(BlockRegister.BUNDLE_ADAPTER.get()) && state.get(BundleAdapter.FACING).getIndex() == face) {
+                    // Only adapters with their back to the cable belong to it
+                    adapters.add(neighbor);
+                }
+            }
+        }
+
+        WireNetwork network = graph.create(members);
+        Bundle bundle = new Bundle();
+        bundles.put(network.getId(), bundle);
+        for (long adapter : adapters) {
+            attach(bundle, network.getId(), adapter, world.getBlockState(BlockPos.fromLong(adapter)));
+        }
+
+        // The extractors might still show the power of the networks this one replaced
+        recompute(bundle);
+        for (long extractor : new ArrayList<>(bundle.extractors)) {
+            updateExtractor(extractor, bundle.lanes);
+        }
+        return network.getId();
+    }
+
+    private void attach(Bundle bundle, int id, long adapter, BlockState state) {
+        adapterNetworks.put(adapter, id);
+        if (state.get(BundleAdapter.EXTRACT)) {
+            bundle.extractors.add(adapter);
+        } else {
+            int level = BundleAdapter.getOutsidePower(state, world, BlockPos.fromLong(adapter));
+            bundle.inputs.put(adapter, NibbleLanes.set(0, state.get(BundleAdapter.COLOR).getId(), level));
+        }
+    }
+
+    private void dropNetwork(int id) {
+        if (id == 0) {
+            return;
+        }
+        graph.remove(id);
+        if (bundles.remove(id) != null) {
+            adapterNetworks.values().removeIf(network -> network == id);
+        }
+    }
+
+    // Let the adapters around a changed cable find their (new) network again
+    private void refreshAround(long cable) {
+        for (int face = 0; face < PackedPos.FACES; face++) {
+            long neighbor = PackedPos.offset(cable, face);
+            BlockState state = world.getBlockState(BlockPos.fromLong(neighbor));
+            if (state.isIn(BlockRegister.BUNDLE_ADAPTER.get())) {
+                onAdapterChanged(BlockPos.fromLong(neighbor));
+            } else if (isCable(neighbor) && graph.getNetworkId(neighbor) == 0) {
+                discover(neighbor);
+            }
+        }
+    }
+
+
+    // ---------------------------------------- //
+    //                  Power                   //
+    // ---------------------------------------- //
+
+    /** Fold all inputs into the lanes of the network, and pass a change on to its extracting adapters */
+    private void recompute(Bundle bundle) {
+        long lanes = 0;
+        for (long input : bundle.inputs.values()) {
+            lanes = NibbleLanes.max(lanes, input);
+        }
+
+        if (lanes != bundle.lanes) {
+            bundle.lanes = lanes;
+            for (long extractor : new ArrayList<>(bundle.extractors)) {
+                updateExtractor(extractor, lanes);
+            }
+        }
+    }
+
+    private void updateExtractor(long adapter, long lanes) {
+        BlockPos pos = BlockPos.fromLong(adapter);
+        BlockState state = world.getBlockState(pos);
+        if (state.isIn(BlockRegister.BUNDLE_ADAPTER.get()) && state.get(BundleAdapter.EXTRACT)) {
+            int power = NibbleLanes.get(lanes, state.get(BundleAdapter.COLOR).getId());
+            if (state.get(BundleAdapter.POWER) != power) {
+                world.setBlockState(pos, state.with(BundleAdapter.POWER, power), 3);
+            }
+        }
+    }
+
+    private boolean isCable(long pos) {
+        BlockPos blockPos = BlockPos.fromLong(pos);
+        return world.isBlockLoaded(blockPos) && world.getBlockState(blockPos).isIn(BlockRegister.BUNDLED_REFINED_REDSTONE.get());
+    }
+
+
+    /** What a network knows besides its members */
+    private static class Bundle {
+        private final Map<Long, Long> inputs = new HashMap<>();
+        private final Set<Long> extractors = new LinkedHashSet<>();
+        private long lanes = 0;
+    }
+}
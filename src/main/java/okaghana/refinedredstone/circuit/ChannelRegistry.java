@@ -0,0 +1,267 @@
+package okaghana.refinedredstone.circuit;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntLinkedOpenHashSet;
+import it.unimi.dsi.fastutil.longs.*;
+import net.minecraft.block.BlockState;
+import net.minecraft.nbt.CompoundNBT;
+import net.minecraft.nbt.ListNBT;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.World;
+import net.minecraft.world.server.ServerWorld;
+import net.minecraft.world.storage.WorldSavedData;
+import net.minecraftforge.common.util.Constants;
+import okaghana.refinedredstone.RefinedRedstone;
+import okaghana.refinedredstone.block.WirelessReceiver;
+import okaghana.refinedredstone.engine.InputHistogram;
+import okaghana.refinedredstone.engine.PackedPos;
+import okaghana.refinedredstone.setup.BlockRegister;
+
+/**
+ * All wireless transmitters and receivers of a dimension, grouped by their channel. <br><br>
+ *
+ * Every channel counts the levels of its transmitters in an {@link InputHistogram}, like a network does with its inputs,
+ * so a transmitter that changes costs one bucket move and the power of the channel (the strongest transmitter) is read in
+ * O(1), no matter how many transmitters there are. A channel whose power changed is marked, and at the end of the tick
+ * all of its receivers are set in one batch. <br><br>
+ *
+ * The registry is saved with the dimension. Transmitters in unloaded chunks keep their last level, and receivers in
+ * unloaded chunks are set to the power of their channel when their chunk is loaded again.
+ */
+public class ChannelRegistry extends WorldSavedData {
+
+    public static final String NAME = RefinedRedstone.MODID + "_channels";
+
+    private final Int2ObjectMap<Channel> channels = new Int2ObjectOpenHashMap<>();
+    private final Long2IntMap receiverChannels = new Long2IntOpenHashMap();
+    private final Long2ObjectMap<LongSet> receiversByChunk = new Long2ObjectOpenHashMap<>();
+    private final IntLinkedOpenHashSet changedChannels = new IntLinkedOpenHashSet();
+    private final LongSet loadedChunks = new LongOpenHashSet();
+
+
+    public ChannelRegistry() {
+        super(NAME);
+    }
+
+
+    /** The registry of a dimension */
+    public static ChannelRegistry get(ServerWorld world) {
+        return world.getSavedData().getOrCreate(ChannelRegistry::new, NAME);
+    }
+
+
+    // ---------------------------------------- //
+    //               Transmitters               //
+    // ---------------------------------------- //
+
+    /**
+     * Set the level of a transmitter, registering it if necessary
+     *
+     * @param pos The position of the transmitter
+     * @param channel Its channel
+     * @param level The level of its input
+     */
+    public void setTransmitter(BlockPos pos, int channel, int level) {
+        long packed = pos.toLong();
+        Channel target = channels.computeIfAbsent(channel, Channel::new);
+        int power = target.getPower();
+
+        if (target.transmitters.containsKey(packed)) {
+            target.histogram.move(target.transmitters.get(packed), level);
+        } else {
+            target.histogram.add(level);
+        }
+        target.transmitters.put(packed, (byte) level);
+
+        if (target.getPower() != power) {
+            changedChannels.add(channel);
+        }
+        markDirty();
+    }
+
+    /** Forget a transmitter, e.g. because it was removed or switched to another channel */
+    public void removeTransmitter(BlockPos pos, int channel) {
+        long packed = pos.toLong();
+        Channel target = channels.get(channel);
+        if (target == null || !target.transmitters.containsKey(packed)) {
+            return;
+        }
+
+        int power = target.getPower();
+        target.histogram.remove(target.transmitters.remove(packed));
+        if (target.getPower() != power) {
+            changedChannels.add(channel);
+        }
+        removeIfEmpty(target);
+        markDirty();
+    }
+
+
+    // ---------------------------------------- //
+    //                Receivers                 //
+    // ---------------------------------------- //
+
+    /**
+     * Register a receiver
+     *
+     * @return The current power of the channel
+     */
+    public int addReceiver(BlockPos pos, int channel) {
+        long packed = pos.toLong();
+        removeReceiver(pos);
+        channels.computeIfAbsent(channel, Channel::new).receivers.add(packed);
+        receiverChannels.put(packed, channel);
+        receiversByChunk.computeIfAbsent(PackedPos.chunkKey(packed), key -> new LongOpenHashSet()).add(packed);
+        markDirty();
+        return getPower(channel);
+    }
+
+    public void removeReceiver(BlockPos pos) {
+        long packed = pos.toLong();
+        if (!receiverChannels.containsKey(packed)) {
+            return;
+        }
+
+        long chunk = PackedPos.chunkKey(packed);
+        LongSet inChunk = receiversByChunk.get(chunk);
+        if (inChunk != null && inChunk.remove(packed) && inChunk.isEmpty()) {
+            receiversByChunk.remove(chunk);
+        }
+
+        Channel channel = channels.get(receiverChannels.remove(packed));
+        if (channel != null) {
+            channel.receivers.remove(packed);
+            removeIfEmpty(channel);
+        }
+        markDirty();
+    }
+
+
+    /** The power of a channel: the strongest of its transmitters */
+    public int getPower(int channel) {
+        Channel target = channels.get(channel);
+        return target == null ? 0 : target.getPower();
+    }
+
+
+    // ---------------------------------------- //
+    //                 Updates                  //
+    // ---------------------------------------- //
+
+    /** A chunk has been loaded. Its receivers are brought up to date at the end of the tick */
+    public void onChunkLoad(ChunkPos chunk) {
+        loadedChunks.add(PackedPos.chunkKey(chunk.x, chunk.z));
+    }
+
+
+    /** Called at the end of every tick. Sets the receivers of every channel that changed, and of freshly loaded chunks */
+    public void tick(World world) {
+        for (long chunk : loadedChunks) {
+            LongSet receivers = receiversByChunk.get(chunk);
+            if (receivers != null) {
+                for (long receiver : receivers.toLongArray()) {
+                    updateReceiver(world, receiver, getPower(receiverChannels.get(receiver)));
+                }
+            }
+        }
+        loadedChunks.clear();
+
+        while (!changedChannels.isEmpty()) {
+            Channel channel = channels.get(changedChannels.removeFirstInt());
+            if (channel == null) {
+                continue;
+            }
+
+            int power = channel.getPower();
+            for (long receiver : channel.receivers.toLongArray()) {
+                updateReceiver(world, receiver, power);
+            }
+        }
+    }
+
+
+    private void updateReceiver(World world, long packed, int power) {
+        BlockPos pos = BlockPos.fromLong(packed);
+        if (!world.isBlockLoaded(pos)) {
+            return;
+        }
+
+        BlockState state = world.getBlockState(pos);
+        if (!state.isIn(BlockRegister.WIRELESS_RECEIVER.get())) {
+            // The receiver is gone without being removed properly
+            removeReceiver(pos);
+        } else if (state.get(WirelessReceiver.POWER) != power) {
+            world.setBlockState(pos, state.with(WirelessReceiver.POWER, power), 3);
+        }
+    }
+
+    private void removeIfEmpty(Channel channel) {
+        if (channel.transmitters.isEmpty() && channel.receivers.isEmpty()) {
+            channels.remove(channel.number);
+        }
+    }
+
+
+    // ---------------------------------------- //
+    //                   NBT                    //
+    // ---------------------------------------- //
+
+    @Override
+    public void read(CompoundNBT nbt) {
+        channels.clear();
+        receiverChannels.clear();
+        receiversByChunk.clear();
+
+        ListNBT list = nbt.getList("Channels", Constants.NBT.TAG_COMPOUND);
+        for (int i = 0; i < list.size(); i++) {
+            CompoundNBT tag = list.getCompound(i);
+            Channel channel = channels.computeIfAbsent(tag.getInt("Channel"), Channel::new);
+
+            long[] transmitters = tag.getLongArray("Transmitters");
+            byte[] levels = tag.getByteArray("Levels");
+            for (int j = 0; j < Math.min(transmitters.length, levels.length); j++) {
+                channel.transmitters.put(transmitters[j], levels[j]);
+                channel.histogram.add(levels[j]);
+            }
+
+            for (long receiver : tag.getLongArray("Receivers")) {
+                channel.receivers.add(receiver);
+                receiverChannels.put(receiver, channel.number);
+                receiversByChunk.computeIfAbsent(PackedPos.chunkKey(receiver), key -> new LongOpenHashSet()).add(receiver);
+            }
+        }
+    }
+
+    @Override
+    public CompoundNBT write(CompoundNBT nbt) {
+        ListNBT list = new ListNBT();
+        for (Channel channel : channels.values()) {
+            CompoundNBT tag = new CompoundNBT();
+            tag.putInt("Channel", channel.number);
+            tag.putLongArray("Transmitters", channel.transmitters.keySet().toLongArray());
+            tag.putByteArray("Levels", channel.transmitters.values().toByteArray());
+            tag.putLongArray("Receivers", channel.receivers.toLongArray());
+            list.add(tag);
+        }
+        nbt.put("Channels", list);
+        return nbt;
+    }
+
+
+    private static class Channel {
+        private final int number;
+        private final InputHistogram histogram = new InputHistogram();
+        private final Long2ByteLinkedOpenHashMap transmitters = new Long2ByteLinkedOpenHashMap();
+        private final LongLinkedOpenHashSet receivers = new LongLinkedOpenHashSet();
+
+        private Channel(int number) {
+            this.number = number;
+        }
+
+        private int getPower() {
+            return histogram.max();
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package okaghana.refinedredstone.circuit;
+
+import it.unimi.dsi.fastutil.longs.Long2LongLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2LongMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongList;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.RedstoneWireBlock;
+import net.minecraft.util.Direction;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import net.minecraftforge.common.util.Constants;
+import okaghana.refinedredstone.block.AcceleratedRedstoneWire;
+import okaghana.refinedredstone.engine.DecayField;
+import okaghana.refinedredstone.engine.PackedPos;
+import okaghana.refinedredstone.setup.ConfigHandler;
+
+import java.util.*;
+
+/**
+ * Computes the power of vanilla redstone dust with the machinery of the Refined Redstone networks, instead of the
+ * recursive updates of vanilla. Used by {@link AcceleratedRedstoneWire} unless {@link ConfigHandler#DUST_MODE} is
+ * {@link Mode#VANILLA}. <br><br>
+ *
+ * When the power of a dust has to change, the whole piece of dust connected to it is collected, together with the
+ * outside input of every dust and which dust reads from which (dust steps up and down blocks like vanilla, and these
+ * links can be one-way). The power of every dust is then the vanilla 15-minus-distance level, computed in one pass by
+ * the bucket queue of {@link DecayField#propagate}. Only the dust whose power changed is written, without notifying
+ * anything, and afterwards the blocks around it are notified once each, in the order the signal travels (stronger dust
+ * first). Which blocks are notified depends on the {@link Mode}. <br><br>
+ *
+ * Nothing is cached between updates, since any block placed next to the dust can change how it connects. Placing and
+ * removing dust is left to vanilla, the dust around it then takes care of the rest.
+ */
+public final class DustEngine {
+
+    /**
+     * How much of vanilla dust is taken over. The final power of every dust is the same in every mode, they differ in
+     * which blocks around the dust are notified:
+     * <ul>
+     *     <li>VANILLA: Nothing, the dust behaves exactly like vanilla dust</li>
+     *     <li>COMPATIBLE: Every block vanilla would notify (the neighbors of a changed dust and their neighbors), but each
+     *     of them once per update and after all the dust has its final power. The dust is written with shape updates like
+     *     vanilla does, so observers watching it still fire. Contraptions that depend on the order vanilla updates its
+     *     dust in (e.g. on the location of the dust) may behave differently</li>
+     *     <li>MINIMAL: Only the blocks that can react: the neighbors of a changed dust, and the neighbors of those that
+     *     are solid (the dust powers them). Quasi-connectivity contraptions that rely on the extra updates won't fire.
+     *     The dust is written without shape updates, so observers watching dust don't notice its power changing</li>
+     * </ul>
+     */
+    public enum Mode { VANILLA, COMPATIBLE, MINIMAL }
+
+    // Let the dust ignore itself while its outside input is read, like vanilla does while it updates. Per thread, so
+    // the client (or another server world ticked in parallel) doesn't see the dust without power meanwhile
+    private static final ThreadLocal<Boolean> READING_INPUTS = ThreadLocal.withInitial(() -> false);
+
+    private static final Direction[] HORIZONTAL = { Direction.NORTH, Direction.SOUTH, Direction.WEST, Direction.EAST };
+    // Like vanilla: send the change to the clients and update the shape of the neighbors (which observers react to)
+    private static final int COMPATIBLE_WRITE_FLAGS = Constants.BlockFlags.BLOCK_UPDATE;
+    // Without the shape updates
+    private static final int MINIMAL_WRITE_FLAGS = Constants.BlockFlags.BLOCK_UPDATE | Constants.BlockFlags.UPDATE_NEIGHBORS;
+
+    private DustEngine() { }
+
+
+    /** Whether vanilla dust is handled by the engine */
+    public static boolean isActive() {
+        return ConfigHandler.DUST_MODE.get() != Mode.VANILLA;
+    }
+
+    /**
+     * Whether dust has to give off no power right now, because the engine is reading the outside input of dust on the
+     * current thread
+     */
+    public static boolean isReadingInputs() {
+        return READING_INPUTS.get();
+    }
+
+
+    /**
+     * Something next to a dust changed. If the power of the dust doesn't fit anymore, the dust connected to it is
+     * recomputed, written, and the blocks around it are notified
+     */
+    public static void update(World world, BlockPos pos) {
+        BlockState state = world.getBlockState(pos);
+        if (!isDust(state) || getSignal(world, pos) == state.get(RedstoneWireBlock.POWER)) {
+            // Like vanilla, nothing happens while the power still fits
+            return;
+        }
+
+        Map<Long, Integer> inputs = new HashMap<>();
+        Map<Long, long[]> readers = new HashMap<>();
+        List<Long> members = collect(world, pos.toLong(), inputs, readers);
+        Map<Long, Integer> levels = DecayField.propagate(inputs, member -> readers.getOrDefault(member, new long[0]));
+
+        // Write and notify in the order the signal travels: the strongest dust first
+        members.sort((a, b) -> Integer.compare(levels.getOrDefault(b, 0), levels.getOrDefault(a, 0)));
+        int flags = ConfigHandler.DUST_MODE.get() == Mode.MINIMAL ? MINIMAL_WRITE_FLAGS : COMPATIBLE_WRITE_FLAGS;
+        LongList changed = new LongArrayList();
+        for (long member : members) {
+            BlockPos memberPos = BlockPos.fromLong(member);
+            BlockState memberState = world.getBlockState(memberPos);
+            int power = levels.getOrDefault(member, 0);
+            if (memberState.get(RedstoneWireBlock.POWER) != power) {
+                world.setBlockState(memberPos, memberState.with(RedstoneWireBlock.POWER, power), flags);
+                changed.add(member);
+            }
+        }
+
+        notifyOutside(world, state.getBlock(), new HashSet<>(members), changed);
+    }
+
+
+    // ---------------------------------------- //
+    //                Traversal                 //
+    // ---------------------------------------- //
+
+    /**
+     * Find all dust connected to start. Fills in the outside input of every dust, and for every dust the dust that reads
+     * from it
+     *
+     * @return The dust in the order it was found
+     */
+    private static List<Long> collect(World world, long start, Map<Long, Integer> inputs, Map<Long, long[]> readers) {
+        Set<Long> members = new LinkedHashSet<>();
+        Deque<Long> positionsToVisit = new ArrayDeque<>();
+        Map<Long, LongList> links = new HashMap<>();
+        members.add(start);
+        positionsToVisit.add(start);
+
+        while (!positionsToVisit.isEmpty()) {
+            long current = positionsToVisit.remove();
+            BlockPos pos = BlockPos.fromLong(current);
+            inputs.put(current, getInput(world, pos));
+
+            for (long source : getSources(world, pos)) {
+                links.computeIfAbsent(source, key -> new LongArrayList()).add(current);
+                if (members.add(source)) {
+                    positionsToVisit.add(source);
+                }
+            }
+            // Dust that reads from this one over a one-way link isn't one of its sources, so visit the diagonals as well
+            for (long reader : getReaders(world, pos)) {
+                if (members.add(reader)) {
+                    positionsToVisit.add(reader);
+                }
+            }
+        }
+
+        links.forEach((source, targets) -> readers.put(source, targets.toLongArray()));
+        return new ArrayList<>(members);
+    }
+
+
+    /** The dust a dust reads its power from, with the vanilla rules for stepping up and down blocks */
+    private static LongList getSources(World world, BlockPos pos) {
+        LongList sources = new LongArrayList(4);
+        BlockPos up = pos.up();
+        boolean coveredAbove = world.getBlockState(up).isNormalCube(world, up);
+
+        for (Direction direction : HORIZONTAL) {
+            BlockPos side = pos.offset(direction);
+            if (!world.isBlockLoaded(side)) {
+                continue;
+            }
+
+            BlockState sideState = world.getBlockState(side);
+            addIfDust(world, side, sources);
+            if (sideState.isNormalCube(world, side)) {
+                if (!coveredAbove) {
+                    addIfDust(world, side.up(), sources);
+                }
+            } else {
+                addIfDust(world, side.down(), sources);
+            }
+        }
+        return sources;
+    }
+
+    /** Dust that might read from the dust at pos, i.e. the candidates of {@link DustEngine#getSources} the other way around */
+    private static LongList getReaders(World world, BlockPos pos) {
+        LongList readers = new LongArrayList(4);
+        for (Direction direction : HORIZONTAL) {
+            BlockPos side = pos.offset(direction);
+            if (world.isBlockLoaded(side)) {
+                addIfDust(world, side.up(), readers);
+                addIfDust(world, side.down(), readers);
+            }
+        }
+        return readers;
+    }
+
+    private static void addIfDust(World world, BlockPos pos, LongList list) {
+        if (world.isBlockLoaded(pos) && isDust(world.getBlockState(pos))) {
+            list.add(pos.toLong());
+        }
+    }
+
+
+    // ---------------------------------------- //
+    //                  Power                   //
+    // ---------------------------------------- //
+
+    /** The strongest signal a dust gets from anything but dust */
+    private static int getInput(World world, BlockPos pos) {
+        boolean previous = READING_INPUTS.get();
+        READING_INPUTS.set(true);
+        try {
+            return world.getRedstonePowerFromNeighbors(pos);
+        } finally {
+            READING_INPUTS.set(previous);
+        }
+    }
+
+    /** The power a dust should have according to its direct surroundings, like vanilla computes it */
+    private static int getSignal(World world, BlockPos pos) {
+        int signal = getInput(world, pos);
+        for (long source : getSources(world, pos)) {
+            signal = Math.max(signal, world.getBlockState(BlockPos.fromLong(source)).get(RedstoneWireBlock.POWER) - 1);
+        }
+        return signal;
+    }
+
+    private static boolean isDust(BlockState state) {
+        return state.getBlock() instanceof RedstoneWireBlock;
+    }
+
+
+    /**
+     * Notify the blocks around the changed dust once each, see {@link Mode}. The dust of the same piece is skipped, its
+     * power is final already
+     */
+    private static void notifyOutside(World world, Block dust, Set<Long> members, LongList changed) {
+        boolean minimal = ConfigHandler.DUST_MODE.get() == Mode.MINIMAL;
+        Long2LongLinkedOpenHashMap targets = new Long2LongLinkedOpenHashMap();
+
+        for (int i = 0; i < changed.size(); i++) {
+            long member = changed.getLong(i);
+            for (int face = 0; face < PackedPos.FACES; face++) {
+                long neighbor = PackedPos.offset(member, face);
+                if (!members.contains(neighbor) && !targets.containsKey(neighbor)) {
+                    targets.put(neighbor, member);
+                }
+
+                BlockPos neighborPos = BlockPos.fromLong(neighbor);
+                if (minimal && !(world.isBlockLoaded(neighborPos) && world.getBlockState(neighborPos).isNormalCube(world, neighborPos))) {
+                    continue;
+                }
+                for (int second = 0; second < PackedPos.FACES; second++) {
+                    long target = PackedPos.offset(neighbor, second);
+                    if (!members.contains(target) && !targets.containsKey(target)) {
+                        targets.put(target, neighbor);
+                    }
+                }
+            }
+        }
+
+        for (Long2LongMap.Entry target : targets.long2LongEntrySet()) {
+            BlockPos pos = BlockPos.fromLong(target.getLongKey());
+            if (world.isBlockLoaded(pos)) {
+                world.neighborChanged(pos, dust, BlockPos.fromLong(target.getLongValue()));
+            }
+        }
+    }
+}
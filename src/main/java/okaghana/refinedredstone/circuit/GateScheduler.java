@@ -0,0 +1,145 @@
+package okaghana.refinedredstone.circuit;
+
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import okaghana.refinedredstone.engine.GateBatch;
+import okaghana.refinedredstone.engine.GateOperation;
+
+import java.util.*;
+
+/**
+ * The tick-based update path for logic and arithmetic blocks. <br><br>
+ *
+ * Instead of evaluating itself right away, a gate block (see {@link okaghana.refinedredstone.block.LogicGate})
+ * schedules its evaluation here. At the end of the world tick all scheduled gates are grouped by their
+ * {@link GateOperation} and every group is evaluated as one {@link GateBatch}, 16 gates per instruction. The results are
+ * then handed back to the gates through their {@link GateOutput}. <br><br>
+ *
+ * Each gate is evaluated at most once per tick. If it is scheduled again in the same tick, the newer inputs win. All
+ * gates are evaluated before the first result is handed out, so a gate that is scheduled by the output of another one
+ * is evaluated in the next tick, whatever its operation is.
+ */
+public class GateScheduler {
+
+    private static final Map<World, GateScheduler> SCHEDULERS = new WeakHashMap<>();
+
+    private final World world;
+    private final Map<GateOperation, GateBatch> batches = new EnumMap<>(GateOperation.class);
+    private final Map<GateOperation, Set<PendingGate>> pending = new EnumMap<>(GateOperation.class);
+    private final Map<BlockPos, PendingGate> pendingByPos = new HashMap<>();
+
+
+    /** Called by a gate block to receive the result of its evaluation */
+    @FunctionalInterface
+    public interface GateOutput {
+        void accept(World world, BlockPos pos, int power);
+    }
+
+
+    private static class PendingGate {
+        final BlockPos pos;
+        final GateOperation operation;
+        final GateOutput output;
+        int a;
+        int b;
+
+        PendingGate(BlockPos pos, GateOperation operation, GateOutput output) {
+            this.pos = pos;
+            this.operation = operation;
+            this.output = output;
+        }
+    }
+
+
+    private GateScheduler(World world) {
+        this.world = world;
+        for (GateOperation operation : GateOperation.values()) {
+            batches.put(operation, new GateBatch(operation));
+            pending.put(operation, new LinkedHashSet<>());
+        }
+    }
+
+
+    /** Get the Scheduler for the given world, creating it if necessary */
+    public static GateScheduler get(World world) {
+        return SCHEDULERS.computeIfAbsent(world, GateScheduler::new);
+    }
+
+
+    /** Drop the Scheduler of a world that is being unloaded */
+    public static void remove(World world) {
+        SCHEDULERS.remove(world);
+    }
+
+
+    /** Called at the end of every world tick. Evaluates all scheduled gates */
+    public static void tick(World world) {
+        GateScheduler scheduler = SCHEDULERS.get(world);
+        if (scheduler != null) {
+            scheduler.flush();
+        }
+    }
+
+
+    /**
+     * Schedule the evaluation of a gate for the end of this tick
+     *
+     * @param pos The position of the gate
+     * @param operation What the gate computes
+     * @param a The first input
+     * @param b The second input
+     * @param output Receives the result
+     */
+    public void schedule(BlockPos pos, GateOperation operation, int a, int b, GateOutput output) {
+        PendingGate gate = pendingByPos.get(pos);
+        if (gate == null || gate.operation != operation) {
+            if (gate != null) {
+                pending.get(gate.operation).remove(gate);
+            }
+
+            gate = new PendingGate(pos.toImmutable(), operation, output);
+            pendingByPos.put(gate.pos, gate);
+            pending.get(operation).add(gate);
+        }
+
+        gate.a = a;
+        gate.b = b;
+    }
+
+
+    /** Evaluate every scheduled gate, one batch per operation */
+    private void flush() {
+        if (pendingByPos.isEmpty()) {
+            return;
+        }
+
+        // Take every scheduled gate out first, the outputs may schedule gates for the next tick
+        Map<GateOperation, List<PendingGate>> scheduled = new EnumMap<>(GateOperation.class);
+        for (GateOperation operation : GateOperation.values()) {
+            Set<PendingGate> gates = pending.get(operation);
+            if (!gates.isEmpty()) {
+                scheduled.put(operation, new ArrayList<>(gates));
+                gates.clear();
+            }
+        }
+        pendingByPos.clear();
+
+        for (Map.Entry<GateOperation, List<PendingGate>> entry : scheduled.entrySet()) {
+            GateBatch batch = batches.get(entry.getKey());
+            for (PendingGate gate : entry.getValue()) {
+                batch.add(gate.a, gate.b);
+            }
+            batch.evaluate();
+        }
+
+        for (Map.Entry<GateOperation, List<PendingGate>> entry : scheduled.entrySet()) {
+            GateBatch batch = batches.get(entry.getKey());
+            List<PendingGate> gates = entry.getValue();
+            for (int slot = 0; slot < gates.size(); slot++) {
+                PendingGate gate = gates.get(slot);
+                gate.output.accept(world, gate.pos, batch.getResult(slot));
+            }
+            batch.clear();
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package okaghana.refinedredstone.circuit;
+
+import it.unimi.dsi.fastutil.bytes.ByteArrayList;
+import it.unimi.dsi.fastutil.ints.Int2FloatMap;
+import it.unimi.dsi.fastutil.ints.Int2FloatOpenHashMap;
+import it.unimi.dsi.fastutil.longs.*;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+import net.minecraft.entity.player.ServerPlayerEntity;
+import net.minecraft.world.World;
+import okaghana.refinedredstone.engine.NetworkGraph;
+import okaghana.refinedredstone.engine.PackedPos;
+import okaghana.refinedredstone.engine.WireNetwork;
+import okaghana.refinedredstone.network.HeatMapPacket;
+import okaghana.refinedredstone.network.PacketHandler;
+import okaghana.refinedredstone.setup.ConfigHandler;
+
+import java.util.*;
+
+/**
+ * Counts how often every wire of a world is recomputed and written, to find the wiring that is responsible for a lag
+ * spike. <br><br>
+ *
+ * The counts are kept per chunk and decay exponentially (see {@link ConfigHandler#HEATMAP_HALF_LIFE}), so they show the
+ * recent activity. Nothing is counted while nobody is watching: a player watches while wearing an Engineers Helmet
+ * whose heatmap was switched on by sneak-using it, or after turning the heatmap on with {@code /refinedredstone heatmap}.
+ * Recomputations are sampled (only every n-th commit is counted, with n times the weight), because a commit touches
+ * every member of the network. <br><br>
+ *
+ * Once per second every watcher gets the heat of the wires around them in a {@link HeatMapPacket}, with the wires of the
+ * hottest networks marked.
+ */
+public class HeatMap {
+
+    public static final int SEND_INTERVAL = 20;
+    /** How long a player wearing the helmet keeps watching after the last armor tick */
+    private static final int HELMET_TIMEOUT = 40;
+    private static final float MIN_HEAT = 0.05f;
+
+    private final World world;
+    private final NetworkGraph graph;
+    private final Map<ServerPlayerEntity, Long> watchers = new HashMap<>();
+    private final Long2ObjectMap<Long2FloatOpenHashMap> heatByChunk = new Long2ObjectOpenHashMap<>();
+    private final Int2FloatOpenHashMap heatByNetwork = new Int2FloatOpenHashMap();
+    private int commitsUntilSample = 0;
+
+
+    HeatMap(World world, NetworkGraph graph) {
+        this.world = world;
+        this.graph = graph;
+    }
+
+
+    /** Whether anyone is watching, i.e. whether anything is counted at all */
+    public boolean isActive() {
+        return !watchers.isEmpty();
+    }
+
+
+    /**
+     * Let a player watch the heatmap
+     *
+     * @param until The game time at which the player stops watching, {@link Long#MAX_VALUE} for never
+     */
+    public void watch(ServerPlayerEntity player, long until) {
+        Long previous = watchers.get(player);
+        if (previous == null || previous < until) {
+            watchers.put(player, until);
+        }
+    }
+
+    /**
+     * Let the player watch for a little while, called every tick the player wears an Engineers Helmet with the heatmap
+     * switched on
+     */
+    public void watchWithHelmet(ServerPlayerEntity player) {
+        watch(player, world.getGameTime() + HELMET_TIMEOUT);
+    }
+
+    /** @return Whether the player was watching */
+    public boolean unwatch(ServerPlayerEntity player) {
+        if (watchers.remove(player) == null) {
+            return false;
+        }
+        PacketHandler.sendHeatMap(player, HeatMapPacket.EMPTY);
+        return true;
+    }
+
+    public boolean isWatching(ServerPlayerEntity player) {
+        return watchers.containsKey(player);
+    }
+
+
+    // ---------------------------------------- //
+    //                 Counting                 //
+    // ---------------------------------------- //
+
+    /** A network got a new power. Only every n-th call is counted */
+    void countCommit(WireNetwork network) {
+        if (--commitsUntilSample > 0) {
+            return;
+        }
+
+        int weight = ConfigHandler.HEATMAP_SAMPLE_RATE.get();
+        commitsUntilSample = weight;
+        heatByNetwork.addTo(network.getId(), weight);
+        for (long member : network.getMembers()) {
+            add(member, weight);
+        }
+    }
+
+    /** The power of a single wire was written to the world */
+    void countWrite(long pos) {
+        add(pos, 1);
+    }
+
+    private void add(long pos, float heat) {
+        heatByChunk.computeIfAbsent(PackedPos.chunkKey(pos), key -> new Long2FloatOpenHashMap()).addTo(pos, heat);
+    }
+
+
+    // ---------------------------------------- //
+    //                 Sending                  //
+    // ---------------------------------------- //
+
+    /** Called at the end of every tick. Drops players that stopped watching, and decays and sends the counts once a second */
+    void tick() {
+        long time = world.getGameTime();
+        Iterator<Map.Entry<ServerPlayerEntity, Long>> iterator = watchers.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<ServerPlayerEntity, Long> entry = iterator.next();
+            if (entry.getValue() < time || entry.getKey().removed || entry.getKey().world != world) {
+                iterator.remove();
+                PacketHandler.sendHeatMap(entry.getKey(), HeatMapPacket.EMPTY);
+            }
+        }
+
+        if (watchers.isEmpty()) {
+            heatByChunk.clear();
+            heatByNetwork.clear();
+            return;
+        }
+        if (time % SEND_INTERVAL != 0) {
+            return;
+        }
+
+        Set<Integer> hottest = getHottestNetworks(ConfigHandler.HEATMAP_TOP_NETWORKS.get());
+        for (ServerPlayerEntity player : watchers.keySet()) {
+            PacketHandler.sendHeatMap(player, createPacket(player, hottest));
+        }
+        decay();
+    }
+
+
+    /** The ids of the networks that were recomputed the most */
+    public Set<Integer> getHottestNetworks(int count) {
+        List<Int2FloatMap.Entry> entries = new ArrayList<>(heatByNetwork.int2FloatEntrySet());
+        entries.sort((a, b) -> Float.compare(b.getFloatValue(), a.getFloatValue()));
+
+        Set<Integer> hottest = new LinkedHashSet<>();
+        for (int i = 0; i < Math.min(count, entries.size()); i++) {
+            hottest.add(entries.get(i).getIntKey());
+        }
+        return hottest;
+    }
+
+    /** The recent recomputations of a network per second (sampled, so only an estimate) */
+    public float getNetworkHeat(int id) {
+        return toPerSecond(heatByNetwork.get(id));
+    }
+
+
+    private HeatMapPacket createPacket(ServerPlayerEntity player, Set<Integer> hottest) {
+        int radius = ConfigHandler.HEATMAP_RADIUS.get();
+        int centerX = player.getPosition().getX() >> 4;
+        int centerZ = player.getPosition().getZ() >> 4;
+
+        float max = 0;
+        List<Long2FloatOpenHashMap> chunks = new ArrayList<>();
+        for (int x = centerX - radius; x <= centerX + radius; x++) {
+            for (int z = centerZ - radius; z <= centerZ + radius; z++) {
+                Long2FloatOpenHashMap chunk = heatByChunk.get(PackedPos.chunkKey(x, z));
+                if (chunk != null) {
+                    chunks.add(chunk);
+                    for (float heat : chunk.values()) {
+                        max = Math.max(max, heat);
+                    }
+                }
+            }
+        }
+
+        // Quantize every wire to 1-15 relative to the hottest one, and mark the members of the hottest networks
+        LongArrayList positions = new LongArrayList();
+        ByteArrayList levels = new ByteArrayList();
+        for (Long2FloatOpenHashMap chunk : chunks) {
+            for (Long2FloatMap.Entry entry : chunk.long2FloatEntrySet()) {
+                int level = Math.max(1, Math.round(entry.getFloatValue() / max * 15));
+                boolean hot = hottest.contains(graph.getNetworkId(entry.getLongKey()));
+                positions.add(entry.getLongKey());
+                levels.add((byte) (hot ? level | HeatMapPacket.HOT : level));
+            }
+        }
+        return new HeatMapPacket(toPerSecond(max), positions.toLongArray(), levels.toByteArray());
+    }
+
+
+    /**
+     * Turn a decayed count into events per second. A steady rate r per interval adds up to r / (1 - decay factor)
+     */
+    private float toPerSecond(float heat) {
+        return heat * (1 - getDecayFactor()) * 20f / SEND_INTERVAL;
+    }
+
+    private float getDecayFactor() {
+        return (float) Math.pow(0.5, SEND_INTERVAL / (ConfigHandler.HEATMAP_HALF_LIFE.get() * 20.0));
+    }
+
+
+    private void decay() {
+        float factor = getDecayFactor();
+
+        ObjectIterator<Long2ObjectMap.Entry<Long2FloatOpenHashMap>> chunks = Long2ObjectMaps.fastIterator(heatByChunk);
+        while (chunks.hasNext()) {
+            Long2FloatOpenHashMap chunk = chunks.next().getValue();
+            ObjectIterator<Long2FloatMap.Entry> wires = chunk.long2FloatEntrySet().fastIterator();
+            while (wires.hasNext()) {
+                Long2FloatMap.Entry entry = wires.next();
+                float heat = entry.getFloatValue() * factor;
+                if (heat < MIN_HEAT) {
+                    wires.remove();
+                } else {
+                    entry.setValue(heat);
+                }
+            }
+            if (chunk.isEmpty()) {
+                chunks.remove();
+            }
+        }
+
+        ObjectIterator<Int2FloatMap.Entry> networks = heatByNetwork.int2FloatEntrySet().fastIterator();
+        while (networks.hasNext()) {
+            Int2FloatMap.Entry entry = networks.next();
+            float heat = entry.getFloatValue() * factor;
+            if (heat < MIN_HEAT || graph.get(entry.getIntKey()) == null) {
+                networks.remove();
+            } else {
+                entry.setValue(heat);
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package okaghana.refinedredstone.circuit;
+
+import net.minecraft.util.Direction;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import net.minecraftforge.common.capabilities.Capability;
+import net.minecraftforge.common.capabilities.ICapabilityProvider;
+import net.minecraftforge.common.util.LazyOptional;
+import okaghana.refinedredstone.api.INetworkListener;
+import okaghana.refinedredstone.api.IRefinedRedstoneNetworks;
+import okaghana.refinedredstone.api.RefinedRedstoneCapabilities;
+import okaghana.refinedredstone.engine.CompiledNetwork;
+import okaghana.refinedredstone.engine.WireNetwork;
+import org.jetbrains.annotations.NotNull;
+
+import javax.annotation.Nullable;
+import java.util.*;
+
+/**
+ * The {@link IRefinedRedstoneNetworks} of a server world, backed by its {@link NetworkManager}. Also the provider that
+ * attaches it to the world.
+ */
+public class NetworkApi implements IRefinedRedstoneNetworks, ICapabilityProvider {
+
+    private final World world;
+    private final LazyOptional<IRefinedRedstoneNetworks> optional = LazyOptional.of(() -> this);
+
+
+    public NetworkApi(World world) {
+        this.world = world;
+    }
+
+
+    @NotNull
+    @Override
+    public <T> LazyOptional<T> getCapability(@NotNull Capability<T> cap, @Nullable Direction side) {
+        return cap == RefinedRedstoneCapabilities.NETWORKS ? optional.cast() : LazyOptional.empty();
+    }
+
+
+    @Override
+    public int getNetworkId(BlockPos pos) {
+        WireNetwork network = NetworkManager.get(world).getOrIndex(pos);
+        return network != null ? network.getId() : 0;
+    }
+
+    @Override
+    public int getPower(int networkId) {
+        WireNetwork network = NetworkManager.get(world).getGraph().get(networkId);
+        return network != null ? network.getPower() : 0;
+    }
+
+    @Override
+    public int getPower(BlockPos pos) {
+        NetworkManager manager = NetworkManager.get(world);
+        WireNetwork network = manager.getOrIndex(pos);
+        return network != null ? manager.getMemberPower(network, pos.toLong()) : 0;
+    }
+
+    @Override
+    public Collection<BlockPos> getMembers(int networkId) {
+        WireNetwork network = NetworkManager.get(world).getGraph().get(networkId);
+        if (network == null) {
+            return Collections.emptyList();
+        }
+
+        List<BlockPos> members = new ArrayList<>(network.size());
+        for (long member : network.getMembers()) {
+            members.add(BlockPos.fromLong(member));
+        }
+        return members;
+    }
+
+    @Override
+    public Map<BlockPos, Integer> getInputs(int networkId) {
+        CompiledNetwork network = NetworkManager.get(world).getCompiled(networkId);
+        if (network == null) {
+            return Collections.emptyMap();
+        }
+
+        Map<BlockPos, Integer> inputs = new HashMap<>();
+        for (Map.Entry<Long, Integer> entry : network.getInputs().entrySet()) {
+            inputs.put(BlockPos.fromLong(entry.getKey()), entry.getValue());
+        }
+        return inputs;
+    }
+
+    @Override
+    public void addListener(INetworkListener listener) {
+        NetworkManager.get(world).addListener(listener);
+    }
+
+    @Override
+    public void removeListener(INetworkListener listener) {
+        NetworkManager.get(world).removeListener(listener);
+    }
+}
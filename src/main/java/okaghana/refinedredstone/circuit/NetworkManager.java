@@ -0,0 +1,1358 @@
+package okaghana.refinedredstone.circuit;
+
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongLinkedOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongList;
+import net.minecraft.block.BlockState;
+import net.minecraft.util.Direction;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.World;
+import okaghana.refinedredstone.RefinedRedstone;
+import okaghana.refinedredstone.api.INetworkListener;
+import okaghana.refinedredstone.block.RefinedRedstoneBlock;
+import okaghana.refinedredstone.engine.*;
+import okaghana.refinedredstone.network.PacketHandler;
+import okaghana.refinedredstone.profiling.Profiling;
+import okaghana.refinedredstone.setup.BlockRegister;
+import okaghana.refinedredstone.setup.ConfigHandler;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+
+/**
+ * Keeps track of all Refined Redstone networks of a server world and keeps their power up to date. <br><br>
+ *
+ * The topology of the networks lives in a {@link NetworkGraph}, the inputs and the resulting power in the
+ * {@link CircuitState} of a {@link CircuitSimulator}. The blocks only report what happened to them (an input changed,
+ * a wire was added or removed) and the manager turns that into {@link CircuitCommand}s. Whenever the simulation reports
+ * a new power for a network, it is written to all of its members. The blocks around the network are notified afterwards,
+ * each of them once, instead of every member notifying all six of its neighbors (most of which are wires of the same
+ * network). <br><br>
+ *
+ * The manager is the adapter between Minecraft and the engine, which doesn't know anything about Minecraft: it sees the
+ * world through a {@link WorldAccess} on packed positions. The manager only decides what happens, writing the power to
+ * the world is left to a {@link PowerWriter}, and the index file to {@link StoredNetworks}. <br><br>
+ *
+ * Networks are discovered lazily: a wire that isn't in the graph yet is traversed (together with its whole network) the
+ * first time something happens to it. When the world is saved, all networks are written to a {@link NetworkIndexFile}
+ * next to the region files of the dimension. After a restart a network is taken from that file instead of being
+ * traversed again. Networks stay in the graph when their chunks are unloaded, so reloading a chunk costs nothing. <br><br>
+ *
+ * Every input face the simulation knows about is cached as well, so a neighbor update that doesn't change the signal of
+ * the face (a chest opening, a furnace lighting up, ...) ends after reading the input, without touching the network.
+ * <br><br>
+ *
+ * A network in decay mode (see {@link NetworkManager#toggleDecay(WireNetwork)}) doesn't have one power for all of its
+ * members. Whenever one of its inputs or its topology changes, the power of every member is computed by a
+ * {@link DecayField}, and only the members whose power changed are written.
+ */
+public class NetworkManager {
+
+    private static final Map<World, NetworkManager> MANAGERS = new WeakHashMap<>();
+
+    private final World world;
+    private final NetworkGraph graph = new NetworkGraph();
+    private final Deque<Long> loadedChunks = new ArrayDeque<>();
+    private final StoredNetworks storedNetworks;
+    private CircuitSimulator simulator;
+    private final InputConditioner conditioner;
+    private final Map<Integer, OscillationDetector> detectors = new HashMap<>();
+    private final Map<Integer, Map<Long, Integer>> decayLevels = new HashMap<>();
+    private final Set<Integer> changedDecayNetworks = new LinkedHashSet<>();
+    private final Map<Integer, Integer> deferredPowers = new LinkedHashMap<>();
+    private final Long2IntOpenHashMap cachedInputs = new Long2IntOpenHashMap();
+    private final LongLinkedOpenHashSet departing = new LongLinkedOpenHashSet();
+    private final LongLinkedOpenHashSet arriving = new LongLinkedOpenHashSet();
+    private final List<INetworkListener> listeners = new ArrayList<>();
+    private final Map<Integer, Integer> changedThisTick = new LinkedHashMap<>();
+    private boolean committing = false;
+    // Where the current fold started and how many wires it touched, for the profiler
+    private long foldOrigin = 0;
+    private int foldMembers = 0;
+    private BlockStateCache cache = null;
+    private final NetworkStats stats = new NetworkStats();
+    private final HeatMap heatMap;
+    private final RateLimiter limiter;
+    private final PowerWriter writer;
+    @Nullable
+    private TraceRecorder recorder = null;
+
+    // The world as the engine sees it, read through the cache while there is one
+    private final WorldAccess access = new WorldAccess() {
+        @Override
+        public boolean isLoaded(long pos) {
+            return NetworkManager.this.isLoaded(pos);
+        }
+
+        @Override
+        public boolean isWire(long pos) {
+            return NetworkManager.this.isWire(pos);
+        }
+
+        @Override
+        public int readInput(long pos, int face) {
+            return NetworkManager.this.readInput(pos, face);
+        }
+    };
+
+
+    private NetworkManager(World world) {
+        this.world = world;
+        this.simulator = createSimulator();
+        this.heatMap = new HeatMap(world, graph);
+        this.limiter = new RateLimiter(world, graph);
+        this.writer = new PowerWriter(world, stats, heatMap);
+        this.conditioner = createConditioner();
+        this.storedNetworks = new StoredNetworks(world);
+        graph.reserveIds(storedNetworks.getNextId());
+    }
+
+
+    /** Get the manager of the given (server) world, creating it if necessary */
+    public static NetworkManager get(World world) {
+        return MANAGERS.computeIfAbsent(world, NetworkManager::new);
+    }
+
+
+    /** Stop and drop the manager of a world that is being unloaded */
+    public static void remove(World world) {
+        NetworkManager manager = MANAGERS.remove(world);
+        if (manager != null) {
+            manager.simulator.shutdown();
+            manager.storedNetworks.close();
+            manager.stopTrace();
+        }
+    }
+
+
+    /** Called at the start of every world tick. Applies the results of the last tick of the simulation thread */
+    public static void onTickStart(World world) {
+        NetworkManager manager = MANAGERS.get(world);
+        if (manager != null) {
+            if (manager.simulator.isThreaded()) {
+                manager.applyChanges();
+            }
+            manager.processLoadedChunks();
+        }
+    }
+
+
+    /** Called at the end of every world tick */
+    public static void onTickEnd(World world) {
+        NetworkManager manager = MANAGERS.get(world);
+        if (manager != null) {
+            manager.processMoves();
+            if (manager.conditioner != null) {
+                manager.pollConditioner();
+            }
+            manager.commitDeferred();
+            manager.notifyListeners();
+            manager.heatMap.tick();
+            manager.limiter.tick();
+            manager.simulator.endTick(world.getGameTime());
+        }
+    }
+
+
+    /**
+     * A chunk has been loaded. Members in it might have missed power changes while it was unloaded, and networks that
+     * ended at its border might continue in it. Both are handled at the start of the next tick.
+     */
+    public static void onChunkLoad(World world, ChunkPos chunk) {
+        NetworkManager manager = MANAGERS.get(world);
+        if (manager != null) {
+            manager.loadedChunks.add(PackedPos.chunkKey(chunk.x, chunk.z));
+        }
+    }
+
+
+    /** The world is being saved. Write all networks to the index file */
+    public static void onWorldSave(World world) {
+        NetworkManager manager = MANAGERS.get(world);
+        if (manager != null) {
+            manager.save();
+        }
+    }
+
+
+    public NetworkGraph getGraph() {
+        return graph;
+    }
+
+
+    /**
+     * The network of a wire, finding it first if it isn't indexed yet
+     *
+     * @return The network, or null if there is no (loaded) wire at pos
+     */
+    @Nullable
+    public WireNetwork getOrIndex(BlockPos pos) {
+        long member = pos.toLong();
+        if (!isWire(member)) {
+            return null;
+        }
+
+        WireNetwork network = graph.getByMember(member);
+        if (network == null) {
+            network = restore(member);
+            if (network == null) {
+                network = discover(pos);
+            }
+            flushImmediate();
+        }
+        return network;
+    }
+
+
+    /** A copy of the compiled state (inputs and power) of a network, or null if the simulation doesn't know it */
+    @Nullable
+    public CompiledNetwork getCompiled(int id) {
+        try {
+            return simulator.snapshot(id);
+        } catch (IllegalStateException exception) {
+            fallBackToSynchronous(exception);
+            return null;
+        }
+    }
+
+
+    /**
+     * The power of a single member. That is the power of its network, except in decay mode, where every member has a
+     * level of its own (see {@link DecayField})
+     */
+    public int getMemberPower(WireNetwork network, long member) {
+        if (!network.isDecaying()) {
+            return network.getPower();
+        }
+
+        Map<Long, Integer> levels = decayLevels.get(network.getId());
+        if (levels != null) {
+            return levels.getOrDefault(member, 0);
+        }
+
+        // Not computed yet, so the member still has the power that was written last
+        BlockPos pos = BlockPos.fromLong(member);
+        if (!world.isBlockLoaded(pos)) {
+            return 0;
+        }
+        BlockState state = world.getBlockState(pos);
+        return state.isIn(BlockRegister.REFINED_REDSTONE.get()) ? RefinedRedstoneBlock.getPower(world, pos, state) : 0;
+    }
+
+
+    public NetworkStats getStats() {
+        return stats;
+    }
+
+
+    /** The update counts of the wires, while someone is watching them */
+    public HeatMap getHeatMap() {
+        return heatMap;
+    }
+
+
+    /** The networks that are throttled or frozen for being updated too often */
+    public RateLimiter getRateLimiter() {
+        return limiter;
+    }
+
+
+    /**
+     * Let a throttled or frozen network update freely again, and write the power it has been held back from
+     *
+     * @return Whether the network was limited
+     */
+    public boolean release(int id) {
+        if (!limiter.release(id)) {
+            return false;
+        }
+        commitDeferred();
+        return true;
+    }
+
+
+    /**
+     * Switch a network between lossless and decay mode. In decay mode the signal loses one level per wire, like vanilla
+     * redstone dust. The mode belongs to the network and is saved with it in the index file. A network that replaces
+     * others (e.g. when two networks are joined) decays if any of them did, but a network that has to be traversed from
+     * scratch without its predecessor (e.g. without an index file) starts out lossless
+     *
+     * @return Whether the network is in decay mode now
+     */
+    public boolean toggleDecay(WireNetwork network) {
+        int id = network.getId();
+        boolean decaying = !network.isDecaying();
+        forgetDetector(id);
+        network.setDecaying(decaying);
+
+        if (decaying) {
+            changedDecayNetworks.add(id);
+        } else {
+            decayLevels.remove(id);
+            writeAll(network, network.getPower());
+        }
+        flushImmediate();
+        return decaying;
+    }
+
+
+    /**
+     * Start writing everything that happens to the networks around center into a {@link TraceLog}. The networks that are
+     * already known are written first. A running trace is stopped
+     *
+     * @param path The file to write to
+     * @param capacity How many records the log holds before the oldest ones are overwritten
+     * @param radius The distance from center to the border of the region, in blocks
+     * @throws IOException If the file can't be created
+     */
+    public TraceRecorder startTrace(Path path, int capacity, BlockPos center, int radius) throws IOException {
+        stopTrace();
+        recorder = new TraceRecorder(world, path, capacity, center, radius);
+
+        for (WireNetwork network : new ArrayList<>(graph.getNetworks())) {
+            Map<Long, Integer> inputs = withReadCache(() -> {
+                Map<Long, Integer> read = new HashMap<>();
+                for (long member : network.getMembers()) {
+                    if (isLoaded(member)) {
+                        int faces = readInputs(member);
+                        if (faces != 0) {
+                            read.put(member, faces);
+                        }
+                    }
+                }
+                return read;
+            });
+            recorder.compiled(network.getMembers(), inputs);
+            recorder.power(network, network.getPower());
+        }
+        return recorder;
+    }
+
+
+    /**
+     * Stop the running trace, if there is one
+     *
+     * @return The stopped trace, or null
+     */
+    @Nullable
+    public TraceRecorder stopTrace() {
+        TraceRecorder stopped = recorder;
+        if (stopped != null) {
+            recorder = null;
+            try {
+                stopped.close();
+            } catch (IOException exception) {
+                RefinedRedstone.MOD_LOGGER.log(Level.WARNING, "Couldn't close the trace " + stopped.getPath(), exception);
+            }
+        }
+        return stopped;
+    }
+
+
+    public void addListener(INetworkListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(INetworkListener listener) {
+        listeners.remove(listener);
+    }
+
+
+    /** The oscillation detector of a network, or null if none of its inputs changed yet or detection is disabled */
+    @Nullable
+    public OscillationDetector getDetector(int id) {
+        OscillationDetector detector = detectors.get(id);
+        if (detector != null && detector.isOverdue(world.getGameTime())) {
+            // The clock stopped since the last change
+            detector.unlock();
+        }
+        return detector;
+    }
+
+
+    // ---------------------------------------- //
+    //                  Events                  //
+    // ---------------------------------------- //
+
+    /**
+     * A neighbor of a wire changed, so the input on that face might have changed as well
+     *
+     * @param pos The position of the wire
+     * @param fromPos The position of the neighbor that changed
+     */
+    public void onInputChanged(BlockPos pos, BlockPos fromPos) {
+        stats.countInputChange();
+        long member = pos.toLong();
+        int face = PackedPos.faceTowards(member, fromPos.toLong());
+        if (face < 0 || arriving.contains(member)) {
+            // A wire that has just been moved here reads all of its inputs once the move is processed
+            return;
+        }
+
+        int id = graph.getNetworkId(member);
+        if (id == 0 && restore(member) == null) {
+            // Discovering the network reads every input, including this one
+            discover(pos);
+        } else {
+            id = graph.getNetworkId(member);
+            int level = readInput(member, face);
+            if (level == getCachedInput(member, face)) {
+                // The neighbor changed without changing the signal, e.g. a chest was opened or a crop grew
+                stats.countUnchangedInput();
+                return;
+            }
+            if (conditioner == null || conditioner.offer(member, face, level, world.getGameTime())) {
+                applyInput(id, member, face, level);
+            }
+        }
+        flushImmediate();
+    }
+
+
+    /** A wire has been placed at pos */
+    public void onWireAdded(BlockPos pos) {
+        processMoves();
+        long member = pos.toLong();
+        if (recorder != null) {
+            recorder.placed(member);
+        }
+        Set<Integer> neighbors = new HashSet<>();
+        boolean unindexedNeighbor = false;
+
+        for (int face = 0; face < PackedPos.FACES; face++) {
+            long neighbor = PackedPos.offset(member, face);
+            if (isWire(neighbor)) {
+                int id = graph.getNetworkId(neighbor);
+                if (id == 0) {
+                    WireNetwork restored = restore(neighbor);
+                    id = restored == null ? 0 : restored.getId();
+                }
+                neighbors.add(id);
+                unindexedNeighbor |= id == 0;
+            }
+        }
+
+        if (neighbors.size() == 1 && !unindexedNeighbor) {
+            // The common case: extending a network. Only the new wire has to be looked at
+            extend(neighbors.iterator().next(), member);
+        } else {
+            // A new network, or several networks that are joined together
+            for (int id : neighbors) {
+                dropNetwork(id);
+            }
+            discover(pos);
+        }
+        flushImmediate();
+    }
+
+
+    /** The wire at pos has been removed. The network might have been split into several ones */
+    public void onWireRemoved(BlockPos pos) {
+        processMoves();
+        long member = pos.toLong();
+        WireNetwork network = graph.getByMember(member);
+        forgetMember(member);
+
+        if (network != null && network.isComplete() && network.size() > 1) {
+            removeMember(network, member);
+        } else {
+            // Unknown or incomplete networks are simply traversed again
+            if (network != null) {
+                dropNetwork(network.getId());
+            }
+            for (int face = 0; face < PackedPos.FACES; face++) {
+                long neighbor = PackedPos.offset(member, face);
+                if (isWire(neighbor) && graph.getNetworkId(neighbor) == 0) {
+                    discover(BlockPos.fromLong(neighbor));
+                }
+            }
+        }
+        flushImmediate();
+    }
+
+
+    /**
+     * The wire at pos is being moved away by a piston (or anything else that moves blocks). It is taken out of its network
+     * together with everything else that moves this tick, see {@link NetworkManager#processMoves()}
+     */
+    public void onWireDeparted(BlockPos pos) {
+        long member = pos.toLong();
+        forgetMember(member);
+        // A wire that moves on before its arrival was processed only has to be taken out if something indexed it meanwhile
+        if (!arriving.remove(member) || graph.getNetworkId(member) != 0) {
+            departing.add(member);
+        }
+    }
+
+    /** A moved wire has arrived at pos. It joins the networks around it together with everything else that arrives this tick */
+    public void onWireArrived(BlockPos pos) {
+        long member = pos.toLong();
+        if (recorder != null) {
+            recorder.placed(member);
+        }
+        arriving.add(member);
+    }
+
+
+    // Everything the manager knows about a single wire, apart from its network
+    private void forgetMember(long member) {
+        if (recorder != null) {
+            recorder.removed(member);
+        }
+        storedNetworks.invalidate(member);
+        if (conditioner != null) {
+            conditioner.forget(member);
+        }
+        cachedInputs.remove(member);
+    }
+
+
+    // ---------------------------------------- //
+    //                  Moves                   //
+    // ---------------------------------------- //
+
+    /**
+     * Process the wires that have been moved since the last call as one translation instead of single removals and
+     * placements. <br><br>
+     *
+     * A piston removes all the blocks it pushes at once, and they arrive (usually two ticks later) one after another. Every
+     * network loses all of its departed wires in one go, followed by a single {@link SplitSearch} from all the places they
+     * left, or it is dropped if it moved completely. The arrived wires are grouped into connected clusters: a cluster next
+     * to a single complete network extends it wire by wire without any traversal, otherwise the cluster and the networks
+     * around it are traversed once together. <br><br>
+     *
+     * Called at the end of every tick, and before any other wire is placed or removed
+     */
+    private void processMoves() {
+        if (departing.isEmpty() && arriving.isEmpty()) {
+            return;
+        }
+
+        if (!departing.isEmpty()) {
+            processDepartures();
+        }
+        if (!arriving.isEmpty()) {
+            processArrivals();
+        }
+        flushImmediate();
+    }
+
+
+    private void processDepartures() {
+        Map<Integer, List<Long>> byNetwork = new LinkedHashMap<>();
+        List<Long> unknown = new ArrayList<>();
+        for (long member : departing) {
+            int id = graph.getNetworkId(member);
+            if (id != 0) {
+                byNetwork.computeIfAbsent(id, key -> new ArrayList<>()).add(member);
+            } else {
+                unknown.add(member);
+            }
+        }
+        departing.clear();
+
+        for (Map.Entry<Integer, List<Long>> entry : byNetwork.entrySet()) {
+            int id = entry.getKey();
+            List<Long> members = entry.getValue();
+            WireNetwork network = graph.get(id);
+
+            if (network.size() == members.size()) {
+                // The whole network moved. It is discovered again where it arrives
+                dropNetwork(id);
+            } else if (!network.isComplete()) {
+                dropNetwork(id);
+                unknown.addAll(members);
+            } else {
+                forgetDetector(id);
+                for (long member : members) {
+                    graph.removeMember(id, member);
+                    simulator.submit(CircuitCommand.removeMember(id, member));
+                }
+                if (network.isDecaying()) {
+                    changedDecayNetworks.add(id);
+                }
+
+                Set<Long> starts = new LinkedHashSet<>();
+                for (long member : members) {
+                    for (int face = 0; face < PackedPos.FACES; face++) {
+                        long neighbor = PackedPos.offset(member, face);
+                        if (graph.getNetworkId(neighbor) == id) {
+                            starts.add(neighbor);
+                        }
+                    }
+                }
+                detachFragments(id, starts);
+            }
+        }
+
+        // Unknown or incomplete networks are simply traversed again
+        for (long member : unknown) {
+            for (int face = 0; face < PackedPos.FACES; face++) {
+                long neighbor = PackedPos.offset(member, face);
+                if (isWire(neighbor) && graph.getNetworkId(neighbor) == 0 && !arriving.contains(neighbor)) {
+                    discover(BlockPos.fromLong(neighbor));
+                }
+            }
+        }
+    }
+
+
+    private void processArrivals() {
+        Set<Long> remaining = new LinkedHashSet<>();
+        for (long member : arriving) {
+            if (isWire(member) && graph.getNetworkId(member) == 0) {
+                remaining.add(member);
+            }
+        }
+        arriving.clear();
+
+        while (!remaining.isEmpty()) {
+            long first = remaining.iterator().next();
+            remaining.remove(first);
+            if (graph.getNetworkId(first) != 0) {
+                // Already found by the traversal of another cluster
+                continue;
+            }
+
+            // The arrived wires connected to the first one, and the networks around them
+            Set<Long> cluster = new LinkedHashSet<>();
+            Deque<Long> positionsToVisit = new ArrayDeque<>();
+            Set<Integer> neighbors = new HashSet<>();
+            boolean unindexedNeighbor = false;
+            cluster.add(first);
+            positionsToVisit.add(first);
+
+            while (!positionsToVisit.isEmpty()) {
+                long current = positionsToVisit.remove();
+                for (int face = 0; face < PackedPos.FACES; face++) {
+                    long neighbor = PackedPos.offset(current, face);
+                    if (remaining.remove(neighbor)) {
+                        cluster.add(neighbor);
+                        positionsToVisit.add(neighbor);
+                    } else if (!cluster.contains(neighbor) && isWire(neighbor)) {
+                        int id = graph.getNetworkId(neighbor);
+                        if (id == 0) {
+                            WireNetwork restored = restore(neighbor);
+                            id = restored == null ? 0 : restored.getId();
+                        }
+                        neighbors.add(id);
+                        unindexedNeighbor |= id == 0;
+                    }
+                }
+            }
+
+            if (neighbors.size() == 1 && !unindexedNeighbor && graph.get(neighbors.iterator().next()).isComplete()) {
+                int id = neighbors.iterator().next();
+                for (long member : cluster) {
+                    extend(id, member);
+                }
+            } else {
+                for (int id : neighbors) {
+                    dropNetwork(id);
+                }
+                discover(BlockPos.fromLong(first));
+            }
+        }
+    }
+
+
+    // ---------------------------------------- //
+    //                Traversal                 //
+    // ---------------------------------------- //
+
+    /**
+     * Find all wires connected to origin, register them as a network and compile it
+     *
+     * @param origin The position of one wire of the network
+     * @return The new network
+     */
+    private WireNetwork discover(BlockPos origin) {
+        return withReadCache(() -> traverse(origin));
+    }
+
+
+    // The body of discover, always called with a read cache
+    private WireNetwork traverse(BlockPos origin) {
+        long profilingStart = Profiling.begin();
+        long start = origin.toLong();
+        NetworkTraversal.Result found = NetworkTraversal.traverse(access, start);
+        Set<Long> members = found.members;
+
+        // Known and stored networks that overlap with this one are outdated. The network decays if any of them did
+        Set<Integer> replaced = new HashSet<>();
+        boolean decaying = false;
+        for (long member : members) {
+            int previous = graph.getNetworkId(member);
+            if (previous != 0) {
+                replaced.add(previous);
+                decaying |= graph.get(previous).isDecaying();
+                dropNetwork(previous);
+            }
+            storedNetworks.invalidate(member);
+        }
+
+        Map<Long, Integer> inputs = found.inputs;
+        for (long member : members) {
+            cacheInputs(member, inputs.getOrDefault(member, 0));
+        }
+
+        stats.countTraversal(members.size());
+        BlockState state = cache.getBlockState(start);
+        int knownPower = state.isIn(BlockRegister.REFINED_REDSTONE.get()) ? RefinedRedstoneBlock.getPower(world, origin, state) : 0;
+
+        WireNetwork network = graph.create(members);
+        network.setPower(knownPower);
+        network.setDecaying(decaying);
+        if (decaying) {
+            changedDecayNetworks.add(network.getId());
+        }
+        for (int previous : replaced) {
+            limiter.inherit(previous, network.getId());
+        }
+        if (recorder != null) {
+            recorder.compiled(members, inputs);
+        }
+        for (long chunk : found.missingChunks) {
+            graph.markIncomplete(network.getId(), chunk);
+        }
+        simulator.submit(CircuitCommand.compile(network.getId(), inputs, knownPower));
+        Profiling.networkTraversal(profilingStart, start, members.size(), found.visited);
+        return network;
+    }
+
+
+    /**
+     * Take the network of a wire from the index file instead of traversing it
+     *
+     * @param member The packed position of the wire
+     * @return The restored network, or null if it isn't stored or the stored one doesn't match the world anymore
+     */
+    private WireNetwork restore(long member) {
+        if (!storedNetworks.isOpen()) {
+            return null;
+        }
+        return withReadCache(() -> restoreStored(member));
+    }
+
+
+    // The body of restore, always called with a read cache
+    private WireNetwork restoreStored(long member) {
+        StoredNetwork stored = storedNetworks.take(member);
+        if (stored == null) {
+            return null;
+        }
+
+        // Members in unloaded chunks can't have changed. Every loaded one has to still be there
+        List<Long> members = new ArrayList<>(stored.members.length);
+        for (long position : stored.members) {
+            if (graph.getNetworkId(position) != 0 || (isLoaded(position) && !isWire(position))) {
+                return null;
+            }
+            members.add(position);
+        }
+
+        WireNetwork network = graph.create(stored.id, members);
+        network.setPower(stored.power);
+        for (long position : members) {
+            cacheInputs(position, stored.inputs.getOrDefault(position, 0));
+        }
+        if (stored.decaying) {
+            network.setDecaying(true);
+            changedDecayNetworks.add(stored.id);
+        }
+        if (recorder != null) {
+            recorder.compiled(members, stored.inputs);
+        }
+        simulator.submit(CircuitCommand.compile(stored.id, stored.inputs, stored.power));
+        return network;
+    }
+
+
+    /** Add a single wire to a network it is next to, reading only the inputs of that wire */
+    private void extend(int id, long member) {
+        forgetDetector(id);
+        graph.addMember(id, member);
+        if (graph.get(id).isDecaying()) {
+            changedDecayNetworks.add(id);
+        }
+        int faces = readInputs(member);
+        cacheInputs(member, faces);
+        simulator.submit(CircuitCommand.member(id, member, faces));
+        if (recorder != null) {
+            recorder.compiled(Collections.singleton(member), Collections.singletonMap(member, faces));
+        }
+    }
+
+
+    /**
+     * Remove a wire from a complete network. If it had more than one neighbor in the network, a {@link SplitSearch} finds
+     * out whether the network fell apart. Every fragment that got cut off becomes a network of its own, taking its members
+     * and their inputs with it, while the rest keeps the id without being traversed.
+     */
+    private void removeMember(WireNetwork network, long member) {
+        int id = network.getId();
+        forgetDetector(id);
+        graph.removeMember(id, member);
+        simulator.submit(CircuitCommand.removeMember(id, member));
+        if (network.isDecaying()) {
+            changedDecayNetworks.add(id);
+        }
+
+        List<Long> starts = new ArrayList<>(PackedPos.FACES);
+        for (int face = 0; face < PackedPos.FACES; face++) {
+            long neighbor = PackedPos.offset(member, face);
+            if (graph.getNetworkId(neighbor) == id) {
+                starts.add(neighbor);
+            }
+        }
+        detachFragments(id, starts);
+    }
+
+
+    /**
+     * Wires have been removed from a network. Every fragment that isn't connected to the rest anymore becomes a network of
+     * its own
+     *
+     * @param starts The members of the network next to the removed wires
+     */
+    private void detachFragments(int id, Collection<Long> starts) {
+        if (starts.size() < 2) {
+            return;
+        }
+
+        long[] startPositions = starts.stream().mapToLong(Long::longValue).toArray();
+        for (List<Long> fragment : SplitSearch.findDetachedFragments(startPositions, pos -> graph.getNetworkId(pos) == id)) {
+            WireNetwork split = graph.split(id, fragment);
+            simulator.submit(CircuitCommand.split(id, split.getId(), fragment));
+            limiter.inherit(id, split.getId());
+            if (split.isDecaying()) {
+                changedDecayNetworks.add(split.getId());
+            }
+        }
+    }
+
+
+    /** Remove a network from the graph and the simulation */
+    private void dropNetwork(int id) {
+        detectors.remove(id);
+        decayLevels.remove(id);
+        changedDecayNetworks.remove(id);
+        deferredPowers.remove(id);
+        if (graph.remove(id) != null) {
+            simulator.submit(CircuitCommand.drop(id));
+        }
+    }
+
+
+    /**
+     * Run a read-only operation (one that doesn't write to the world) with a {@link BlockStateCache}. Nested operations
+     * share the cache of the outermost one
+     */
+    private <T> T withReadCache(Supplier<T> operation) {
+        if (cache != null) {
+            return operation.get();
+        }
+
+        cache = new BlockStateCache(world);
+        try {
+            return operation.get();
+        } finally {
+            cache = null;
+        }
+    }
+
+
+    private boolean isLoaded(long packedPos) {
+        return cache != null ? cache.isLoaded(packedPos) : world.isBlockLoaded(BlockPos.fromLong(packedPos));
+    }
+
+
+    /** Whether there is a (loaded) wire at the packed position */
+    private boolean isWire(long packedPos) {
+        if (cache != null) {
+            return cache.isLoaded(packedPos) && cache.getBlockState(packedPos).isIn(BlockRegister.REFINED_REDSTONE.get());
+        }
+        BlockPos pos = BlockPos.fromLong(packedPos);
+        return world.isBlockLoaded(pos) && world.getBlockState(pos).isIn(BlockRegister.REFINED_REDSTONE.get());
+    }
+
+
+    /** Read the level of one input face. Faces towards other wires never have an input */
+    private int readInput(long member, int face) {
+        if (isWire(PackedPos.offset(member, face))) {
+            return 0;
+        }
+
+        RefinedRedstoneBlock block = BlockRegister.REFINED_REDSTONE.get();
+        BlockPos pos = BlockPos.fromLong(member);
+        Direction direction = Direction.byIndex(face);
+        return cache != null ? block.getInputPower(cache, pos, direction) : block.getInputPower(world, pos, direction);
+    }
+
+
+    /** Read all six input faces of a member, packed into an int like in {@link CompiledNetwork} */
+    private int readInputs(long member) {
+        return access.readInputs(member);
+    }
+
+
+    /** Remember the input faces of a member as the simulation got them */
+    private void cacheInputs(long member, int faces) {
+        if (faces == 0) {
+            cachedInputs.remove(member);
+        } else {
+            cachedInputs.put(member, faces);
+        }
+    }
+
+
+    /** The level of one input face as the simulation got it */
+    private int getCachedInput(long member, int face) {
+        return (cachedInputs.get(member) >>> (face << 2)) & 0xF;
+    }
+
+
+    // ---------------------------------------- //
+    //               Oscillations               //
+    // ---------------------------------------- //
+
+    /**
+     * Pass a changed input on to the network. <br><br>
+     *
+     * With {@link ConfigHandler#OSCILLATION_DETECTION} every change is also shown to the {@link OscillationDetector} of the
+     * network, together with the power it results in, so the Power Meter can tell when a network is driven by a clock.
+     * The network is always evaluated normally. Only synchronous simulation is watched, and only changes of networks
+     * driven directly (not through other networks), since only then the power after a change is known right away.
+     */
+    private void applyInput(int id, long member, int face, int level) {
+        if (recorder != null) {
+            recorder.input(member, face, level);
+        }
+        int shift = face << 2;
+        cacheInputs(member, (cachedInputs.get(member) & ~(0xF << shift)) | (level << shift));
+        simulator.submit(CircuitCommand.input(id, member, face, level));
+
+        WireNetwork current = graph.get(id);
+        if (current != null && current.isDecaying()) {
+            // Every input counts in decay mode, not only the strongest one
+            changedDecayNetworks.add(id);
+            return;
+        }
+
+        OscillationDetector detector = getOrCreateDetector(id);
+        if (detector == null || !detector.updateLevel(member, face, level)) {
+            return;
+        }
+        if (committing) {
+            // Driven by another network: the power isn't known before that one is done
+            detector.reset();
+            return;
+        }
+
+        flushImmediate();
+        WireNetwork network = graph.get(id);
+        if (network == null) {
+            return;
+        }
+
+        long tick = world.getGameTime();
+        if (detector.isLocked() && !detector.matches(tick, member, face, level, network.getPower())) {
+            detector.unlock();
+        }
+        if (!detector.isLocked()) {
+            detector.record(tick, member, face, level, network.getPower());
+        }
+    }
+
+
+    /** Write the networks the {@link RateLimiter} held back, as far as it lets them update by now */
+    private void commitDeferred() {
+        if (deferredPowers.isEmpty()) {
+            return;
+        }
+
+        committing = true;
+        try {
+            for (Map.Entry<Integer, Integer> entry : new ArrayList<>(deferredPowers.entrySet())) {
+                int id = entry.getKey();
+                WireNetwork network = graph.get(id);
+                if (network == null) {
+                    deferredPowers.remove(id);
+                } else if (limiter.isFrozen(id)) {
+                    continue;
+                } else if (network.isDecaying()) {
+                    deferredPowers.remove(id);
+                    changedDecayNetworks.add(id);
+                } else {
+                    commit(id, entry.getValue());
+                }
+            }
+        } finally {
+            committing = false;
+        }
+        flushImmediate();
+    }
+
+
+    /** The topology of a network changed, so its history doesn't mean anything anymore */
+    private void forgetDetector(int id) {
+        detectors.remove(id);
+    }
+
+
+    @Nullable
+    private OscillationDetector getOrCreateDetector(int id) {
+        if (simulator.isThreaded() || !ConfigHandler.OSCILLATION_DETECTION.get()) {
+            return null;
+        }
+        return detectors.computeIfAbsent(id, key -> new OscillationDetector(ConfigHandler.OSCILLATION_CYCLES.get()));
+    }
+
+
+    // ---------------------------------------- //
+    //                  Power                   //
+    // ---------------------------------------- //
+
+    /** In synchronous mode the results are available right away, so write them to the world now */
+    private void flushImmediate() {
+        if (!simulator.isThreaded()) {
+            applyChanges();
+        }
+    }
+
+
+    /**
+     * Write all power changes reported by the simulation to the world. Writing the power notifies the neighbors, which
+     * can cause further changes. Those are collected and applied in the same loop instead of recursing.
+     */
+    private void applyChanges() {
+        if (committing) {
+            return;
+        }
+
+        committing = true;
+        long profilingStart = Profiling.begin();
+        foldOrigin = 0;
+        foldMembers = 0;
+        int rounds = 0;
+        int commits = 0;
+        try {
+            PowerChanges changes;
+            do {
+                try {
+                    changes = simulator.takeChanges();
+                } catch (IllegalStateException exception) {
+                    fallBackToSynchronous(exception);
+                    return;
+                }
+
+                for (int i = 0; i < changes.size(); i++) {
+                    commit(changes.getId(i), changes.getPower(i));
+                }
+                rounds++;
+                commits += changes.size();
+                simulator.releaseChanges();
+                commits += applyDecay();
+            } while (!simulator.isThreaded() && (!changes.isEmpty() || !changedDecayNetworks.isEmpty()));
+        } finally {
+            committing = false;
+            if (commits > 0) {
+                Profiling.cascadeFold(profilingStart, foldOrigin, rounds, commits, foldMembers);
+            }
+        }
+    }
+
+
+    /**
+     * Set the Power of every Block in the Network
+     *
+     * @param id The id of the network
+     * @param power The Power to set those Blocks to
+     */
+    private void commit(int id, int power) {
+        WireNetwork network = graph.get(id);
+        if (network == null) {
+            return;
+        }
+        if (!network.isDecaying() && !limiter.allowUpdate(network)) {
+            deferredPowers.put(id, power);
+            return;
+        }
+        deferredPowers.remove(id);
+
+        long profilingStart = Profiling.begin();
+        network.setPower(power);
+        if (recorder != null) {
+            recorder.power(network, power);
+        }
+        if (!listeners.isEmpty()) {
+            changedThisTick.put(id, power);
+        }
+        if (network.isDecaying()) {
+            // The strongest input changed, which is only where the decay starts
+            changedDecayNetworks.add(id);
+            return;
+        }
+
+        stats.countRecomputation();
+        if (heatMap.isActive()) {
+            heatMap.countCommit(network);
+        }
+
+        int updated = writeAll(network, power);
+        countFold(network);
+        Profiling.powerCommit(profilingStart, network, power, updated);
+    }
+
+
+    /**
+     * Write the same power to every member of a network
+     *
+     * @return How many members changed
+     */
+    private int writeAll(WireNetwork network, int power) {
+        Set<Long> written = new LinkedHashSet<>();
+        LongList changed = new LongArrayList();
+        for (long member : new ArrayList<>(network.getMembers())) {
+            if (writer.writePower(BlockPos.fromLong(member), power, false)) {
+                written.add(PackedPos.chunkKey(member));
+                changed.add(member);
+                limiter.countWrite(network, member);
+            }
+        }
+        writer.sendPowerUpdates(network, written);
+        writer.notifyOutside(network, changed);
+        return changed.size();
+    }
+
+
+    /**
+     * Compute the power of every member of the networks in decay mode whose inputs or topology changed. The inputs come
+     * from the cache that {@link NetworkManager#applyInput} keeps up to date, so nothing is read from the world. Only the
+     * members whose power differs from the last computation are written
+     *
+     * @return How many networks were computed
+     */
+    private int applyDecay() {
+        int computed = 0;
+        while (!changedDecayNetworks.isEmpty()) {
+            Iterator<Integer> iterator = changedDecayNetworks.iterator();
+            int id = iterator.next();
+            iterator.remove();
+
+            WireNetwork network = graph.get(id);
+            if (network == null || !network.isDecaying()) {
+                decayLevels.remove(id);
+                continue;
+            }
+            if (!limiter.allowUpdate(network)) {
+                deferredPowers.put(id, network.getPower());
+                continue;
+            }
+            deferredPowers.remove(id);
+
+            long profilingStart = Profiling.begin();
+            Map<Long, Integer> inputs = new HashMap<>();
+            for (long member : network.getMembers()) {
+                int faces = cachedInputs.get(member);
+                if (faces != 0) {
+                    inputs.put(member, faces);
+                }
+            }
+            Map<Long, Integer> levels = DecayField.compute(network.getMembers(), inputs);
+            Map<Long, Integer> previous = decayLevels.put(id, levels);
+            stats.countRecomputation();
+            if (heatMap.isActive()) {
+                heatMap.countCommit(network);
+            }
+
+            if (previous == null && PowerWriter.usesPowerPackets()) {
+                // The members are sent one by one from now on, the clients must not keep the power of the whole network
+                PacketHandler.sendNetworkReleased(world, network, network.getChunks());
+            }
+
+            LongList changed = new LongArrayList();
+            LongList unsynced = new LongArrayList();
+            for (long member : new ArrayList<>(network.getMembers())) {
+                int level = levels.getOrDefault(member, 0);
+                if (previous != null && previous.getOrDefault(member, 0) == level) {
+                    continue;
+                }
+                if (writer.writePower(BlockPos.fromLong(member), level, true)) {
+                    changed.add(member);
+                    limiter.countWrite(network, member);
+                } else if (previous == null && PowerWriter.usesPowerPackets()) {
+                    // The clients only know the power of the whole network, not the one this member already has
+                    unsynced.add(member);
+                }
+            }
+            if (ConfigHandler.CHUNK_POWER_STORAGE.get()) {
+                // There is no block state to sync, so the members are sent with their power
+                Map<Long, Integer> written = new HashMap<>();
+                for (LongList members : Arrays.asList(changed, unsynced)) {
+                    for (int i = 0; i < members.size(); i++) {
+                        written.put(members.getLong(i), levels.getOrDefault(members.getLong(i), 0));
+                    }
+                }
+                if (!written.isEmpty()) {
+                    PacketHandler.sendWirePower(world, written);
+                }
+            } else {
+                for (int i = 0; i < unsynced.size(); i++) {
+                    writer.syncBlock(BlockPos.fromLong(unsynced.getLong(i)));
+                }
+            }
+            writer.notifyOutside(network, changed);
+            computed++;
+            countFold(network);
+            Profiling.powerCommit(profilingStart, network, network.getPower(), changed.size());
+        }
+        return computed;
+    }
+
+
+    /** Remember the members of a network that was written during the current fold, for its profiling event */
+    private void countFold(WireNetwork network) {
+        if (foldMembers == 0) {
+            foldOrigin = Profiling.getOrigin(network);
+        }
+        foldMembers += network.size();
+    }
+
+
+    /** Read the inputs again whose debounce window is over, and pass them on if they still differ */
+    private void pollConditioner() {
+        long tick = world.getGameTime();
+        conditioner.poll(tick, (member, face) -> {
+            int id = graph.getNetworkId(member);
+            if (id != 0 && isWire(member)) {
+                int level = readInput(member, face);
+                if (conditioner.offer(member, face, level, tick)) {
+                    applyInput(id, member, face, level);
+                }
+            }
+        });
+        flushImmediate();
+    }
+
+
+    /** Hand the power changes of this tick to the listeners of the API */
+    private void notifyListeners() {
+        if (changedThisTick.isEmpty()) {
+            return;
+        }
+
+        Map<Integer, Integer> changes = Collections.unmodifiableMap(new LinkedHashMap<>(changedThisTick));
+        changedThisTick.clear();
+        for (INetworkListener listener : new ArrayList<>(listeners)) {
+            listener.onPowerChanged(world, changes);
+        }
+    }
+
+
+    /** Bring the members in freshly loaded chunks up to date, and traverse networks that might continue in them again */
+    private void processLoadedChunks() {
+        while (!loadedChunks.isEmpty()) {
+            long chunk = loadedChunks.remove();
+
+            for (int id : graph.getNetworksWaitingForChunk(chunk)) {
+                dropNetwork(id);
+            }
+
+            for (int id : graph.getNetworksInChunk(chunk)) {
+                WireNetwork network = graph.get(id);
+                if (network.isDecaying()) {
+                    // Computing the network from scratch writes every member that differs
+                    decayLevels.remove(id);
+                    changedDecayNetworks.add(id);
+                    continue;
+                }
+
+                LongList changed = new LongArrayList();
+                for (long member : network.getMembers()) {
+                    if (PackedPos.chunkKey(member) == chunk) {
+                        BlockPos pos = BlockPos.fromLong(member);
+                        if (writer.writePower(pos, network.getPower(), false)) {
+                            changed.add(member);
+                        }
+                    }
+                }
+                if (!changed.isEmpty()) {
+                    writer.sendPowerUpdates(network, Collections.singleton(chunk));
+                    writer.notifyOutside(network, changed);
+                }
+            }
+        }
+
+        if (!changedDecayNetworks.isEmpty()) {
+            flushImmediate();
+        }
+    }
+
+
+    /** The simulation thread failed. Continue on the server thread and rebuild every network from the world */
+    private void fallBackToSynchronous(IllegalStateException exception) {
+        RefinedRedstone.MOD_LOGGER.log(Level.SEVERE, "Falling back to synchronous circuit simulation", exception);
+        simulator.shutdown();
+        simulator = new CircuitSimulator(getThreadName(), false);
+        graph.clear();
+        cachedInputs.clear();
+        detectors.clear();
+        decayLevels.clear();
+        changedDecayNetworks.clear();
+        storedNetworks.close();
+    }
+
+
+    // ---------------------------------------- //
+    //               Persistence                //
+    // ---------------------------------------- //
+
+    /** Write all complete networks, plus the stored ones that haven't been needed yet, to the index file */
+    private void save() {
+        Map<Integer, CompiledNetwork> compiled;
+        try {
+            compiled = simulator.snapshot();
+        } catch (IllegalStateException exception) {
+            RefinedRedstone.MOD_LOGGER.log(Level.WARNING, "Couldn't save the network index", exception);
+            return;
+        }
+
+        List<StoredNetwork> networks = new ArrayList<>();
+        for (WireNetwork network : graph.getNetworks()) {
+            CompiledNetwork state = compiled.get(network.getId());
+            if (state != null && network.isComplete()) {
+                networks.add(StoredNetwork.of(network, state));
+            }
+        }
+        storedNetworks.save(graph.getNextId(), networks);
+    }
+
+
+    // ---------------------------------------- //
+    //                 Helpers                  //
+    // ---------------------------------------- //
+
+    /** The conditioner for the inputs of the networks, or null if neither debouncing nor hysteresis is configured */
+    private static InputConditioner createConditioner() {
+        int window = ConfigHandler.INPUT_DEBOUNCE_TICKS.get();
+        int hysteresis = ConfigHandler.INPUT_HYSTERESIS.get();
+        return window > 0 || hysteresis > 1 ? new InputConditioner(window, hysteresis) : null;
+    }
+
+
+    private CircuitSimulator createSimulator() {
+        return new CircuitSimulator(getThreadName(), ConfigHandler.SIMULATION_THREAD.get());
+    }
+
+
+    private String getThreadName() {
+        return "Refined Redstone Simulation (" + world.getDimensionKey().getLocation() + ")";
+    }
+}
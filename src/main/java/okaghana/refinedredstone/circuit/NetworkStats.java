@@ -0,0 +1,91 @@
+package okaghana.refinedredstone.circuit;
+
+/**
+ * Counters of the work a {@link NetworkManager} did, for benchmarks and debugging. They only ever count up, take a
+ * {@link NetworkStats#copy()} before and after and look at the difference.
+ */
+public class NetworkStats {
+
+    private long inputChanges = 0;
+    private long unchangedInputs = 0;
+    private long traversals = 0;
+    private long traversedWires = 0;
+    private long recomputations = 0;
+    private long blockUpdates = 0;
+    private long notifications = 0;
+
+
+    void countInputChange() {
+        inputChanges++;
+    }
+
+    void countUnchangedInput() {
+        unchangedInputs++;
+    }
+
+    void countTraversal(int wires) {
+        traversals++;
+        traversedWires += wires;
+    }
+
+    void countRecomputation() {
+        recomputations++;
+    }
+
+    void countBlockUpdate() {
+        blockUpdates++;
+    }
+
+    void countNotification() {
+        notifications++;
+    }
+
+
+    /** How often a neighbor of a wire changed */
+    public long getInputChanges() {
+        return inputChanges;
+    }
+
+    /** How many of the input changes turned out not to change the level of the input, so they were ignored */
+    public long getUnchangedInputs() {
+        return unchangedInputs;
+    }
+
+    /** How often a network has been traversed in the world */
+    public long getTraversals() {
+        return traversals;
+    }
+
+    /** How many wires have been visited by all traversals together */
+    public long getTraversedWires() {
+        return traversedWires;
+    }
+
+    /** How often a new power has been written to a network */
+    public long getRecomputations() {
+        return recomputations;
+    }
+
+    /** How many wires have been written to the world */
+    public long getBlockUpdates() {
+        return blockUpdates;
+    }
+
+    /** How many blocks around the networks have been notified of a new power */
+    public long getNotifications() {
+        return notifications;
+    }
+
+
+    public NetworkStats copy() {
+        NetworkStats copy = new NetworkStats();
+        copy.inputChanges = inputChanges;
+        copy.unchangedInputs = unchangedInputs;
+        copy.traversals = traversals;
+        copy.traversedWires = traversedWires;
+        copy.recomputations = recomputations;
+        copy.blockUpdates = blockUpdates;
+        copy.notifications = notifications;
+        return copy;
+    }
+}
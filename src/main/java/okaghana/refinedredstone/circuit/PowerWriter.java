@@ -0,0 +1,219 @@
+package okaghana.refinedredstone.circuit;
+
+import it.unimi.dsi.fastutil.longs.Long2LongLinkedOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2LongMap;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongList;
+import it.unimi.dsi.fastutil.longs.LongOpenHashSet;
+import it.unimi.dsi.fastutil.longs.LongSet;
+import net.minecraft.block.Block;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.ObserverBlock;
+import net.minecraft.util.Direction;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraftforge.common.util.Constants;
+import okaghana.refinedredstone.block.RefinedRedstoneBlock;
+import okaghana.refinedredstone.capability.ChunkPowerStorage;
+import okaghana.refinedredstone.engine.PackedPos;
+import okaghana.refinedredstone.engine.WireNetwork;
+import okaghana.refinedredstone.network.PacketHandler;
+import okaghana.refinedredstone.setup.BlockRegister;
+import okaghana.refinedredstone.setup.ConfigHandler;
+
+import java.util.Collection;
+
+/**
+ * Brings the power the {@link NetworkManager} decided on into the world: writes it to the wires, tells the clients about
+ * it and notifies the blocks around the wires that changed. <br><br>
+ *
+ * Writing and notifying are separate steps, so the manager can write a whole network first and notify every block around
+ * it once afterwards. <br><br>
+ *
+ * The power is written without shape updates, since a wire's shape never depends on its power, so no block around it
+ * has to change its own shape either. Observers are the exception: they fire on any change of the block they watch.
+ * They are found while notifying the neighbors, and only get the shape update from the wire they actually watch.
+ */
+class PowerWriter {
+
+    // Write the power without notifying the neighbors or updating their shapes (that is done by notifyOutside) and
+    // without telling the clients
+    private static final int WRITE_FLAGS = Constants.BlockFlags.UPDATE_NEIGHBORS;
+    // The same, but the block change is sent to the clients. Only for power that isn't sent as a packet
+    private static final int SYNCED_WRITE_FLAGS = WRITE_FLAGS | Constants.BlockFlags.BLOCK_UPDATE;
+
+    private final World world;
+    private final NetworkStats stats;
+    private final HeatMap heatMap;
+
+
+    PowerWriter(World world, NetworkStats stats, HeatMap heatMap) {
+        this.world = world;
+        this.stats = stats;
+        this.heatMap = heatMap;
+    }
+
+
+    /**
+     * Write the power to one member. Members in unloaded chunks are updated when their chunk is loaded again. <br><br>
+     *
+     * With {@link ConfigHandler#CHUNK_POWER_STORAGE} the power only goes into the {@link ChunkPowerStorage} of the chunk.
+     * With that or {@link ConfigHandler#DECOUPLED_POWER_RENDERING} the block change isn't sent to the clients at all, they
+     * learn about the new power from {@link PowerWriter#sendPowerUpdates(WireNetwork, Collection)} and keep their old
+     * chunk mesh. Otherwise, and for members of networks in decay mode (which have no power of their own to send), the
+     * change is sent as a normal block update. The neighbors aren't notified here at all, the caller
+     * has to pass the changed members to {@link PowerWriter#notifyOutside(WireNetwork, LongList)}.
+     *
+     * @param decaying Whether the member belongs to a network in decay mode
+     * @return Whether the power of the member changed
+     */
+    boolean writePower(BlockPos pos, int power, boolean decaying) {
+        if (!world.isBlockLoaded(pos)) {
+            return false;
+        }
+
+        BlockState state = world.getBlockState(pos);
+        if (!state.isIn(BlockRegister.REFINED_REDSTONE.get())) {
+            return false;
+        }
+
+        if (ConfigHandler.CHUNK_POWER_STORAGE.get()) {
+            Chunk chunk = world.getChunkAt(pos);
+            ChunkPowerStorage storage = ChunkPowerStorage.get(chunk);
+            if (storage != null && storage.set(pos, power)) {
+                chunk.markDirty();
+                countWrite(pos);
+                return true;
+            }
+            return false;
+        }
+
+        if (state.get(RefinedRedstoneBlock.POWER) != power) {
+            world.setBlockState(pos, state.with(RefinedRedstoneBlock.POWER, power), usesPowerPackets() && !decaying ? WRITE_FLAGS : SYNCED_WRITE_FLAGS);
+            countWrite(pos);
+            return true;
+        }
+        return false;
+    }
+
+
+    /**
+     * Notify every block around the changed members of a network exactly once. <br><br>
+     *
+     * Members of the network itself are skipped, their input never depends on their own power. The wires give off strong
+     * power, so a solid block next to a member passes the change on to its own neighbors, which are notified as well (the
+     * same second ring vanilla dust updates, but only where it matters). Every block is notified from the first member or
+     * solid block it was found next to. Observers watching a changed member get a shape update from it afterwards
+     */
+    void notifyOutside(WireNetwork network, LongList changed) {
+        if (changed.isEmpty()) {
+            return;
+        }
+
+        Long2LongLinkedOpenHashMap targets = new Long2LongLinkedOpenHashMap();
+        LongList conductors = new LongArrayList();
+        LongList observers = new LongArrayList();
+        for (int i = 0; i < changed.size(); i++) {
+            long member = changed.getLong(i);
+            for (int face = 0; face < PackedPos.FACES; face++) {
+                long neighbor = PackedPos.offset(member, face);
+                if (network.contains(neighbor) || targets.containsKey(neighbor)) {
+                    continue;
+                }
+
+                targets.put(neighbor, member);
+                BlockPos pos = BlockPos.fromLong(neighbor);
+                if (!world.isBlockLoaded(pos)) {
+                    continue;
+                }
+
+                BlockState state = world.getBlockState(pos);
+                if (state.isNormalCube(world, pos)) {
+                    conductors.add(neighbor);
+                } else if (state.getBlock() instanceof ObserverBlock) {
+                    observers.add(neighbor);
+                }
+            }
+        }
+
+        for (int i = 0; i < conductors.size(); i++) {
+            long conductor = conductors.getLong(i);
+            for (int face = 0; face < PackedPos.FACES; face++) {
+                long neighbor = PackedPos.offset(conductor, face);
+                if (!network.contains(neighbor) && !targets.containsKey(neighbor)) {
+                    targets.put(neighbor, conductor);
+                }
+            }
+        }
+
+        Block wire = BlockRegister.REFINED_REDSTONE.get();
+        for (Long2LongMap.Entry target : targets.long2LongEntrySet()) {
+            BlockPos pos = BlockPos.fromLong(target.getLongKey());
+            if (world.isBlockLoaded(pos)) {
+                world.neighborChanged(pos, wire, BlockPos.fromLong(target.getLongValue()));
+                stats.countNotification();
+            }
+        }
+
+        if (!observers.isEmpty()) {
+            updateObservers(observers, new LongOpenHashSet(changed));
+        }
+    }
+
+
+    // Give every observer that watches one of the changed members the shape update vanilla would have sent
+    private void updateObservers(LongList observers, LongSet changed) {
+        for (int i = 0; i < observers.size(); i++) {
+            BlockPos pos = BlockPos.fromLong(observers.getLong(i));
+            BlockState state = world.getBlockState(pos);
+            if (!(state.getBlock() instanceof ObserverBlock)) {
+                // Replaced by one of the notifications
+                continue;
+            }
+
+            Direction facing = state.get(ObserverBlock.FACING);
+            BlockPos watched = pos.offset(facing);
+            if (changed.contains(watched.toLong())) {
+                state.updatePostPlacement(facing, world.getBlockState(watched), world, pos, watched);
+            }
+        }
+    }
+
+
+    /**
+     * Send the block state of a wire to the clients as it is. Needed when a network switches to decay mode: the power of
+     * a member that doesn't change has only reached the clients as a packet so far, not as a block update
+     */
+    void syncBlock(BlockPos pos) {
+        if (!world.isBlockLoaded(pos)) {
+            return;
+        }
+
+        BlockState state = world.getBlockState(pos);
+        if (state.isIn(BlockRegister.REFINED_REDSTONE.get())) {
+            world.notifyBlockUpdate(pos, state, state, Constants.BlockFlags.BLOCK_UPDATE);
+        }
+    }
+
+
+    /** Tell the clients about the new power of a network in the given chunks, if it isn't sent as block updates */
+    void sendPowerUpdates(WireNetwork network, Collection<Long> chunks) {
+        if (usesPowerPackets() && !chunks.isEmpty()) {
+            PacketHandler.sendNetworkPower(world, network, chunks);
+        }
+    }
+
+    /** Whether the clients get the power of the wires as {@link okaghana.refinedredstone.network.NetworkPowerPacket}s instead of block updates */
+    static boolean usesPowerPackets() {
+        return ConfigHandler.DECOUPLED_POWER_RENDERING.get() || ConfigHandler.CHUNK_POWER_STORAGE.get();
+    }
+
+
+    private void countWrite(BlockPos pos) {
+        stats.countBlockUpdate();
+        if (heatMap.isActive()) {
+            heatMap.countWrite(pos.toLong());
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package okaghana.refinedredstone.circuit;
+
+import net.minecraft.entity.player.ServerPlayerEntity;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.util.Util;
+import net.minecraft.util.text.StringTextComponent;
+import net.minecraft.util.text.TextFormatting;
+import net.minecraft.world.World;
+import okaghana.refinedredstone.RefinedRedstone;
+import okaghana.refinedredstone.engine.NetworkGraph;
+import okaghana.refinedredstone.engine.PackedPos;
+import okaghana.refinedredstone.engine.SlidingWindow;
+import okaghana.refinedredstone.engine.WireNetwork;
+import okaghana.refinedredstone.setup.ConfigHandler;
+
+import javax.annotation.Nullable;
+import java.util.*;
+import java.util.logging.Level;
+
+/**
+ * Protects the server from Refined Redstone networks that are updated far more often than any sensible circuit needs,
+ * e.g. lag machines built on purpose. <br><br>
+ *
+ * The recomputations of every network and the block writes in every chunk are counted in {@link SlidingWindow}s over
+ * {@link ConfigHandler#RATE_LIMIT_WINDOW} ticks. A network that goes over {@link ConfigHandler#RATE_LIMIT_NETWORK_UPDATES},
+ * or writes to a chunk that goes over {@link ConfigHandler#RATE_LIMIT_CHUNK_WRITES}, becomes an offender: depending on
+ * {@link ConfigHandler#RATE_LIMIT_ACTION} it is either throttled to one update every
+ * {@link ConfigHandler#RATE_LIMIT_THROTTLED_INTERVAL} ticks or frozen completely. Operators are told in the chat, and the
+ * location is logged. <br><br>
+ *
+ * Updates that are held back aren't lost: the {@link NetworkManager} keeps the latest power of the network and writes it
+ * as soon as the network may update again, or when an operator releases it with {@code /refinedredstone throttle release}.
+ */
+public class RateLimiter {
+
+    public enum Action { OFF, THROTTLE, FREEZE }
+
+    /** How often windows and offenders of networks that don't exist anymore are cleaned up */
+    private static final int CLEANUP_INTERVAL = 200;
+
+    private final World world;
+    private final NetworkGraph graph;
+    private final Map<Integer, SlidingWindow> networkUpdates = new HashMap<>();
+    private final Map<Long, SlidingWindow> chunkWrites = new HashMap<>();
+    private final Map<Integer, Offender> offenders = new LinkedHashMap<>();
+
+
+    RateLimiter(World world, NetworkGraph graph) {
+        this.world = world;
+        this.graph = graph;
+    }
+
+
+    // ---------------------------------------- //
+    //                 Counting                 //
+    // ---------------------------------------- //
+
+    /**
+     * A network is about to be recomputed and written. Counts the update, and makes the network an offender if it has been
+     * updated too often
+     *
+     * @return Whether the update may happen now. If not, it has to be tried again later
+     */
+    boolean allowUpdate(WireNetwork network) {
+        Action action = ConfigHandler.RATE_LIMIT_ACTION.get();
+        if (action == Action.OFF && offenders.isEmpty()) {
+            return true;
+        }
+
+        long tick = world.getGameTime();
+        Offender offender = offenders.get(network.getId());
+        if (offender != null) {
+            if (offender.frozen || tick < offender.nextUpdate) {
+                return false;
+            }
+            offender.nextUpdate = tick + ConfigHandler.RATE_LIMIT_THROTTLED_INTERVAL.get();
+            return true;
+        }
+        if (action == Action.OFF) {
+            return true;
+        }
+
+        int window = ConfigHandler.RATE_LIMIT_WINDOW.get();
+        int updates = networkUpdates.computeIfAbsent(network.getId(), id -> new SlidingWindow(window)).add(tick, 1);
+        if (updates > ConfigHandler.RATE_LIMIT_NETWORK_UPDATES.get()) {
+            long first = network.getMembers().iterator().next();
+            punish(network, action, first, updates + " updates in " + window + " ticks");
+            return action == Action.THROTTLE;
+        }
+        return true;
+    }
+
+
+    /** A member of a network has been written. Makes the network an offender if its chunk has been written too often */
+    void countWrite(WireNetwork network, long pos) {
+        Action action = ConfigHandler.RATE_LIMIT_ACTION.get();
+        if (action == Action.OFF) {
+            return;
+        }
+
+        int window = ConfigHandler.RATE_LIMIT_WINDOW.get();
+        int writes = chunkWrites.computeIfAbsent(PackedPos.chunkKey(pos), chunk -> new SlidingWindow(window)).add(world.getGameTime(), 1);
+        if (writes > ConfigHandler.RATE_LIMIT_CHUNK_WRITES.get() && !offenders.containsKey(network.getId())) {
+            punish(network, action, pos, writes + " block writes in its chunk in " + window + " ticks");
+        }
+    }
+
+
+    private void punish(WireNetwork network, Action action, long pos, String reason) {
+        long tick = world.getGameTime();
+        Offender offender = new Offender(network.getId(), action == Action.FREEZE, tick, pos, reason);
+        offender.nextUpdate = tick + ConfigHandler.RATE_LIMIT_THROTTLED_INTERVAL.get();
+        offenders.put(network.getId(), offender);
+        networkUpdates.remove(network.getId());
+
+        String message = String.format("Refined Redstone network %d (%d wires) at %s in %s %s: %s", network.getId(),
+                network.size(), PackedPos.toString(pos), world.getDimensionKey().getLocation(),
+                offender.frozen ? "has been frozen" : "has been throttled", reason);
+        RefinedRedstone.MOD_LOGGER.log(Level.WARNING, message);
+        alertOperators(message);
+    }
+
+
+    private void alertOperators(String message) {
+        MinecraftServer server = world.getServer();
+        if (server == null) {
+            return;
+        }
+
+        StringTextComponent text = new StringTextComponent(message);
+        text.mergeStyle(TextFormatting.RED);
+        for (ServerPlayerEntity player : server.getPlayerList().getPlayers()) {
+            if (player.hasPermissionLevel(2)) {
+                player.sendMessage(text, Util.DUMMY_UUID);
+            }
+        }
+    }
+
+
+    // ---------------------------------------- //
+    //                Offenders                 //
+    // ---------------------------------------- //
+
+    /** Whether the network is frozen, i.e. nothing but a release lets it update again */
+    boolean isFrozen(int id) {
+        Offender offender = offenders.get(id);
+        return offender != null && offender.frozen;
+    }
+
+    /** The offender of a network, or null if it isn't limited */
+    @Nullable
+    public Offender getOffender(int id) {
+        return offenders.get(id);
+    }
+
+    public Collection<Offender> getOffenders() {
+        return Collections.unmodifiableCollection(offenders.values());
+    }
+
+    /** @return Whether the network was limited */
+    boolean release(int id) {
+        networkUpdates.remove(id);
+        return offenders.remove(id) != null;
+    }
+
+
+    /**
+     * A network has been replaced by another one (e.g. it was joined with a neighbor and traversed again). An offender
+     * stays one, so a lag machine can't be freed by placing a wire next to it
+     */
+    void inherit(int from, int to) {
+        Offender offender = offenders.get(from);
+        if (offender != null && !offenders.containsKey(to)) {
+            Offender copy = new Offender(to, offender.frozen, offender.since, offender.pos, offender.reason);
+            copy.nextUpdate = offender.nextUpdate;
+            offenders.put(to, copy);
+        }
+    }
+
+
+    /** Called at the end of every tick. Forgets windows and offenders of networks that don't exist anymore */
+    void tick() {
+        if (world.getGameTime() % CLEANUP_INTERVAL != 0) {
+            return;
+        }
+
+        long tick = world.getGameTime();
+        networkUpdates.entrySet().removeIf(entry -> graph.get(entry.getKey()) == null || entry.getValue().getTotal(tick) == 0);
+        chunkWrites.values().removeIf(window -> window.getTotal(tick) == 0);
+        offenders.keySet().removeIf(id -> graph.get(id) == null);
+    }
+
+
+    /** A network that is throttled or frozen */
+    public static class Offender {
+        private final int id;
+        private final boolean frozen;
+        private final long since;
+        private final long pos;
+        private final String reason;
+        private long nextUpdate;
+
+        private Offender(int id, boolean frozen, long since, long pos, String reason) {
+            this.id = id;
+            this.frozen = frozen;
+            this.since = since;
+            this.pos = pos;
+            this.reason = reason;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public boolean isFrozen() {
+            return frozen;
+        }
+
+        /** The game time at which the network was limited */
+        public long getSince() {
+            return since;
+        }
+
+        /** The packed position of the wire it was caught at */
+        public long getPos() {
+            return pos;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+    }
+}
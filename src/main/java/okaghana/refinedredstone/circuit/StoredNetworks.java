@@ -0,0 +1,174 @@
+package okaghana.refinedredstone.circuit;
+
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.world.DimensionType;
+import net.minecraft.world.World;
+import net.minecraft.world.storage.FolderName;
+import okaghana.refinedredstone.RefinedRedstone;
+import okaghana.refinedredstone.engine.NetworkIndexFile;
+import okaghana.refinedredstone.engine.StoredNetwork;
+
+import javax.annotation.Nullable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.logging.Level;
+
+/**
+ * The {@link NetworkIndexFile} of a dimension, which lives in the folder of the dimension next to its region folder.
+ * <br><br>
+ *
+ * The file is opened when the {@link NetworkManager} of the world is created, and the networks are taken out of it one
+ * by one as they are needed. A missing or invalid file is simply ignored, the networks are then rebuilt from the world.
+ * <br><br>
+ *
+ * The opened file stays mapped, so saving never writes over it. Every save writes the next generation of the file and
+ * deletes the older ones, except the one that is still open. Only the newest generation is ever loaded: an older one
+ * could be missing networks that have changed since.
+ */
+class StoredNetworks {
+
+    private static final String INDEX_NAME = "refinedredstone_networks";
+
+    @Nullable
+    private final Path folder;
+    @Nullable
+    private NetworkIndexFile file;
+    private long openGeneration = -1;
+
+
+    StoredNetworks(World world) {
+        this.folder = getIndexFolder(world);
+        open();
+    }
+
+
+    /** Whether there might be networks left to take out of the file */
+    boolean isOpen() {
+        return file != null;
+    }
+
+    /** The next free network id at the time the file was written, 0 without a file */
+    int getNextId() {
+        return file == null ? 0 : file.getNextId();
+    }
+
+
+    /**
+     * Take the network of a wire out of the file. The file is closed once every network has been taken
+     *
+     * @return The network, or null if it isn't stored (anymore)
+     */
+    @Nullable
+    StoredNetwork take(long member) {
+        if (file == null) {
+            return null;
+        }
+
+        int record = file.find(member);
+        if (record < 0) {
+            return null;
+        }
+
+        StoredNetwork stored = file.take(record);
+        if (file.isExhausted()) {
+            close();
+        }
+        return stored;
+    }
+
+
+    /** The stored network of the wire at member is outdated */
+    void invalidate(long member) {
+        if (file != null) {
+            file.invalidate(member);
+        }
+    }
+
+
+    /**
+     * Write the given networks, plus the stored ones that haven't been needed yet, to the file
+     *
+     * @param nextId The next free network id
+     */
+    void save(int nextId, Collection<StoredNetwork> networks) {
+        if (folder == null) {
+            return;
+        }
+
+        List<StoredNetwork> all = new ArrayList<>(networks);
+        if (file != null) {
+            all.addAll(file.getRemaining());
+        }
+
+        try {
+            long generation = NetworkIndexFile.findLatestGeneration(folder, INDEX_NAME) + 1;
+            NetworkIndexFile.write(NetworkIndexFile.getGenerationPath(folder, INDEX_NAME, generation), nextId, all);
+            NetworkIndexFile.deleteGenerations(folder, INDEX_NAME, generation, openGeneration);
+        } catch (IOException exception) {
+            RefinedRedstone.MOD_LOGGER.log(Level.WARNING, "Couldn't save the network index to " + folder, exception);
+        }
+    }
+
+
+    /**
+     * Stop taking networks from the file, e.g. because the networks are rebuilt anyway. The file itself stays on disk
+     * until the next save, and its mapping stays alive until it is garbage collected
+     */
+    void close() {
+        if (file == null) {
+            return;
+        }
+
+        try {
+            file.close();
+        } catch (IOException exception) {
+            RefinedRedstone.MOD_LOGGER.log(Level.WARNING, "Couldn't close the network index in " + folder, exception);
+        }
+        file = null;
+        openGeneration = -1;
+    }
+
+
+    // ---------------------------------------- //
+    //                 Helpers                  //
+    // ---------------------------------------- //
+
+    private void open() {
+        if (folder == null) {
+            return;
+        }
+
+        Path path = null;
+        try {
+            long generation = NetworkIndexFile.findLatestGeneration(folder, INDEX_NAME);
+            if (generation < 0) {
+                return;
+            }
+
+            // Left over from saves whose cleanup failed
+            NetworkIndexFile.deleteGenerations(folder, INDEX_NAME, generation);
+            path = NetworkIndexFile.getGenerationPath(folder, INDEX_NAME, generation);
+            file = NetworkIndexFile.open(path);
+            openGeneration = file == null ? -1 : generation;
+        } catch (IOException exception) {
+            RefinedRedstone.MOD_LOGGER.log(Level.WARNING, "Ignoring the network index " + (path == null ? folder : path) + ", the networks will be rebuilt", exception);
+            file = null;
+        }
+    }
+
+
+    @Nullable
+    private static Path getIndexFolder(World world) {
+        MinecraftServer server = world.getServer();
+        if (server == null) {
+            return null;
+        }
+
+        File worldFolder = server.func_240776_a_(FolderName.DOT).toFile();
+        return DimensionType.getDimensionFolder(world.getDimensionKey(), worldFolder).toPath();
+    }
+}
@@ -0,0 +1,117 @@
+package okaghana.refinedredstone.circuit;
+
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.world.World;
+import okaghana.refinedredstone.engine.PackedPos;
+import okaghana.refinedredstone.engine.TraceLog;
+import okaghana.refinedredstone.engine.WireNetwork;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes what a {@link NetworkManager} does inside a square region into a {@link TraceLog}. <br><br>
+ *
+ * Placements, removals, input changes and new powers are written as they happen, with the game time as tick. Networks
+ * that become known without being placed (because they were traversed, or taken from the index file) are written as
+ * placements of all their members in the region, followed by their inputs, so the log always describes every wire the
+ * replay needs. Networks that reach out of the region are cut at its border.
+ */
+public class TraceRecorder {
+
+    private final World world;
+    private final TraceLog log;
+    private final Path path;
+    private final int minX, minZ, maxX, maxZ;
+    private final Set<Long> known = new HashSet<>();
+
+
+    /**
+     * @param center The center of the region
+     * @param radius The distance from the center to the border of the region, in blocks
+     */
+    TraceRecorder(World world, Path path, int capacity, BlockPos center, int radius) throws IOException {
+        this.world = world;
+        this.path = path;
+        this.log = TraceLog.create(path, capacity);
+        this.minX = center.getX() - radius;
+        this.minZ = center.getZ() - radius;
+        this.maxX = center.getX() + radius;
+        this.maxZ = center.getZ() + radius;
+    }
+
+
+    public Path getPath() {
+        return path;
+    }
+
+    public long getWritten() {
+        return log.getWritten();
+    }
+
+
+    void placed(long pos) {
+        if (contains(pos) && known.add(pos)) {
+            log.write(world.getGameTime(), TraceLog.PLACE, pos, 0, 0, 0);
+        }
+    }
+
+    void removed(long pos) {
+        if (known.remove(pos)) {
+            log.write(world.getGameTime(), TraceLog.REMOVE, pos, 0, 0, 0);
+        }
+    }
+
+    void input(long pos, int face, int level) {
+        if (contains(pos)) {
+            log.write(world.getGameTime(), TraceLog.INPUT, pos, face, level, 0);
+        }
+    }
+
+
+    /**
+     * A network has been compiled from its members and inputs without being placed wire by wire
+     *
+     * @param inputs The packed input faces of the members, like in {@link okaghana.refinedredstone.engine.CompiledNetwork}
+     */
+    void compiled(Collection<Long> members, Map<Long, Integer> inputs) {
+        for (long member : members) {
+            placed(member);
+        }
+        for (Map.Entry<Long, Integer> entry : inputs.entrySet()) {
+            for (int face = 0; face < PackedPos.FACES; face++) {
+                int level = (entry.getValue() >>> (face << 2)) & 0xF;
+                if (level != 0) {
+                    input(entry.getKey(), face, level);
+                }
+            }
+        }
+    }
+
+
+    /** A network got a new power. It is written once, for the first of its members that is in the region */
+    void power(WireNetwork network, int power) {
+        for (long member : network.getMembers()) {
+            if (known.contains(member)) {
+                log.write(world.getGameTime(), TraceLog.POWER, member, 0, power, network.size());
+                return;
+            }
+        }
+    }
+
+
+    void close() throws IOException {
+        log.close();
+    }
+
+
+    private boolean contains(long pos) {
+        int x = PackedPos.getX(pos);
+        int z = PackedPos.getZ(pos);
+        return x >= minX && x <= maxX && z >= minZ && z <= maxZ;
+    }
+}
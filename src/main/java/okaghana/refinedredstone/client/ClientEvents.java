@@ -0,0 +1,58 @@
+package okaghana.refinedredstone.client;
+
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.client.event.RenderWorldLastEvent;
+import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.event.world.ChunkEvent;
+import net.minecraftforge.event.world.WorldEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.common.Mod;
+import okaghana.refinedredstone.RefinedRedstone;
+
+// Client-side events on the forge bus: rendering and the lifecycle of the client world
+@Mod.EventBusSubscriber(modid = RefinedRedstone.MODID, value = Dist.CLIENT)
+public class ClientEvents {
+
+    @SubscribeEvent
+    public static void onRenderWorldLast(RenderWorldLastEvent event) {
+        PowerOverlayRenderer.render(event.getMatrixStack(), event.getProjectionMatrix());
+        HeatMapRenderer.render(event.getMatrixStack());
+    }
+
+
+    @SubscribeEvent
+    public static void onClientTick(TickEvent.ClientTickEvent event) {
+        if (event.phase == TickEvent.Phase.START) {
+            ParticleBudget.reset();
+        } else {
+            ClientNetworkIndex.expireResyncs();
+        }
+    }
+
+
+    @SubscribeEvent
+    public static void onChunkLoad(ChunkEvent.Load event) {
+        if (event.getWorld() != null && event.getWorld().isRemote()) {
+            ClientPowerMap.clearChunk(event.getChunk().getPos());
+        }
+    }
+
+
+    @SubscribeEvent
+    public static void onChunkUnload(ChunkEvent.Unload event) {
+        if (event.getWorld() != null && event.getWorld().isRemote()) {
+            ClientPowerMap.clearChunk(event.getChunk().getPos());
+            ClientNetworkIndex.clearChunk(event.getChunk().getPos());
+        }
+    }
+
+
+    @SubscribeEvent
+    public static void onWorldUnload(WorldEvent.Unload event) {
+        if (event.getWorld().isRemote()) {
+            ClientPowerMap.clear();
+            ClientNetworkIndex.clear();
+            ClientHeatMap.clear();
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package okaghana.refinedredstone.client;
+
+import it.unimi.dsi.fastutil.longs.Long2ByteOpenHashMap;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.api.distmarker.OnlyIn;
+
+/**
+ * The heat of the wires around the player, as last sent by the server. Drawn by the {@link HeatMapRenderer}.
+ */
+@OnlyIn(Dist.CLIENT)
+public class ClientHeatMap {
+
+    private static final Long2ByteOpenHashMap LEVELS = new Long2ByteOpenHashMap();
+    private static float maxPerSecond = 0;
+
+
+    /** Replace the whole heatmap */
+    public static void set(float max, long[] positions, byte[] levels) {
+        LEVELS.clear();
+        for (int i = 0; i < positions.length; i++) {
+            LEVELS.put(positions[i], levels[i]);
+        }
+        maxPerSecond = max;
+    }
+
+
+    /** The heat level of every wire, see {@link okaghana.refinedredstone.network.HeatMapPacket} */
+    public static Long2ByteOpenHashMap getLevels() {
+        return LEVELS;
+    }
+
+    /** How many updates per second the hottest wire had */
+    public static float getMaxPerSecond() {
+        return maxPerSecond;
+    }
+
+
+    public static void clear() {
+        LEVELS.clear();
+        maxPerSecond = 0;
+    }
+}
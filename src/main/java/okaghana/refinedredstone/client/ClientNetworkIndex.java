@@ -0,0 +1,180 @@
+package okaghana.refinedredstone.client;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.Int2LongMap;
+import it.unimi.dsi.fastutil.ints.Int2LongMaps;
+import it.unimi.dsi.fastutil.ints.Int2LongOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+import net.minecraft.util.Util;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.api.distmarker.OnlyIn;
+import okaghana.refinedredstone.engine.PackedPos;
+import okaghana.refinedredstone.network.NetworkPowerPacket;
+import okaghana.refinedredstone.network.NetworkResyncPacket;
+import okaghana.refinedredstone.network.PacketHandler;
+
+import java.util.Map;
+
+/**
+ * The client's copy of the members of the networks it can see, so the server only has to send "network N now has power
+ * P" instead of every single wire. <br><br>
+ *
+ * Every network is stored with the revision of its member list. When the server reports a power for a revision (or a
+ * chunk) the client doesn't know, the client asks for the members again and ignores the power until they arrive, since
+ * the answer contains the power as well. A request that isn't answered within {@link ClientNetworkIndex#RESYNC_TIMEOUT}
+ * milliseconds (e.g. because the network was gone by the time it arrived) is forgotten, and the next packet for the
+ * network asks again.
+ */
+@OnlyIn(Dist.CLIENT)
+public class ClientNetworkIndex {
+
+    private static final Int2ObjectMap<KnownNetwork> NETWORKS = new Int2ObjectOpenHashMap<>();
+    private static final Long2ObjectMap<IntSet> NETWORKS_BY_CHUNK = new Long2ObjectOpenHashMap<>();
+    // The networks whose members have been requested, with the time of the request
+    private static final Int2LongMap PENDING_RESYNCS = new Int2LongOpenHashMap();
+    private static final int RESYNC_TIMEOUT = 2000;
+
+
+
+    /**
+     * Apply a new power to all members of a network in the given chunks, or ask the server for the members if they aren't
+     * known (in that revision)
+     */
+    public static void applyPower(int networkId, int revision, int power, long[] chunks) {
+        KnownNetwork network = NETWORKS.get(networkId);
+        if (network == null || network.revision != revision || !network.knowsChunks(chunks)) {
+            requestResync(networkId);
+            return;
+        }
+
+        for (long chunk : chunks) {
+            apply(network.membersByChunk.get(chunk), power);
+        }
+    }
+
+
+    /** Replace the members of a network with the ones sent by the server, and apply its power to them */
+    public static void setMembers(int networkId, int revision, int power, Map<Long, long[]> membersByChunk) {
+        PENDING_RESYNCS.remove(networkId);
+        forget(networkId);
+
+        KnownNetwork network = new KnownNetwork(revision);
+        for (Map.Entry<Long, long[]> entry : membersByChunk.entrySet()) {
+            network.membersByChunk.put((long) entry.getKey(), entry.getValue());
+            NETWORKS_BY_CHUNK.computeIfAbsent((long) entry.getKey(), key -> new IntOpenHashSet()).add(networkId);
+            apply(entry.getValue(), power);
+        }
+        NETWORKS.put(networkId, network);
+    }
+
+
+    /** Forget the members in a chunk that has been unloaded. Networks without any known members are dropped entirely */
+    public static void clearChunk(ChunkPos chunkPos) {
+        long chunk = PackedPos.chunkKey(chunkPos.x, chunkPos.z);
+        IntSet ids = NETWORKS_BY_CHUNK.remove(chunk);
+        if (ids == null) {
+            return;
+        }
+
+        for (int id : ids) {
+            KnownNetwork network = NETWORKS.get(id);
+            if (network != null) {
+                network.membersByChunk.remove(chunk);
+                if (network.membersByChunk.isEmpty()) {
+                    NETWORKS.remove(id);
+                }
+            }
+        }
+    }
+
+
+    public static void clear() {
+        NETWORKS.clear();
+        NETWORKS_BY_CHUNK.clear();
+        PENDING_RESYNCS.clear();
+    }
+
+
+    // ---------------------------------------- //
+    //                 Helpers                  //
+    // ---------------------------------------- //
+
+    private static void apply(long[] members, int power) {
+        if (power == NetworkPowerPacket.RELEASED) {
+            for (long member : members) {
+                ClientPowerMap.remove(member);
+            }
+        } else {
+            ClientPowerMap.update(members, power);
+        }
+    }
+
+
+    /** Ask the server for the members of a network, unless we are already waiting for them */
+    private static void requestResync(int networkId) {
+        long now = Util.milliTime();
+        if (!PENDING_RESYNCS.containsKey(networkId) || now - PENDING_RESYNCS.get(networkId) > RESYNC_TIMEOUT) {
+            PENDING_RESYNCS.put(networkId, now);
+            PacketHandler.CHANNEL.sendToServer(new NetworkResyncPacket(networkId));
+        }
+    }
+
+
+    /** Called every client tick. Forgets requests that were never answered */
+    public static void expireResyncs() {
+        if (PENDING_RESYNCS.isEmpty()) {
+            return;
+        }
+
+        long now = Util.milliTime();
+        ObjectIterator<Int2LongMap.Entry> iterator = Int2LongMaps.fastIterator(PENDING_RESYNCS);
+        while (iterator.hasNext()) {
+            if (now - iterator.next().getLongValue() > RESYNC_TIMEOUT) {
+                iterator.remove();
+            }
+        }
+    }
+
+
+    private static void forget(int networkId) {
+        KnownNetwork network = NETWORKS.remove(networkId);
+        if (network == null) {
+            return;
+        }
+
+        for (long chunk : network.membersByChunk.keySet()) {
+            IntSet ids = NETWORKS_BY_CHUNK.get(chunk);
+            if (ids != null) {
+                ids.remove(networkId);
+                if (ids.isEmpty()) {
+                    NETWORKS_BY_CHUNK.remove(chunk);
+                }
+            }
+        }
+    }
+
+
+    private static class KnownNetwork {
+        private final int revision;
+        private final Long2ObjectMap<long[]> membersByChunk = new Long2ObjectOpenHashMap<>();
+
+        private KnownNetwork(int revision) {
+            this.revision = revision;
+        }
+
+        private boolean knowsChunks(long[] chunks) {
+            for (long chunk : chunks) {
+                if (!membersByChunk.containsKey(chunk)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package okaghana.refinedredstone.client;
+
+import it.unimi.dsi.fastutil.ints.IntList;
+import it.unimi.dsi.fastutil.longs.Long2ByteMap;
+import it.unimi.dsi.fastutil.longs.Long2ByteOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongList;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+import net.minecraft.block.BlockState;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.renderer.chunk.ChunkRenderCache;
+import net.minecraft.client.world.ClientWorld;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.IBlockDisplayReader;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.api.distmarker.OnlyIn;
+import okaghana.refinedredstone.block.RefinedRedstoneBlock;
+import okaghana.refinedredstone.engine.PackedPos;
+import okaghana.refinedredstone.setup.BlockRegister;
+
+import java.util.function.LongPredicate;
+
+/**
+ * The current power of the wires on the client, for wires whose power changed after their chunk has been sent. <br><br>
+ *
+ * The block state on the client keeps the power the wire had when its chunk was sent, so power changes don't cause the
+ * render section to be rebuilt. Every entry holds two powers: the current one, and the one the chunk mesh of the wire
+ * was built with. Wherever they differ, the {@link PowerOverlayRenderer} draws the wire again with the right color on
+ * top. When the section is rebuilt for any other reason, the mesh is tinted with the current power and the wire isn't
+ * drawn again anymore. Entries whose powers both match the block state are dropped, and all entries of a chunk are
+ * dropped when the chunk is sent again, since its block states are up to date then. <br><br>
+ *
+ * The meshes are built on the chunk render threads, so every access is synchronized on the map.
+ */
+@OnlyIn(Dist.CLIENT)
+public class ClientPowerMap {
+
+    // Per entry: the current power in the low nibble, the power of the mesh in the high nibble
+    private static final Long2ObjectMap<Long2ByteOpenHashMap> POWER_BY_CHUNK = new Long2ObjectOpenHashMap<>();
+
+
+    /** Set the power of a group of wires */
+    public static void update(long[] positions, int power) {
+        ClientWorld world = Minecraft.getInstance().world;
+        if (world == null) {
+            return;
+        }
+
+        BlockPos.Mutable pos = new BlockPos.Mutable();
+        synchronized (POWER_BY_CHUNK) {
+            for (long packed : positions) {
+                Long2ByteOpenHashMap chunk = POWER_BY_CHUNK.computeIfAbsent(PackedPos.chunkKey(packed), key -> new Long2ByteOpenHashMap());
+                int meshed;
+                if (chunk.containsKey(packed)) {
+                    meshed = getMeshed(chunk.get(packed));
+                } else {
+                    // Until now the mesh has been built from the block state
+                    pos.setPos(PackedPos.getX(packed), PackedPos.getY(packed), PackedPos.getZ(packed));
+                    meshed = getStatePower(world.getBlockState(pos));
+                }
+                chunk.put(packed, pack(power, meshed));
+            }
+        }
+    }
+
+
+    /**
+     * The current power of a wire
+     *
+     * @param pos The position of the wire
+     * @param state The client-side state of the wire
+     * @return The power from this map, or the power of the state if the wire didn't change
+     */
+    public static int getPower(BlockPos pos, BlockState state) {
+        long packed = pos.toLong();
+        synchronized (POWER_BY_CHUNK) {
+            Long2ByteOpenHashMap chunk = POWER_BY_CHUNK.get(PackedPos.chunkKey(packed));
+            if (chunk != null && chunk.containsKey(packed)) {
+                return getCurrent(chunk.get(packed));
+            }
+        }
+        return state.get(RefinedRedstoneBlock.POWER);
+    }
+
+
+    /**
+     * The power to tint a wire with. If the wire is being meshed, the mesh shows the current power from now on, so it
+     * doesn't have to be drawn by the {@link PowerOverlayRenderer} anymore
+     *
+     * @param reader The world the color is asked for, a {@link ChunkRenderCache} while a section is meshed
+     */
+    public static int getTintPower(IBlockDisplayReader reader, BlockPos pos, BlockState state) {
+        long packed = pos.toLong();
+        synchronized (POWER_BY_CHUNK) {
+            Long2ByteOpenHashMap chunk = POWER_BY_CHUNK.get(PackedPos.chunkKey(packed));
+            if (chunk != null && chunk.containsKey(packed)) {
+                int current = getCurrent(chunk.get(packed));
+                if (reader instanceof ChunkRenderCache) {
+                    chunk.put(packed, pack(current, current));
+                }
+                return current;
+            }
+        }
+        return state.get(RefinedRedstoneBlock.POWER);
+    }
+
+
+    /**
+     * Find the wires whose mesh shows the wrong power. Entries of wires that are gone, or whose mesh and block state
+     * already show the current power, are dropped on the way
+     *
+     * @param visibleChunk Whether the wires of a chunk (packed like {@code ChunkPos.asLong()}) can be seen at all
+     * @param positions Receives the positions of the wires that have to be drawn
+     * @param powers Receives their current power
+     */
+    public static void collectOutdated(ClientWorld world, LongPredicate visibleChunk, LongList positions, IntList powers) {
+        BlockPos.Mutable pos = new BlockPos.Mutable();
+        synchronized (POWER_BY_CHUNK) {
+            ObjectIterator<Long2ObjectMap.Entry<Long2ByteOpenHashMap>> chunks = POWER_BY_CHUNK.long2ObjectEntrySet().iterator();
+            while (chunks.hasNext()) {
+                Long2ObjectMap.Entry<Long2ByteOpenHashMap> chunk = chunks.next();
+                if (!visibleChunk.test(chunk.getLongKey())) {
+                    continue;
+                }
+
+                ObjectIterator<Long2ByteMap.Entry> iterator = chunk.getValue().long2ByteEntrySet().fastIterator();
+                while (iterator.hasNext()) {
+                    Long2ByteMap.Entry entry = iterator.next();
+                    long packed = entry.getLongKey();
+                    int current = getCurrent(entry.getByteValue());
+                    int meshed = getMeshed(entry.getByteValue());
+                    pos.setPos(PackedPos.getX(packed), PackedPos.getY(packed), PackedPos.getZ(packed));
+                    BlockState state = world.getBlockState(pos);
+
+                    if (!state.isIn(BlockRegister.REFINED_REDSTONE.get()) || (current == meshed && current == state.get(RefinedRedstoneBlock.POWER))) {
+                        iterator.remove();
+                    } else if (current != meshed) {
+                        positions.add(packed);
+                        powers.add(current);
+                    }
+                }
+                if (chunk.getValue().isEmpty()) {
+                    chunks.remove();
+                }
+            }
+        }
+    }
+
+
+    /** Whether any wire has changed its power */
+    public static boolean isEmpty() {
+        synchronized (POWER_BY_CHUNK) {
+            return POWER_BY_CHUNK.isEmpty();
+        }
+    }
+
+
+    /** Forget a single wire, e.g. because it was removed */
+    public static void remove(long pos) {
+        long chunkKey = PackedPos.chunkKey(pos);
+        synchronized (POWER_BY_CHUNK) {
+            Long2ByteMap chunk = POWER_BY_CHUNK.get(chunkKey);
+            if (chunk != null) {
+                chunk.remove(pos);
+                if (chunk.isEmpty()) {
+                    POWER_BY_CHUNK.remove(chunkKey);
+                }
+            }
+        }
+    }
+
+
+    /** Forget all wires of a chunk, e.g. because it has been (re-)sent by the server */
+    public static void clearChunk(ChunkPos chunk) {
+        synchronized (POWER_BY_CHUNK) {
+            POWER_BY_CHUNK.remove(PackedPos.chunkKey(chunk.x, chunk.z));
+        }
+    }
+
+
+    public static void clear() {
+        synchronized (POWER_BY_CHUNK) {
+            POWER_BY_CHUNK.clear();
+        }
+    }
+
+
+    // ---------------------------------------- //
+    //                 Helpers                  //
+    // ---------------------------------------- //
+
+    private static byte pack(int current, int meshed) {
+        return (byte) (current | meshed << 4);
+    }
+
+    private static int getCurrent(byte entry) {
+        return entry & 0xF;
+    }
+
+    private static int getMeshed(byte entry) {
+        return (entry >> 4) & 0xF;
+    }
+
+    private static int getStatePower(BlockState state) {
+        return state.isIn(BlockRegister.REFINED_REDSTONE.get()) ? state.get(RefinedRedstoneBlock.POWER) : 0;
+    }
+}
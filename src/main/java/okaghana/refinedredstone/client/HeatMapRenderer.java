@@ -0,0 +1,61 @@
+package okaghana.refinedredstone.client;
+
+import com.mojang.blaze3d.matrix.MatrixStack;
+import com.mojang.blaze3d.vertex.IVertexBuilder;
+import it.unimi.dsi.fastutil.longs.Long2ByteMap;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.renderer.IRenderTypeBuffer;
+import net.minecraft.client.renderer.RenderType;
+import net.minecraft.client.renderer.WorldRenderer;
+import net.minecraft.util.math.vector.Vector3d;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.api.distmarker.OnlyIn;
+import okaghana.refinedredstone.engine.PackedPos;
+import okaghana.refinedredstone.network.HeatMapPacket;
+
+/**
+ * Draws the {@link ClientHeatMap}: an outline around every wire that was updated recently, going from blue (rarely) to
+ * red (as often as the hottest wire). The wires of the hottest networks get an additional white outline.
+ */
+@OnlyIn(Dist.CLIENT)
+public class HeatMapRenderer {
+
+    private static final double INSET = 0.3;
+    private static final double OUTSET = -0.02;
+
+    public static void render(MatrixStack matrixStack) {
+        Minecraft minecraft = Minecraft.getInstance();
+        if (minecraft.world == null || ClientHeatMap.getLevels().isEmpty()) {
+            return;
+        }
+
+        Vector3d camera = minecraft.gameRenderer.getActiveRenderInfo().getProjectedView();
+        IRenderTypeBuffer.Impl buffers = minecraft.getRenderTypeBuffers().getBufferSource();
+        IVertexBuilder builder = buffers.getBuffer(RenderType.getLines());
+
+        matrixStack.push();
+        matrixStack.translate(-camera.x, -camera.y, -camera.z);
+
+        ObjectIterator<Long2ByteMap.Entry> iterator = ClientHeatMap.getLevels().long2ByteEntrySet().fastIterator();
+        while (iterator.hasNext()) {
+            Long2ByteMap.Entry entry = iterator.next();
+            long pos = entry.getLongKey();
+            int x = PackedPos.getX(pos);
+            int y = PackedPos.getY(pos);
+            int z = PackedPos.getZ(pos);
+            int level = entry.getByteValue() & 0xF;
+            float heat = level / 15f;
+
+            WorldRenderer.drawBoundingBox(matrixStack, builder, x + INSET, y + INSET, z + INSET, x + 1 - INSET, y + 1 - INSET, z + 1 - INSET,
+                    heat, 0.2f * (1 - heat), 1 - heat, 1);
+            if ((entry.getByteValue() & HeatMapPacket.HOT) != 0) {
+                WorldRenderer.drawBoundingBox(matrixStack, builder, x + OUTSET, y + OUTSET, z + OUTSET, x + 1 - OUTSET, y + 1 - OUTSET, z + 1 - OUTSET,
+                        1, 1, 1, 1);
+            }
+        }
+
+        matrixStack.pop();
+        buffers.finish(RenderType.getLines());
+    }
+}
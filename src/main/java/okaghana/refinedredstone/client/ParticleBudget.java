@@ -0,0 +1,84 @@
+package okaghana.refinedredstone.client;
+
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+import net.minecraft.client.Minecraft;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.SectionPos;
+import net.minecraft.util.math.vector.Vector3d;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.api.distmarker.OnlyIn;
+import okaghana.refinedredstone.setup.ConfigHandler;
+
+import java.util.Random;
+
+/**
+ * Limits how many particles powered wires spawn. <br><br>
+ *
+ * {@code animateTick} is called for random blocks around the player every client tick, and a wire spawns a particle for
+ * every attached face, so a large powered build spawns thousands of particles per tick. The budget is reset at the start
+ * of every client tick and allows a particle only if
+ * <ul>
+ *     <li>less than {@link ConfigHandler#MAX_PARTICLES_PER_TICK} particles have been spawned this tick,</li>
+ *     <li>less than {@link ConfigHandler#MAX_PARTICLES_PER_SECTION} of them are in the same chunk section, so a single
+ *     dense build can't use up the whole budget,</li>
+ *     <li>and, beyond {@link ConfigHandler#PARTICLE_FULL_DETAIL_DISTANCE}, a random roll succeeds whose chance falls
+ *     off with the distance to the camera.</li>
+ * </ul>
+ */
+@OnlyIn(Dist.CLIENT)
+public class ParticleBudget {
+
+    private static final Long2IntOpenHashMap PARTICLES_PER_SECTION = new Long2IntOpenHashMap();
+
+    private static int remaining = 0;
+    private static int maxPerSection = 0;
+    private static double fullDetailDistanceSq = 0;
+    private static Vector3d camera = Vector3d.ZERO;
+
+
+    /** Reset the budget. Called at the start of every client tick */
+    public static void reset() {
+        PARTICLES_PER_SECTION.clear();
+        remaining = ConfigHandler.MAX_PARTICLES_PER_TICK.get();
+        maxPerSection = ConfigHandler.MAX_PARTICLES_PER_SECTION.get();
+
+        double fullDetailDistance = ConfigHandler.PARTICLE_FULL_DETAIL_DISTANCE.get();
+        fullDetailDistanceSq = fullDetailDistance * fullDetailDistance;
+        camera = Minecraft.getInstance().gameRenderer.getActiveRenderInfo().getProjectedView();
+    }
+
+
+    /** Whether no more particles can be spawned this tick, so the caller can skip all work */
+    public static boolean isExhausted() {
+        return remaining <= 0;
+    }
+
+
+    /**
+     * Try to take a particle at the given position from the budget
+     *
+     * @param pos The position of the block spawning the particle
+     * @param rand The random of the world, for the distance roll
+     * @return Whether the particle may be spawned
+     */
+    public static boolean tryAcquire(BlockPos pos, Random rand) {
+        if (remaining <= 0) {
+            return false;
+        }
+
+        double distanceSq = camera.squareDistanceTo(pos.getX() + 0.5, pos.getY() + 0.5, pos.getZ() + 0.5);
+        if (distanceSq > fullDetailDistanceSq && rand.nextDouble() * distanceSq >= fullDetailDistanceSq) {
+            return false;
+        }
+
+        long section = SectionPos.worldToSection(pos.toLong());
+        int count = PARTICLES_PER_SECTION.get(section);
+        if (count >= maxPerSection) {
+            return false;
+        }
+
+        PARTICLES_PER_SECTION.put(section, count + 1);
+        remaining--;
+        return true;
+    }
+}
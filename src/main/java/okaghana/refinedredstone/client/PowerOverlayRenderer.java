@@ -0,0 +1,108 @@
+package okaghana.refinedredstone.client;
+
+import com.mojang.blaze3d.matrix.MatrixStack;
+import com.mojang.blaze3d.vertex.IVertexBuilder;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongList;
+import net.minecraft.block.BlockState;
+import net.minecraft.client.Minecraft;
+import net.minecraft.client.renderer.BlockRendererDispatcher;
+import net.minecraft.client.renderer.IRenderTypeBuffer;
+import net.minecraft.client.renderer.RenderType;
+import net.minecraft.client.renderer.WorldRenderer;
+import net.minecraft.client.renderer.culling.ClippingHelper;
+import net.minecraft.client.renderer.model.IBakedModel;
+import net.minecraft.client.renderer.texture.OverlayTexture;
+import net.minecraft.client.renderer.vertex.DefaultVertexFormats;
+import net.minecraft.client.world.ClientWorld;
+import net.minecraft.util.math.AxisAlignedBB;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.vector.Matrix4f;
+import net.minecraft.util.math.vector.Vector3d;
+import net.minecraft.util.math.vector.Vector3f;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.api.distmarker.OnlyIn;
+import net.minecraftforge.client.model.data.EmptyModelData;
+import net.minecraftforge.client.model.data.IModelData;
+import okaghana.refinedredstone.block.RefinedRedstoneBlock;
+import okaghana.refinedredstone.engine.PackedPos;
+import org.lwjgl.opengl.GL11;
+
+/**
+ * Draws wires whose power changed since their render section was built. <br><br>
+ *
+ * The chunk mesh of a wire is tinted with the power it had when the section was built. When the power changes, the state
+ * on the client stays the same (see {@link ClientPowerMap}), so the old mesh stays valid and only the wires whose mesh
+ * shows the wrong power are drawn again, with the same geometry and the new tint, on top of it. Only chunks within the
+ * render distance and inside the view frustum are looked at, and the overlay is drawn with a polygon offset so it
+ * doesn't z-fight with the mesh below. Once the section is rebuilt for any other reason, its mesh has the right tint
+ * and the wire isn't drawn here anymore.
+ */
+@OnlyIn(Dist.CLIENT)
+public class PowerOverlayRenderer {
+
+    public static void render(MatrixStack matrixStack, Matrix4f projection) {
+        Minecraft minecraft = Minecraft.getInstance();
+        ClientWorld world = minecraft.world;
+        if (world == null || ClientPowerMap.isEmpty()) {
+            return;
+        }
+
+        Vector3d camera = minecraft.gameRenderer.getActiveRenderInfo().getProjectedView();
+        ClippingHelper frustum = new ClippingHelper(matrixStack.getLast().getMatrix(), projection);
+        frustum.setCameraPosition(camera.x, camera.y, camera.z);
+        double maxDistance = (minecraft.gameSettings.renderDistanceChunks + 1) * 16;
+
+        LongList positions = new LongArrayList();
+        IntList powers = new IntArrayList();
+        ClientPowerMap.collectOutdated(world, chunk -> {
+            int x = ChunkPos.getX(chunk) << 4;
+            int z = ChunkPos.getZ(chunk) << 4;
+            double dx = x + 8 - camera.x;
+            double dz = z + 8 - camera.z;
+            return dx * dx + dz * dz <= maxDistance * maxDistance && frustum.isBoundingBoxInFrustum(new AxisAlignedBB(x, 0, z, x + 16, world.getHeight(), z + 16));
+        }, positions, powers);
+        if (positions.isEmpty()) {
+            return;
+        }
+
+        BlockRendererDispatcher dispatcher = minecraft.getBlockRendererDispatcher();
+        IRenderTypeBuffer.Impl buffers = minecraft.getRenderTypeBuffers().getBufferSource();
+        IVertexBuilder builder = buffers.getBuffer(OverlayRenderType.OVERLAY);
+        BlockPos.Mutable pos = new BlockPos.Mutable();
+
+        for (int i = 0; i < positions.size(); i++) {
+            long packed = positions.getLong(i);
+            pos.setPos(PackedPos.getX(packed), PackedPos.getY(packed), PackedPos.getZ(packed));
+            BlockState state = world.getBlockState(pos);
+            IBakedModel model = dispatcher.getModelForState(state);
+            IModelData data = model.getModelData(world, pos, state, EmptyModelData.INSTANCE);
+            Vector3f color = RefinedRedstoneBlock.getPowerColor(powers.getInt(i));
+
+            matrixStack.push();
+            matrixStack.translate(pos.getX() - camera.x, pos.getY() - camera.y, pos.getZ() - camera.z);
+            dispatcher.getBlockModelRenderer().renderModel(matrixStack.getLast(), builder, state, model, color.getX(), color.getY(), color.getZ(),
+                    WorldRenderer.getCombinedLight(world, pos), OverlayTexture.NO_OVERLAY, data);
+            matrixStack.pop();
+        }
+
+        buffers.finish(OverlayRenderType.OVERLAY);
+    }
+
+
+    // The cutout layer of the chunk meshes, pulled slightly towards the camera. Extends RenderType for its render states
+    private static class OverlayRenderType extends RenderType {
+
+        private static final RenderType OVERLAY = makeType("refinedredstone_power_overlay", DefaultVertexFormats.BLOCK, GL11.GL_QUADS, 131072, true, false,
+                RenderType.State.getBuilder().shadeModel(SHADE_ENABLED).lightmap(LIGHTMAP_ENABLED).texture(BLOCK_SHEET_MIPPED)
+                        .alpha(HALF_ALPHA).layer(POLYGON_OFFSET_LAYERING).build(false));
+
+        @SuppressWarnings("unused")
+        private OverlayRenderType(String name, Runnable setup, Runnable clear) {
+            super(name, DefaultVertexFormats.BLOCK, GL11.GL_QUADS, 131072, true, false, setup, clear);
+        }
+    }
+}
@@ -0,0 +1,410 @@
+package okaghana.refinedredstone.command;
+
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import com.mojang.brigadier.exceptions.SimpleCommandExceptionType;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Blocks;
+import net.minecraft.command.CommandSource;
+import net.minecraft.util.Direction;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.text.StringTextComponent;
+import net.minecraft.world.World;
+import net.minecraft.world.server.ServerWorld;
+import okaghana.refinedredstone.RefinedRedstone;
+import okaghana.refinedredstone.circuit.NetworkManager;
+import okaghana.refinedredstone.circuit.NetworkStats;
+import okaghana.refinedredstone.setup.BlockRegister;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.logging.Level;
+
+/**
+ * A stress test on the live server, started with {@code /refinedredstone bench}. <br><br>
+ *
+ * The benchmark builds a synthetic circuit high above the player (where nothing else is), with redstone blocks as inputs
+ * that are placed and removed like levers being flipped. Then, for the given number of ticks, it flips either one random
+ * input per tick ({@code lever}) or all inputs every 5 ticks ({@code clock}), and measures how long every server tick
+ * takes and how much work the {@link NetworkManager} did. Afterwards the circuit is removed again, and the results are
+ * sent to the chat and written to a CSV file (one row per tick) in {@code refinedredstone/bench} of the run directory.
+ * When the server stops before the benchmark is done, the circuit is removed without a report.
+ */
+public class Benchmark {
+
+    public static final int MAX_TICKS = 72000;
+    private static final int BASE_Y = 200;
+    private static final int INPUT_SPACING = 16;
+    private static final int MAX_INPUTS = 256;
+    private static final int CLOCK_HALF_PERIOD = 5;
+
+    private static final BlockState INPUT_ON = Blocks.REDSTONE_BLOCK.getDefaultState();
+    private static final BlockState INPUT_OFF = Blocks.AIR.getDefaultState();
+
+    private static Benchmark running = null;
+
+    private final CommandSource source;
+    private final ServerWorld world;
+    private final String description;
+    private final boolean clock;
+    private final List<BlockPos> wires;
+    private final List<BlockPos> inputs;
+    private final boolean[] inputOn;
+    private final Set<ChunkPos> forcedChunks = new HashSet<>();
+    private final Random random = new Random(0);
+
+    private final int ticks;
+    private int tick = 0;
+    private long tickStart;
+    private NetworkStats statsBefore;
+    private final long[] tickNanos;
+    private final long[][] tickStats;
+
+
+    public enum Topology {
+        /** A straight line of size wires */
+        LINE("line", 1024),
+        /** A square of size x size wires */
+        PLANE("plane", 128),
+        /** The edges of a grid of 4x4x4 cubes, size wires wide, deep and high */
+        LATTICE("lattice", 48),
+        /** An H-tree with size levels, with the inputs at its leaves */
+        TREE("tree", 12);
+
+        private final String name;
+        private final int maxSize;
+
+        Topology(String name, int maxSize) {
+            this.name = name;
+            this.maxSize = maxSize;
+        }
+
+        public String getName() {
+            return name;
+        }
+    }
+
+
+    private Benchmark(CommandSource source, ServerWorld world, String description, boolean clock, List<BlockPos> wires, List<BlockPos> inputs, int ticks) {
+        this.source = source;
+        this.world = world;
+        this.description = description;
+        this.clock = clock;
+        this.wires = wires;
+        this.inputs = inputs;
+        this.inputOn = new boolean[inputs.size()];
+        this.ticks = ticks;
+        this.tickNanos = new long[ticks];
+        this.tickStats = new long[ticks][];
+    }
+
+
+    /**
+     * Build the circuit and start measuring with the next tick
+     *
+     * @return The number of wires
+     * @throws CommandSyntaxException If a benchmark is already running, the arguments are invalid or the area isn't empty
+     */
+    public static int start(CommandSource source, String topologyName, int size, int ticks, String inputMode) throws CommandSyntaxException {
+        if (running != null) {
+            throw error("A benchmark is already running");
+        }
+
+        Topology topology = Arrays.stream(Topology.values()).filter(candidate -> candidate.name.equals(topologyName)).findFirst()
+                .orElseThrow(() -> error("Unknown topology " + topologyName + ", use line, plane, lattice or tree"));
+        if (size > topology.maxSize) {
+            throw error("The size of " + topology.name + " can be at most " + topology.maxSize);
+        }
+        if (!inputMode.equals("lever") && !inputMode.equals("clock")) {
+            throw error("Unknown inputs " + inputMode + ", use lever or clock");
+        }
+
+        // Generate the circuit relative to the corner of the chunk the source is in
+        BlockPos sourcePos = new BlockPos(source.getPos());
+        BlockPos origin = new BlockPos(sourcePos.getX() & ~15, BASE_Y, sourcePos.getZ() & ~15);
+        List<BlockPos> wires = new ArrayList<>();
+        List<BlockPos> inputWires = new ArrayList<>();
+        generate(topology, size, origin, wires, inputWires);
+
+        ServerWorld world = source.getWorld();
+        Set<BlockPos> wireSet = new HashSet<>(wires);
+        List<BlockPos> inputs = placeInputs(inputWires, wireSet);
+        // The inputs are set to air while flipping and cleaning up, so they have to be free as well
+        List<BlockPos> used = new ArrayList<>(wires);
+        used.addAll(inputs);
+        for (BlockPos pos : used) {
+            if (!world.isAirBlock(pos)) {
+                throw error("The area above you isn't empty at " + pos.getCoordinatesAsString());
+            }
+        }
+
+        String description = String.format("%s %d (%d wires, %d inputs, %s)", topology.name, size, wires.size(), inputs.size(), inputMode);
+        Benchmark benchmark = new Benchmark(source, world, description, inputMode.equals("clock"), wires, inputs, ticks);
+        benchmark.build();
+        running = benchmark;
+
+        source.sendFeedback(new StringTextComponent("Benchmarking " + description + " for " + ticks + " ticks"), true);
+        return wires.size();
+    }
+
+
+    /** Called at the start of every server tick. Flips the inputs that are due, as part of the measured tick */
+    public static void onServerTickStart() {
+        if (running != null) {
+            running.startTick();
+        }
+    }
+
+
+    /** Called at the end of every server tick */
+    public static void onServerTickEnd() {
+        if (running != null) {
+            running.endTick();
+        }
+    }
+
+
+    /** Stop the running benchmark without a report and remove its circuit, e.g. because the server is stopping */
+    public static void abort() {
+        Benchmark aborted = running;
+        if (aborted != null) {
+            running = null;
+            aborted.cleanUp();
+            RefinedRedstone.MOD_LOGGER.log(Level.INFO, "Aborted the benchmark " + aborted.description + " after " + aborted.tick + " ticks");
+        }
+    }
+
+
+    /** A world is being unloaded. A benchmark that runs in it can't continue */
+    public static void onWorldUnload(World world) {
+        if (running != null && running.world == world) {
+            abort();
+        }
+    }
+
+
+    // ---------------------------------------- //
+    //                 Running                  //
+    // ---------------------------------------- //
+
+    private void build() {
+        for (BlockPos pos : wires) {
+            ChunkPos chunk = new ChunkPos(pos);
+            if (forcedChunks.add(chunk)) {
+                world.forceChunk(chunk.x, chunk.z, true);
+            }
+        }
+
+        BlockState wire = BlockRegister.REFINED_REDSTONE.get().getDefaultState();
+        for (BlockPos pos : wires) {
+            world.setBlockState(pos, wire, 3);
+        }
+    }
+
+    private void startTick() {
+        statsBefore = NetworkManager.get(world).getStats().copy();
+        tickStart = System.nanoTime();
+
+        if (clock) {
+            if (tick % CLOCK_HALF_PERIOD == 0) {
+                for (int i = 0; i < inputs.size(); i++) {
+                    flip(i);
+                }
+            }
+        } else if (!inputs.isEmpty()) {
+            flip(random.nextInt(inputs.size()));
+        }
+    }
+
+    private void endTick() {
+        if (statsBefore == null) {
+            // Started in the middle of a tick, measure from the next one on
+            return;
+        }
+
+        tickNanos[tick] = System.nanoTime() - tickStart;
+        NetworkStats stats = NetworkManager.get(world).getStats();
+        tickStats[tick] = new long[] {
+                stats.getInputChanges() - statsBefore.getInputChanges(),
+                stats.getTraversedWires() - statsBefore.getTraversedWires(),
+                stats.getRecomputations() - statsBefore.getRecomputations(),
+                stats.getBlockUpdates() - statsBefore.getBlockUpdates(),
+                stats.getNotifications() - statsBefore.getNotifications()
+        };
+
+        tick++;
+        if (tick >= ticks) {
+            running = null;
+            cleanUp();
+            report();
+        }
+    }
+
+    private void flip(int input) {
+        inputOn[input] = !inputOn[input];
+        world.setBlockState(inputs.get(input), inputOn[input] ? INPUT_ON : INPUT_OFF, 3);
+    }
+
+    private void cleanUp() {
+        for (BlockPos pos : inputs) {
+            world.setBlockState(pos, INPUT_OFF, 3);
+        }
+        for (int i = wires.size() - 1; i >= 0; i--) {
+            world.setBlockState(wires.get(i), Blocks.AIR.getDefaultState(), 3);
+        }
+        for (ChunkPos chunk : forcedChunks) {
+            world.forceChunk(chunk.x, chunk.z, false);
+        }
+    }
+
+
+    // ---------------------------------------- //
+    //                 Results                  //
+    // ---------------------------------------- //
+
+    private void report() {
+        long[] sorted = tickNanos.clone();
+        Arrays.sort(sorted);
+        long[] totals = new long[5];
+        long sum = 0;
+        for (int i = 0; i < ticks; i++) {
+            sum += tickNanos[i];
+            for (int j = 0; j < totals.length; j++) {
+                totals[j] += tickStats[i][j];
+            }
+        }
+
+        source.sendFeedback(new StringTextComponent("Benchmark " + description + " over " + ticks + " ticks"), true);
+        source.sendFeedback(new StringTextComponent(String.format("MSPT: mean %.2f, p50 %.2f, p90 %.2f, p99 %.2f, max %.2f",
+                millis(sum / ticks), millis(percentile(sorted, 50)), millis(percentile(sorted, 90)),
+                millis(percentile(sorted, 99)), millis(sorted[ticks - 1]))), true);
+        source.sendFeedback(new StringTextComponent(String.format("Input changes %d, traversed wires %d, recomputations %d, block updates %d, notifications %d",
+                totals[0], totals[1], totals[2], totals[3], totals[4])), true);
+
+        try {
+            Path file = writeCsv();
+            source.sendFeedback(new StringTextComponent("Written to " + file), true);
+        } catch (IOException exception) {
+            RefinedRedstone.MOD_LOGGER.log(Level.WARNING, "Couldn't write the benchmark results", exception);
+            source.sendErrorMessage(new StringTextComponent("Couldn't write the results: " + exception.getMessage()));
+        }
+    }
+
+    private Path writeCsv() throws IOException {
+        Path directory = world.getServer().getDataDirectory().toPath().resolve(RefinedRedstone.MODID).resolve("bench");
+        Files.createDirectories(directory);
+        Path file = directory.resolve("bench-" + new SimpleDateFormat("yyyy-MM-dd_HH.mm.ss").format(new Date()) + ".csv");
+
+        try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(file, StandardCharsets.UTF_8))) {
+            writer.println("# " + description);
+            writer.println("tick,mspt,input_changes,traversed_wires,recomputations,block_updates,notifications");
+            for (int i = 0; i < ticks; i++) {
+                long[] stats = tickStats[i];
+                writer.println(String.format(Locale.ROOT, "%d,%.4f,%d,%d,%d,%d,%d", i, millis(tickNanos[i]), stats[0], stats[1], stats[2], stats[3], stats[4]));
+            }
+        }
+        return file;
+    }
+
+    private static long percentile(long[] sorted, int percent) {
+        int index = (int) Math.ceil(percent / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+
+    // ---------------------------------------- //
+    //               Generation                 //
+    // ---------------------------------------- //
+
+    /**
+     * Generate the wires of a topology
+     *
+     * @param wires Gets the positions of all wires
+     * @param inputWires Gets the wires that should get an input next to them
+     */
+    private static void generate(Topology topology, int size, BlockPos origin, List<BlockPos> wires, List<BlockPos> inputWires) {
+        Set<BlockPos> unique = new LinkedHashSet<>();
+        switch (topology) {
+            case LINE:
+                for (int x = 0; x < size; x++) {
+                    unique.add(origin.add(x, 0, 0));
+                }
+                break;
+            case PLANE:
+                for (int x = 0; x < size; x++) {
+                    for (int z = 0; z < size; z++) {
+                        unique.add(origin.add(x, 0, z));
+                    }
+                }
+                break;
+            case LATTICE:
+                for (int x = 0; x < size; x++) {
+                    for (int y = 0; y < size; y++) {
+                        for (int z = 0; z < size; z++) {
+                            int onGrid = (x % 4 == 0 ? 1 : 0) + (y % 4 == 0 ? 1 : 0) + (z % 4 == 0 ? 1 : 0);
+                            if (onGrid >= 2) {
+                                unique.add(origin.add(x, y, z));
+                            }
+                        }
+                    }
+                }
+                break;
+            case TREE:
+                int half = 1 << ((size + 1) / 2 + 1);
+                growTree(origin.add(half * 2, 0, half * 2), half, true, size, unique, inputWires);
+                break;
+        }
+        wires.addAll(unique);
+
+        if (topology != Topology.TREE) {
+            for (int i = 0; i < wires.size() && inputWires.size() < MAX_INPUTS; i += INPUT_SPACING) {
+                inputWires.add(wires.get(i));
+            }
+        }
+    }
+
+    // One level of an H-tree: a segment through center, with a smaller tree at both ends
+    private static void growTree(BlockPos center, int half, boolean alongX, int levels, Set<BlockPos> wires, List<BlockPos> leaves) {
+        Direction direction = alongX ? Direction.EAST : Direction.SOUTH;
+        for (int offset = -half; offset <= half; offset++) {
+            wires.add(center.offset(direction, offset));
+        }
+
+        BlockPos[] ends = {center.offset(direction, -half), center.offset(direction, half)};
+        for (BlockPos end : ends) {
+            if (levels > 1 && half > 1) {
+                growTree(end, alongX ? half : half / 2, !alongX, levels - 1, wires, leaves);
+            } else if (leaves.size() < MAX_INPUTS) {
+                leaves.add(end);
+            }
+        }
+    }
+
+    /** Find a free spot next to every input wire for the redstone block */
+    private static List<BlockPos> placeInputs(List<BlockPos> inputWires, Set<BlockPos> wires) {
+        Set<BlockPos> inputs = new LinkedHashSet<>();
+        for (BlockPos wire : inputWires) {
+            for (Direction direction : new Direction[] {Direction.UP, Direction.DOWN, Direction.NORTH, Direction.SOUTH, Direction.WEST, Direction.EAST}) {
+                BlockPos candidate = wire.offset(direction);
+                if (!wires.contains(candidate) && !inputs.contains(candidate)) {
+                    inputs.add(candidate);
+                    break;
+                }
+            }
+        }
+        return new ArrayList<>(inputs);
+    }
+
+    private static CommandSyntaxException error(String message) {
+        return new SimpleCommandExceptionType(new StringTextComponent(message)).create();
+    }
+}
@@ -0,0 +1,195 @@
+package okaghana.refinedredstone.command;
+
+import com.mojang.brigadier.CommandDispatcher;
+import com.mojang.brigadier.arguments.IntegerArgumentType;
+import com.mojang.brigadier.arguments.StringArgumentType;
+import com.mojang.brigadier.builder.LiteralArgumentBuilder;
+import com.mojang.brigadier.context.CommandContext;
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import com.mojang.brigadier.exceptions.SimpleCommandExceptionType;
+import net.minecraft.command.CommandSource;
+import net.minecraft.command.Commands;
+import net.minecraft.command.ISuggestionProvider;
+import net.minecraft.entity.player.ServerPlayerEntity;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.text.StringTextComponent;
+import okaghana.refinedredstone.RefinedRedstone;
+import okaghana.refinedredstone.circuit.HeatMap;
+import okaghana.refinedredstone.circuit.NetworkManager;
+import okaghana.refinedredstone.circuit.RateLimiter;
+import okaghana.refinedredstone.circuit.TraceRecorder;
+import okaghana.refinedredstone.engine.PackedPos;
+import okaghana.refinedredstone.engine.TraceLog;
+import okaghana.refinedredstone.engine.WireNetwork;
+import okaghana.refinedredstone.setup.ConfigHandler;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Set;
+import java.util.logging.Level;
+
+/**
+ * The {@code /refinedredstone} command. Everything in it is meant for operators. <br><br>
+ *
+ * {@code /refinedredstone bench <topology> <size> <ticks> [lever|clock]} builds a synthetic circuit and measures it, see
+ * {@link Benchmark}. <br>
+ * {@code /refinedredstone trace start <radius> [records]} and {@code /refinedredstone trace stop} record what happens to
+ * the networks around the caller into a {@link TraceLog}, for {@link okaghana.refinedredstone.engine.TraceReplay}. <br>
+ * {@code /refinedredstone heatmap} turns the {@link HeatMap} overlay on or off for the caller, and
+ * {@code /refinedredstone heatmap top} lists the networks that are updated the most. <br>
+ * {@code /refinedredstone throttle} lists the networks the {@link RateLimiter} throttled or froze, and
+ * {@code /refinedredstone throttle release <network>} lets one of them update freely again.
+ */
+public class RefinedRedstoneCommand {
+
+    private static final int DEFAULT_TRACE_RECORDS = 1 << 20;
+    private static final int MAX_TRACE_RECORDS = 1 << 24;
+
+    public static void register(CommandDispatcher<CommandSource> dispatcher) {
+        LiteralArgumentBuilder<CommandSource> root = Commands.literal(RefinedRedstone.MODID)
+                .requires(source -> source.hasPermissionLevel(2));
+
+        root.then(Commands.literal("bench")
+                .then(Commands.argument("topology", StringArgumentType.word())
+                        .suggests((context, builder) -> ISuggestionProvider.suggest(Arrays.stream(Benchmark.Topology.values()).map(Benchmark.Topology::getName), builder))
+                        .then(Commands.argument("size", IntegerArgumentType.integer(1))
+                                .then(Commands.argument("ticks", IntegerArgumentType.integer(1, Benchmark.MAX_TICKS))
+                                        .executes(context -> bench(context, "lever"))
+                                        .then(Commands.argument("inputs", StringArgumentType.word())
+                                                .suggests((context, builder) -> ISuggestionProvider.suggest(new String[] {"lever", "clock"}, builder))
+                                                .executes(context -> bench(context, StringArgumentType.getString(context, "inputs"))))))));
+
+        root.then(Commands.literal("trace")
+                .then(Commands.literal("start")
+                        .then(Commands.argument("radius", IntegerArgumentType.integer(0, 512))
+                                .executes(context -> startTrace(context, DEFAULT_TRACE_RECORDS))
+                                .then(Commands.argument("records", IntegerArgumentType.integer(1024, MAX_TRACE_RECORDS))
+                                        .executes(context -> startTrace(context, IntegerArgumentType.getInteger(context, "records"))))))
+                .then(Commands.literal("stop")
+                        .executes(RefinedRedstoneCommand::stopTrace)));
+
+        root.then(Commands.literal("heatmap")
+                .executes(RefinedRedstoneCommand::toggleHeatMap)
+                .then(Commands.literal("top")
+                        .executes(RefinedRedstoneCommand::listHottestNetworks)));
+
+        root.then(Commands.literal("throttle")
+                .executes(RefinedRedstoneCommand::listThrottledNetworks)
+                .then(Commands.literal("release")
+                        .then(Commands.argument("network", IntegerArgumentType.integer(1))
+                                .executes(RefinedRedstoneCommand::releaseNetwork))));
+
+        dispatcher.register(root);
+    }
+
+
+    private static int bench(CommandContext<CommandSource> context, String inputs) throws CommandSyntaxException {
+        String topology = StringArgumentType.getString(context, "topology").toLowerCase(Locale.ROOT);
+        int size = IntegerArgumentType.getInteger(context, "size");
+        int ticks = IntegerArgumentType.getInteger(context, "ticks");
+        return Benchmark.start(context.getSource(), topology, size, ticks, inputs.toLowerCase(Locale.ROOT));
+    }
+
+
+    private static int startTrace(CommandContext<CommandSource> context, int records) throws CommandSyntaxException {
+        CommandSource source = context.getSource();
+        int radius = IntegerArgumentType.getInteger(context, "radius");
+        Path directory = source.getServer().getDataDirectory().toPath().resolve(RefinedRedstone.MODID).resolve("traces");
+        Path file = directory.resolve("trace-" + new SimpleDateFormat("yyyy-MM-dd_HH.mm.ss").format(new Date()) + ".bin");
+
+        try {
+            Files.createDirectories(directory);
+            NetworkManager.get(source.getWorld()).startTrace(file, records, new BlockPos(source.getPos()), radius);
+        } catch (IOException exception) {
+            RefinedRedstone.MOD_LOGGER.log(Level.WARNING, "Couldn't start the trace " + file, exception);
+            throw new SimpleCommandExceptionType(new StringTextComponent("Couldn't create " + file + ": " + exception.getMessage())).create();
+        }
+
+        source.sendFeedback(new StringTextComponent("Tracing the networks within " + radius + " blocks into " + file), true);
+        return 1;
+    }
+
+
+    private static int stopTrace(CommandContext<CommandSource> context) throws CommandSyntaxException {
+        CommandSource source = context.getSource();
+        TraceRecorder stopped = NetworkManager.get(source.getWorld()).stopTrace();
+        if (stopped == null) {
+            throw new SimpleCommandExceptionType(new StringTextComponent("There is no trace running in this dimension")).create();
+        }
+
+        source.sendFeedback(new StringTextComponent("Wrote " + stopped.getWritten() + " records to " + stopped.getPath()), true);
+        return 1;
+    }
+
+
+    private static int toggleHeatMap(CommandContext<CommandSource> context) throws CommandSyntaxException {
+        ServerPlayerEntity player = context.getSource().asPlayer();
+        HeatMap heatMap = NetworkManager.get(player.getServerWorld()).getHeatMap();
+        if (heatMap.isWatching(player)) {
+            heatMap.unwatch(player);
+            context.getSource().sendFeedback(new StringTextComponent("Heatmap off"), false);
+        } else {
+            heatMap.watch(player, Long.MAX_VALUE);
+            context.getSource().sendFeedback(new StringTextComponent("Heatmap on, updated every second"), false);
+        }
+        return 1;
+    }
+
+
+    private static int listHottestNetworks(CommandContext<CommandSource> context) {
+        CommandSource source = context.getSource();
+        NetworkManager manager = NetworkManager.get(source.getWorld());
+        HeatMap heatMap = manager.getHeatMap();
+        if (!heatMap.isActive()) {
+            source.sendFeedback(new StringTextComponent("Nobody is watching the heatmap, turn it on first"), false);
+            return 0;
+        }
+
+        Set<Integer> hottest = heatMap.getHottestNetworks(ConfigHandler.HEATMAP_TOP_NETWORKS.get());
+        for (int id : hottest) {
+            WireNetwork network = manager.getGraph().get(id);
+            if (network != null) {
+                long first = network.getMembers().iterator().next();
+                source.sendFeedback(new StringTextComponent(String.format("Network %d: %d wires, %.1f updates/s, at %s",
+                        id, network.size(), heatMap.getNetworkHeat(id), PackedPos.toString(first))), false);
+            }
+        }
+        return hottest.size();
+    }
+
+
+    private static int listThrottledNetworks(CommandContext<CommandSource> context) {
+        CommandSource source = context.getSource();
+        Collection<RateLimiter.Offender> offenders = NetworkManager.get(source.getWorld()).getRateLimiter().getOffenders();
+        if (offenders.isEmpty()) {
+            source.sendFeedback(new StringTextComponent("No network is throttled in this dimension"), false);
+            return 0;
+        }
+
+        long time = source.getWorld().getGameTime();
+        for (RateLimiter.Offender offender : offenders) {
+            source.sendFeedback(new StringTextComponent(String.format("Network %d: %s for %ds at %s (%s)", offender.getId(),
+                    offender.isFrozen() ? "frozen" : "throttled", (time - offender.getSince()) / 20,
+                    PackedPos.toString(offender.getPos()), offender.getReason())), false);
+        }
+        return offenders.size();
+    }
+
+
+    private static int releaseNetwork(CommandContext<CommandSource> context) throws CommandSyntaxException {
+        CommandSource source = context.getSource();
+        int id = IntegerArgumentType.getInteger(context, "network");
+        if (!NetworkManager.get(source.getWorld()).release(id)) {
+            throw new SimpleCommandExceptionType(new StringTextComponent("Network " + id + " isn't throttled")).create();
+        }
+
+        source.sendFeedback(new StringTextComponent("Released network " + id), true);
+        return 1;
+    }
+}
@@ -1,21 +1,30 @@
 package okaghana.refinedredstone.item;
 
 import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.entity.player.ServerPlayerEntity;
 import net.minecraft.inventory.EquipmentSlotType;
 import net.minecraft.item.*;
+import net.minecraft.util.ActionResult;
+import net.minecraft.util.Hand;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.vector.Vector3d;
+import net.minecraft.util.text.StringTextComponent;
 import net.minecraft.world.World;
 import okaghana.refinedredstone.RefinedRedstone;
+import okaghana.refinedredstone.circuit.NetworkManager;
 import okaghana.refinedredstone.misc.FloatingTextEntity;
 import okaghana.refinedredstone.setup.BlockRegister;
 import okaghana.refinedredstone.setup.ConfigHandler;
 
+import javax.annotation.Nonnull;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
 public class EngineersHelmet extends ArmorItem {
+    // Whether wearing this helmet shows the update heatmap, stored in the NBT of the stack
+    private static final String HEATMAP_TAG = "Heatmap";
+
     public static final IArmorMaterial ARMOR_MATERIAL = ArmorMaterial.LEATHER;
     public static final Properties PROPERTIES = new Item.Properties().maxStackSize(1).group(RefinedRedstone.MOD_ITEM_GROUP);
 
@@ -29,8 +38,34 @@ public class EngineersHelmet extends ArmorItem {
         super(materialIn, EquipmentSlotType.HEAD, builderIn);
     }
 
+    /** Sneak-using the helmet switches the update heatmap on or off, instead of putting it on */
+    @Override
+    @Nonnull
+    public ActionResult<ItemStack> onItemRightClick(@Nonnull World world, PlayerEntity player, @Nonnull Hand hand) {
+        ItemStack stack = player.getHeldItem(hand);
+        if (!player.isSneaking()) {
+            return super.onItemRightClick(world, player, hand);
+        }
+
+        if (!world.isRemote()) {
+            boolean enabled = !isHeatmapEnabled(stack);
+            stack.getOrCreateTag().putBoolean(HEATMAP_TAG, enabled);
+            player.sendStatusMessage(new StringTextComponent("Update heatmap: " + (enabled ? "on" : "off")), true);
+        }
+        return ActionResult.func_233538_a_(stack, world.isRemote());
+    }
+
+    public static boolean isHeatmapEnabled(ItemStack stack) {
+        return stack.getTag() != null && stack.getTag().getBoolean(HEATMAP_TAG);
+    }
+
     @Override
     public void onArmorTick(ItemStack stack, World world, PlayerEntity player) {
+        // Wearing the helmet shows the update heatmap, if it has been switched on
+        if (player instanceof ServerPlayerEntity && isHeatmapEnabled(stack)) {
+            NetworkManager.get(world).getHeatMap().watchWithHelmet((ServerPlayerEntity) player);
+        }
+
         for (Vector3d position : getRedstoneBlocks(world, player.getPosition())) {
             FloatingTextEntity text = new FloatingTextEntity(world, position);
             world.addEntity(text);
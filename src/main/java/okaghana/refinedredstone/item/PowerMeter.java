@@ -2,6 +2,11 @@ package okaghana.refinedredstone.item;
 
 import okaghana.refinedredstone.RefinedRedstone;
 import okaghana.refinedredstone.block.RefinedRedstoneBlock;
+import okaghana.refinedredstone.circuit.DustEngine;
+import okaghana.refinedredstone.circuit.NetworkManager;
+import okaghana.refinedredstone.engine.OscillationDetector;
+import okaghana.refinedredstone.engine.WireNetwork;
+import okaghana.refinedredstone.setup.ConfigHandler;
 
 import net.minecraft.block.BlockState;
 import net.minecraft.block.RedstoneWireBlock;
@@ -42,6 +47,17 @@ public class PowerMeter extends Item {
             return ActionResultType.PASS;
         }
 
+        // Sneaking switches the network of a wire between lossless and decay mode
+        if (player != null && player.isSneaking() && world.getBlockState(context.getPos()).getBlock() instanceof RefinedRedstoneBlock) {
+            NetworkManager manager = NetworkManager.get(world);
+            WireNetwork network = manager.getOrIndex(context.getPos());
+            if (network != null) {
+                boolean decaying = manager.toggleDecay(network);
+                player.sendStatusMessage(new StringTextComponent(String.format("Network #%d: %s", network.getId(), decaying ? "decay mode" : "lossless")), true);
+                return ActionResultType.SUCCESS;
+            }
+        }
+
         // Find the Block looking at
         RayTraceResult lookingAt = Minecraft.getInstance().objectMouseOver;
         if (lookingAt != null && player != null && lookingAt.getType() == RayTraceResult.Type.BLOCK) {
@@ -53,7 +69,7 @@ public class PowerMeter extends Item {
             if (state.getBlock() instanceof RedstoneWireBlock) {
                 message = debugRedstoneWire(state);
             } else if (state.getBlock() instanceof RefinedRedstoneBlock) {
-                message = debugRefinedRedstone(state);
+                message = debugRefinedRedstone(world, pos, state);
             }else {
                 int intensity = world.getRedstonePower(pos, Direction.getFacingFromVector(direction.getX(), direction.getY(), direction.getZ()));
                 message = String.format("Intensity: %d", intensity);
@@ -81,11 +97,33 @@ public class PowerMeter extends Item {
         String s =  String.format("Intensity: %d", intensity);
         if (!connections.equals("")) s += "    Connections: " + connections;
         if (!ups.equals("")) s += "    Ups: " + ups;
+        if (DustEngine.isActive()) s += "    Engine: " + ConfigHandler.DUST_MODE.get();
 
         return s;
     }
 
-    private String debugRefinedRedstone(BlockState state) {
-        return debugRedstoneWire(state);
+    private String debugRefinedRedstone(World world, BlockPos pos, BlockState state) {
+        String s = String.format("Intensity: %d", RefinedRedstoneBlock.getPower(world, pos, state));
+
+        NetworkManager manager = NetworkManager.get(world);
+        WireNetwork network = manager.getGraph().getByMember(pos.toLong());
+        if (network == null) {
+            return s + "    Network: not indexed";
+        }
+        s += String.format("    Network #%d: %d wires", network.getId(), network.size());
+        if (network.isDecaying()) {
+            s += "    Decay mode";
+        }
+
+        OscillationDetector detector = manager.getDetector(network.getId());
+        if (detector != null) {
+            if (detector.isLocked()) {
+                s += String.format("    Oscillation: period %d ticks, %d changes per cycle", detector.getPeriod(), detector.getCycleLength());
+            } else {
+                s += "    Oscillation: none";
+            }
+            s += String.format(" (detected %d, matched %d, broken %d)", detector.getDetections(), detector.getMatchedEvents(), detector.getBreaks());
+        }
+        return s;
     }
 }
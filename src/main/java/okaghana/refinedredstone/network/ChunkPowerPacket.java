@@ -0,0 +1,71 @@
+package okaghana.refinedredstone.network;
+
+import net.minecraft.network.PacketBuffer;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.fml.DistExecutor;
+import net.minecraftforge.fml.network.NetworkEvent;
+import okaghana.refinedredstone.client.ClientPowerMap;
+import okaghana.refinedredstone.engine.PackedPos;
+
+import java.util.function.Supplier;
+
+/**
+ * The power of all powered wires in a chunk, sent right after the chunk itself when
+ * {@link okaghana.refinedredstone.setup.ConfigHandler#CHUNK_POWER_STORAGE} is enabled. The block states in the chunk
+ * don't carry the power in that mode, so without this the client would show every wire as unpowered until its network
+ * changes again. <br><br>
+ *
+ * Also used for the changed members of networks in decay mode in that mode, which can't be sent per network. Those can
+ * drop to 0, so unpowered wires are sent as well.
+ */
+public class ChunkPowerPacket {
+
+    private final long chunk;
+    private final long[][] positionsByPower;
+
+
+    /**
+     * @param chunk The chunk, packed like {@link PackedPos#chunkKey(int, int)}
+     * @param positionsByPower The packed positions of the wires, indexed by their power
+     */
+    public ChunkPowerPacket(long chunk, long[][] positionsByPower) {
+        this.chunk = chunk;
+        this.positionsByPower = positionsByPower;
+    }
+
+
+    public static void encode(ChunkPowerPacket packet, PacketBuffer buffer) {
+        buffer.writeLong(packet.chunk);
+        for (int power = 0; power < 16; power++) {
+            long[] positions = packet.positionsByPower[power];
+            buffer.writeVarInt(positions.length);
+            for (long pos : positions) {
+                buffer.writeVarInt(PackedPos.toChunkLocal(pos));
+            }
+        }
+    }
+
+
+    public static ChunkPowerPacket decode(PacketBuffer buffer) {
+        long chunk = buffer.readLong();
+        long[][] positionsByPower = new long[16][0];
+        for (int power = 0; power < 16; power++) {
+            long[] positions = new long[buffer.readVarInt()];
+            for (int i = 0; i < positions.length; i++) {
+                positions[i] = PackedPos.fromChunkLocal(chunk, buffer.readVarInt());
+            }
+            positionsByPower[power] = positions;
+        }
+        return new ChunkPowerPacket(chunk, positionsByPower);
+    }
+
+
+    public static void handle(ChunkPowerPacket packet, Supplier<NetworkEvent.Context> context) {
+        context.get().enqueueWork(() -> DistExecutor.unsafeRunWhenOn(Dist.CLIENT, () -> () -> {
+            for (int power = 0; power < 16; power++) {
+                ClientPowerMap.update(packet.positionsByPower[power], power);
+            }
+        }));
+        context.get().setPacketHandled(true);
+    }
+}
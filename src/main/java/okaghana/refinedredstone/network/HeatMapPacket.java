@@ -0,0 +1,66 @@
+package okaghana.refinedredstone.network;
+
+import net.minecraft.network.PacketBuffer;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.fml.DistExecutor;
+import net.minecraftforge.fml.network.NetworkEvent;
+import okaghana.refinedredstone.client.ClientHeatMap;
+
+import java.util.function.Supplier;
+
+/**
+ * The heat of the wires around a player that watches the {@link okaghana.refinedredstone.circuit.HeatMap}. Replaces
+ * whatever the client got before, an empty packet turns the overlay off.
+ */
+public class HeatMapPacket {
+
+    /** Set in a level when the wire belongs to one of the hottest networks */
+    public static final int HOT = 0x10;
+    public static final HeatMapPacket EMPTY = new HeatMapPacket(0, new long[0], new byte[0]);
+
+    private final float maxPerSecond;
+    private final long[] positions;
+    private final byte[] levels;
+
+
+    /**
+     * @param maxPerSecond The updates per second of the hottest wire, which has level 15
+     * @param positions The packed positions of the wires
+     * @param levels The heat of every wire from 1 to 15, possibly with {@link HeatMapPacket#HOT}
+     */
+    public HeatMapPacket(float maxPerSecond, long[] positions, byte[] levels) {
+        this.maxPerSecond = maxPerSecond;
+        this.positions = positions;
+        this.levels = levels;
+    }
+
+
+    public static void encode(HeatMapPacket packet, PacketBuffer buffer) {
+        buffer.writeFloat(packet.maxPerSecond);
+        buffer.writeVarInt(packet.positions.length);
+        for (int i = 0; i < packet.positions.length; i++) {
+            buffer.writeLong(packet.positions[i]);
+            buffer.writeByte(packet.levels[i]);
+        }
+    }
+
+
+    public static HeatMapPacket decode(PacketBuffer buffer) {
+        float maxPerSecond = buffer.readFloat();
+        int count = buffer.readVarInt();
+        long[] positions = new long[count];
+        byte[] levels = new byte[count];
+        for (int i = 0; i < count; i++) {
+            positions[i] = buffer.readLong();
+            levels[i] = buffer.readByte();
+        }
+        return new HeatMapPacket(maxPerSecond, positions, levels);
+    }
+
+
+    public static void handle(HeatMapPacket packet, Supplier<NetworkEvent.Context> context) {
+        context.get().enqueueWork(() -> DistExecutor.unsafeRunWhenOn(Dist.CLIENT, () -> () ->
+                ClientHeatMap.set(packet.maxPerSecond, packet.positions, packet.levels)));
+        context.get().setPacketHandled(true);
+    }
+}
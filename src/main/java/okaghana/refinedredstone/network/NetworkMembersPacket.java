@@ -0,0 +1,86 @@
+package okaghana.refinedredstone.network;
+
+import net.minecraft.network.PacketBuffer;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.fml.DistExecutor;
+import net.minecraftforge.fml.network.NetworkEvent;
+import okaghana.refinedredstone.client.ClientNetworkIndex;
+import okaghana.refinedredstone.engine.PackedPos;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * The answer to a {@link NetworkResyncPacket}: all members of a network in the chunks the player is tracking, together
+ * with the revision they belong to and the current power. <br><br>
+ *
+ * Members are sent relative to their chunk (x and z in 4 bits each, y above that), which keeps most of them at two bytes.
+ */
+public class NetworkMembersPacket {
+
+    private final int networkId;
+    private final int revision;
+    private final int power;
+    private final Map<Long, long[]> membersByChunk;
+
+
+    public NetworkMembersPacket(int networkId, int revision, int power, Map<Long, List<Long>> membersByChunk) {
+        this.networkId = networkId;
+        this.revision = revision;
+        this.power = power;
+        this.membersByChunk = new LinkedHashMap<>();
+        for (Map.Entry<Long, List<Long>> entry : membersByChunk.entrySet()) {
+            this.membersByChunk.put(entry.getKey(), entry.getValue().stream().mapToLong(Long::longValue).toArray());
+        }
+    }
+
+    private NetworkMembersPacket(int networkId, int revision, int power, LinkedHashMap<Long, long[]> membersByChunk) {
+        this.networkId = networkId;
+        this.revision = revision;
+        this.power = power;
+        this.membersByChunk = membersByChunk;
+    }
+
+
+    public static void encode(NetworkMembersPacket packet, PacketBuffer buffer) {
+        buffer.writeVarInt(packet.networkId);
+        buffer.writeVarInt(packet.revision);
+        buffer.writeByte(packet.power);
+        buffer.writeVarInt(packet.membersByChunk.size());
+        for (Map.Entry<Long, long[]> entry : packet.membersByChunk.entrySet()) {
+            buffer.writeLong(entry.getKey());
+            buffer.writeVarInt(entry.getValue().length);
+            for (long member : entry.getValue()) {
+                buffer.writeVarInt(PackedPos.toChunkLocal(member));
+            }
+        }
+    }
+
+
+    public static NetworkMembersPacket decode(PacketBuffer buffer) {
+        int networkId = buffer.readVarInt();
+        int revision = buffer.readVarInt();
+        int power = buffer.readByte();
+
+        int chunkCount = buffer.readVarInt();
+        LinkedHashMap<Long, long[]> membersByChunk = new LinkedHashMap<>();
+        for (int i = 0; i < chunkCount; i++) {
+            long chunk = buffer.readLong();
+            long[] members = new long[buffer.readVarInt()];
+            for (int j = 0; j < members.length; j++) {
+                members[j] = PackedPos.fromChunkLocal(chunk, buffer.readVarInt());
+            }
+            membersByChunk.put(chunk, members);
+        }
+        return new NetworkMembersPacket(networkId, revision, power, membersByChunk);
+    }
+
+
+    public static void handle(NetworkMembersPacket packet, Supplier<NetworkEvent.Context> context) {
+        context.get().enqueueWork(() -> DistExecutor.unsafeRunWhenOn(Dist.CLIENT, () -> () ->
+                ClientNetworkIndex.setMembers(packet.networkId, packet.revision, packet.power, packet.membersByChunk)));
+        context.get().setPacketHandled(true);
+    }
+}
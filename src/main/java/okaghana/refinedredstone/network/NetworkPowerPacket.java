@@ -0,0 +1,67 @@
+package okaghana.refinedredstone.network;
+
+import net.minecraft.network.PacketBuffer;
+import net.minecraftforge.api.distmarker.Dist;
+import net.minecraftforge.fml.DistExecutor;
+import net.minecraftforge.fml.network.NetworkEvent;
+import okaghana.refinedredstone.client.ClientNetworkIndex;
+
+import java.util.function.Supplier;
+
+/**
+ * Tells the client that a network now has a new power in the listed chunks. <br><br>
+ *
+ * The power of the wires is written on the server without sending the block change to the client, because every changed
+ * block state forces the client to rebuild the whole 16x16x16 render section. The packet doesn't list the wires either:
+ * the client knows the members of the network from its {@link ClientNetworkIndex}, so the packet has the same size for a
+ * network of 3 wires and one of 3000. If the client doesn't know the network, or only an older revision of it, it asks
+ * for the members with a {@link NetworkResyncPacket}.
+ */
+public class NetworkPowerPacket {
+
+    /** Sent instead of a power when the members don't share one anymore. The client shows their block states again */
+    public static final int RELEASED = -1;
+
+    private final int networkId;
+    private final int revision;
+    private final int power;
+    private final long[] chunks;
+
+
+    public NetworkPowerPacket(int networkId, int revision, int power, long[] chunks) {
+        this.networkId = networkId;
+        this.revision = revision;
+        this.power = power;
+        this.chunks = chunks;
+    }
+
+
+    public static void encode(NetworkPowerPacket packet, PacketBuffer buffer) {
+        buffer.writeVarInt(packet.networkId);
+        buffer.writeVarInt(packet.revision);
+        buffer.writeByte(packet.power);
+        buffer.writeVarInt(packet.chunks.length);
+        for (long chunk : packet.chunks) {
+            buffer.writeLong(chunk);
+        }
+    }
+
+
+    public static NetworkPowerPacket decode(PacketBuffer buffer) {
+        int networkId = buffer.readVarInt();
+        int revision = buffer.readVarInt();
+        int power = buffer.readByte();
+        long[] chunks = new long[buffer.readVarInt()];
+        for (int i = 0; i < chunks.length; i++) {
+            chunks[i] = buffer.readLong();
+        }
+        return new NetworkPowerPacket(networkId, revision, power, chunks);
+    }
+
+
+    public static void handle(NetworkPowerPacket packet, Supplier<NetworkEvent.Context> context) {
+        context.get().enqueueWork(() -> DistExecutor.unsafeRunWhenOn(Dist.CLIENT, () -> () ->
+                ClientNetworkIndex.applyPower(packet.networkId, packet.revision, packet.power, packet.chunks)));
+        context.get().setPacketHandled(true);
+    }
+}
@@ -0,0 +1,48 @@
+package okaghana.refinedredstone.network;
+
+import net.minecraft.entity.player.ServerPlayerEntity;
+import net.minecraft.network.PacketBuffer;
+import net.minecraftforge.fml.network.NetworkEvent;
+import okaghana.refinedredstone.circuit.NetworkManager;
+import okaghana.refinedredstone.engine.WireNetwork;
+
+import java.util.function.Supplier;
+
+/**
+ * Sent by the client when it got the power of a network it doesn't know the members of (or only an outdated revision).
+ * The server answers with a {@link NetworkMembersPacket}. If the network doesn't exist anymore there is nothing to do,
+ * the client will hear about the network that replaced it soon enough.
+ */
+public class NetworkResyncPacket {
+
+    private final int networkId;
+
+
+    public NetworkResyncPacket(int networkId) {
+        this.networkId = networkId;
+    }
+
+
+    public static void encode(NetworkResyncPacket packet, PacketBuffer buffer) {
+        buffer.writeVarInt(packet.networkId);
+    }
+
+
+    public static NetworkResyncPacket decode(PacketBuffer buffer) {
+        return new NetworkResyncPacket(buffer.readVarInt());
+    }
+
+
+    public static void handle(NetworkResyncPacket packet, Supplier<NetworkEvent.Context> context) {
+        context.get().enqueueWork(() -> {
+            ServerPlayerEntity player = context.get().getSender();
+            if (player != null) {
+                WireNetwork network = NetworkManager.get(player.getServerWorld()).getGraph().get(packet.networkId);
+                if (network != null) {
+                    PacketHandler.sendNetworkMembers(player, network);
+                }
+            }
+        });
+        context.get().setPacketHandled(true);
+    }
+}
@@ -0,0 +1,175 @@
+package okaghana.refinedredstone.network;
+
+import net.minecraft.entity.player.ServerPlayerEntity;
+import net.minecraft.util.ResourceLocation;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.World;
+import net.minecraft.world.server.ServerWorld;
+import net.minecraftforge.fml.network.NetworkDirection;
+import net.minecraftforge.fml.network.NetworkRegistry;
+import net.minecraftforge.fml.network.PacketDistributor;
+import net.minecraftforge.fml.network.simple.SimpleChannel;
+import okaghana.refinedredstone.RefinedRedstone;
+import okaghana.refinedredstone.capability.ChunkPowerStorage;
+import okaghana.refinedredstone.engine.PackedPos;
+import okaghana.refinedredstone.engine.WireNetwork;
+
+import java.util.*;
+
+/**
+ * The network channel of the mod and the place where all packets are registered. <br><br>
+ *
+ * The protocol version has to be bumped whenever a packet changes, so clients and servers with different versions of the
+ * mod refuse to connect instead of misreading each other.
+ */
+public class PacketHandler {
+
+    private static final String PROTOCOL_VERSION = "5";
+
+    public static final SimpleChannel CHANNEL = NetworkRegistry.newSimpleChannel(new ResourceLocation(RefinedRedstone.MODID, "main"),
+            () -> PROTOCOL_VERSION, PROTOCOL_VERSION::equals, PROTOCOL_VERSION::equals);
+
+
+    public static void register() {
+        int id = 0;
+        CHANNEL.registerMessage(id++, NetworkPowerPacket.class, NetworkPowerPacket::encode, NetworkPowerPacket::decode, NetworkPowerPacket::handle, Optional.of(NetworkDirection.PLAY_TO_CLIENT));
+        CHANNEL.registerMessage(id++, NetworkMembersPacket.class, NetworkMembersPacket::encode, NetworkMembersPacket::decode, NetworkMembersPacket::handle, Optional.of(NetworkDirection.PLAY_TO_CLIENT));
+        CHANNEL.registerMessage(id++, ChunkPowerPacket.class, ChunkPowerPacket::encode, ChunkPowerPacket::decode, ChunkPowerPacket::handle, Optional.of(NetworkDirection.PLAY_TO_CLIENT));
+        CHANNEL.registerMessage(id++, NetworkResyncPacket.class, NetworkResyncPacket::encode, NetworkResyncPacket::decode, NetworkResyncPacket::handle, Optional.of(NetworkDirection.PLAY_TO_SERVER));
+        CHANNEL.registerMessage(id++, HeatMapPacket.class, HeatMapPacket::encode, HeatMapPacket::decode, HeatMapPacket::handle, Optional.of(NetworkDirection.PLAY_TO_CLIENT));
+    }
+
+
+    /**
+     * Tell every player that can see a part of the network about its new power. Every player gets a single packet that
+     * only lists the chunks they are tracking, no matter how many wires there are
+     *
+     * @param world The world the network is in
+     * @param network The network
+     * @param chunks The chunks (packed like {@link PackedPos#chunkKey(long)}) in which the power of the members changed
+     */
+    public static void sendNetworkPower(World world, WireNetwork network, Collection<Long> chunks) {
+        for (Map.Entry<ServerPlayerEntity, List<Long>> entry : getTrackingPlayers(world, chunks).entrySet()) {
+            long[] tracked = entry.getValue().stream().mapToLong(Long::longValue).toArray();
+            NetworkPowerPacket packet = new NetworkPowerPacket(network.getId(), network.getRevision(), network.getPower(), tracked);
+            CHANNEL.send(PacketDistributor.PLAYER.with(entry::getKey), packet);
+        }
+    }
+
+
+    /**
+     * Tell every player that can see a part of the network that its members don't share a power anymore (the network
+     * switched to decay mode), so the power last sent for the network mustn't be shown anymore
+     */
+    public static void sendNetworkReleased(World world, WireNetwork network, Collection<Long> chunks) {
+        for (Map.Entry<ServerPlayerEntity, List<Long>> entry : getTrackingPlayers(world, chunks).entrySet()) {
+            long[] tracked = entry.getValue().stream().mapToLong(Long::longValue).toArray();
+            NetworkPowerPacket packet = new NetworkPowerPacket(network.getId(), network.getRevision(), NetworkPowerPacket.RELEASED, tracked);
+            CHANNEL.send(PacketDistributor.PLAYER.with(entry::getKey), packet);
+        }
+    }
+
+
+    /**
+     * Send a player the members of a network (only those in chunks the player is tracking), e.g. because their client
+     * didn't know the network yet
+     */
+    public static void sendNetworkMembers(ServerPlayerEntity player, WireNetwork network) {
+        List<Long> tracked = getTrackingPlayers(player.getServerWorld(), network.getChunks()).get(player);
+        Map<Long, List<Long>> membersByChunk = new LinkedHashMap<>();
+        if (tracked != null) {
+            for (long chunk : tracked) {
+                membersByChunk.put(chunk, new ArrayList<>());
+            }
+            for (long member : network.getMembers()) {
+                List<Long> members = membersByChunk.get(PackedPos.chunkKey(member));
+                if (members != null) {
+                    members.add(member);
+                }
+            }
+        }
+
+        int power = network.isDecaying() ? NetworkPowerPacket.RELEASED : network.getPower();
+        NetworkMembersPacket packet = new NetworkMembersPacket(network.getId(), network.getRevision(), power, membersByChunk);
+        CHANNEL.send(PacketDistributor.PLAYER.with(() -> player), packet);
+    }
+
+
+    /** Send a player the power of all wires in a chunk they just started watching */
+    public static void sendChunkPower(ServerPlayerEntity player, ServerWorld world, ChunkPos chunkPos) {
+        ChunkPowerStorage storage = ChunkPowerStorage.get(world.getChunk(chunkPos.x, chunkPos.z));
+        if (storage == null) {
+            return;
+        }
+
+        List<List<Long>> positions = new ArrayList<>();
+        for (int power = 0; power < 16; power++) {
+            positions.add(new ArrayList<>());
+        }
+        storage.forEachPowered(chunkPos.x, chunkPos.z, (pos, power) -> positions.get(power).add(pos.toLong()));
+
+        long[][] positionsByPower = new long[16][];
+        boolean empty = true;
+        for (int power = 0; power < 16; power++) {
+            positionsByPower[power] = positions.get(power).stream().mapToLong(Long::longValue).toArray();
+            empty &= power == 0 || positionsByPower[power].length == 0;
+        }
+
+        if (!empty) {
+            CHANNEL.send(PacketDistributor.PLAYER.with(() -> player), new ChunkPowerPacket(chunkPos.asLong(), positionsByPower));
+        }
+    }
+
+
+    /**
+     * Send the power of single wires to every player tracking them, e.g. for networks in decay mode with
+     * {@link okaghana.refinedredstone.setup.ConfigHandler#CHUNK_POWER_STORAGE}, where the members don't share one power
+     *
+     * @param powers The new power of every wire, by packed position
+     */
+    public static void sendWirePower(World world, Map<Long, Integer> powers) {
+        Map<Long, long[][]> byChunk = new LinkedHashMap<>();
+        Map<Long, List<List<Long>>> positions = new LinkedHashMap<>();
+        for (Map.Entry<Long, Integer> entry : powers.entrySet()) {
+            positions.computeIfAbsent(PackedPos.chunkKey(entry.getKey()), key -> {
+                List<List<Long>> lists = new ArrayList<>();
+                for (int power = 0; power < 16; power++) {
+                    lists.add(new ArrayList<>());
+                }
+                return lists;
+            }).get(entry.getValue()).add(entry.getKey());
+        }
+        positions.forEach((chunk, lists) -> {
+            long[][] positionsByPower = new long[16][];
+            for (int power = 0; power < 16; power++) {
+                positionsByPower[power] = lists.get(power).stream().mapToLong(Long::longValue).toArray();
+            }
+            byChunk.put(chunk, positionsByPower);
+        });
+
+        for (Map.Entry<ServerPlayerEntity, List<Long>> entry : getTrackingPlayers(world, byChunk.keySet()).entrySet()) {
+            for (long chunk : entry.getValue()) {
+                CHANNEL.send(PacketDistributor.PLAYER.with(entry::getKey), new ChunkPowerPacket(chunk, byChunk.get(chunk)));
+            }
+        }
+    }
+
+
+    /** Send a player the heatmap around them */
+    public static void sendHeatMap(ServerPlayerEntity player, HeatMapPacket packet) {
+        CHANNEL.send(PacketDistributor.PLAYER.with(() -> player), packet);
+    }
+
+
+    /** Group the given chunks by the players that are tracking them */
+    private static Map<ServerPlayerEntity, List<Long>> getTrackingPlayers(World world, Collection<Long> chunks) {
+        Map<ServerPlayerEntity, List<Long>> chunksByPlayer = new HashMap<>();
+        ServerWorld serverWorld = (ServerWorld) world;
+        for (long chunk : chunks) {
+            ChunkPos chunkPos = new ChunkPos(chunk);
+            serverWorld.getChunkProvider().chunkManager.getTrackingPlayers(chunkPos, false)
+                    .forEach(player -> chunksByPlayer.computeIfAbsent(player, key -> new ArrayList<>()).add(chunk));
+        }
+        return chunksByPlayer;
+    }
+}
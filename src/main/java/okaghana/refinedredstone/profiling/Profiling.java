@@ -0,0 +1,123 @@
+package okaghana.refinedredstone.profiling;
+
+import okaghana.refinedredstone.RefinedRedstone;
+import okaghana.refinedredstone.engine.WireNetwork;
+
+import java.util.Iterator;
+import java.util.logging.Level;
+
+/**
+ * Reports the work of the mod to Java Flight Recorder, so it shows up as its own events instead of anonymous frames
+ * below {@code neighborChanged}. <br><br>
+ *
+ * The events themselves live in {@link okaghana.refinedredstone.profiling.jfr}, which is only loaded (by name) when the
+ * JVM has JFR. Otherwise every method here does nothing. The events are disabled by default and have to be switched on in
+ * the JFR settings, e.g. {@code refinedredstone.NetworkTraversal#enabled=true}. While they are off, a call costs one
+ * {@code nanoTime} and an allocation the JIT removes. <br><br>
+ *
+ * Usage: take {@code long start = Profiling.begin()} before the work and pass it to the matching method afterwards.
+ */
+public final class Profiling {
+
+    private static final String JFR_BACKEND = "okaghana.refinedredstone.profiling.jfr.JfrBackend";
+    private static final ProfilingBackend BACKEND = loadBackend();
+
+    private Profiling() { }
+
+
+    /** The start of a measurement, 0 when there is no JFR at all */
+    public static long begin() {
+        return BACKEND == null ? 0 : System.nanoTime();
+    }
+
+
+    /**
+     * A network was traversed to find its members
+     *
+     * @param origin The packed position the traversal started at
+     * @param networkSize How many wires were found
+     * @param visited How many positions were looked at
+     */
+    public static void networkTraversal(long start, long origin, int networkSize, int visited) {
+        if (BACKEND != null) {
+            BACKEND.networkTraversal(System.nanoTime() - start, origin, networkSize, visited);
+        }
+    }
+
+
+    /**
+     * A new power was written to the members of a network. The position reported is the first member of the network,
+     * i.e. the wire its traversal started at
+     *
+     * @param updated How many members actually changed
+     */
+    public static void powerCommit(long start, WireNetwork network, int power, int updated) {
+        if (BACKEND != null) {
+            BACKEND.powerCommit(System.nanoTime() - start, getOrigin(network), network.getId(), network.size(), power, updated);
+        }
+    }
+
+
+    /**
+     * The power changes of the simulation were folded into the world, including the changes they caused in turn
+     *
+     * @param origin The first member of the first network that got a new power, packed with {@code PackedPos}
+     * @param rounds How many batches were taken from the simulation
+     * @param commits How many networks got a new power
+     * @param membersTouched How many wires those networks have together
+     */
+    public static void cascadeFold(long start, long origin, int rounds, int commits, int membersTouched) {
+        if (BACKEND != null) {
+            BACKEND.cascadeFold(System.nanoTime() - start, origin, rounds, commits, membersTouched);
+        }
+    }
+
+
+    /**
+     * The model data of a wire was generated for meshing
+     *
+     * @param pos The packed position of the wire
+     * @param visited How many block states were read
+     */
+    public static void modelData(long start, long pos, int visited) {
+        if (BACKEND != null) {
+            BACKEND.modelData(System.nanoTime() - start, pos, visited);
+        }
+    }
+
+
+    /**
+     * The quads of a wire were generated for meshing
+     *
+     * @param pos The packed position of the wire
+     * @param quads How many quads were generated
+     */
+    public static void modelQuads(long start, long pos, int quads) {
+        if (BACKEND != null) {
+            BACKEND.modelQuads(System.nanoTime() - start, pos, quads);
+        }
+    }
+
+
+    // ---------------------------------------- //
+    //                 Helpers                  //
+    // ---------------------------------------- //
+
+    /** The first member of a network, the wire its traversal started at */
+    public static long getOrigin(WireNetwork network) {
+        Iterator<Long> members = network.getMembers().iterator();
+        return members.hasNext() ? members.next() : 0;
+    }
+
+    private static ProfilingBackend loadBackend() {
+        try {
+            Class.forName("jdk.jfr.Event", false, Profiling.class.getClassLoader());
+            return (ProfilingBackend) Class.forName(JFR_BACKEND).getDeclaredConstructor().newInstance();
+        } catch (ClassNotFoundException exception) {
+            return null;
+        } catch (ReflectiveOperationException | LinkageError exception) {
+            RefinedRedstone.MOD_LOGGER.log(Level.WARNING, "Couldn't load the flight recorder events, profiling is disabled", exception);
+            return null;
+        }
+    }
+}
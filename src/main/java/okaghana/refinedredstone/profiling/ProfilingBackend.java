@@ -0,0 +1,18 @@
+package okaghana.refinedredstone.profiling;
+
+/**
+ * What {@link Profiling} forwards to. There is one implementation, on top of JFR, that is loaded by name so nothing here
+ * references {@code jdk.jfr} directly. All durations are in nanoseconds.
+ */
+public interface ProfilingBackend {
+
+    void networkTraversal(long duration, long origin, int networkSize, int visited);
+
+    void powerCommit(long duration, long origin, int networkId, int networkSize, int power, int updated);
+
+    void cascadeFold(long duration, long origin, int rounds, int commits, int membersTouched);
+
+    void modelData(long duration, long pos, int visited);
+
+    void modelQuads(long duration, long pos, int quads);
+}
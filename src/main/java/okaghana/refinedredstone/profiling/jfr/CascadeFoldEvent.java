@@ -0,0 +1,37 @@
+package okaghana.refinedredstone.profiling.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * The power changes of the simulation, and the ones they caused, were folded into the world. The position is the first
+ * member of the first network that got a new power
+ */
+@Name("refinedredstone.CascadeFold")
+@Label("Cascade Fold")
+@Category({"Refined Redstone", "Circuit"})
+@Enabled(false)
+@StackTrace(false)
+class CascadeFoldEvent extends Event {
+
+    @Label("Elapsed")
+    @Timespan(Timespan.NANOSECONDS)
+    long elapsed;
+
+    @Label("X")
+    int x;
+
+    @Label("Y")
+    int y;
+
+    @Label("Z")
+    int z;
+
+    @Label("Rounds")
+    int rounds;
+
+    @Label("Commits")
+    int commits;
+
+    @Label("Members Touched")
+    int membersTouched;
+}
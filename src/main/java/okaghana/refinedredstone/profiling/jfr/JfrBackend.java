@@ -0,0 +1,84 @@
+package okaghana.refinedredstone.profiling.jfr;
+
+import okaghana.refinedredstone.engine.PackedPos;
+import okaghana.refinedredstone.profiling.ProfilingBackend;
+
+/**
+ * Turns the calls of {@link okaghana.refinedredstone.profiling.Profiling} into JFR events. The duration is measured by the
+ * caller and stored in the {@code elapsed} field, the events themselves are committed instantly. <br><br>
+ *
+ * Only loaded by name, so a JVM without {@code jdk.jfr} never sees this package.
+ */
+public class JfrBackend implements ProfilingBackend {
+
+    @Override
+    public void networkTraversal(long duration, long origin, int networkSize, int visited) {
+        NetworkTraversalEvent event = new NetworkTraversalEvent();
+        if (event.isEnabled()) {
+            event.elapsed = duration;
+            event.x = PackedPos.getX(origin);
+            event.y = PackedPos.getY(origin);
+            event.z = PackedPos.getZ(origin);
+            event.networkSize = networkSize;
+            event.blocksVisited = visited;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void powerCommit(long duration, long origin, int networkId, int networkSize, int power, int updated) {
+        PowerCommitEvent event = new PowerCommitEvent();
+        if (event.isEnabled()) {
+            event.elapsed = duration;
+            event.x = PackedPos.getX(origin);
+            event.y = PackedPos.getY(origin);
+            event.z = PackedPos.getZ(origin);
+            event.networkId = networkId;
+            event.networkSize = networkSize;
+            event.power = power;
+            event.blocksUpdated = updated;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void cascadeFold(long duration, long origin, int rounds, int commits, int membersTouched) {
+        CascadeFoldEvent event = new CascadeFoldEvent();
+        if (event.isEnabled()) {
+            event.elapsed = duration;
+            event.x = PackedPos.getX(origin);
+            event.y = PackedPos.getY(origin);
+            event.z = PackedPos.getZ(origin);
+            event.rounds = rounds;
+            event.commits = commits;
+            event.membersTouched = membersTouched;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void modelData(long duration, long pos, int visited) {
+        ModelDataEvent event = new ModelDataEvent();
+        if (event.isEnabled()) {
+            event.elapsed = duration;
+            event.x = PackedPos.getX(pos);
+            event.y = PackedPos.getY(pos);
+            event.z = PackedPos.getZ(pos);
+            event.blocksVisited = visited;
+            event.commit();
+        }
+    }
+
+    @Override
+    public void modelQuads(long duration, long pos, int quads) {
+        ModelQuadsEvent event = new ModelQuadsEvent();
+        if (event.isEnabled()) {
+            event.elapsed = duration;
+            event.x = PackedPos.getX(pos);
+            event.y = PackedPos.getY(pos);
+            event.z = PackedPos.getZ(pos);
+            event.quads = quads;
+            event.commit();
+        }
+    }
+}
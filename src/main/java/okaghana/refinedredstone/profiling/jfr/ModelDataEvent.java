@@ -0,0 +1,28 @@
+package okaghana.refinedredstone.profiling.jfr;
+
+import jdk.jfr.*;
+
+/** The model data of a wire was generated for meshing */
+@Name("refinedredstone.ModelData")
+@Label("Model Data")
+@Category({"Refined Redstone", "Rendering"})
+@Enabled(false)
+@StackTrace(false)
+class ModelDataEvent extends Event {
+
+    @Label("Elapsed")
+    @Timespan(Timespan.NANOSECONDS)
+    long elapsed;
+
+    @Label("X")
+    int x;
+
+    @Label("Y")
+    int y;
+
+    @Label("Z")
+    int z;
+
+    @Label("Blocks Visited")
+    int blocksVisited;
+}
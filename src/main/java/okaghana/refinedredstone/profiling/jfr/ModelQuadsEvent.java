@@ -0,0 +1,28 @@
+package okaghana.refinedredstone.profiling.jfr;
+
+import jdk.jfr.*;
+
+/** The quads of a wire were generated for meshing */
+@Name("refinedredstone.ModelQuads")
+@Label("Model Quads")
+@Category({"Refined Redstone", "Rendering"})
+@Enabled(false)
+@StackTrace(false)
+class ModelQuadsEvent extends Event {
+
+    @Label("Elapsed")
+    @Timespan(Timespan.NANOSECONDS)
+    long elapsed;
+
+    @Label("X")
+    int x;
+
+    @Label("Y")
+    int y;
+
+    @Label("Z")
+    int z;
+
+    @Label("Quads")
+    int quads;
+}
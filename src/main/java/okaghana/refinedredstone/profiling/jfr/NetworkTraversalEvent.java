@@ -0,0 +1,31 @@
+package okaghana.refinedredstone.profiling.jfr;
+
+import jdk.jfr.*;
+
+/** A network was traversed to find its members */
+@Name("refinedredstone.NetworkTraversal")
+@Label("Network Traversal")
+@Category({"Refined Redstone", "Circuit"})
+@Enabled(false)
+@StackTrace(false)
+class NetworkTraversalEvent extends Event {
+
+    @Label("Elapsed")
+    @Timespan(Timespan.NANOSECONDS)
+    long elapsed;
+
+    @Label("X")
+    int x;
+
+    @Label("Y")
+    int y;
+
+    @Label("Z")
+    int z;
+
+    @Label("Network Size")
+    int networkSize;
+
+    @Label("Blocks Visited")
+    int blocksVisited;
+}
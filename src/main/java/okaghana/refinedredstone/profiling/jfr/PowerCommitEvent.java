@@ -0,0 +1,37 @@
+package okaghana.refinedredstone.profiling.jfr;
+
+import jdk.jfr.*;
+
+/** A new power was written to the members of a network. The position is its first member, where its traversal started */
+@Name("refinedredstone.PowerCommit")
+@Label("Power Commit")
+@Category({"Refined Redstone", "Circuit"})
+@Enabled(false)
+@StackTrace(false)
+class PowerCommitEvent extends Event {
+
+    @Label("Elapsed")
+    @Timespan(Timespan.NANOSECONDS)
+    long elapsed;
+
+    @Label("X")
+    int x;
+
+    @Label("Y")
+    int y;
+
+    @Label("Z")
+    int z;
+
+    @Label("Network Id")
+    int networkId;
+
+    @Label("Network Size")
+    int networkSize;
+
+    @Label("Power")
+    int power;
+
+    @Label("Blocks Updated")
+    int blocksUpdated;
+}
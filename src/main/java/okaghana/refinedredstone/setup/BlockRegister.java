@@ -7,8 +7,15 @@ import net.minecraftforge.fml.RegistryObject;
 import net.minecraftforge.registries.DeferredRegister;
 import net.minecraftforge.registries.ForgeRegistries;
 import okaghana.refinedredstone.RefinedRedstone;
+import okaghana.refinedredstone.block.AcceleratedRedstoneWire;
+import okaghana.refinedredstone.block.BundleAdapter;
+import okaghana.refinedredstone.block.BundledRefinedRedstoneBlock;
 import okaghana.refinedredstone.block.Diode;
+import okaghana.refinedredstone.block.LogicGate;
 import okaghana.refinedredstone.block.RefinedRedstoneBlock;
+import okaghana.refinedredstone.block.SignalConditioner;
+import okaghana.refinedredstone.block.WirelessReceiver;
+import okaghana.refinedredstone.block.WirelessTransmitter;
 
 import java.util.function.Supplier;
 
@@ -20,6 +27,17 @@ public class BlockRegister {
 
     public static final RegistryObject<RefinedRedstoneBlock> REFINED_REDSTONE = registerBlock("refined_redstone", RefinedRedstoneBlock::new);
     public static final RegistryObject<Diode> DIODE = registerBlock("diode", Diode::new);
+    public static final RegistryObject<SignalConditioner> SIGNAL_CONDITIONER = registerBlock("signal_conditioner", SignalConditioner::new);
+    public static final RegistryObject<LogicGate> LOGIC_GATE = registerBlock("logic_gate", LogicGate::new);
+    public static final RegistryObject<WirelessTransmitter> WIRELESS_TRANSMITTER = registerBlock("wireless_transmitter", WirelessTransmitter::new);
+    public static final RegistryObject<WirelessReceiver> WIRELESS_RECEIVER = registerBlock("wireless_receiver", WirelessReceiver::new);
+    public static final RegistryObject<BundledRefinedRedstoneBlock> BUNDLED_REFINED_REDSTONE = registerBlock("bundled_refined_redstone", BundledRefinedRedstoneBlock::new);
+    public static final RegistryObject<BundleAdapter> BUNDLE_ADAPTER = registerBlock("bundle_adapter", BundleAdapter::new);
+
+    // Overrides of vanilla blocks. They keep the vanilla name, so the vanilla item, model and loot table still apply. The
+    // vanilla item places the override, see AcceleratedRedstoneWire
+    public static final DeferredRegister<Block> VANILLA_REGISTER = DeferredRegister.create(ForgeRegistries.BLOCKS, "minecraft");
+    public static final RegistryObject<AcceleratedRedstoneWire> REDSTONE_WIRE = VANILLA_REGISTER.register("redstone_wire", AcceleratedRedstoneWire::new);
 
     // Register a block and the respective item
     private static <T extends Block> RegistryObject<T> registerBlock(String name, Supplier<T> block) {
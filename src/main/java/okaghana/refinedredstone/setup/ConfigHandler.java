@@ -2,6 +2,8 @@ package okaghana.refinedredstone.setup;
 
 import net.minecraftforge.common.ForgeConfigSpec;
 import net.minecraftforge.fml.common.Mod;
+import okaghana.refinedredstone.circuit.DustEngine;
+import okaghana.refinedredstone.circuit.RateLimiter;
 
 @Mod.EventBusSubscriber
 public class ConfigHandler {
@@ -11,6 +13,27 @@ public class ConfigHandler {
     public static ForgeConfigSpec.BooleanValue USE_SEPARATE_ITEM_GROUP;
     public static ForgeConfigSpec.IntValue ENGINEERS_HELMET_RADIUS;
 
+    public static ForgeConfigSpec.BooleanValue SIMULATION_THREAD;
+    public static ForgeConfigSpec.BooleanValue DECOUPLED_POWER_RENDERING;
+    public static ForgeConfigSpec.BooleanValue CHUNK_POWER_STORAGE;
+    public static ForgeConfigSpec.IntValue INPUT_DEBOUNCE_TICKS;
+    public static ForgeConfigSpec.IntValue INPUT_HYSTERESIS;
+    public static ForgeConfigSpec.BooleanValue OSCILLATION_DETECTION;
+    public static ForgeConfigSpec.IntValue OSCILLATION_CYCLES;
+    public static ForgeConfigSpec.IntValue MAX_PARTICLES_PER_TICK;
+    public static ForgeConfigSpec.IntValue MAX_PARTICLES_PER_SECTION;
+    public static ForgeConfigSpec.IntValue PARTICLE_FULL_DETAIL_DISTANCE;
+    public static ForgeConfigSpec.IntValue HEATMAP_SAMPLE_RATE;
+    public static ForgeConfigSpec.IntValue HEATMAP_HALF_LIFE;
+    public static ForgeConfigSpec.IntValue HEATMAP_RADIUS;
+    public static ForgeConfigSpec.IntValue HEATMAP_TOP_NETWORKS;
+    public static ForgeConfigSpec.EnumValue<RateLimiter.Action> RATE_LIMIT_ACTION;
+    public static ForgeConfigSpec.IntValue RATE_LIMIT_WINDOW;
+    public static ForgeConfigSpec.IntValue RATE_LIMIT_NETWORK_UPDATES;
+    public static ForgeConfigSpec.IntValue RATE_LIMIT_CHUNK_WRITES;
+    public static ForgeConfigSpec.IntValue RATE_LIMIT_THROTTLED_INTERVAL;
+    public static ForgeConfigSpec.EnumValue<DustEngine.Mode> DUST_MODE;
+
     static {
         ForgeConfigSpec.Builder builder = new ForgeConfigSpec.Builder();
         builder.comment("General Settings").push("general");
@@ -19,6 +42,30 @@ public class ConfigHandler {
         USE_SEPARATE_ITEM_GROUP = builder.comment("Use an own Item Group for this mod. Default: true").define("separateItemGroup", true);
         ENGINEERS_HELMET_RADIUS = builder.comment("Up to what radius the Engineers helmet should function. Default: 8").defineInRange("engineersHelmetRange", 8, 0, 64);
 
+        builder.pop();
+        builder.comment("Performance Settings").push("performance");
+
+        SIMULATION_THREAD = builder.comment("Simulate the Refined Redstone networks on a separate thread. The power of a network then lags behind its inputs by at least one tick, and by one more for every network a change passes through. Set to false to simulate synchronously on the server thread. Default: false").define("simulationThread", false);
+        DECOUPLED_POWER_RENDERING = builder.comment("Send power changes of Refined Redstone as a separate packet instead of block updates. The changed block itself isn't sent to the clients, so they don't have to rebuild the chunk mesh every time the power changes. Networks in decay mode are still sent as block updates. Default: true").define("decoupledPowerRendering", true);
+        CHUNK_POWER_STORAGE = builder.comment("Keep the power of Refined Redstone in a separate per-chunk storage instead of the block state, so power changes don't cause block changes at all. The block state keeps its power property but it isn't updated anymore. Default: false").define("chunkPowerStorage", false);
+        INPUT_DEBOUNCE_TICKS = builder.comment("After an input of a Refined Redstone network changed, further changes of that input are held back for this many ticks and only the level at the end is applied. 0 applies every change right away. For single inputs use a Signal Conditioner instead. Takes effect when the world is loaded. Default: 0").defineInRange("inputDebounceTicks", 0, 0, 200);
+        INPUT_HYSTERESIS = builder.comment("How much an input of a Refined Redstone network has to change before the network reacts. Changes to 0 or 15 always apply. Also used by the Signal Conditioner. Takes effect when the world is loaded. Default: 0").defineInRange("inputHysteresis", 0, 0, 15);
+        OSCILLATION_DETECTION = builder.comment("Recognize Refined Redstone networks whose inputs change periodically (e.g. driven by a clock) and show their cycle in the Power Meter. The networks are still evaluated normally. Only used with synchronous simulation. Default: false").define("oscillationDetection", false);
+        OSCILLATION_CYCLES = builder.comment("How many identical cycles in a row are needed before a network counts as oscillating. Default: 4").defineInRange("oscillationCycles", 4, 2, 16);
+        MAX_PARTICLES_PER_TICK = builder.comment("How many particles powered Refined Redstone may spawn per client tick in total. 0 disables the particles. Default: 64").defineInRange("maxParticlesPerTick", 64, 0, 4096);
+        MAX_PARTICLES_PER_SECTION = builder.comment("How many particles powered Refined Redstone may spawn per client tick in a single 16x16x16 chunk section. Default: 4").defineInRange("maxParticlesPerSection", 4, 1, 4096);
+        PARTICLE_FULL_DETAIL_DISTANCE = builder.comment("Up to what distance from the camera powered Refined Redstone spawns all of its particles. Further away fewer particles are spawned. Default: 12").defineInRange("particleFullDetailDistance", 12, 0, 64);
+        HEATMAP_SAMPLE_RATE = builder.comment("While someone watches the update heatmap, only every n-th recomputation of a Refined Redstone network is counted (with n times the weight). Higher values make the heatmap cheaper but coarser. Default: 4").defineInRange("heatmapSampleRate", 4, 1, 1024);
+        HEATMAP_HALF_LIFE = builder.comment("After how many seconds the counts of the update heatmap have decayed to half. Default: 5").defineInRange("heatmapHalfLife", 5, 1, 600);
+        HEATMAP_RADIUS = builder.comment("Up to how many chunks around a player the update heatmap is sent. Default: 4").defineInRange("heatmapRadius", 4, 0, 16);
+        HEATMAP_TOP_NETWORKS = builder.comment("How many of the most updated networks the heatmap highlights. Default: 5").defineInRange("heatmapTopNetworks", 5, 0, 64);
+        RATE_LIMIT_ACTION = builder.comment("What happens to a Refined Redstone network that is updated more often than the limits below allow: OFF ignores it, THROTTLE lets it update only every few ticks, FREEZE stops it until an operator releases it with /refinedredstone throttle release. Operators are told in the chat either way. Default: OFF").defineEnum("rateLimitAction", RateLimiter.Action.OFF);
+        RATE_LIMIT_WINDOW = builder.comment("Over how many ticks the updates of a network and the block writes in a chunk are counted. Default: 100").defineInRange("rateLimitWindow", 100, 1, 1200);
+        RATE_LIMIT_NETWORK_UPDATES = builder.comment("How often a single network may be recomputed within the window. Default: 1000").defineInRange("rateLimitNetworkUpdates", 1000, 1, Integer.MAX_VALUE);
+        RATE_LIMIT_CHUNK_WRITES = builder.comment("How many wires may be written within a single chunk within the window. Default: 50000").defineInRange("rateLimitChunkWrites", 50000, 1, Integer.MAX_VALUE);
+        RATE_LIMIT_THROTTLED_INTERVAL = builder.comment("A throttled network is updated at most once per this many ticks. Default: 20").defineInRange("rateLimitThrottledInterval", 20, 1, 1200);
+        DUST_MODE = builder.comment("Let Refined Redstone compute the power of vanilla redstone dust instead of the recursive vanilla updates. The power of the dust is the same in every mode. VANILLA leaves the dust alone, COMPATIBLE notifies every block vanilla would notify (once each, after the power of all the dust is final), MINIMAL only notifies the blocks that can react, which breaks contraptions relying on quasi-connectivity and observers watching the dust. Can be switched while the game is running. Default: VANILLA").defineEnum("dustMode", DustEngine.Mode.VANILLA);
+
         builder.pop();
         config = builder.build();
     }
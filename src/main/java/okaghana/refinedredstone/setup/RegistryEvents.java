@@ -1,20 +1,34 @@
 package okaghana.refinedredstone.setup;
 
 import net.minecraft.block.BlockState;
+import net.minecraft.block.RedstoneWireBlock;
 import net.minecraft.client.renderer.BlockModelShapes;
 import net.minecraft.client.renderer.model.IBakedModel;
 import net.minecraft.client.renderer.model.ModelResourceLocation;
 import net.minecraftforge.client.event.ColorHandlerEvent;
 import net.minecraftforge.client.event.ModelBakeEvent;
 import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.event.lifecycle.FMLCommonSetupEvent;
+import okaghana.refinedredstone.api.RefinedRedstoneCapabilities;
+import okaghana.refinedredstone.capability.ChunkPowerStorage;
 import okaghana.refinedredstone.block.bakedModel.RefinedRedstoneBakedModel;
 
 public class RegistryEvents {
 
+    // Register the capabilities of the mod
+    @SubscribeEvent
+    public static void onCommonSetup(final FMLCommonSetupEvent event) {
+        ChunkPowerStorage.register();
+        RefinedRedstoneCapabilities.register();
+    }
+
+
     // Allows to register the Redstone Blocks as an IBlockColor Block
     @SubscribeEvent
     public static void registerBlockColors(final ColorHandlerEvent.Block event) {
         event.getBlockColors().register(BlockRegister.REFINED_REDSTONE.get(), BlockRegister.REFINED_REDSTONE.get());
+        // The replaced vanilla dust keeps the vanilla color
+        event.getBlockColors().register((state, world, pos, tintIndex) -> RedstoneWireBlock.getRGBByPower(state.get(RedstoneWireBlock.POWER)), BlockRegister.REDSTONE_WIRE.get());
     }
 
 
@@ -0,0 +1,123 @@
+package okaghana.refinedredstone.setup;
+
+import net.minecraft.util.ResourceLocation;
+import net.minecraft.world.World;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.server.ServerWorld;
+import net.minecraftforge.event.AttachCapabilitiesEvent;
+import net.minecraftforge.event.RegisterCommandsEvent;
+import net.minecraftforge.event.TickEvent;
+import net.minecraftforge.event.world.ChunkEvent;
+import net.minecraftforge.event.world.ChunkWatchEvent;
+import net.minecraftforge.event.world.WorldEvent;
+import net.minecraftforge.eventbus.api.SubscribeEvent;
+import net.minecraftforge.fml.LogicalSide;
+import net.minecraftforge.fml.common.Mod;
+import net.minecraftforge.fml.event.server.FMLServerStoppingEvent;
+import okaghana.refinedredstone.RefinedRedstone;
+import okaghana.refinedredstone.capability.ChunkPowerProvider;
+import okaghana.refinedredstone.circuit.BundledNetworks;
+import okaghana.refinedredstone.circuit.ChannelRegistry;
+import okaghana.refinedredstone.circuit.GateScheduler;
+import okaghana.refinedredstone.circuit.NetworkApi;
+import okaghana.refinedredstone.circuit.NetworkManager;
+import okaghana.refinedredstone.command.Benchmark;
+import okaghana.refinedredstone.command.RefinedRedstoneCommand;
+import okaghana.refinedredstone.network.PacketHandler;
+
+// Hooks the per-world circuit logic into the tick and lifecycle of the server worlds
+@Mod.EventBusSubscriber(modid = RefinedRedstone.MODID)
+public class WorldEvents {
+
+    @SubscribeEvent
+    public static void onWorldTick(TickEvent.WorldTickEvent event) {
+        if (event.side != LogicalSide.SERVER) {
+            return;
+        }
+
+        if (event.phase == TickEvent.Phase.START) {
+            NetworkManager.onTickStart(event.world);
+        } else {
+            GateScheduler.tick(event.world);
+            NetworkManager.onTickEnd(event.world);
+            ChannelRegistry.get((ServerWorld) event.world).tick(event.world);
+        }
+    }
+
+
+    @SubscribeEvent
+    public static void onServerTick(TickEvent.ServerTickEvent event) {
+        if (event.phase == TickEvent.Phase.START) {
+            Benchmark.onServerTickStart();
+        } else {
+            Benchmark.onServerTickEnd();
+        }
+    }
+
+
+    // Remove the circuit of a running benchmark before the worlds are saved for the last time
+    @SubscribeEvent
+    public static void onServerStopping(FMLServerStoppingEvent event) {
+        Benchmark.abort();
+    }
+
+
+    @SubscribeEvent
+    public static void onRegisterCommands(RegisterCommandsEvent event) {
+        RefinedRedstoneCommand.register(event.getDispatcher());
+    }
+
+
+    @SubscribeEvent
+    public static void onChunkLoad(ChunkEvent.Load event) {
+        if (event.getWorld() instanceof World && !event.getWorld().isRemote()) {
+            NetworkManager.onChunkLoad((World) event.getWorld(), event.getChunk().getPos());
+            if (event.getWorld() instanceof ServerWorld) {
+                ChannelRegistry.get((ServerWorld) event.getWorld()).onChunkLoad(event.getChunk().getPos());
+            }
+        }
+    }
+
+
+    @SubscribeEvent
+    public static void onChunkWatch(ChunkWatchEvent.Watch event) {
+        if (ConfigHandler.CHUNK_POWER_STORAGE.get()) {
+            PacketHandler.sendChunkPower(event.getPlayer(), event.getWorld(), event.getPos());
+        }
+    }
+
+
+    @SubscribeEvent
+    public static void onAttachChunkCapabilities(AttachCapabilitiesEvent<Chunk> event) {
+        if (!event.getObject().getWorld().isRemote()) {
+            event.addCapability(new ResourceLocation(RefinedRedstone.MODID, "power"), new ChunkPowerProvider());
+        }
+    }
+
+
+    @SubscribeEvent
+    public static void onAttachWorldCapabilities(AttachCapabilitiesEvent<World> event) {
+        if (!event.getObject().isRemote()) {
+            event.addCapability(new ResourceLocation(RefinedRedstone.MODID, "networks"), new NetworkApi(event.getObject()));
+        }
+    }
+
+
+    @SubscribeEvent
+    public static void onWorldSave(WorldEvent.Save event) {
+        if (event.getWorld() instanceof World && !event.getWorld().isRemote()) {
+            NetworkManager.onWorldSave((World) event.getWorld());
+        }
+    }
+
+
+    @SubscribeEvent
+    public static void onWorldUnload(WorldEvent.Unload event) {
+        if (event.getWorld() instanceof World) {
+            Benchmark.onWorldUnload((World) event.getWorld());
+            GateScheduler.remove((World) event.getWorld());
+            NetworkManager.remove((World) event.getWorld());
+            BundledNetworks.remove((World) event.getWorld());
+        }
+    }
+}